@@ -0,0 +1,52 @@
+package org.example.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Точка входа benchmarks.jar. Принимает обычные аргументы JMH, но по умолчанию пишет
+ * результаты в performance/jmh-results.json, откуда их читает окно деталей визуализатора,
+ * и включает профилировщик gc (выделение памяти на операцию, число и время сборок).
+ * Запускать из корня проекта:
+ * <pre>
+ * mvn install
+ * mvn -f benchmarks/pom.xml package
+ * java -jar benchmarks/target/benchmarks.jar
+ * </pre>
+ */
+public class BenchmarkRunner {
+    static final String DEFAULT_RESULT_FILE = "performance/jmh-results.json";
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(cmdOptions);
+
+        if (!cmdOptions.getResult().hasValue()) {
+            File resultFile = new File(DEFAULT_RESULT_FILE);
+            File parent = resultFile.getAbsoluteFile().getParentFile();
+            if (!parent.exists() && !parent.mkdirs()) {
+                throw new IllegalStateException("Cannot create " + parent);
+            }
+            builder.result(DEFAULT_RESULT_FILE);
+        }
+        if (!cmdOptions.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (cmdOptions.getProfilers().isEmpty()) {
+            builder.addProfiler(GCProfiler.class);
+        }
+        if (cmdOptions.getIncludes().isEmpty()) {
+            builder.include(BenchmarkRunner.class.getPackage().getName() + ".*");
+        }
+
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции Collection для всех реализаций, кроме Map.
+ * add и iterate измеряются целиком на size элементов; вьюер сам делит результат на size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CollectionBenchmark {
+
+    @Param({"ArrayList", "LinkedList", "Vector", "Stack", "HashSet", "LinkedHashSet",
+            "TreeSet", "PriorityQueue", "ArrayDeque"})
+    public String impl;
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private Integer[] keys;
+    private int[] indices;
+    private int cursor;
+    private Collection<Integer> collection;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = Implementations.shuffledKeys(size, 42);
+        indices = Implementations.randomIndices(size, 7);
+        collection = Implementations.newCollection(impl);
+        for (Integer key : keys) {
+            collection.add(key);
+        }
+    }
+
+    private Integer nextKey() {
+        cursor = (cursor + 1) & (indices.length - 1);
+        return keys[indices[cursor]];
+    }
+
+    @Benchmark
+    public Collection<Integer> add() {
+        Collection<Integer> target = Implementations.newCollection(impl);
+        for (Integer key : keys) {
+            target.add(key);
+        }
+        return target;
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return collection.contains(nextKey());
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        for (Integer value : collection) {
+            bh.consume(value);
+        }
+    }
+
+    /**
+     * Удаление существующего элемента с возвратом обратно, чтобы размер оставался равным size.
+     */
+    @Benchmark
+    public boolean remove() {
+        Integer key = nextKey();
+        boolean removed = collection.remove(key);
+        collection.add(key);
+        return removed;
+    }
+}
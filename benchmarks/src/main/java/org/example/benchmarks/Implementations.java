@@ -0,0 +1,116 @@
+package org.example.benchmarks;
+
+import java.util.*;
+
+/**
+ * Фабрика реализаций из collections_hierarchy.json.
+ * Имена совпадают с именами узлов без параметров типа (ArrayList&lt;E&gt; -> ArrayList).
+ */
+final class Implementations {
+
+    private Implementations() {
+    }
+
+    static Collection<Integer> newCollection(String impl) {
+        switch (impl) {
+            case "ArrayList":
+                return new ArrayList<>();
+            case "LinkedList":
+                return new LinkedList<>();
+            case "Vector":
+                return new Vector<>();
+            case "Stack":
+                return new Stack<>();
+            case "HashSet":
+                return new HashSet<>();
+            case "LinkedHashSet":
+                return new LinkedHashSet<>();
+            case "TreeSet":
+                return new TreeSet<>();
+            case "PriorityQueue":
+                return new PriorityQueue<>();
+            case "ArrayDeque":
+                return new ArrayDeque<>();
+            default:
+                throw new IllegalArgumentException("Unknown collection: " + impl);
+        }
+    }
+
+    static Map<Integer, Integer> newMap(String impl) {
+        switch (impl) {
+            case "HashMap":
+                return new HashMap<>();
+            case "LinkedHashMap":
+                return new LinkedHashMap<>();
+            case "Hashtable":
+                return new Hashtable<>();
+            case "TreeMap":
+                return new TreeMap<>();
+            case "WeakHashMap":
+                return new WeakHashMap<>();
+            default:
+                throw new IllegalArgumentException("Unknown map: " + impl);
+        }
+    }
+
+    /**
+     * Заранее упакованные ключи в случайном порядке, чтобы не измерять boxing
+     * и не давать упорядоченным структурам вырожденный порядок вставки.
+     */
+    static Integer[] shuffledKeys(int size, long seed) {
+        Integer[] keys = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = i;
+        }
+        Random random = new Random(seed);
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Integer tmp = keys[i];
+            keys[i] = keys[j];
+            keys[j] = tmp;
+        }
+        return keys;
+    }
+
+    /**
+     * Случайные значения для наборов с примитивами: там упаковка - часть измеряемой цены, поэтому заранее не упаковываем.
+     */
+    static int[] randomInts(int size, long seed) {
+        int[] values = new int[size];
+        Random random = new Random(seed);
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextInt();
+        }
+        return values;
+    }
+
+    /**
+     * Уникальные случайные long: значения вне кэша Long.valueOf, как у реальных идентификаторов.
+     */
+    static long[] randomLongs(int size, long seed) {
+        Set<Long> unique = new LinkedHashSet<>();
+        Random random = new Random(seed);
+        while (unique.size() < size) {
+            unique.add(random.nextLong());
+        }
+        long[] values = new long[size];
+        int i = 0;
+        for (long value : unique) {
+            values[i++] = value;
+        }
+        return values;
+    }
+
+    /**
+     * Последовательность случайных индексов длиной степени двойки: обход по маске
+     * дешевле вызова Random внутри измеряемого метода.
+     */
+    static int[] randomIndices(int bound, long seed) {
+        int[] indices = new int[1 << 14];
+        Random random = new Random(seed);
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = random.nextInt(bound);
+        }
+        return indices;
+    }
+}
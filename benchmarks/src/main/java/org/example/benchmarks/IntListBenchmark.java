@@ -0,0 +1,92 @@
+package org.example.benchmarks;
+
+import org.example.primitive.IntArrayList;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IntArrayList против ArrayList&lt;Integer&gt;. В отличие от ListBenchmark ключи не упакованы заранее:
+ * на горячем пути значения приходят как int, и упаковка при add/get - часть цены boxed-версии.
+ * Выделение памяти на операцию и время GC дает профилировщик gc, который BenchmarkRunner включает по умолчанию.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IntListBenchmark {
+
+    @Param({"IntArrayList", "ArrayList-Integer"})
+    public String impl;
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private boolean primitive;
+    private int[] values;
+    private int[] indices;
+    private int cursor;
+    private IntArrayList intList;
+    private List<Integer> boxedList;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        primitive = impl.equals("IntArrayList");
+        values = Implementations.randomInts(size, 42);
+        indices = Implementations.randomIndices(size, 7);
+        intList = new IntArrayList();
+        boxedList = new ArrayList<>();
+        for (int value : values) {
+            if (primitive) {
+                intList.add(value);
+            } else {
+                boxedList.add(value);
+            }
+        }
+    }
+
+    private int nextIndex() {
+        cursor = (cursor + 1) & (indices.length - 1);
+        return indices[cursor];
+    }
+
+    @Benchmark
+    public Object add() {
+        if (primitive) {
+            IntArrayList target = new IntArrayList();
+            for (int value : values) {
+                target.add(value);
+            }
+            return target;
+        }
+        List<Integer> target = new ArrayList<>();
+        for (int value : values) {
+            target.add(value);
+        }
+        return target;
+    }
+
+    @Benchmark
+    public int get() {
+        return primitive ? intList.get(nextIndex()) : boxedList.get(nextIndex());
+    }
+
+    @Benchmark
+    public long iterate() {
+        long sum = 0;
+        if (primitive) {
+            for (int i = 0; i < intList.size(); i++) {
+                sum += intList.get(i);
+            }
+        } else {
+            for (int value : boxedList) {
+                sum += value;
+            }
+        }
+        return sum;
+    }
+}
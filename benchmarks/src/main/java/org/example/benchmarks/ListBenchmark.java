@@ -0,0 +1,43 @@
+package org.example.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Доступ по индексу есть только у List, поэтому get вынесен в отдельный набор.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ListBenchmark {
+
+    @Param({"ArrayList", "LinkedList", "Vector", "Stack"})
+    public String impl;
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private int[] indices;
+    private int cursor;
+    private List<Integer> list;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        indices = Implementations.randomIndices(size, 7);
+        list = (List<Integer>) Implementations.newCollection(impl);
+        for (Integer key : Implementations.shuffledKeys(size, 42)) {
+            list.add(key);
+        }
+    }
+
+    @Benchmark
+    public Integer get() {
+        cursor = (cursor + 1) & (indices.length - 1);
+        return list.get(indices[cursor]);
+    }
+}
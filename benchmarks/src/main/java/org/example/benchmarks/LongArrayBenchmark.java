@@ -0,0 +1,110 @@
+package org.example.benchmarks;
+
+import org.example.primitive.OffHeapLongArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OffHeapLongArray против long[] и ArrayList&lt;Long&gt;. add - заполнение всех элементов,
+ * для массивов фиксированной длины это запись по индексу. Размеры больше, чем в остальных наборах:
+ * разница в паузах GC видна, когда в куче лежат миллионы объектов Long.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LongArrayBenchmark {
+
+    @Param({"OffHeapLongArray", "long[]", "ArrayList-Long"})
+    public String impl;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private long[] values;
+    private int[] indices;
+    private int cursor;
+    private OffHeapLongArray offHeap;
+    private long[] heapArray;
+    private List<Long> boxedList;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        values = Implementations.randomLongs(size, 42);
+        indices = Implementations.randomIndices(size, 7);
+        switch (impl) {
+            case "OffHeapLongArray":
+                offHeap = new OffHeapLongArray(size);
+                break;
+            case "long[]":
+                heapArray = new long[size];
+                break;
+            case "ArrayList-Long":
+                boxedList = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    boxedList.add(0L);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown array: " + impl);
+        }
+        add();
+    }
+
+    private int nextIndex() {
+        cursor = (cursor + 1) & (indices.length - 1);
+        return indices[cursor];
+    }
+
+    @Benchmark
+    public Object add() {
+        if (offHeap != null) {
+            for (int i = 0; i < size; i++) {
+                offHeap.set(i, values[i]);
+            }
+            return offHeap;
+        }
+        if (heapArray != null) {
+            for (int i = 0; i < size; i++) {
+                heapArray[i] = values[i];
+            }
+            return heapArray;
+        }
+        for (int i = 0; i < size; i++) {
+            boxedList.set(i, values[i]);
+        }
+        return boxedList;
+    }
+
+    @Benchmark
+    public long get() {
+        int index = nextIndex();
+        if (offHeap != null) {
+            return offHeap.get(index);
+        }
+        return heapArray != null ? heapArray[index] : boxedList.get(index);
+    }
+
+    @Benchmark
+    public long iterate() {
+        if (offHeap != null) {
+            return offHeap.sum();
+        }
+        long sum = 0;
+        if (heapArray != null) {
+            for (long value : heapArray) {
+                sum += value;
+            }
+        } else {
+            for (long value : boxedList) {
+                sum += value;
+            }
+        }
+        return sum;
+    }
+}
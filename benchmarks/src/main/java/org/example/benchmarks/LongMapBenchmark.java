@@ -0,0 +1,106 @@
+package org.example.benchmarks;
+
+import org.example.primitive.LongLongHashMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LongLongHashMap против HashMap&lt;Long, Long&gt;. Ключи - случайные long вне кэша Long.valueOf,
+ * поэтому каждый вызов boxed-карты упаковывает ключ заново, как в реальном коде с long-идентификаторами.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LongMapBenchmark {
+
+    @Param({"LongLongHashMap", "HashMap-Long"})
+    public String impl;
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private boolean primitive;
+    private long[] keys;
+    private int[] indices;
+    private int cursor;
+    private LongLongHashMap longMap;
+    private Map<Long, Long> boxedMap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        primitive = impl.equals("LongLongHashMap");
+        keys = Implementations.randomLongs(size, 42);
+        indices = Implementations.randomIndices(size, 7);
+        longMap = new LongLongHashMap();
+        boxedMap = new HashMap<>();
+        for (long key : keys) {
+            if (primitive) {
+                longMap.put(key, key);
+            } else {
+                boxedMap.put(key, key);
+            }
+        }
+    }
+
+    private long nextKey() {
+        cursor = (cursor + 1) & (indices.length - 1);
+        return keys[indices[cursor]];
+    }
+
+    @Benchmark
+    public Object add() {
+        if (primitive) {
+            LongLongHashMap target = new LongLongHashMap();
+            for (long key : keys) {
+                target.put(key, key);
+            }
+            return target;
+        }
+        Map<Long, Long> target = new HashMap<>();
+        for (long key : keys) {
+            target.put(key, key);
+        }
+        return target;
+    }
+
+    @Benchmark
+    public long get() {
+        return primitive ? longMap.get(nextKey()) : boxedMap.get(nextKey());
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return primitive ? longMap.containsKey(nextKey()) : boxedMap.containsKey(nextKey());
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        if (primitive) {
+            longMap.forEach((key, value) -> bh.consume(key + value));
+        } else {
+            for (Map.Entry<Long, Long> entry : boxedMap.entrySet()) {
+                bh.consume(entry.getKey() + entry.getValue());
+            }
+        }
+    }
+
+    @Benchmark
+    public long remove() {
+        long key = nextKey();
+        if (primitive) {
+            long value = longMap.remove(key);
+            longMap.put(key, key);
+            return value;
+        }
+        long value = boxedMap.remove(key);
+        boxedMap.put(key, key);
+        return value;
+    }
+}
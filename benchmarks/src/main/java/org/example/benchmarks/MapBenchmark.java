@@ -0,0 +1,79 @@
+package org.example.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции Map. add - это заполнение пустой карты через put, iterate - обход entrySet.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MapBenchmark {
+
+    @Param({"HashMap", "LinkedHashMap", "Hashtable", "TreeMap", "WeakHashMap"})
+    public String impl;
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private Integer[] keys;
+    private int[] indices;
+    private int cursor;
+    private Map<Integer, Integer> map;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = Implementations.shuffledKeys(size, 42);
+        indices = Implementations.randomIndices(size, 7);
+        map = Implementations.newMap(impl);
+        for (Integer key : keys) {
+            map.put(key, key);
+        }
+    }
+
+    private Integer nextKey() {
+        cursor = (cursor + 1) & (indices.length - 1);
+        return keys[indices[cursor]];
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> add() {
+        Map<Integer, Integer> target = Implementations.newMap(impl);
+        for (Integer key : keys) {
+            target.put(key, key);
+        }
+        return target;
+    }
+
+    @Benchmark
+    public Integer get() {
+        return map.get(nextKey());
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return map.containsKey(nextKey());
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            bh.consume(entry);
+        }
+    }
+
+    @Benchmark
+    public Integer remove() {
+        Integer key = nextKey();
+        Integer value = map.remove(key);
+        map.put(key, key);
+        return value;
+    }
+}
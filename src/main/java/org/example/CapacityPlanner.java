@@ -0,0 +1,245 @@
+package org.example;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Модель роста коллекции на массиве по правилам из class_info: сколько раз массив пересоздается
+ * при заполнении до n элементов, сколько элементов копируется и сколько памяти живет одновременно
+ * во время роста. Модель сверяется с настоящим экземпляром: {@link #run} следит за массивом
+ * рефлексией и считает выделенную потоком память.
+ */
+class CapacityPlanner {
+    private static final int MEASURE_RUNS = 3;
+
+    /** Один рост массива. */
+    static class Step {
+        final long atSize;
+        final long oldCapacity;
+        final long newCapacity;
+        final long copied;
+        /** Старый и новый массив одновременно - пик памяти этого шага. */
+        final long transientBytes;
+
+        Step(long atSize, long oldCapacity, long newCapacity, long copied, long transientBytes) {
+            this.atSize = atSize;
+            this.oldCapacity = oldCapacity;
+            this.newCapacity = newCapacity;
+            this.copied = copied;
+            this.transientBytes = transientBytes;
+        }
+    }
+
+    static class Plan {
+        final List<Step> steps = new ArrayList<>();
+        long initialCapacity;
+        long finalCapacity;
+        long copied;
+        long peakBytes;
+        /** Все массивы за время заполнения плюс узлы записей хэш-таблицы. */
+        long allocatedBytes;
+    }
+
+    static class Measured {
+        final List<Step> steps = new ArrayList<>();
+        long finalCapacity;
+        long allocatedBytes;
+        long elapsedNanos;
+    }
+
+    private final ClassInfo.Growth growth;
+    private final double factor;
+    private final double loadFactor;
+    /** Коэффициент роста задан вручную: без особых правил JDK для малых и степеней двойки. */
+    private final boolean customFactor;
+    private final FootprintAnalyzer layout = new FootprintAnalyzer();
+    private final long entryBytes;
+
+    CapacityPlanner(ClassInfo.Growth growth, double factor, double loadFactor) {
+        this.growth = growth;
+        this.factor = factor;
+        this.loadFactor = growth.loadFactor > 0 ? loadFactor : 0;
+        this.customFactor = factor != growth.factor;
+        long entry = 0;
+        if (growth.entryClass != null) {
+            try {
+                entry = layout.shallowSize(Class.forName(growth.entryClass, false, TypeResolver.loader()));
+            } catch (ClassNotFoundException e) {
+                // Другая версия JDK: считаем только массивы
+            }
+        }
+        this.entryBytes = entry;
+    }
+
+    boolean hashed() {
+        return loadFactor > 0;
+    }
+
+    long entryBytes() {
+        return entryBytes;
+    }
+
+    /** Длина массива после конструктора; null - конструктор без аргументов. */
+    long initialCapacity(Integer argument) {
+        if (argument == null) {
+            return growth.lazy ? 0 : growth.defaultCapacity + growth.extraSlot;
+        }
+        return growth.powerOfTwo ? tableSizeFor(argument) : (long) argument + growth.extraSlot;
+    }
+
+    private static long tableSizeFor(int capacity) {
+        return capacity <= 1 ? 1 : Long.highestOneBit(capacity - 1L) << 1;
+    }
+
+    /** Сколько элементов помещается без роста. */
+    private long limit(long capacity) {
+        return hashed() ? (long) (capacity * loadFactor) : capacity - growth.extraSlot;
+    }
+
+    private long grow(long capacity) {
+        if (!customFactor && growth.powerOfTwo) {
+            return capacity * 2;
+        }
+        if (!customFactor && capacity < growth.smallCapacity) {
+            return capacity * 2 + growth.smallIncrement;
+        }
+        return capacity + Math.max(1, (long) (capacity * (factor - 1)));
+    }
+
+    Plan plan(long elements, Integer argument) {
+        Plan plan = new Plan();
+        long capacity = initialCapacity(argument);
+        plan.initialCapacity = capacity;
+        long allocated = capacity > 0 ? layout.referenceArraySize(capacity) : 0;
+        while (elements > limit(capacity)) {
+            if (capacity == 0) {
+                // Первая вставка выделяет массив: это не рост, копировать нечего
+                capacity = growth.lazy && argument == null ? growth.defaultCapacity : grow(0);
+                allocated += layout.referenceArraySize(capacity);
+                continue;
+            }
+            long next = grow(capacity);
+            long atSize = limit(capacity) + 1;
+            long transientBytes = layout.referenceArraySize(capacity) + layout.referenceArraySize(next);
+            Step step = new Step(atSize, capacity, next, hashed() ? atSize : capacity, transientBytes);
+            plan.steps.add(step);
+            plan.copied += step.copied;
+            plan.peakBytes = Math.max(plan.peakBytes, transientBytes);
+            allocated += layout.referenceArraySize(next);
+            capacity = next;
+        }
+        plan.finalCapacity = capacity;
+        plan.peakBytes = Math.max(plan.peakBytes, layout.referenceArraySize(capacity));
+        plan.allocatedBytes = allocated + elements * entryBytes;
+        return plan;
+    }
+
+    /** Наименьший аргумент конструктора, при котором заполнение до n обходится без роста. */
+    int bestInitialCapacity(long elements) {
+        long high = hashed() ? (long) Math.ceil(elements / loadFactor) + 1 : elements + 1;
+        int low = 1;
+        int best = (int) Math.min(Integer.MAX_VALUE - 8, high);
+        int top = best;
+        while (low <= top) {
+            int middle = low + (top - low) / 2;
+            if (plan(elements, middle).steps.isEmpty()) {
+                best = middle;
+                top = middle - 1;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Заполняет настоящий экземпляр и сравнивает с {@link #plan}. Коэффициент роста JDK не настраивается,
+     * поэтому сравнивать имеет смысл только модель с коэффициентом из class_info.
+     * Нужен доступ к полю массива: --add-opens java.base/java.util=ALL-UNNAMED (есть в манифесте jar).
+     */
+    Measured run(Class<?> type, int elements, Integer argument) throws ReflectiveOperationException {
+        Field field = arrayField(type);
+        field.setAccessible(true);
+        Integer[] keys = new Integer[elements];
+        for (int i = 0; i < elements; i++) {
+            keys[i] = i;
+        }
+        Measured measured = new Measured();
+        long start = System.nanoTime();
+        Object instance = create(type, argument);
+        Object array = field.get(instance);
+        long lazyCapacity = argument != null ? initialCapacity(argument) : growth.defaultCapacity;
+        for (int i = 0; i < elements; i++) {
+            add(instance, keys[i]);
+            Object current = field.get(instance);
+            if (current != array) {
+                long oldLength = array == null ? 0 : Array.getLength(array);
+                long newLength = Array.getLength(current);
+                if (oldLength == 0 && growth.lazy && newLength > lazyCapacity) {
+                    // HashMap(1): таблица на 1 слот выделяется и тут же растет в том же put, снаружи ее не видно
+                    oldLength = lazyCapacity;
+                }
+                if (oldLength > 0) {
+                    measured.steps.add(new Step(i + 1, oldLength, newLength, hashed() ? i + 1 : oldLength,
+                            layout.referenceArraySize(oldLength) + layout.referenceArraySize(newLength)));
+                }
+                array = current;
+            }
+        }
+        measured.elapsedNanos = System.nanoTime() - start;
+        measured.finalCapacity = array == null ? 0 : Array.getLength(array);
+
+        // Выделения - отдельными прогонами без рефлексии в цикле; первый прогон выше уже прогрел код
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        measured.allocatedBytes = Long.MAX_VALUE;
+        for (int run = 0; run < MEASURE_RUNS; run++) {
+            Object fresh = create(type, argument);
+            // Массив из конструктора выделен до замера, его добавляем по длине
+            Object initial = field.get(fresh);
+            long initialBytes = initial == null || Array.getLength(initial) == 0 ? 0
+                    : layout.referenceArraySize(Array.getLength(initial));
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < elements; i++) {
+                add(fresh, keys[i]);
+            }
+            long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+            measured.allocatedBytes = Math.min(measured.allocatedBytes, allocated + initialBytes);
+        }
+        return measured;
+    }
+
+    private Field arrayField(Class<?> type) throws NoSuchFieldException {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (field.getName().equals(growth.arrayField)) {
+                    return field;
+                }
+            }
+        }
+        throw new NoSuchFieldException(type.getName() + "." + growth.arrayField);
+    }
+
+    private Object create(Class<?> type, Integer argument) throws ReflectiveOperationException {
+        if (hashed() && (argument != null || loadFactor != growth.loadFactor)) {
+            Constructor<?> constructor = type.getConstructor(int.class, float.class);
+            return constructor.newInstance(argument != null ? argument : growth.defaultCapacity, (float) loadFactor);
+        }
+        return argument != null ? type.getConstructor(int.class).newInstance(argument) : type.getConstructor().newInstance();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void add(Object instance, Integer key) {
+        if (instance instanceof Map) {
+            ((Map<Integer, Integer>) instance).put(key, key);
+        } else {
+            ((Collection<Integer>) instance).add(key);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.example;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Планировщик емкости: сколько стоит рост коллекции до ожидаемого размера и с какой начальной
+ * емкостью его избежать. Параметры роста берутся из class_info, их можно менять, чтобы сравнить
+ * с другими стратегиями; кнопка проверки заполняет настоящий экземпляр.
+ */
+class CapacityPlannerDialog extends JDialog {
+    /** Сколько шагов роста показывать в таблице; дальше только итог. */
+    private static final int MAX_STEPS_SHOWN = 40;
+
+    private final String className;
+    private final ClassInfo.Growth growth;
+    private final JSpinner elements = new JSpinner(new SpinnerNumberModel(1_000, 1, 50_000_000, 1_000));
+    private final JCheckBox presized = new JCheckBox("начальная емкость");
+    private final JSpinner initialCapacity = new JSpinner(new SpinnerNumberModel(16, 1, Integer.MAX_VALUE - 8, 1));
+    private final JSpinner factor;
+    private final JSpinner loadFactor;
+    private final JEditorPane result = new JEditorPane("text/html", "");
+    private final JButton runButton = new JButton("Проверить запуском");
+    private final JLabel status = new JLabel(" ");
+    private String measuredHtml = "";
+
+    CapacityPlannerDialog(Window owner, String className, ClassInfo.Growth growth) {
+        super(owner, "Емкость: " + className, ModalityType.MODELESS);
+        this.className = className;
+        this.growth = growth;
+        factor = new JSpinner(new SpinnerNumberModel(growth.factor, 1.1, 4.0, 0.1));
+        loadFactor = new JSpinner(new SpinnerNumberModel(growth.loadFactor > 0 ? growth.loadFactor : 0.75,
+                0.25, 4.0, 0.05));
+        loadFactor.setEnabled(growth.loadFactor > 0);
+        initialCapacity.setEnabled(false);
+        result.setEditable(false);
+
+        elements.addChangeListener(e -> update());
+        initialCapacity.addChangeListener(e -> update());
+        factor.addChangeListener(e -> update());
+        loadFactor.addChangeListener(e -> update());
+        presized.addActionListener(e -> {
+            initialCapacity.setEnabled(presized.isSelected());
+            update();
+        });
+        runButton.addActionListener(e -> runReal());
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(new JLabel("элементов"));
+        controls.add(elements);
+        controls.add(presized);
+        controls.add(initialCapacity);
+        controls.add(new JLabel("рост x"));
+        controls.add(factor);
+        controls.add(new JLabel("loadFactor"));
+        controls.add(loadFactor);
+
+        JPanel south = new JPanel(new BorderLayout());
+        south.add(runButton, BorderLayout.WEST);
+        south.add(status, BorderLayout.CENTER);
+
+        setLayout(new BorderLayout());
+        add(controls, BorderLayout.NORTH);
+        add(new JScrollPane(result), BorderLayout.CENTER);
+        add(south, BorderLayout.SOUTH);
+        setSize(820, 640);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        update();
+    }
+
+    private CapacityPlanner planner() {
+        return new CapacityPlanner(growth, ((Number) factor.getValue()).doubleValue(),
+                ((Number) loadFactor.getValue()).doubleValue());
+    }
+
+    private Integer argument() {
+        return presized.isSelected() ? (Integer) initialCapacity.getValue() : null;
+    }
+
+    private void update() {
+        measuredHtml = "";
+        status.setText(" ");
+        render();
+    }
+
+    private void render() {
+        CapacityPlanner planner = planner();
+        int count = (Integer) elements.getValue();
+        Integer argument = argument();
+        CapacityPlanner.Plan plan = planner.plan(count, argument);
+        int best = planner.bestInitialCapacity(count);
+        CapacityPlanner.Plan bestPlan = planner.plan(count, best);
+
+        StringBuilder html = new StringBuilder("<html><body style='font-family:sans-serif'>");
+        html.append("<p>").append(argument == null ? "new " + className + "()" : "new " + className + "(" + argument + ")")
+                .append(", ").append(count).append(" элементов: <b>").append(plan.steps.size()).append(" рост(ов)</b>, ")
+                .append("скопировано элементов ").append(plan.copied)
+                .append(", пик памяти массива ").append(HeapDumpDialog.formatBytes(plan.peakBytes))
+                .append(", выделено всего ").append(HeapDumpDialog.formatBytes(plan.allocatedBytes))
+                .append(". Итоговая емкость ").append(plan.finalCapacity)
+                .append(", свободно слотов ").append(Math.max(0, plan.finalCapacity - count)).append(".</p>");
+        html.append("<p>Лучшая начальная емкость: <b>new ").append(className).append("(").append(best).append(")</b>")
+                .append(" - без роста, емкость ").append(bestPlan.finalCapacity).append(", выделено ")
+                .append(HeapDumpDialog.formatBytes(bestPlan.allocatedBytes)).append(".</p>");
+        if (planner.entryBytes() > 0) {
+            html.append("<p>В выделенное входят узлы записей: ").append(planner.entryBytes())
+                    .append(" байт на элемент; при росте они не копируются, а перевешиваются в новую таблицу.</p>");
+        }
+        if (((Number) factor.getValue()).doubleValue() != growth.factor) {
+            html.append("<p><i>Коэффициент роста изменен: модель без особых правил JDK, проверка запуском покажет")
+                    .append(" поведение JDK.</i></p>");
+        }
+        appendSteps(html, "Рост по модели", plan.steps);
+        html.append(measuredHtml).append("</body></html>");
+        result.setText(html.toString());
+        result.setCaretPosition(0);
+    }
+
+    private static void appendSteps(StringBuilder html, String title, List<CapacityPlanner.Step> steps) {
+        if (steps.isEmpty()) {
+            return;
+        }
+        html.append("<h4>").append(title).append("</h4><table border='1' cellspacing='0' cellpadding='3'>")
+                .append("<tr><th>при size</th><th>емкость</th><th>новая</th><th>копируется</th><th>пик</th></tr>");
+        for (int i = 0; i < Math.min(MAX_STEPS_SHOWN, steps.size()); i++) {
+            CapacityPlanner.Step step = steps.get(i);
+            html.append("<tr><td align='right'>").append(step.atSize).append("</td><td align='right'>")
+                    .append(step.oldCapacity).append("</td><td align='right'>").append(step.newCapacity)
+                    .append("</td><td align='right'>").append(step.copied).append("</td><td align='right'>")
+                    .append(HeapDumpDialog.formatBytes(step.transientBytes)).append("</td></tr>");
+        }
+        html.append("</table>");
+        if (steps.size() > MAX_STEPS_SHOWN) {
+            html.append("<p>... еще ").append(steps.size() - MAX_STEPS_SHOWN).append("</p>");
+        }
+    }
+
+    private void runReal() {
+        CapacityPlanner planner = planner();
+        int count = (Integer) elements.getValue();
+        Integer argument = argument();
+        runButton.setEnabled(false);
+        status.setText("Заполнение " + className + "...");
+        new SwingWorker<CapacityPlanner.Measured, Void>() {
+            @Override
+            protected CapacityPlanner.Measured doInBackground() throws ReflectiveOperationException {
+                return planner.run(TypeResolver.resolve(className, null), count, argument);
+            }
+
+            @Override
+            protected void done() {
+                runButton.setEnabled(true);
+                CapacityPlanner.Measured measured;
+                try {
+                    measured = get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    status.setText("Ошибка: " + cause + (cause instanceof RuntimeException
+                            ? " (нужен --add-opens java.base/java.util=ALL-UNNAMED)" : ""));
+                    return;
+                }
+                CapacityPlanner.Plan plan = planner.plan(count, argument);
+                boolean sameSteps = plan.steps.size() == measured.steps.size()
+                        && plan.finalCapacity == measured.finalCapacity;
+                double allocationError = plan.allocatedBytes == 0 ? 0
+                        : 100.0 * (measured.allocatedBytes - plan.allocatedBytes) / plan.allocatedBytes;
+                StringBuilder html = new StringBuilder("<h4>Запуск</h4><p>");
+                html.append(sameSteps ? "Совпадает с моделью: " : "<b>Расходится с моделью:</b> ")
+                        .append(measured.steps.size()).append(" рост(ов), итоговая емкость ")
+                        .append(measured.finalCapacity).append(". Выделено потоком ")
+                        .append(HeapDumpDialog.formatBytes(measured.allocatedBytes))
+                        .append(String.format(Locale.ROOT, " (модель %s, %+.1f%%)",
+                                HeapDumpDialog.formatBytes(plan.allocatedBytes), allocationError))
+                        .append(". Заполнение с отслеживанием массива заняло ")
+                        .append(LatencyHistogram.formatNanos(measured.elapsedNanos)).append(".</p>");
+                if (!sameSteps) {
+                    appendSteps(html, "Рост в запуске", measured.steps);
+                }
+                measuredHtml = html.toString();
+                status.setText(sameSteps ? "Модель подтверждена" : "Модель расходится с запуском");
+                render();
+            }
+        }.execute();
+    }
+}
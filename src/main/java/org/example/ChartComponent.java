@@ -0,0 +1,68 @@
+package org.example;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+
+/**
+ * Общая разметка графиков окон замеров: поля, логарифмические и линейные оси, легенда.
+ */
+abstract class ChartComponent extends JComponent {
+    static final Color[] PALETTE = {
+            new Color(0x1F77B4), new Color(0xD62728), new Color(0x2CA02C), new Color(0xFF7F0E),
+            new Color(0x9467BD), new Color(0x8C564B), new Color(0xE377C2), new Color(0x17BECF)
+    };
+
+    static final int LEFT = 70;
+    static final int RIGHT = 20;
+    static final int TOP = 30;
+    static final int BOTTOM = 40;
+
+    ChartComponent() {
+        setPreferredSize(new Dimension(880, 330));
+    }
+
+    int plotWidth() {
+        return getWidth() - LEFT - RIGHT;
+    }
+
+    int plotHeight() {
+        return getHeight() - TOP - BOTTOM;
+    }
+
+    double logX(double value, double min, double max) {
+        return LEFT + plotWidth() * (Math.log10(value) - Math.log10(min)) / (Math.log10(max) - Math.log10(min));
+    }
+
+    double logY(double value, double min, double max) {
+        return TOP + plotHeight() - plotHeight() * (Math.log10(value) - Math.log10(min))
+                / (Math.log10(max) - Math.log10(min));
+    }
+
+    double linearY(double value, double max) {
+        return TOP + plotHeight() - plotHeight() * value / max;
+    }
+
+    void paintFrame(Graphics2D g2, String title) {
+        g2.setColor(Color.WHITE);
+        g2.fillRect(0, 0, getWidth(), getHeight());
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setColor(Color.BLACK);
+        g2.setFont(SceneRenderer.NODE_FONT);
+        g2.drawString(title, LEFT, TOP - 12);
+        g2.setColor(Color.GRAY);
+        g2.drawRect(LEFT, TOP, plotWidth(), plotHeight());
+    }
+
+    void paintLegend(Graphics2D g2, List<String> lines, List<Color> lineColors) {
+        g2.setFont(SceneRenderer.NODE_FONT);
+        int y = TOP + 16;
+        for (int i = 0; i < lines.size(); i++) {
+            g2.setColor(lineColors.get(i));
+            g2.fillRect(LEFT + 8, y - 9, 10, 10);
+            g2.setColor(Color.BLACK);
+            g2.drawString(lines.get(i), LEFT + 24, y);
+            y += 16;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package org.example;
+
+import org.commonmark.parser.Parser;
+import org.commonmark.renderer.html.HtmlRenderer;
+
+import javax.swing.*;
+import javax.swing.text.html.HTMLEditorKit;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Окно деталей класса: описание из class_info, замеры и публичные методы.
+ * Общее для обоих режимов отрисовки иерархии.
+ */
+final class ClassDetails {
+    // Parser и HtmlRenderer неизменяемы и потокобезопасны, создаем их один раз
+    private static final Parser MARKDOWN_PARSER = Parser.builder().build();
+    private static final HtmlRenderer MARKDOWN_RENDERER = HtmlRenderer.builder().build();
+    // Готовое окно деталей; ключ включает версии замеров JMH и истории, чтобы новые результаты были видны сразу
+    static final LruCache<String, Details> DETAILS = new LruCache<>("details", 256);
+    private static final Object CACHE_LOCK = new Object();
+    /** Растет при каждом сбросе кэша: сборка, начатая до сброса, не кладет в кэш устаревший HTML. */
+    private static long generation;
+
+    static {
+        ClassInfoWatcher.addListener(rawName -> {
+            synchronized (CACHE_LOCK) {
+                generation++;
+                DETAILS.invalidateIf(key -> rawName == null || key.startsWith(rawName + "@"));
+            }
+        });
+    }
+
+    /** Все, что нужно окну деталей: HTML и то, что решает, какие кнопки показать. */
+    static final class Details {
+        final String html;
+        /** Правила роста для планировщика емкости или null. */
+        final ClassInfo.Growth growth;
+        /** Конкретная коллекция или карта, которую можно создать без аргументов, для замеров; иначе null. */
+        final Class<?> concreteType;
+
+        Details(String html, ClassInfo.Growth growth, Class<?> concreteType) {
+            this.html = html;
+            this.growth = growth;
+            this.concreteType = concreteType;
+        }
+    }
+
+    private ClassDetails() {
+    }
+
+    /**
+     * Открывает окно деталей. Ключ кэша читает версии файлов замеров, поэтому и он, и сам кэш
+     * проверяются в фоне; повторное открытие лишь достает готовое содержимое.
+     * Задержка от клика до появления окна пишется в {@link Metrics#DETAILS_OPEN}.
+     */
+    static void show(Component source, String className, String qualifiedName) {
+        Metrics.Span opening = Metrics.start(Metrics.DETAILS_OPEN, className);
+        source.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+
+        // Загрузка класса, рефлексия и рендеринг Markdown выполняются вне EDT
+        new SwingWorker<Details, Void>() {
+            @Override
+            protected Details doInBackground() throws ClassNotFoundException {
+                long started;
+                synchronized (CACHE_LOCK) {
+                    started = generation;
+                }
+                String cacheKey = ClassInfo.rawName(className) + "@" + PerformanceResults.version() + "@"
+                        + ResultsStore.version() + "@" + qualifiedName;
+                Details cached = DETAILS.get(cacheKey);
+                if (cached != null) {
+                    return cached;
+                }
+
+                Class<?> clazz = TypeResolver.resolve(className, qualifiedName);
+                ClassInfo classInfo = ClassInfo.load(className);
+
+                // Генерация HTML из Markdown-описаний
+                String html = Metrics.time(Metrics.DETAILS_HTML, className,
+                        () -> generateHtmlContent(clazz, classInfo));
+                Details details = new Details(html, classInfo.growth, instantiable(clazz));
+                synchronized (CACHE_LOCK) {
+                    if (generation == started) {
+                        DETAILS.put(cacheKey, details);
+                    }
+                }
+                return details;
+            }
+
+            @Override
+            protected void done() {
+                source.setCursor(source.getMousePosition() != null
+                        ? Cursor.getPredefinedCursor(Cursor.HAND_CURSOR)
+                        : Cursor.getDefaultCursor());
+                try {
+                    openDetailsDialog(className, get(), opening);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    opening.close();
+                    Throwable cause = e.getCause();
+                    if (cause instanceof ClassNotFoundException) {
+                        JOptionPane.showMessageDialog(null, "Class not found: " + className,
+                                "Error", JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+                    JOptionPane.showMessageDialog(null, "Failed to show details of " + className + ": " + cause,
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    cause.printStackTrace();
+                }
+            }
+        }.execute();
+    }
+
+    static void openDetailsDialog(String className, Details details, Metrics.Span opening) {
+        JDialog dialog = new JDialog();
+        dialog.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                opening.close();
+            }
+        });
+        dialog.setTitle("Details: " + className);
+        dialog.setSize(700, 800);
+
+        // Используем JEditorPane вместо JTextArea для поддержки HTML
+        JEditorPane editorPane = new JEditorPane();
+        editorPane.setEditable(false);
+        editorPane.setContentType("text/html");
+        editorPane.setEditorKit(new HTMLEditorKit());
+        editorPane.setText(details.html);
+
+        JScrollPane scrollPane = new JScrollPane(editorPane);
+        dialog.add(scrollPane);
+
+        // У растущих коллекций на массиве - переход к планировщику емкости
+        JPanel actions = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        if (details.growth != null) {
+            JButton planner = new JButton("Планировщик емкости...");
+            planner.addActionListener(e -> new CapacityPlannerDialog(dialog, ClassInfo.rawName(className),
+                    details.growth).setVisible(true));
+            actions.add(planner);
+        }
+        // Замеры на настоящих экземплярах долгие, поэтому только по запросу
+        if (details.concreteType != null) {
+            JButton footprint = new JButton("Расход памяти...");
+            footprint.addActionListener(e -> new FootprintDialog(dialog, details.concreteType).setVisible(true));
+            actions.add(footprint);
+            JButton streams = new JButton("Параллельные потоки...");
+            streams.addActionListener(e -> new ParallelStreamDialog(dialog, details.concreteType).setVisible(true));
+            actions.add(streams);
+        }
+        if (actions.getComponentCount() > 0) {
+            dialog.add(actions, BorderLayout.NORTH);
+        }
+        dialog.setVisible(true);
+    }
+
+    /**
+     * Замеры памяти и parallelStream - для конкретных коллекций и карт, которые можно создать без аргументов.
+     */
+    private static Class<?> instantiable(Class<?> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())
+                || !(Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type))) {
+            return null;
+        }
+        try {
+            type.getConstructor();
+            return type;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static String markdown(String text) {
+        return Metrics.time(Metrics.MARKDOWN, () -> MARKDOWN_RENDERER.render(MARKDOWN_PARSER.parse(text)));
+    }
+
+    static String generateHtmlContent(Class<?> clazz, ClassInfo classInfo) {
+        StringBuilder html = new StringBuilder("<html><body style='font-family: Arial; padding: 10px'>");
+
+        // Заголовок
+        html.append("<h2>").append(clazz.isInterface() ? "INTERFACE" : "CLASS").append("</h2>");
+        html.append("<p><b>Package:</b> ").append(clazz.getPackageName()).append("<br>");
+        html.append("<b>Since Java:</b> ").append(classInfo.since != null ? classInfo.since : "N/A").append("</p>");
+
+        // Как реализация вела себя на проверенных JVM и настройках GC
+        html.append(ResultsStore.historyHtml(clazz.getSimpleName()));
+
+        // Описание (Markdown -> HTML)
+        if (classInfo.description != null) {
+            html.append("<h3>DESCRIPTION</h3>");
+            html.append(markdown(classInfo.description));
+        }
+
+        // Характеристики
+        if (classInfo.characteristics != null && classInfo.characteristics.length > 0) {
+            html.append("<h3>CHARACTERISTICS</h3><ul>");
+            for (String ch : classInfo.characteristics) {
+                html.append("<li>").append(ch).append("</li>");
+            }
+            html.append("</ul>");
+        }
+
+        // Использование (Markdown -> HTML)
+        if (classInfo.usage != null) {
+            html.append("<h3>USAGE</h3>");
+            html.append(markdown(classInfo.usage));
+        }
+
+        // Производительность
+        if (classInfo.performance != null) {
+            html.append("<h3>PERFORMANCE</h3>");
+            html.append(markdown(classInfo.performance));
+        }
+
+        // Замеры JMH из модуля benchmarks, если они уже есть
+        PerformanceResults measured = PerformanceResults.get();
+        if (measured != null && measured.has(clazz.getSimpleName())) {
+            html.append(measured.toHtml(clazz.getSimpleName()));
+        }
+
+        // Методы: полный эффективный набор, сгруппированный по типу, откуда метод достается
+        MetadataIndex.TypeMetadata metadata = MetadataIndex.of(clazz);
+        html.append("<h3>PUBLIC METHODS (").append(metadata.methods.size()).append(")</h3>");
+        for (Map.Entry<Class<?>, List<MetadataIndex.MethodInfo>> group : metadata.byOrigin().entrySet()) {
+            Class<?> origin = group.getKey();
+            html.append("<p><b>").append(origin == clazz ? "Declared here" : "From " + origin.getSimpleName())
+                    .append("</b> (").append(group.getValue().size()).append(")</p><pre>");
+            for (MetadataIndex.MethodInfo method : group.getValue()) {
+                html.append(method.isDefault ? "default " : method.isStatic ? "static " : "")
+                        .append(method.display.replace("<", "&lt;")).append("<br>");
+            }
+            html.append("</pre>");
+        }
+
+        html.append("</body></html>");
+        return html.toString();
+    }
+}
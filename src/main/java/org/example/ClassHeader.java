@@ -0,0 +1,109 @@
+package org.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Заголовок class-файла: имя, модификаторы и прямые супертипы.
+ * Читается без загрузки класса, поэтому сканер не инициализирует и не линкует тысячи классов JDK.
+ */
+class ClassHeader {
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_INTERFACE = 0x0200;
+
+    final String name;
+    final String superName;
+    final String[] interfaces;
+    final boolean isPublic;
+    final boolean isInterface;
+    // Модуль JDK или путь к jar, из которого прочитан класс
+    final String origin;
+
+    private ClassHeader(String name, String superName, String[] interfaces, int access, String origin) {
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        this.isPublic = (access & ACC_PUBLIC) != 0;
+        this.isInterface = (access & ACC_INTERFACE) != 0;
+        this.origin = origin;
+    }
+
+    String packageName() {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(0, dot);
+    }
+
+    /**
+     * Простое имя для отображения: для вложенных классов Outer.Inner.
+     */
+    String simpleName() {
+        return name.substring(name.lastIndexOf('.') + 1).replace('$', '.');
+    }
+
+    static ClassHeader parse(byte[] bytes, String origin) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != 0xCAFEBABE) {
+            throw new IOException("Not a class file");
+        }
+        in.readUnsignedShort(); // minor_version
+        in.readUnsignedShort(); // major_version
+
+        int poolSize = in.readUnsignedShort();
+        String[] utf8 = new String[poolSize];
+        int[] classNameIndex = new int[poolSize];
+        for (int i = 1; i < poolSize; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1: // Utf8
+                    utf8[i] = in.readUTF();
+                    break;
+                case 7: // Class
+                    classNameIndex[i] = in.readUnsignedShort();
+                    break;
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    in.skipBytes(2);
+                    break;
+                case 15: // MethodHandle
+                    in.skipBytes(3);
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    in.skipBytes(4);
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    in.skipBytes(8);
+                    i++; // занимают две ячейки пула
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        int access = in.readUnsignedShort();
+        String name = className(utf8, classNameIndex, in.readUnsignedShort());
+        String superName = className(utf8, classNameIndex, in.readUnsignedShort());
+        String[] interfaces = new String[in.readUnsignedShort()];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaces[i] = className(utf8, classNameIndex, in.readUnsignedShort());
+        }
+        return new ClassHeader(name, superName, interfaces, access, origin);
+    }
+
+    private static String className(String[] utf8, int[] classNameIndex, int index) {
+        if (index == 0) {
+            return null; // у java.lang.Object нет суперкласса
+        }
+        return utf8[classNameIndex[index]].replace('/', '.');
+    }
+}
@@ -0,0 +1,102 @@
+package org.example;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.concurrent.*;
+
+class ClassInfo {
+    private static final Gson GSON = new Gson();
+    static final LruCache<String, CompletableFuture<ClassInfo>> CACHE = new LruCache<>("class_info", 1024);
+    private static final ExecutorService loader = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+                Thread thread = new Thread(r, "class-info-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    static {
+        ClassInfoWatcher.addListener(rawName -> {
+            if (rawName == null) {
+                CACHE.invalidateIf(k -> true);
+            } else {
+                CACHE.invalidate(rawName);
+            }
+        });
+    }
+
+    String description;
+    String since;
+    String[] characteristics;
+    String usage;
+    String performance;
+    /** Правила роста внутреннего массива; есть только у растущих коллекций на массиве. */
+    Growth growth;
+
+    /**
+     * Новая емкость: до smallCapacity - old * 2 + smallIncrement, дальше old * factor (не меньше old + 1);
+     * при powerOfTwo - всегда удвоение. Хэш-таблица растет, когда size > capacity * loadFactor,
+     * массив - когда элементу нет места; extraSlot слотов всегда остаются свободными.
+     */
+    static class Growth {
+        int defaultCapacity;
+        /** Массив выделяется при первой вставке, а не в конструкторе. */
+        boolean lazy;
+        double factor;
+        int smallCapacity;
+        int smallIncrement;
+        boolean powerOfTwo;
+        /** 0 у коллекций на простом массиве. */
+        double loadFactor;
+        int extraSlot;
+        String arrayField;
+        /** Узел записи хэш-таблицы: создается на каждый элемент, при росте переиспользуется. */
+        String entryClass;
+    }
+
+    static String rawName(String className) {
+        return className.replaceAll("<.*>", "");
+    }
+
+    /**
+     * Параллельно читает class_info для всех узлов иерархии. Возвращает future,
+     * который завершается, когда прочитаны все файлы.
+     */
+    static CompletableFuture<Void> prefetchAll(Collection<String> classNames) {
+        CompletableFuture<?>[] futures = classNames.stream()
+                .map(ClassInfo::rawName)
+                .distinct()
+                .map(ClassInfo::loadAsync)
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(futures);
+    }
+
+    static ClassInfo load(String className) {
+        String rawName = rawName(className);
+        try {
+            return loadAsync(rawName).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Падаем обратно на синхронное чтение
+        }
+        return read(rawName);
+    }
+
+    private static CompletableFuture<ClassInfo> loadAsync(String rawName) {
+        return CACHE.computeIfAbsent(rawName, k -> CompletableFuture.supplyAsync(() -> read(k), loader));
+    }
+
+    private static ClassInfo read(String rawName) {
+        try {
+            String jsonContent = new String(Files.readAllBytes(
+                    Paths.get("class_info/" + rawName + ".json")));
+            return GSON.fromJson(jsonContent, ClassInfo.class);
+        } catch (IOException e) {
+            return new ClassInfo(); // Возвращаем пустую информацию, если файл не найден
+        }
+    }
+}
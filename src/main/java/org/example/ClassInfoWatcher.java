@@ -0,0 +1,66 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Следит за каталогом class_info и сообщает имена (без .json) измененных файлов,
+ * чтобы кэши сбрасывали только затронутые записи.
+ */
+final class ClassInfoWatcher {
+    private static final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private static boolean started;
+
+    private ClassInfoWatcher() {
+    }
+
+    static void addListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    static synchronized void start(Path directory) {
+        if (started || !Files.isDirectory(directory)) {
+            return;
+        }
+        try {
+            WatchService watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            Thread thread = new Thread(() -> watch(watchService), "class-info-watcher");
+            thread.setDaemon(true);
+            thread.start();
+            started = true;
+        } catch (IOException e) {
+            System.err.println("class_info watcher disabled: " + e.getMessage());
+        }
+    }
+
+    private static void watch(WatchService watchService) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // События потеряны - сбрасываем все
+                    listeners.forEach(l -> l.accept(null));
+                    continue;
+                }
+                String fileName = event.context().toString();
+                if (fileName.endsWith(".json")) {
+                    String rawName = fileName.substring(0, fileName.length() - ".json".length());
+                    listeners.forEach(l -> l.accept(rawName));
+                }
+            }
+            if (!key.reset()) {
+                return;
+            }
+        }
+    }
+}
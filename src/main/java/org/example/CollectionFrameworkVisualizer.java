@@ -1,144 +1,182 @@
 package org.example;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import org.commonmark.parser.Parser;
-import org.commonmark.renderer.html.HtmlRenderer;
-
 import javax.swing.*;
 import javax.swing.border.LineBorder;
-import javax.swing.text.html.HTMLEditorKit;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.io.IOException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class CollectionFrameworkVisualizer extends JFrame {
 
-    public CollectionFrameworkVisualizer() {
+    public CollectionFrameworkVisualizer(LaunchOptions options) {
         setTitle("Java Collection Framework Visualizer");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(1300, 900);
         setLocationRelativeTo(null);
 
-        // Создаем панель для отображения иерархии
-        JPanel hierarchyPanel = new HierarchyPanel();
-        JScrollPane scrollPane = new JScrollPane(hierarchyPanel);
+        // Модель заполняется в фоне; -Djcf.renderer=components включает старый режим с JPanel на каждый узел
+        HierarchyModel model = new HierarchyModel();
+        JComponent hierarchyView = "components".equals(System.getProperty("jcf.renderer"))
+                ? new HierarchyPanel(model)
+                : new HierarchyCanvas(model);
+        JScrollPane scrollPane = new JScrollPane(hierarchyView);
         add(scrollPane);
+        MetricsOverlay metrics = MetricsOverlay.install(this, scrollPane.getViewport());
+        if (hierarchyView instanceof HierarchyCanvas) {
+            add(measurementToolBar(model, (HierarchyCanvas) hierarchyView, metrics), BorderLayout.NORTH);
+        }
+
+        new HierarchyLoader(options.hierarchySource(), model).execute();
 
         setVisible(true);
     }
 
-    private static class HierarchyPanel extends JPanel {
-        private static final int BOX_WIDTH = 180;
-        private static final int BOX_HEIGHT = 40;
+    /**
+     * Панель замеров: узлы выделяются Ctrl+кликом, сравнение доступно от двух выделенных классов.
+     * Нагрузочный замер конкурентного доступа и окно внутреннего устройства берут выделенные классы
+     * как начальный выбор. Статистика дампа кучи и места реализаций
+     * по записанной трассе подписываются прямо на узлах. История замеров сравнивает сохраненные прогоны
+     * между собой, в том числе на разных JVM.
+     * Справа - поиск по схеме и переключатель панели замеров самого приложения.
+     */
+    private JToolBar measurementToolBar(HierarchyModel model, HierarchyCanvas canvas, MetricsOverlay metrics) {
+        JToolBar toolBar = new JToolBar();
+        toolBar.setFloatable(false);
+        JButton compare = new JButton("Сравнить выбранные");
+        JButton clear = new JButton("Снять выделение");
+        JButton contention = new JButton("Конкурентный доступ...");
+        JButton methods = new JButton("Методы...");
+        JButton internals = new JButton("Внутреннее устройство...");
+        JButton heapDump = new JButton("Дамп кучи...");
+        JButton replay = new JButton("Трасса...");
+        JButton history = new JButton("История замеров...");
+        JToggleButton metricsToggle = new JToggleButton("Замеры (F3)");
+        JLabel hint = new JLabel("  Ctrl+клик - выбрать класс для сравнения");
+        compare.setEnabled(false);
+        clear.setEnabled(false);
+        canvas.addSelectionListener(() -> {
+            int selected = canvas.selectedNodes().size();
+            compare.setEnabled(selected >= 2);
+            clear.setEnabled(selected > 0);
+            compare.setText(selected > 0 ? "Сравнить выбранные (" + selected + ")" : "Сравнить выбранные");
+        });
+        compare.addActionListener(e -> new ComparisonDialog(this, canvas.selectedNodes()).setVisible(true));
+        clear.addActionListener(e -> canvas.clearSelection());
+        contention.addActionListener(e -> {
+            java.util.List<String> names = new ArrayList<>();
+            canvas.selectedNodes().forEach(node -> names.add(node.name));
+            new ContentionDialog(this, names).setVisible(true);
+        });
+        methods.addActionListener(e -> {
+            java.util.List<String> names = new ArrayList<>();
+            canvas.selectedNodes().forEach(node -> names.add(node.name));
+            new MethodQueryDialog(this, model, names).setVisible(true);
+        });
+        internals.addActionListener(e -> {
+            java.util.List<String> names = new ArrayList<>();
+            canvas.selectedNodes().forEach(node -> names.add(node.name));
+            new InternalsDialog(this, names).setVisible(true);
+        });
+        heapDump.addActionListener(e -> new HeapDumpDialog(this, model, canvas).setVisible(true));
+        replay.addActionListener(e -> new TraceReplayDialog(this, model, canvas).setVisible(true));
+        history.addActionListener(e -> new ResultsHistoryDialog(this).setVisible(true));
+        metricsToggle.addActionListener(e -> metrics.toggle());
+        metrics.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentShown(ComponentEvent e) {
+                metricsToggle.setSelected(true);
+            }
+
+            @Override
+            public void componentHidden(ComponentEvent e) {
+                metricsToggle.setSelected(false);
+            }
+        });
+        toolBar.add(compare);
+        toolBar.add(clear);
+        toolBar.addSeparator();
+        toolBar.add(contention);
+        toolBar.add(methods);
+        toolBar.add(internals);
+        toolBar.add(heapDump);
+        toolBar.add(replay);
+        toolBar.add(history);
+        toolBar.add(hint);
+        toolBar.add(Box.createHorizontalGlue());
+        toolBar.add(new SearchBar(model, canvas));
+        toolBar.add(metricsToggle);
+        return toolBar;
+    }
 
+    private static class HierarchyPanel extends JPanel {
+        private final HierarchyModel model;
         private final java.util.List<Connector> connectors = new ArrayList<>();
         private final java.util.List<GroupLabel> groupLabels = new ArrayList<>();
+        private final java.util.List<ClassBox> classBoxes = new ArrayList<>();
 
-        public HierarchyPanel() {
+        public HierarchyPanel(HierarchyModel model) {
+            this.model = model;
             setLayout(null);
             setPreferredSize(new Dimension(1300, 900));
             setBackground(new Color(240, 240, 240));
+            model.addChangeListener(this::syncWithModel);
+        }
 
-            try {
-                // Читаем JSON-файл
-                JsonObject jsonObject = loadJsonData();
-
-                // Загрузка групп
-                JsonArray groups = jsonObject.getAsJsonArray("groups");
-                for (JsonElement groupElement : groups) {
-                    JsonObject groupObj = groupElement.getAsJsonObject();
-                    groupLabels.add(new GroupLabel(
-                            groupObj.get("name").getAsString(),
-                            groupObj.get("x").getAsInt(),
-                            groupObj.get("y").getAsInt(),
-                            Color.decode(groupObj.get("color").getAsString())
-                    ));
-                }
-
-                // Загружаем иерархию интерфейсов
-                JsonArray interfaces = jsonObject.getAsJsonArray("interfaces");
-                Map<String, ClassBox> classBoxes = new HashMap<>();
-                for (JsonElement interfaceElement : interfaces) {
-                    JsonObject interfaceObj = interfaceElement.getAsJsonObject();
-                    ClassBox box = new ClassBox(
-                            interfaceObj.get("name").getAsString(),
-                            interfaceObj.get("x").getAsInt(),
-                            interfaceObj.get("y").getAsInt(),
-                            BOX_WIDTH,
-                            BOX_HEIGHT,
-                            true,
-                            groupLabels.stream()
-                                    .filter(g -> g.name.equals(interfaceObj.get("group").getAsString()))
-                                    .findFirst()
-                                    .get().color
-                    );
-                    add(box);
-                    classBoxes.put(interfaceObj.get("name").getAsString(), box);
-                }
-
-                // Создаем связи между интерфейсами
-                for (JsonElement interfaceElement : interfaces) {
-                    JsonObject interfaceObj = interfaceElement.getAsJsonObject();
-                    ClassBox childBox = classBoxes.get(interfaceObj.get("name").getAsString());
-                    JsonArray parents = interfaceObj.getAsJsonArray("parents");
-
-                    for (JsonElement parent : parents) {
-                        ClassBox parentBox = classBoxes.get(parent.getAsString());
-                        connectors.add(new Connector(parentBox, childBox));
-                    }
-                }
-
-                // Загружаем реализации
-                JsonArray implementations = jsonObject.getAsJsonArray("implementations");
-                for (JsonElement implElement : implementations) {
-                    JsonObject implObj = implElement.getAsJsonObject();
-                    ClassBox box = new ClassBox(
-                            implObj.get("name").getAsString(),
-                            implObj.get("x").getAsInt(),
-                            implObj.get("y").getAsInt(),
-                            BOX_WIDTH,
-                            BOX_HEIGHT,
-                            false,
-                            groupLabels.stream()
-                                    .filter(g -> g.name.equals(implObj.get("group").getAsString()))
-                                    .findFirst()
-                                    .get().color
-                    );
-                    add(box);
-                    classBoxes.put(implObj.get("name").getAsString(), box);
-
-                    ClassBox parentBox = classBoxes.get(implObj.get("parent").getAsString());
-                    connectors.add(new Connector(parentBox, box));
-                }
+        /**
+         * Создает компоненты только для узлов и связей, появившихся в модели с прошлого вызова.
+         * Уже созданные переносятся на текущие координаты: раскладка сдвигает показанные узлы и группы.
+         */
+        private void syncWithModel() {
+            Metrics.time(Metrics.COMPONENTS_SYNC, () -> {
+                moveExistingComponents();
+                addNewComponents();
+            });
+            revalidate();
+            repaint();
+        }
 
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(null, "Failed to load hierarchy data: " + e.getMessage(),
-                        "Error", JOptionPane.ERROR_MESSAGE);
-                e.printStackTrace();
+        private void moveExistingComponents() {
+            for (int i = 0; i < groupLabels.size(); i++) {
+                HierarchyModel.Group group = model.groups().get(i);
+                groupLabels.get(i).x = group.x;
+                groupLabels.get(i).y = group.y;
+            }
+            for (int id = 0; id < classBoxes.size(); id++) {
+                HierarchyModel.Node node = model.node(id);
+                classBoxes.get(id).setBounds(node.x, node.y, node.width, node.height);
             }
         }
 
-        private static JsonObject loadJsonData() throws IOException {
-            String jsonContent = new String(Files.readAllBytes(Paths.get("collections_hierarchy.json")));
-            Gson gson = new Gson();
-            JsonObject jsonObject = gson.fromJson(jsonContent, JsonObject.class);
-            return jsonObject;
+        private void addNewComponents() {
+            for (int i = groupLabels.size(); i < model.groups().size(); i++) {
+                HierarchyModel.Group group = model.groups().get(i);
+                groupLabels.add(new GroupLabel(group.name, group.x, group.y, group.color));
+            }
+            for (int id = classBoxes.size(); id < model.nodeCount(); id++) {
+                HierarchyModel.Node node = model.node(id);
+                ClassBox box = new ClassBox(node.name, node.qualifiedName, node.x, node.y, node.width, node.height,
+                        node.fill);
+                add(box);
+                classBoxes.add(box);
+            }
+            for (int edge = connectors.size(); edge < model.edgeCount(); edge++) {
+                connectors.add(new Connector(classBoxes.get(model.edgeFrom(edge)), classBoxes.get(model.edgeTo(edge))));
+            }
         }
 
         @Override
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
-            Graphics2D g2 = (Graphics2D) g;
+            StartupTimer.mark(StartupTimer.FIRST_PAINT);
+            Metrics.frame();
+            Metrics.time(Metrics.PAINT, () -> paintGroupsAndConnectors((Graphics2D) g));
+        }
+
+        private void paintGroupsAndConnectors(Graphics2D g2) {
             g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
             // Рисуем группировки
@@ -174,42 +212,14 @@ public class CollectionFrameworkVisualizer extends JFrame {
         }
     }
 
-    private static class ClassInfo {
-        String description;
-        String since;
-        String[] characteristics;
-        String usage;
-        String performance;
-
-        static ClassInfo load(String className) {
-            try {
-                String rawName = className.replaceAll("<.*>", "");
-                String jsonContent = new String(Files.readAllBytes(
-                        Paths.get("class_info/" + rawName + ".json")));
-                return new Gson().fromJson(jsonContent, ClassInfo.class);
-            } catch (IOException e) {
-                return new ClassInfo(); // Возвращаем пустую информацию, если файл не найден
-            }
-        }
-    }
-
     private static class ClassBox extends JPanel {
-
-        public ClassBox(String className, int x, int y, int width, int height, boolean isInterface, Color groupColor) {
+        public ClassBox(String className, String qualifiedName, int x, int y, int width, int height, Color bgColor) {
             setBounds(x, y, width, height);
             setBorder(BorderFactory.createCompoundBorder(
                     new LineBorder(Color.BLACK, 1),
                     BorderFactory.createEmptyBorder(5, 5, 5, 5)
             ));
 
-            Color bgColor = isInterface
-                    ? new Color(
-                    Math.min(groupColor.getRed() + 40, 255),
-                    Math.min(groupColor.getGreen() + 40, 255),
-                    Math.min(groupColor.getBlue() + 40, 255)
-            )
-                    : groupColor;
-
             setBackground(bgColor);
             setLayout(new BorderLayout());
 
@@ -220,7 +230,7 @@ public class CollectionFrameworkVisualizer extends JFrame {
             addMouseListener(new MouseAdapter() {
                 @Override
                 public void mouseClicked(MouseEvent e) {
-                    showClassDetails(className);
+                    ClassDetails.show(ClassBox.this, className, qualifiedName);
                 }
 
                 @Override
@@ -242,96 +252,6 @@ public class CollectionFrameworkVisualizer extends JFrame {
                 }
             });
         }
-
-        private void showClassDetails(String className) {
-            try {
-                String rawName = className.replaceAll("<.*>", "");
-                Class<?> clazz = Class.forName("java.util." + rawName);
-                ClassInfo classInfo = ClassInfo.load(className);
-
-                JDialog dialog = new JDialog();
-                dialog.setTitle("Details: " + className);
-                dialog.setSize(700, 800);
-
-                // Используем JEditorPane вместо JTextArea для поддержки HTML
-                JEditorPane editorPane = new JEditorPane();
-                editorPane.setEditable(false);
-                editorPane.setContentType("text/html");
-                editorPane.setEditorKit(new HTMLEditorKit());
-
-                // Генерация HTML из Markdown-описаний
-                String htmlContent = generateHtmlContent(clazz, classInfo);
-                editorPane.setText(htmlContent);
-
-                JScrollPane scrollPane = new JScrollPane(editorPane);
-                dialog.add(scrollPane);
-                dialog.setVisible(true);
-
-            } catch (ClassNotFoundException e) {
-                JOptionPane.showMessageDialog(null, "Class not found: " + className,
-                        "Error", JOptionPane.ERROR_MESSAGE);
-            }
-        }
-
-        private String generateHtmlContent(Class<?> clazz, ClassInfo classInfo) {
-            // Конвертируем Markdown в HTML
-            Parser parser = Parser.builder().build();
-            HtmlRenderer renderer = HtmlRenderer.builder().build();
-
-            StringBuilder html = new StringBuilder("<html><body style='font-family: Arial; padding: 10px'>");
-
-            // Заголовок
-            html.append("<h2>").append(clazz.isInterface() ? "INTERFACE" : "CLASS").append("</h2>");
-            html.append("<p><b>Package:</b> java.util<br>");
-            html.append("<b>Since Java:</b> ").append(classInfo.since != null ? classInfo.since : "N/A").append("</p>");
-
-            // Описание (Markdown -> HTML)
-            if (classInfo.description != null) {
-                html.append("<h3>DESCRIPTION</h3>");
-                html.append(renderer.render(parser.parse(classInfo.description)));
-            }
-
-            // Характеристики
-            if (classInfo.characteristics != null && classInfo.characteristics.length > 0) {
-                html.append("<h3>CHARACTERISTICS</h3><ul>");
-                for (String ch : classInfo.characteristics) {
-                    html.append("<li>").append(ch).append("</li>");
-                }
-                html.append("</ul>");
-            }
-
-            // Использование (Markdown -> HTML)
-            if (classInfo.usage != null) {
-                html.append("<h3>USAGE</h3>");
-                html.append(renderer.render(parser.parse(classInfo.usage)));
-            }
-
-            // Производительность
-            if (classInfo.performance != null) {
-                html.append("<h3>PERFORMANCE</h3>");
-                html.append(renderer.render(parser.parse(classInfo.performance)));
-            }
-
-            // Методы
-            html.append("<h3>PUBLIC METHODS</h3><pre>");
-            Method[] methods = clazz.getDeclaredMethods();
-            Arrays.sort(methods, Comparator.comparing(Method::getName));
-            for (Method method : methods) {
-                if (Modifier.isPublic(method.getModifiers())) {
-                    html.append(Modifier.toString(method.getModifiers() & Modifier.methodModifiers())).append(" ");
-                    html.append(method.getReturnType().getSimpleName()).append(" ");
-                    html.append(method.getName()).append("(");
-                    html.append(Arrays.stream(method.getParameterTypes())
-                            .map(Class::getSimpleName)
-                            .collect(Collectors.joining(", ")));
-                    html.append(")<br>");
-                }
-            }
-            html.append("</pre>");
-
-            html.append("</body></html>");
-            return html.toString();
-        }
     }
 
     private static class Connector {
@@ -383,6 +303,26 @@ public class CollectionFrameworkVisualizer extends JFrame {
     }
 
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(CollectionFrameworkVisualizer::new);
+        StartupTimer.start();
+        LaunchOptions options = LaunchOptions.parse(args);
+        if (options.exportDir != null) {
+            // Свойство должно быть выставлено до первого обращения к AWT
+            System.setProperty("java.awt.headless", "true");
+            try {
+                HierarchyExporter.run(options);
+            } catch (Exception e) {
+                System.err.println("Export failed: " + e);
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+        TypeResolver.addJars(options.jars);
+        if (options.replayTrace != null) {
+            System.exit(TraceReplayer.runFork(options.replayTrace, options.replayClass));
+        }
+        ClassInfoWatcher.start(Paths.get("class_info"));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> Metrics.dump(System.out)));
+        SwingUtilities.invokeLater(() -> new CollectionFrameworkVisualizer(options));
     }
 }
\ No newline at end of file
@@ -1,176 +1,456 @@
 package org.example;
 
-import com.google.gson.*;
-import java.awt.*;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.awt.Color;
+import java.awt.Rectangle;
 import java.util.*;
-import java.util.List;
-import java.util.stream.Collectors;
 
+/**
+ * Послойная раскладка иерархии без рекурсии.
+ * Слой узла - длина самого длинного пути от корня, поэтому тип с несколькими родителями
+ * (LinkedList под List и Deque) оказывается ниже всех своих родителей. Внутри слоя узлы
+ * ставятся под барицентр родителей в ближайшую свободную позицию.
+ * Калькулятор хранит состояние раскладки: при добавлении узлов пересчитываются только
+ * новые узлы и их потомки, остальные остаются на месте. Время O((n + e) log n).
+ */
 public class CollectionLayoutCalculator {
-    private static final int BOX_WIDTH = 180;
-    private static final int BOX_HEIGHT = 60;
-    private static final int LEVEL_VERTICAL_SPACING = 120;
-    private static final int SIBLING_HORIZONTAL_SPACING = 60;
-    private static final int GROUP_HORIZONTAL_SPACING = 400;
-
+    /**
+     * Версия алгоритма раскладки: входит в ключ снимка .jcf-index, поэтому ее нужно увеличивать
+     * при любом изменении, которое сдвигает координаты узлов.
+     */
+    static final int LAYOUT_VERSION = 2;
+
+    private static final int BOX_WIDTH = HierarchyModel.BOX_WIDTH;
+    private static final int BOX_HEIGHT = HierarchyModel.BOX_HEIGHT;
+    private static final int LEVEL_VERTICAL_SPACING = 100;
+    private static final int SIBLING_HORIZONTAL_SPACING = 20;
+    private static final int GROUP_HORIZONTAL_SPACING = 120;
+    private static final int LEFT_MARGIN = 20;
+    private static final int TOP_MARGIN = 100;
+    private static final int GROUP_LABEL_OFFSET = 70;
+
+    private final List<List<Integer>> parents = new ArrayList<>();
+    private final List<List<Integer>> children = new ArrayList<>();
+    private final List<LayerSlots> occupied = new ArrayList<>();
+    private final Map<String, Integer> groupOrigins = new HashMap<>();
+    private int[] layerOf = new int[0];
+    private int laidOutNodes;
+    private int knownEdges;
+    private int maxRight = -1;
+
+    /**
+     * Раскладка JSON-описания целиком; узлы читаются так же, как загрузчиком: "parents" или "parent".
+     */
     public Map<String, Rectangle> calculateLayout(JsonObject jsonData) {
-        Map<String, Rectangle> layout = new HashMap<>();
-        Map<String, List<String>> hierarchy = buildHierarchy(jsonData);
-        List<String> roots = findRoots(hierarchy);
-
-        // Разделяем на две группы: Collection и Map
-        List<String> collectionRoots = roots.stream()
-                .filter(r -> r.contains("Collection") || r.contains("Iterable"))
-                .collect(Collectors.toList());
-        List<String> mapRoots = roots.stream()
-                .filter(r -> r.contains("Map"))
-                .collect(Collectors.toList());
+        HierarchyModel model = modelOf(jsonData);
+        CollectionLayoutCalculator calculator = new CollectionLayoutCalculator();
+        calculator.layoutAdded(model);
+        calculator.finish(model);
 
-        // Рассчитываем позиции для каждой группы
-        int collectionX = 50;
-        int mapX = collectionX + GROUP_HORIZONTAL_SPACING;
-        int y = 50;
+        Map<String, Rectangle> layout = new HashMap<>();
+        for (int id = 0; id < model.nodeCount(); id++) {
+            HierarchyModel.Node node = model.node(id);
+            layout.put(node.name, new Rectangle(node.x, node.y, BOX_WIDTH, BOX_HEIGHT));
+        }
+        return layout;
+    }
 
-        // Обрабатываем Collection hierarchy
-        for (String root : collectionRoots) {
-            calculateSubtreeLayout(root, hierarchy, layout, collectionX, y, true);
+    /**
+     * Связи родитель - наследник по ребрам модели. layout не нужен и оставлен ради прежней сигнатуры.
+     */
+    public List<Connection> calculateConnections(Map<String, Rectangle> layout, JsonObject jsonData) {
+        HierarchyModel model = modelOf(jsonData);
+        List<Connection> connections = new ArrayList<>(model.edgeCount());
+        for (int edge = 0; edge < model.edgeCount(); edge++) {
+            connections.add(new Connection(model.node(model.edgeFrom(edge)).name,
+                    model.node(model.edgeTo(edge)).name));
         }
+        return connections;
+    }
 
-        // Обрабатываем Map hierarchy
-        for (String root : mapRoots) {
-            calculateSubtreeLayout(root, hierarchy, layout, mapX, y, true);
+    public static class Connection {
+        public final String from;
+        public final String to;
+
+        public Connection(String from, String to) {
+            this.from = from;
+            this.to = to;
         }
+    }
 
-        return layout;
+    private static HierarchyModel modelOf(JsonObject jsonData) {
+        HierarchyModel model = new HierarchyModel();
+        addNodes(model, jsonData.getAsJsonArray("interfaces"), true);
+        addNodes(model, jsonData.getAsJsonArray("implementations"), false);
+        return model;
     }
 
-    private Dimension calculateSubtreeLayout(String node,
-                                             Map<String, List<String>> hierarchy,
-                                             Map<String, Rectangle> layout,
-                                             int x, int y,
-                                             boolean isRoot) {
-        if (layout.containsKey(node)) {
-            return new Dimension(0, 0);
+    private static void addNodes(HierarchyModel model, JsonArray nodes, boolean isInterface) {
+        if (nodes == null) {
+            return;
         }
-
-        List<String> children = hierarchy.getOrDefault(node, Collections.emptyList());
-        if (children.isEmpty()) {
-            Rectangle rect = new Rectangle(x, y, BOX_WIDTH, BOX_HEIGHT);
-            layout.put(node, rect);
-            return new Dimension(BOX_WIDTH, BOX_HEIGHT);
+        for (JsonElement element : nodes) {
+            JsonObject node = element.getAsJsonObject();
+            List<String> nodeParents = new ArrayList<>();
+            if (node.has("parents")) {
+                node.getAsJsonArray("parents").forEach(p -> nodeParents.add(p.getAsString()));
+            } else if (node.has("parent")) {
+                nodeParents.add(node.get("parent").getAsString());
+            }
+            String group = node.has("group") ? node.get("group").getAsString() : "";
+            model.addNode(node.get("name").getAsString(), group, 0, 0, isInterface, Color.GRAY, nodeParents);
         }
+    }
 
-        // Рекурсивно рассчитываем размеры поддеревьев
-        List<Dimension> childDimensions = new ArrayList<>();
-        for (String child : children) {
-            Dimension dim = calculateSubtreeLayout(child, hierarchy, layout, x, y + LEVEL_VERTICAL_SPACING, false);
-            childDimensions.add(dim);
+    /**
+     * Расставляет узлы и ребра, появившиеся в модели после предыдущего вызова.
+     * Уже размещенные узлы сдвигаются только если у них появился новый родитель.
+     */
+    void layoutAdded(HierarchyModel model) {
+        int nodeCount = model.nodeCount();
+        if (layerOf.length < nodeCount) {
+            layerOf = Arrays.copyOf(layerOf, Math.max(nodeCount, layerOf.length * 2));
+        }
+        for (int id = laidOutNodes; id < nodeCount; id++) {
+            parents.add(new ArrayList<>());
+            children.add(new ArrayList<>());
         }
 
-        // Рассчитываем общую ширину поддерева
-        int totalWidth = childDimensions.stream()
-                .mapToInt(d -> d.width)
-                .sum() + SIBLING_HORIZONTAL_SPACING * (children.size() - 1);
-
-        // Центрируем родительский узел над дочерними
-        int parentX = x;
-        if (!isRoot && totalWidth > BOX_WIDTH) {
-            parentX = x + (totalWidth - BOX_WIDTH) / 2;
+        // Затронуты новые узлы и старые узлы, получившие нового родителя
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        BitSet affected = new BitSet(nodeCount);
+        for (int id = laidOutNodes; id < nodeCount; id++) {
+            affected.set(id);
+            queue.add(id);
+        }
+        for (int edge = knownEdges; edge < model.edgeCount(); edge++) {
+            int from = model.edgeFrom(edge);
+            int to = model.edgeTo(edge);
+            parents.get(to).add(from);
+            children.get(from).add(to);
+            if (!affected.get(to)) {
+                affected.set(to);
+                queue.add(to);
+            }
+        }
+        knownEdges = model.edgeCount();
+
+        // ...и все их потомки
+        while (!queue.isEmpty()) {
+            for (int child : children.get(queue.poll())) {
+                if (!affected.get(child)) {
+                    affected.set(child);
+                    queue.add(child);
+                }
+            }
         }
 
-        layout.put(node, new Rectangle(parentX, y, BOX_WIDTH, BOX_HEIGHT));
+        for (int id = affected.nextSetBit(0); id >= 0 && id < laidOutNodes; id = affected.nextSetBit(id + 1)) {
+            occupied.get(layerOf[id]).remove(model.node(id).x);
+        }
+        laidOutNodes = nodeCount;
+
+        // Топологический порядок затронутой части (алгоритм Кана)
+        Map<Integer, Integer> inDegree = new HashMap<>();
+        for (int id = affected.nextSetBit(0); id >= 0; id = affected.nextSetBit(id + 1)) {
+            int degree = 0;
+            for (int parent : parents.get(id)) {
+                if (affected.get(parent)) {
+                    degree++;
+                }
+            }
+            inDegree.put(id, degree);
+            if (degree == 0) {
+                queue.add(id);
+            }
+        }
+        TreeMap<Integer, List<Integer>> byLayer = new TreeMap<>();
+        while (!queue.isEmpty()) {
+            int id = queue.poll();
+            inDegree.remove(id);
+            int layer = 0;
+            for (int parent : parents.get(id)) {
+                layer = Math.max(layer, layerOf[parent] + 1);
+            }
+            layerOf[id] = layer;
+            byLayer.computeIfAbsent(layer, k -> new ArrayList<>()).add(id);
+            for (int child : children.get(id)) {
+                Integer degree = inDegree.get(child);
+                if (degree != null) {
+                    inDegree.put(child, degree - 1);
+                    if (degree == 1) {
+                        queue.add(child);
+                    }
+                }
+            }
+        }
+        // Узлы на цикле (некорректные данные) просто ставим в нулевой слой
+        for (int id : inDegree.keySet()) {
+            layerOf[id] = 0;
+            byLayer.computeIfAbsent(0, k -> new ArrayList<>()).add(id);
+        }
 
-        // Позиционируем дочерние узлы
-        int childX = x;
-        for (int i = 0; i < children.size(); i++) {
-            String child = children.get(i);
-            Dimension dim = childDimensions.get(i);
+        for (Map.Entry<Integer, List<Integer>> entry : byLayer.entrySet()) {
+            placeLayer(model, entry.getKey(), entry.getValue());
+        }
+    }
 
-            // Центрируем дочерний узел относительно его поддерева
-            int centeredX = childX + (dim.width - BOX_WIDTH) / 2;
-            layout.get(child).x = centeredX;
+    private void placeLayer(HierarchyModel model, int layer, List<Integer> ids) {
+        while (occupied.size() <= layer) {
+            occupied.add(new LayerSlots());
+        }
+        LayerSlots slots = occupied.get(layer);
+        int y = TOP_MARGIN + layer * LEVEL_VERTICAL_SPACING;
+
+        List<Integer> roots = new ArrayList<>();
+        List<Integer> placedUnderParents = new ArrayList<>();
+        Map<Integer, Double> barycenters = new HashMap<>();
+        for (int id : ids) {
+            if (parents.get(id).isEmpty()) {
+                roots.add(id);
+            } else {
+                double sum = 0;
+                for (int parent : parents.get(id)) {
+                    sum += model.node(parent).x + BOX_WIDTH / 2.0;
+                }
+                barycenters.put(id, sum / parents.get(id).size());
+                placedUnderParents.add(id);
+            }
+        }
 
-            childX += dim.width + SIBLING_HORIZONTAL_SPACING;
+        // Корни каждой группы ставятся подряд, новая группа - правее всего уже размещенного
+        for (int id : roots) {
+            HierarchyModel.Node node = model.node(id);
+            Integer origin = groupOrigins.get(node.group);
+            if (origin == null) {
+                origin = maxRight < 0 ? LEFT_MARGIN : maxRight + GROUP_HORIZONTAL_SPACING;
+                groupOrigins.put(node.group, origin);
+            }
+            place(node, layer, slots.findFreeRight(origin), y);
         }
 
-        return new Dimension(totalWidth, LEVEL_VERTICAL_SPACING + BOX_HEIGHT);
+        // Братья с одинаковым барицентром центрируются блоком под родителем
+        placedUnderParents.sort(Comparator.comparingDouble(barycenters::get));
+        int start = 0;
+        while (start < placedUnderParents.size()) {
+            double center = barycenters.get(placedUnderParents.get(start));
+            int end = start;
+            while (end < placedUnderParents.size() && barycenters.get(placedUnderParents.get(end)) == center) {
+                end++;
+            }
+            int count = end - start;
+            int blockWidth = count * BOX_WIDTH + (count - 1) * SIBLING_HORIZONTAL_SPACING;
+            int desired = (int) Math.round(center - blockWidth / 2.0);
+            for (int i = start; i < end; i++) {
+                int x = slots.findFreeNearest(Math.max(LEFT_MARGIN, desired));
+                place(model.node(placedUnderParents.get(i)), layer, x, y);
+                desired = x + BOX_WIDTH + SIBLING_HORIZONTAL_SPACING;
+            }
+            start = end;
+        }
     }
 
-    private Map<String, List<String>> buildHierarchy(JsonObject jsonData) {
-        Map<String, List<String>> hierarchy = new HashMap<>();
-
-        // Обрабатываем интерфейсы
-        JsonArray interfaces = jsonData.getAsJsonArray("interfaces");
-        for (JsonElement element : interfaces) {
-            JsonObject iface = element.getAsJsonObject();
-            String name = iface.get("name").getAsString();
-            JsonArray parents = iface.getAsJsonArray("parents");
+    private void place(HierarchyModel.Node node, int layer, int x, int y) {
+        node.x = x;
+        node.y = y;
+        occupied.get(layer).add(x, node.id);
+        maxRight = Math.max(maxRight, x + BOX_WIDTH);
+    }
 
-            parents.forEach(p -> {
-                String parent = p.getAsString();
-                hierarchy.computeIfAbsent(parent, k -> new ArrayList<>()).add(name);
-            });
+    /**
+     * Завершающий проход после полной загрузки: снизу вверх центрирует родителей над потомками,
+     * сохраняя порядок в слое, и ставит подписи групп над их узлами.
+     */
+    void finish(HierarchyModel model) {
+        for (int layer = occupied.size() - 2; layer >= 0; layer--) {
+            LayerSlots slots = occupied.get(layer);
+            List<Integer> ids = slots.ids();
+            slots.clear();
+            int previousRight = Integer.MIN_VALUE / 2;
+            for (int id : ids) {
+                HierarchyModel.Node node = model.node(id);
+                int x = node.x;
+                if (!children.get(id).isEmpty()) {
+                    double sum = 0;
+                    for (int child : children.get(id)) {
+                        sum += model.node(child).x + BOX_WIDTH / 2.0;
+                    }
+                    x = (int) Math.round(sum / children.get(id).size() - BOX_WIDTH / 2.0);
+                }
+                x = Math.max(Math.max(x, LEFT_MARGIN), previousRight + SIBLING_HORIZONTAL_SPACING);
+                node.x = x;
+                slots.add(x, id);
+                previousRight = x + BOX_WIDTH;
+                maxRight = Math.max(maxRight, previousRight);
+            }
         }
 
-        // Обрабатываем реализации
-        JsonArray implementations = jsonData.getAsJsonArray("implementations");
-        for (JsonElement element : implementations) {
-            JsonObject impl = element.getAsJsonObject();
-            String name = impl.get("name").getAsString();
-            String parent = impl.get("parent").getAsString();
+        separateGroups(model);
 
-            hierarchy.computeIfAbsent(parent, k -> new ArrayList<>()).add(name);
+        Map<String, Integer> groupLeft = new HashMap<>();
+        for (int id = 0; id < model.nodeCount(); id++) {
+            HierarchyModel.Node node = model.node(id);
+            groupLeft.merge(node.group, node.x, Math::min);
         }
+        for (HierarchyModel.Group group : model.groups()) {
+            Integer left = groupLeft.get(group.name);
+            if (left != null) {
+                group.x = left;
+                group.y = TOP_MARGIN - GROUP_LABEL_OFFSET;
+            }
+        }
+    }
 
-        return hierarchy;
+    /**
+     * Начало группы выбирается по уже размещенным узлам, а потомки предыдущей группы в нижних слоях
+     * могут появиться позже и уйти правее. Сдвигает группы слева направо, чтобы их полосы не пересекались.
+     */
+    private void separateGroups(HierarchyModel model) {
+        Map<String, int[]> spans = new LinkedHashMap<>();
+        for (int id = 0; id < model.nodeCount(); id++) {
+            HierarchyModel.Node node = model.node(id);
+            int[] span = spans.computeIfAbsent(node.group, k -> new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE});
+            span[0] = Math.min(span[0], node.x);
+            span[1] = Math.max(span[1], node.x + BOX_WIDTH);
+        }
+        List<String> groups = new ArrayList<>(spans.keySet());
+        groups.sort(Comparator.comparingInt(g -> spans.get(g)[0]));
+
+        Map<String, Integer> shifts = new HashMap<>();
+        int previousRight = Integer.MIN_VALUE / 2;
+        for (String group : groups) {
+            int[] span = spans.get(group);
+            int shift = Math.max(0, previousRight + GROUP_HORIZONTAL_SPACING - span[0]);
+            if (shift > 0) {
+                shifts.put(group, shift);
+            }
+            previousRight = span[1] + shift;
+        }
+        if (shifts.isEmpty()) {
+            return;
+        }
+        for (int id = 0; id < model.nodeCount(); id++) {
+            HierarchyModel.Node node = model.node(id);
+            Integer shift = shifts.get(node.group);
+            if (shift != null) {
+                node.x += shift;
+                maxRight = Math.max(maxRight, node.x + BOX_WIDTH);
+            }
+        }
+        for (LayerSlots slots : occupied) {
+            List<Integer> ids = slots.ids();
+            slots.clear();
+            for (int id : ids) {
+                slots.add(model.node(id).x, id);
+            }
+        }
+        shifts.forEach((group, shift) -> groupOrigins.computeIfPresent(group, (k, origin) -> origin + shift));
     }
 
-    private List<String> findRoots(Map<String, List<String>> hierarchy) {
-        Set<String> allChildren = new HashSet<>();
-        hierarchy.values().forEach(allChildren::addAll);
+    /**
+     * Занятые позиции одного слоя. Кроме узлов хранятся сплошные занятые отрезки: соседние узлы,
+     * между которыми не помещается еще один, сливаются в один отрезок. Поэтому поиск свободного
+     * места перепрыгивает препятствие за одно обращение к дереву, а не обходит узлы по одному.
+     */
+    private static class LayerSlots {
+        private static final int MIN_FREE_GAP = BOX_WIDTH + 2 * SIBLING_HORIZONTAL_SPACING;
 
-        return hierarchy.keySet().stream()
-                .filter(k -> !allChildren.contains(k))
-                .collect(Collectors.toList());
-    }
+        private final TreeMap<Integer, Integer> nodes = new TreeMap<>();
+        private final TreeMap<Integer, Integer> runs = new TreeMap<>();
 
-    public List<Connection> calculateConnections(Map<String, Rectangle> layout,
-                                                 JsonObject jsonData) {
-        List<Connection> connections = new ArrayList<>();
+        void add(int x, int id) {
+            nodes.put(x, id);
+            addRun(x, x + BOX_WIDTH);
+        }
 
-        // Обрабатываем интерфейсы
-        JsonArray interfaces = jsonData.getAsJsonArray("interfaces");
-        for (JsonElement element : interfaces) {
-            JsonObject iface = element.getAsJsonObject();
-            String name = iface.get("name").getAsString();
-            JsonArray parents = iface.getAsJsonArray("parents");
+        private void addRun(int start, int end) {
+            Map.Entry<Integer, Integer> before = runs.floorEntry(start);
+            if (before != null && start - before.getValue() < MIN_FREE_GAP) {
+                runs.remove(before.getKey());
+                start = before.getKey();
+                end = Math.max(end, before.getValue());
+            }
+            Map.Entry<Integer, Integer> after;
+            while ((after = runs.ceilingEntry(start)) != null && after.getKey() - end < MIN_FREE_GAP) {
+                runs.remove(after.getKey());
+                end = Math.max(end, after.getValue());
+            }
+            runs.put(start, end);
+        }
 
-            parents.forEach(p -> {
-                String parent = p.getAsString();
-                connections.add(new Connection(parent, name));
-            });
+        /**
+         * Удаляет узел и режет его отрезок по соседям за O(log n): края отрезка подтягиваются
+         * к соседним узлам, а середина расщепляется, только если освободилось место под узел.
+         */
+        void remove(int x) {
+            nodes.remove(x);
+            Map.Entry<Integer, Integer> run = runs.floorEntry(x);
+            if (run == null || run.getValue() <= x) {
+                return;
+            }
+            int start = run.getKey();
+            int end = run.getValue();
+            Integer lower = nodes.lowerKey(x);
+            Integer higher = nodes.higherKey(x);
+            boolean hasLower = lower != null && lower >= start;
+            boolean hasHigher = higher != null && higher < end;
+            if (hasLower && hasHigher) {
+                if (higher - (lower + BOX_WIDTH) >= MIN_FREE_GAP) {
+                    runs.put(start, lower + BOX_WIDTH);
+                    runs.put(higher, end);
+                }
+                return;
+            }
+            runs.remove(start);
+            if (hasLower) {
+                runs.put(start, lower + BOX_WIDTH);
+            } else if (hasHigher) {
+                runs.put(higher, end);
+            }
         }
 
-        // Обрабатываем реализации
-        JsonArray implementations = jsonData.getAsJsonArray("implementations");
-        for (JsonElement element : implementations) {
-            JsonObject impl = element.getAsJsonObject();
-            String name = impl.get("name").getAsString();
-            String parent = impl.get("parent").getAsString();
+        List<Integer> ids() {
+            return new ArrayList<>(nodes.values());
+        }
 
-            connections.add(new Connection(parent, name));
+        void clear() {
+            nodes.clear();
+            runs.clear();
         }
 
-        return connections;
-    }
+        /**
+         * Отрезок, с которым столкнется узел в позиции x с учетом отступа, или null.
+         */
+        private Map.Entry<Integer, Integer> collision(int x) {
+            Map.Entry<Integer, Integer> run = runs.lowerEntry(x + BOX_WIDTH + SIBLING_HORIZONTAL_SPACING);
+            if (run != null && run.getValue() + SIBLING_HORIZONTAL_SPACING > x) {
+                return run;
+            }
+            return null;
+        }
 
-    public static class Connection {
-        public final String from;
-        public final String to;
+        int findFreeRight(int x) {
+            Map.Entry<Integer, Integer> hit;
+            while ((hit = collision(x)) != null) {
+                x = hit.getValue() + SIBLING_HORIZONTAL_SPACING;
+            }
+            return x;
+        }
 
-        public Connection(String from, String to) {
-            this.from = from;
-            this.to = to;
+        int findFreeNearest(int desired) {
+            int right = findFreeRight(desired);
+            if (right == desired) {
+                return desired;
+            }
+            int left = desired;
+            Map.Entry<Integer, Integer> hit;
+            while (left >= LEFT_MARGIN && (hit = collision(left)) != null) {
+                left = hit.getKey() - BOX_WIDTH - SIBLING_HORIZONTAL_SPACING;
+            }
+            return left >= LEFT_MARGIN && desired - left < right - desired ? left : right;
         }
     }
-}
\ No newline at end of file
+}
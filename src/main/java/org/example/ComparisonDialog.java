@@ -0,0 +1,398 @@
+package org.example;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Сравнение нескольких реализаций: настраиваемая смесь операций, прогон на размерах 10..10M в фоне,
+ * кривые пропускной способности и гистограммы задержек с p50/p99/p99.9.
+ */
+class ComparisonDialog extends JDialog {
+    private static final long PHASE_NANOS = 200_000_000L;
+
+    private final List<HierarchyModel.Node> nodes;
+    private final JSpinner getPercent = new JSpinner(new SpinnerNumberModel(70, 0, 100, 5));
+    private final JSpinner putPercent = new JSpinner(new SpinnerNumberModel(20, 0, 100, 5));
+    private final JSpinner removePercent = new JSpinner(new SpinnerNumberModel(10, 0, 100, 5));
+    private final JComboBox<Integer> maxSize = new JComboBox<>();
+    private final JComboBox<Integer> latencySize = new JComboBox<>();
+    private final JButton startButton = new JButton("Запустить");
+    private final JProgressBar progress = new JProgressBar();
+    private final JLabel status = new JLabel(" ");
+    private final ThroughputChart throughputChart = new ThroughputChart();
+    private final LatencyChart latencyChart = new LatencyChart();
+    private final Map<String, Color> colors = new LinkedHashMap<>();
+    private final List<ComparisonRunner.Result> results = new ArrayList<>();
+    private Worker worker;
+
+    ComparisonDialog(Window owner, List<HierarchyModel.Node> nodes) {
+        super(owner, "Сравнение: " + names(nodes), ModalityType.MODELESS);
+        this.nodes = nodes;
+        for (int i = 0; i < nodes.size(); i++) {
+            colors.put(nodes.get(i).name, ChartComponent.PALETTE[i % ChartComponent.PALETTE.length]);
+        }
+        for (int size : ComparisonRunner.SIZES) {
+            maxSize.addItem(size);
+        }
+        maxSize.setSelectedItem(1_000_000);
+        latencySize.addActionListener(e -> latencyChart.repaint());
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(new JLabel("get %"));
+        controls.add(getPercent);
+        controls.add(new JLabel("put %"));
+        controls.add(putPercent);
+        controls.add(new JLabel("remove %"));
+        controls.add(removePercent);
+        controls.add(new JLabel("до n ="));
+        controls.add(maxSize);
+        controls.add(startButton);
+        controls.add(progress);
+        startButton.addActionListener(e -> toggleRun());
+
+        JPanel latencyPanel = new JPanel(new BorderLayout());
+        JPanel latencyControls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        latencyControls.add(new JLabel("Задержки при n ="));
+        latencyControls.add(latencySize);
+        latencyPanel.add(latencyControls, BorderLayout.NORTH);
+        latencyPanel.add(latencyChart, BorderLayout.CENTER);
+
+        JSplitPane charts = new JSplitPane(JSplitPane.VERTICAL_SPLIT, throughputChart, latencyPanel);
+        charts.setResizeWeight(0.5);
+
+        setLayout(new BorderLayout());
+        add(controls, BorderLayout.NORTH);
+        add(charts, BorderLayout.CENTER);
+        add(status, BorderLayout.SOUTH);
+        setSize(900, 800);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+    }
+
+    private static String names(List<HierarchyModel.Node> nodes) {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (HierarchyModel.Node node : nodes) {
+            joiner.add(node.name);
+        }
+        return joiner.toString();
+    }
+
+    /** 10, 1K, 10M - для подписей размеров и ops/s. */
+    static String formatCount(double value) {
+        String[] suffixes = {"", "K", "M", "G"};
+        int power = 0;
+        while (value >= 1_000 && power < suffixes.length - 1) {
+            value /= 1_000;
+            power++;
+        }
+        String number = value == Math.rint(value)
+                ? String.valueOf((long) value)
+                : String.format(Locale.ROOT, value < 10 ? "%.2f" : "%.1f", value);
+        return number + suffixes[power];
+    }
+
+    @Override
+    public void dispose() {
+        if (worker != null) {
+            worker.cancel(false);
+        }
+        super.dispose();
+    }
+
+    private void toggleRun() {
+        if (worker != null) {
+            worker.cancel(false);
+            return;
+        }
+        ComparisonRunner.Mix mix;
+        try {
+            mix = new ComparisonRunner.Mix((Integer) getPercent.getValue(), (Integer) putPercent.getValue(),
+                    (Integer) removePercent.getValue());
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        results.clear();
+        latencySize.removeAllItems();
+        throughputChart.repaint();
+        latencyChart.repaint();
+        worker = new Worker(mix, (Integer) maxSize.getSelectedItem());
+        startButton.setText("Остановить");
+        worker.execute();
+    }
+
+    /**
+     * Прогоняет реализации по очереди, от меньших размеров к большим, и публикует каждый результат сразу.
+     */
+    private class Worker extends SwingWorker<Void, ComparisonRunner.Result> {
+        private final ComparisonRunner runner;
+        private final ComparisonRunner.Mix mix;
+        private final int maxSize;
+        private final int totalRuns;
+        private final ResultsStore history = new ResultsStore("comparison");
+
+        Worker(ComparisonRunner.Mix mix, int maxSize) {
+            this.runner = new ComparisonRunner(mix, PHASE_NANOS);
+            this.mix = mix;
+            this.maxSize = maxSize;
+            int sizes = 0;
+            for (int size : ComparisonRunner.SIZES) {
+                if (size <= maxSize) {
+                    sizes++;
+                }
+            }
+            this.totalRuns = sizes * nodes.size();
+            progress.setMaximum(totalRuns);
+            progress.setValue(0);
+            status.setText("Смесь: " + mix);
+        }
+
+        @Override
+        protected Void doInBackground() {
+            long overhead = ComparisonRunner.timerOverheadNanos();
+            SwingUtilities.invokeLater(() -> status.setText(status.getText()
+                    + "; таймер добавляет ~" + LatencyHistogram.formatNanos(overhead) + " к каждой задержке"));
+            for (HierarchyModel.Node node : nodes) {
+                Class<?> type = null;
+                String skipReason;
+                try {
+                    type = TypeResolver.resolve(node.name, node.qualifiedName);
+                    skipReason = ComparisonRunner.unsupportedReason(type);
+                } catch (ClassNotFoundException | LinkageError e) {
+                    skipReason = "класс не найден";
+                }
+                for (int size : ComparisonRunner.SIZES) {
+                    if (isCancelled()) {
+                        return null;
+                    }
+                    if (size > maxSize) {
+                        break;
+                    }
+                    if (skipReason != null) {
+                        publish(ComparisonRunner.Result.skipped(node.name, size, skipReason));
+                        continue;
+                    }
+                    try {
+                        publish(runner.run(type, node.name, size));
+                    } catch (ComparisonRunner.SkipException e) {
+                        // Больший размер тоже не поместится или будет заполняться еще дольше
+                        skipReason = e.getMessage();
+                        publish(ComparisonRunner.Result.skipped(node.name, size, skipReason));
+                    } catch (ReflectiveOperationException | RuntimeException | OutOfMemoryError e) {
+                        skipReason = e.getClass().getSimpleName();
+                        publish(ComparisonRunner.Result.skipped(node.name, size, skipReason));
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        protected void process(List<ComparisonRunner.Result> chunk) {
+            for (ComparisonRunner.Result result : chunk) {
+                results.add(result);
+                progress.setValue(progress.getValue() + 1);
+                if (result.skipped != null) {
+                    status.setText(result.className + ", n=" + result.size + ": пропущено - " + result.skipped);
+                    continue;
+                }
+                history.add(result.className, mix.toString(), result.size, "ops/s", true, result.samples);
+                if (((DefaultComboBoxModel<Integer>) latencySize.getModel()).getIndexOf(result.size) < 0) {
+                    latencySize.addItem(result.size);
+                }
+                status.setText(result.className + ", n=" + result.size + ": "
+                        + formatCount(result.opsPerSecond) + " ops/s, " + result.latency);
+            }
+            throughputChart.repaint();
+            latencyChart.repaint();
+        }
+
+        @Override
+        protected void done() {
+            worker = null;
+            startButton.setText("Запустить");
+            // Уже полученные замеры сохраняются и при остановке
+            String saved = history.saveForStatus();
+            if (isCancelled()) {
+                status.setText("Остановлено" + saved);
+                return;
+            }
+            try {
+                get();
+                status.setText("Готово: " + results.size() + " из " + totalRuns + " прогонов" + saved);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                status.setText("Ошибка: " + e.getCause());
+            }
+        }
+    }
+
+    /** Пропускная способность (ops/s) в зависимости от размера, обе оси логарифмические. */
+    private class ThroughputChart extends ChartComponent {
+        @Override
+        protected void paintComponent(Graphics g) {
+            Graphics2D g2 = (Graphics2D) g;
+            paintFrame(g2, "Пропускная способность, ops/s");
+            double minOps = Double.MAX_VALUE;
+            double maxOps = 0;
+            for (ComparisonRunner.Result result : results) {
+                if (result.skipped == null) {
+                    minOps = Math.min(minOps, result.opsPerSecond);
+                    maxOps = Math.max(maxOps, result.opsPerSecond);
+                }
+            }
+            double minSize = ComparisonRunner.SIZES[0];
+            double maxSize = ComparisonRunner.SIZES[ComparisonRunner.SIZES.length - 1];
+
+            g2.setFont(SceneRenderer.NODE_FONT);
+            for (int size : ComparisonRunner.SIZES) {
+                int x = (int) logX(size, minSize, maxSize);
+                g2.setColor(Color.LIGHT_GRAY);
+                g2.drawLine(x, TOP, x, TOP + plotHeight());
+                g2.setColor(Color.BLACK);
+                String label = formatCount(size);
+                g2.drawString(label, x - g2.getFontMetrics().stringWidth(label) / 2, TOP + plotHeight() + 16);
+            }
+            g2.drawString("n", LEFT + plotWidth() / 2, TOP + plotHeight() + 32);
+            if (maxOps == 0) {
+                return;
+            }
+            // Диапазон по оси Y - целые порядки, чтобы подписи были круглыми
+            double low = Math.pow(10, Math.floor(Math.log10(minOps)));
+            double high = Math.pow(10, Math.ceil(Math.log10(maxOps)));
+            if (high <= low) {
+                high = low * 10;
+            }
+            for (double tick = low; tick <= high; tick *= 10) {
+                int y = (int) logY(tick, low, high);
+                g2.setColor(Color.LIGHT_GRAY);
+                g2.drawLine(LEFT, y, LEFT + plotWidth(), y);
+                g2.setColor(Color.BLACK);
+                String label = formatCount(tick);
+                g2.drawString(label, LEFT - 8 - g2.getFontMetrics().stringWidth(label), y + 4);
+            }
+
+            g2.setStroke(new BasicStroke(2f));
+            List<String> legend = new ArrayList<>();
+            List<Color> legendColors = new ArrayList<>();
+            for (Map.Entry<String, Color> entry : colors.entrySet()) {
+                Path2D.Double line = new Path2D.Double();
+                boolean started = false;
+                for (ComparisonRunner.Result result : results) {
+                    if (!result.className.equals(entry.getKey()) || result.skipped != null) {
+                        continue;
+                    }
+                    double x = logX(result.size, minSize, maxSize);
+                    double y = logY(result.opsPerSecond, low, high);
+                    if (started) {
+                        line.lineTo(x, y);
+                    } else {
+                        line.moveTo(x, y);
+                        started = true;
+                    }
+                    g2.setColor(entry.getValue());
+                    g2.fillOval((int) x - 3, (int) y - 3, 7, 7);
+                }
+                g2.setColor(entry.getValue());
+                g2.draw(line);
+                legend.add(entry.getKey());
+                legendColors.add(entry.getValue());
+            }
+            g2.setStroke(SceneRenderer.BORDER_STROKE);
+            paintLegend(g2, legend, legendColors);
+        }
+    }
+
+    /**
+     * Распределение задержек для выбранного размера: доля операций по корзинам гистограммы
+     * (ось X логарифмическая) и вертикальные отметки p50/p99/p99.9.
+     */
+    private class LatencyChart extends ChartComponent {
+        @Override
+        protected void paintComponent(Graphics g) {
+            Graphics2D g2 = (Graphics2D) g;
+            paintFrame(g2, "Задержка одной операции (доля операций по корзинам)");
+            Integer size = (Integer) latencySize.getSelectedItem();
+            if (size == null) {
+                return;
+            }
+            List<ComparisonRunner.Result> selected = new ArrayList<>();
+            long minNanos = Long.MAX_VALUE;
+            long maxNanos = 1;
+            for (ComparisonRunner.Result result : results) {
+                if (result.size == size && result.skipped == null && result.latency.count() > 0) {
+                    selected.add(result);
+                    minNanos = Math.min(minNanos, result.latency.min());
+                    maxNanos = Math.max(maxNanos, result.latency.max());
+                }
+            }
+            if (selected.isEmpty()) {
+                return;
+            }
+            double low = Math.pow(10, Math.floor(Math.log10(Math.max(1, minNanos))));
+            double high = Math.pow(10, Math.ceil(Math.log10(maxNanos + 1)));
+
+            g2.setFont(SceneRenderer.NODE_FONT);
+            for (double tick = low; tick <= high; tick *= 10) {
+                int x = (int) logX(tick, low, high);
+                g2.setColor(Color.LIGHT_GRAY);
+                g2.drawLine(x, TOP, x, TOP + plotHeight());
+                g2.setColor(Color.BLACK);
+                String label = LatencyHistogram.formatNanos(tick);
+                g2.drawString(label, x - g2.getFontMetrics().stringWidth(label) / 2, TOP + plotHeight() + 16);
+            }
+
+            List<String> legend = new ArrayList<>();
+            List<Color> legendColors = new ArrayList<>();
+            float[] dash = {4f, 4f};
+            for (ComparisonRunner.Result result : selected) {
+                LatencyHistogram histogram = result.latency;
+                Color color = colors.get(result.className);
+                long peak = 1;
+                for (int i = 0; i < histogram.bucketCount(); i++) {
+                    peak = Math.max(peak, histogram.bucketCount(i));
+                }
+                // Ступенчатая линия: высота корзины пропорциональна ее доле относительно самой заполненной
+                Path2D.Double line = new Path2D.Double();
+                line.moveTo(LEFT, TOP + plotHeight());
+                for (int i = 0; i < histogram.bucketCount(); i++) {
+                    long count = histogram.bucketCount(i);
+                    if (count == 0) {
+                        continue;
+                    }
+                    double x1 = logX(Math.max(low, histogram.bucketLowestValue(i)), low, high);
+                    double x2 = logX(Math.max(low, histogram.bucketLowestValue(i + 1 < histogram.bucketCount()
+                            ? i + 1 : i)), low, high);
+                    double y = TOP + plotHeight() - plotHeight() * 0.9 * count / peak;
+                    line.moveTo(x1, TOP + plotHeight());
+                    line.lineTo(x1, y);
+                    line.lineTo(Math.max(x2, x1 + 1), y);
+                    line.lineTo(Math.max(x2, x1 + 1), TOP + plotHeight());
+                }
+                g2.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), 160));
+                g2.setStroke(new BasicStroke(1.5f));
+                g2.draw(line);
+
+                g2.setStroke(new BasicStroke(1f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10f, dash, 0f));
+                g2.setColor(color);
+                for (double percentile : new double[]{50, 99, 99.9}) {
+                    int x = (int) logX(Math.max(low, histogram.valueAt(percentile)), low, high);
+                    g2.drawLine(x, TOP, x, TOP + plotHeight());
+                }
+                legend.add(result.className + ": p50 " + LatencyHistogram.formatNanos(histogram.valueAt(50))
+                        + ", p99 " + LatencyHistogram.formatNanos(histogram.valueAt(99))
+                        + ", p99.9 " + LatencyHistogram.formatNanos(histogram.valueAt(99.9))
+                        + ", max " + LatencyHistogram.formatNanos(histogram.max())
+                        + " (" + histogram.count() + " оп.)");
+                legendColors.add(color);
+            }
+            g2.setStroke(SceneRenderer.BORDER_STROKE);
+            paintLegend(g2, legend, legendColors);
+        }
+    }
+}
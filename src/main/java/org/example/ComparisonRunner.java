@@ -0,0 +1,292 @@
+package org.example;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Прогон смеси операций на одной реализации и одном размере: прогрев, замер пропускной способности
+ * без таймера на каждой операции и отдельный замер задержек с записью каждой операции в гистограмму.
+ * Все реализации выполняются в одной JVM, поэтому цифры - ориентир для сравнения, а не замена JMH.
+ */
+class ComparisonRunner {
+    static final int[] SIZES = {10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000};
+
+    static final int GET = 0;
+    static final int PUT = 1;
+    static final int REMOVE = 2;
+
+    /** Приблизительный расход памяти на элемент с учетом Integer и узла; нужен для пропуска заведомо не влезающих размеров. */
+    private static final long BYTES_PER_ELEMENT_ESTIMATE = 80;
+    private static final long FILL_BUDGET_NANOS = 5_000_000_000L;
+    private static final int SCRIPT_LENGTH = 1 << 16;
+    /** Замер пропускной способности делится на окна; разброс окон нужен для сравнения запусков в истории. */
+    private static final int THROUGHPUT_WINDOWS = 5;
+
+    private final Mix mix;
+    private final long phaseNanos;
+
+    /** Сток результатов операций, чтобы JIT не выбросил вызовы. */
+    private long sink;
+
+    static class Mix {
+        final int getPercent;
+        final int putPercent;
+        final int removePercent;
+
+        Mix(int getPercent, int putPercent, int removePercent) {
+            if (getPercent < 0 || putPercent < 0 || removePercent < 0
+                    || getPercent + putPercent + removePercent != 100) {
+                throw new IllegalArgumentException("Сумма долей операций должна быть 100%");
+            }
+            this.getPercent = getPercent;
+            this.putPercent = putPercent;
+            this.removePercent = removePercent;
+        }
+
+        @Override
+        public String toString() {
+            return getPercent + "% get / " + putPercent + "% put / " + removePercent + "% remove";
+        }
+    }
+
+    static class Result {
+        final String className;
+        final int size;
+        final double opsPerSecond;
+        /** ops/s по окнам замера. */
+        final double[] samples;
+        final LatencyHistogram latency;
+        final String skipped;
+
+        Result(String className, int size, double opsPerSecond, double[] samples, LatencyHistogram latency,
+               String skipped) {
+            this.className = className;
+            this.size = size;
+            this.opsPerSecond = opsPerSecond;
+            this.samples = samples;
+            this.latency = latency;
+            this.skipped = skipped;
+        }
+
+        static Result skipped(String className, int size, String reason) {
+            return new Result(className, size, 0, new double[0], null, reason);
+        }
+    }
+
+    /** Исключение для размеров, которые не удалось подготовить: не хватает памяти или заполнение слишком долгое. */
+    static class SkipException extends Exception {
+        SkipException(String message) {
+            super(message);
+        }
+    }
+
+    /** Операция над коллекцией; ключ уже упакован, чтобы не считать упаковку частью замера. */
+    private interface Target {
+        int apply(int operation, Integer key);
+    }
+
+    ComparisonRunner(Mix mix, long phaseNanos) {
+        this.mix = mix;
+        this.phaseNanos = phaseNanos;
+    }
+
+    /**
+     * Проверка, что тип можно сравнивать: конкретный класс коллекции или Map с публичным конструктором без аргументов.
+     */
+    static String unsupportedReason(Class<?> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return "интерфейс или абстрактный класс";
+        }
+        if (!Collection.class.isAssignableFrom(type) && !Map.class.isAssignableFrom(type)) {
+            return "не коллекция и не Map";
+        }
+        try {
+            type.getConstructor();
+        } catch (NoSuchMethodException e) {
+            return "нет публичного конструктора без аргументов";
+        }
+        return null;
+    }
+
+    Result run(Class<?> type, String className, int size) throws ReflectiveOperationException, SkipException {
+        Runtime runtime = Runtime.getRuntime();
+        long available = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        if ((long) size * BYTES_PER_ELEMENT_ESTIMATE > available * 7 / 10) {
+            throw new SkipException("не хватит памяти (увеличьте -Xmx)");
+        }
+
+        Constructor<?> constructor = type.getConstructor();
+        Object instance = constructor.newInstance();
+        Target target = fill(instance, size);
+
+        // Ключи из диапазона [0, 2n): заполнены четные, поэтому примерно половина поисков успешна
+        SplittableRandom random = new SplittableRandom(size);
+        int[] operations = new int[SCRIPT_LENGTH];
+        Integer[] keys = new Integer[SCRIPT_LENGTH];
+        for (int i = 0; i < SCRIPT_LENGTH; i++) {
+            int roll = random.nextInt(100);
+            operations[i] = roll < mix.getPercent ? GET : roll < mix.getPercent + mix.putPercent ? PUT : REMOVE;
+            keys[i] = random.nextInt(Math.max(2, 2 * size));
+        }
+
+        runFor(target, operations, keys, 0, phaseNanos);
+        double[] samples = new double[THROUGHPUT_WINDOWS];
+        long done = 0;
+        long elapsed = 0;
+        int offset = SCRIPT_LENGTH / 2;
+        for (int window = 0; window < THROUGHPUT_WINDOWS; window++) {
+            long start = System.nanoTime();
+            long windowDone = runFor(target, operations, keys, offset, phaseNanos / THROUGHPUT_WINDOWS);
+            long windowNanos = System.nanoTime() - start;
+            samples[window] = windowDone * 1e9 / windowNanos;
+            done += windowDone;
+            elapsed += windowNanos;
+            offset = (int) ((offset + windowDone) & (SCRIPT_LENGTH - 1));
+        }
+        double opsPerSecond = done * 1e9 / elapsed;
+
+        LatencyHistogram latency = new LatencyHistogram();
+        long deadline = System.nanoTime() + phaseNanos;
+        int index = 0;
+        long now;
+        do {
+            int slot = index++ & (SCRIPT_LENGTH - 1);
+            long before = System.nanoTime();
+            sink += target.apply(operations[slot], keys[slot]);
+            now = System.nanoTime();
+            latency.record(now - before);
+        } while (now < deadline);
+        return new Result(className, size, opsPerSecond, samples, latency, null);
+    }
+
+    /**
+     * Выполняет операции сценария не меньше {@code durationNanos}. Время проверяется пачками,
+     * размер пачки растет, пока пачка укладывается в сотую часть фазы: так медленные операции
+     * (поиск в длинном списке) не растягивают фазу, а быстрые не платят за вызов таймера.
+     */
+    private long runFor(Target target, int[] operations, Integer[] keys, int offset, long durationNanos) {
+        long deadline = System.nanoTime() + durationNanos;
+        long batchLimit = durationNanos / 100;
+        int batch = 1;
+        long done = 0;
+        int index = offset;
+        long now = System.nanoTime();
+        while (now < deadline) {
+            long batchStart = now;
+            for (int i = 0; i < batch; i++) {
+                int slot = index++ & (SCRIPT_LENGTH - 1);
+                sink += target.apply(operations[slot], keys[slot]);
+            }
+            done += batch;
+            now = System.nanoTime();
+            if (batch < 1024 && now - batchStart < batchLimit) {
+                batch *= 2;
+            }
+        }
+        return done;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Target fill(Object instance, int size) throws SkipException {
+        long deadline = System.nanoTime() + FILL_BUDGET_NANOS;
+        if (instance instanceof Map) {
+            Map<Integer, Integer> map = (Map<Integer, Integer>) instance;
+            for (int i = 0; i < size; i++) {
+                map.put(2 * i, i);
+                checkFillDeadline(i, deadline);
+            }
+            return new MapTarget(map);
+        }
+        Collection<Integer> collection = (Collection<Integer>) instance;
+        for (int i = 0; i < size; i++) {
+            collection.add(2 * i);
+            checkFillDeadline(i, deadline);
+        }
+        if (collection instanceof List && collection instanceof RandomAccess) {
+            return new ListTarget((List<Integer>) collection);
+        }
+        return new CollectionTarget(collection);
+    }
+
+    private static void checkFillDeadline(int i, long deadline) throws SkipException {
+        if ((i & 1023) == 1023 && System.nanoTime() > deadline) {
+            throw new SkipException("заполнение дольше " + FILL_BUDGET_NANOS / 1_000_000_000 + " с");
+        }
+    }
+
+    private static class MapTarget implements Target {
+        private final Map<Integer, Integer> map;
+
+        MapTarget(Map<Integer, Integer> map) {
+            this.map = map;
+        }
+
+        @Override
+        public int apply(int operation, Integer key) {
+            Integer value;
+            if (operation == GET) {
+                value = map.get(key);
+            } else if (operation == PUT) {
+                value = map.put(key, key);
+            } else {
+                value = map.remove(key);
+            }
+            return value == null ? 0 : 1;
+        }
+    }
+
+    /** Для списков с произвольным доступом get - чтение по индексу, а не поиск значения. */
+    private static class ListTarget implements Target {
+        private final List<Integer> list;
+
+        ListTarget(List<Integer> list) {
+            this.list = list;
+        }
+
+        @Override
+        public int apply(int operation, Integer key) {
+            if (operation == GET) {
+                int size = list.size();
+                return size == 0 ? 0 : list.get(key % size);
+            }
+            if (operation == PUT) {
+                return list.add(key) ? 1 : 0;
+            }
+            return list.remove(key) ? 1 : 0;
+        }
+    }
+
+    /** Для остальных коллекций get - contains. */
+    private static class CollectionTarget implements Target {
+        private final Collection<Integer> collection;
+
+        CollectionTarget(Collection<Integer> collection) {
+            this.collection = collection;
+        }
+
+        @Override
+        public int apply(int operation, Integer key) {
+            if (operation == GET) {
+                return collection.contains(key) ? 1 : 0;
+            }
+            if (operation == PUT) {
+                return collection.add(key) ? 1 : 0;
+            }
+            return collection.remove(key) ? 1 : 0;
+        }
+    }
+
+    /**
+     * Медиана интервала между двумя соседними вызовами System.nanoTime: столько добавляет к каждой
+     * записанной задержке сам замер.
+     */
+    static long timerOverheadNanos() {
+        LatencyHistogram overhead = new LatencyHistogram();
+        for (int i = 0; i < 100_000; i++) {
+            long before = System.nanoTime();
+            overhead.record(System.nanoTime() - before);
+        }
+        return overhead.valueAt(50);
+    }
+}
@@ -0,0 +1,286 @@
+package org.example;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Окно нагрузочного замера конкурентных коллекций: число потоков, доля чтений, тип потоков.
+ * Строит график пропускной способности в зависимости от числа потоков для каждой выбранной реализации.
+ */
+class ContentionDialog extends JDialog {
+    private static final long DURATION_NANOS = 300_000_000L;
+
+    private final JList<String> implementations = new JList<>(
+            ContentionRunner.IMPLEMENTATIONS.keySet().toArray(new String[0]));
+    private final JSpinner maxThreads = new JSpinner(new SpinnerNumberModel(
+            Math.min(64, 2 * Runtime.getRuntime().availableProcessors()), 1, 1024, 1));
+    private final JSpinner readPercent = new JSpinner(new SpinnerNumberModel(90, 0, 100, 5));
+    private final JSpinner size = new JSpinner(new SpinnerNumberModel(10_000, 16, 1_000_000, 1_000));
+    private final JComboBox<ContentionRunner.ThreadKind> threadKind =
+            new JComboBox<>(ContentionRunner.ThreadKind.values());
+    private final JButton startButton = new JButton("Запустить");
+    private final JProgressBar progress = new JProgressBar();
+    private final JLabel status = new JLabel(" ");
+    private final ScalingChart chart = new ScalingChart();
+    private final Map<String, Color> colors = new LinkedHashMap<>();
+    private final List<ContentionRunner.Point> points = new ArrayList<>();
+    private Worker worker;
+
+    /**
+     * @param preselected имена узлов, выделенных на схеме; отмечаются, если для них есть нагрузка
+     */
+    ContentionDialog(Window owner, Collection<String> preselected) {
+        super(owner, "Конкурентный доступ", ModalityType.MODELESS);
+        List<Integer> selected = new ArrayList<>();
+        List<String> names = new ArrayList<>(ContentionRunner.IMPLEMENTATIONS.keySet());
+        for (String name : preselected) {
+            int index = names.indexOf(ClassInfo.rawName(name));
+            if (index >= 0) {
+                selected.add(index);
+            }
+        }
+        if (selected.isEmpty()) {
+            // По умолчанию - главный вопрос: ConcurrentHashMap против карт с одной блокировкой
+            selected.addAll(Arrays.asList(names.indexOf("ConcurrentHashMap"), names.indexOf("SynchronizedMap"),
+                    names.indexOf("Hashtable")));
+        }
+        implementations.setSelectedIndices(selected.stream().mapToInt(Integer::intValue).toArray());
+        implementations.setVisibleRowCount(12);
+
+        if (!ContentionRunner.virtualThreadsAvailable()) {
+            threadKind.setEnabled(false);
+            threadKind.setToolTipText("Виртуальные потоки требуют JDK 21+, текущая JVM: "
+                    + System.getProperty("java.version"));
+        }
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(new JLabel("потоков до"));
+        controls.add(maxThreads);
+        controls.add(new JLabel("чтений %"));
+        controls.add(readPercent);
+        controls.add(new JLabel("элементов"));
+        controls.add(size);
+        controls.add(new JLabel("потоки"));
+        controls.add(threadKind);
+        controls.add(startButton);
+        controls.add(progress);
+        startButton.addActionListener(e -> toggleRun());
+
+        setLayout(new BorderLayout());
+        add(controls, BorderLayout.NORTH);
+        add(new JScrollPane(implementations), BorderLayout.WEST);
+        add(chart, BorderLayout.CENTER);
+        add(status, BorderLayout.SOUTH);
+        setSize(1100, 600);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+    }
+
+    @Override
+    public void dispose() {
+        if (worker != null) {
+            worker.cancel(false);
+        }
+        super.dispose();
+    }
+
+    private void toggleRun() {
+        if (worker != null) {
+            // Текущий замер не прерывается: кнопка вернется, когда фоновый цикл действительно выйдет,
+            // иначе новый запуск делил бы процессоры со старым и искажал оба результата
+            worker.cancel(false);
+            startButton.setEnabled(false);
+            startButton.setText("Остановка...");
+            return;
+        }
+        List<String> selected = implementations.getSelectedValuesList();
+        if (selected.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Выберите хотя бы одну реализацию", "Error",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        colors.clear();
+        for (int i = 0; i < selected.size(); i++) {
+            colors.put(selected.get(i), ChartComponent.PALETTE[i % ChartComponent.PALETTE.length]);
+        }
+        points.clear();
+        chart.repaint();
+        ContentionRunner runner = new ContentionRunner((Integer) readPercent.getValue(), (Integer) size.getValue(),
+                DURATION_NANOS, (ContentionRunner.ThreadKind) threadKind.getSelectedItem());
+        String operation = readPercent.getValue() + "% чтений, " + threadKind.getSelectedItem() + " потоки";
+        worker = new Worker(runner, selected, ContentionRunner.threadCounts((Integer) maxThreads.getValue()),
+                operation, (Integer) size.getValue());
+        startButton.setText("Остановить");
+        worker.execute();
+    }
+
+    private class Worker extends SwingWorker<Void, ContentionRunner.Point> {
+        private final ContentionRunner runner;
+        private final List<String> selected;
+        private final List<Integer> threadCounts;
+        private final String operation;
+        private final int elements;
+        /** Точка замера - одно число, поэтому t-критерий для нее в истории недоступен. */
+        private final ResultsStore history = new ResultsStore("contention");
+
+        Worker(ContentionRunner runner, List<String> selected, List<Integer> threadCounts, String operation,
+               int elements) {
+            this.runner = runner;
+            this.selected = selected;
+            this.threadCounts = threadCounts;
+            this.operation = operation;
+            this.elements = elements;
+            progress.setMaximum(selected.size() * threadCounts.size());
+            progress.setValue(0);
+            status.setText("Процессоров: " + Runtime.getRuntime().availableProcessors()
+                    + "; потоки: " + threadCounts);
+        }
+
+        @Override
+        protected Void doInBackground() throws InterruptedException {
+            try {
+                for (String implementation : selected) {
+                    // Прогрев на максимуме потоков, чтобы JIT скомпилировал горячие пути до замеров
+                    runner.run(implementation, threadCounts.get(threadCounts.size() - 1));
+                    for (int threads : threadCounts) {
+                        if (isCancelled()) {
+                            return null;
+                        }
+                        publish(runner.run(implementation, threads));
+                    }
+                }
+                return null;
+            } finally {
+                SwingUtilities.invokeLater(this::exited);
+            }
+        }
+
+        /**
+         * Фоновый цикл завершился. После отмены done() вызывается сразу, пока runner.run еще занят,
+         * поэтому новый запуск разрешается только отсюда.
+         */
+        private void exited() {
+            worker = null;
+            startButton.setText("Запустить");
+            startButton.setEnabled(true);
+            if (isCancelled()) {
+                status.setText("Остановлено" + history.saveForStatus());
+            }
+        }
+
+        @Override
+        protected void process(List<ContentionRunner.Point> chunk) {
+            for (ContentionRunner.Point point : chunk) {
+                points.add(point);
+                history.add(point.implementation, operation + ", " + point.threads + " пот.", elements, "ops/s",
+                        true, new double[]{point.opsPerSecond});
+                progress.setValue(progress.getValue() + 1);
+                status.setText(point.implementation + ", " + point.threads + " пот.: "
+                        + ComparisonDialog.formatCount(point.opsPerSecond) + " ops/s");
+            }
+            chart.repaint();
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                status.setText("Остановка: дожидаемся окончания текущего замера...");
+                return;
+            }
+            String saved = history.saveForStatus();
+            try {
+                get();
+                status.setText("Готово. Ускорение - отношение к одному потоку; линейный рост ограничен числом процессоров ("
+                        + Runtime.getRuntime().availableProcessors() + ")" + saved);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                status.setText("Ошибка: " + e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Суммарная пропускная способность всех потоков: ось X - число потоков (логарифмическая), ось Y - ops/s.
+     */
+    private class ScalingChart extends ChartComponent {
+        @Override
+        protected void paintComponent(Graphics g) {
+            Graphics2D g2 = (Graphics2D) g;
+            paintFrame(g2, "Пропускная способность всех потоков, ops/s");
+            if (points.isEmpty()) {
+                return;
+            }
+            int maxThreadCount = 1;
+            double maxOps = 0;
+            for (ContentionRunner.Point point : points) {
+                maxThreadCount = Math.max(maxThreadCount, point.threads);
+                maxOps = Math.max(maxOps, point.opsPerSecond);
+            }
+            double maxX = Math.max(2, maxThreadCount);
+            double maxY = maxOps * 1.1;
+
+            g2.setFont(SceneRenderer.NODE_FONT);
+            for (int threads : ContentionRunner.threadCounts(maxThreadCount)) {
+                int x = (int) logX(threads, 1, maxX);
+                g2.setColor(Color.LIGHT_GRAY);
+                g2.drawLine(x, TOP, x, TOP + plotHeight());
+                g2.setColor(Color.BLACK);
+                String label = String.valueOf(threads);
+                g2.drawString(label, x - g2.getFontMetrics().stringWidth(label) / 2, TOP + plotHeight() + 16);
+            }
+            g2.drawString("потоков", LEFT + plotWidth() / 2, TOP + plotHeight() + 32);
+            for (int i = 0; i <= 4; i++) {
+                double value = maxY * i / 4;
+                int y = (int) linearY(value, maxY);
+                g2.setColor(Color.LIGHT_GRAY);
+                g2.drawLine(LEFT, y, LEFT + plotWidth(), y);
+                g2.setColor(Color.BLACK);
+                String label = ComparisonDialog.formatCount(value);
+                g2.drawString(label, LEFT - 8 - g2.getFontMetrics().stringWidth(label), y + 4);
+            }
+
+            List<String> legend = new ArrayList<>();
+            List<Color> legendColors = new ArrayList<>();
+            g2.setStroke(new BasicStroke(2f));
+            for (Map.Entry<String, Color> entry : colors.entrySet()) {
+                Path2D.Double line = new Path2D.Double();
+                ContentionRunner.Point first = null;
+                ContentionRunner.Point last = null;
+                for (ContentionRunner.Point point : points) {
+                    if (!point.implementation.equals(entry.getKey())) {
+                        continue;
+                    }
+                    double x = logX(point.threads, 1, maxX);
+                    double y = linearY(point.opsPerSecond, maxY);
+                    if (first == null) {
+                        line.moveTo(x, y);
+                        first = point;
+                    } else {
+                        line.lineTo(x, y);
+                    }
+                    last = point;
+                    g2.setColor(entry.getValue());
+                    g2.fillOval((int) x - 3, (int) y - 3, 7, 7);
+                }
+                if (first == null) {
+                    continue;
+                }
+                g2.setColor(entry.getValue());
+                g2.draw(line);
+                String speedup = last.threads > first.threads
+                        ? String.format(Locale.ROOT, ", x%.2f на %d пот.", last.opsPerSecond / first.opsPerSecond,
+                        last.threads)
+                        : "";
+                legend.add(entry.getKey() + ": " + ComparisonDialog.formatCount(last.opsPerSecond) + " ops/s" + speedup);
+                legendColors.add(entry.getValue());
+            }
+            g2.setStroke(SceneRenderer.BORDER_STROKE);
+            paintLegend(g2, legend, legendColors);
+        }
+    }
+}
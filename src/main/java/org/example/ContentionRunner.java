@@ -0,0 +1,269 @@
+package org.example;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Замер пропускной способности конкурентных коллекций под нагрузкой из нескольких потоков:
+ * каждый поток выполняет смесь чтений и записей по случайным ключам, пока не истечет время замера.
+ * Потоки бывают обычными или виртуальными; виртуальные доступны только на JDK 21+ и создаются
+ * через рефлексию, потому что проект компилируется под Java 11.
+ */
+class ContentionRunner {
+    /** Реализации, которые можно нагрузить; имена совпадают с узлами иерархии без параметров типа. */
+    static final Map<String, Supplier<Object>> IMPLEMENTATIONS = new LinkedHashMap<>();
+
+    static {
+        IMPLEMENTATIONS.put("ConcurrentHashMap", ConcurrentHashMap::new);
+        IMPLEMENTATIONS.put("ConcurrentSkipListMap", ConcurrentSkipListMap::new);
+        IMPLEMENTATIONS.put("SynchronizedMap", () -> Collections.synchronizedMap(new HashMap<>()));
+        IMPLEMENTATIONS.put("Hashtable", Hashtable::new);
+        IMPLEMENTATIONS.put("CopyOnWriteArrayList", CopyOnWriteArrayList::new);
+        IMPLEMENTATIONS.put("SynchronizedList", () -> Collections.synchronizedList(new ArrayList<>()));
+        IMPLEMENTATIONS.put("Vector", Vector::new);
+        IMPLEMENTATIONS.put("ConcurrentSkipListSet", ConcurrentSkipListSet::new);
+        IMPLEMENTATIONS.put("CopyOnWriteArraySet", CopyOnWriteArraySet::new);
+        IMPLEMENTATIONS.put("ConcurrentLinkedQueue", ConcurrentLinkedQueue::new);
+        IMPLEMENTATIONS.put("ConcurrentLinkedDeque", ConcurrentLinkedDeque::new);
+        IMPLEMENTATIONS.put("ArrayBlockingQueue", () -> new ArrayBlockingQueue<>(1 << 20));
+        IMPLEMENTATIONS.put("LinkedBlockingQueue", LinkedBlockingQueue::new);
+        IMPLEMENTATIONS.put("LinkedBlockingDeque", LinkedBlockingDeque::new);
+        IMPLEMENTATIONS.put("PriorityBlockingQueue", PriorityBlockingQueue::new);
+        IMPLEMENTATIONS.put("LinkedTransferQueue", LinkedTransferQueue::new);
+    }
+
+    enum ThreadKind {
+        PLATFORM("обычные"),
+        VIRTUAL("виртуальные");
+
+        private final String title;
+
+        ThreadKind(String title) {
+            this.title = title;
+        }
+
+        @Override
+        public String toString() {
+            return title;
+        }
+    }
+
+    static class Point {
+        final String implementation;
+        final int threads;
+        final double opsPerSecond;
+
+        Point(String implementation, int threads, double opsPerSecond) {
+            this.implementation = implementation;
+            this.threads = threads;
+            this.opsPerSecond = opsPerSecond;
+        }
+    }
+
+    /**
+     * Чтение и запись над коллекцией. Запись не меняет размер: карты и списки перезаписывают ключ,
+     * множества и очереди удаляют и возвращают элемент, поэтому все реализации работают на одном размере.
+     */
+    private interface Target {
+        /** Возвращает что-нибудь от результата, чтобы JIT не выбросил чтение. */
+        int read(int key);
+
+        void write(int key);
+    }
+
+    private final int readPercent;
+    private final int size;
+    private final long durationNanos;
+    private final ThreadKind threadKind;
+
+    ContentionRunner(int readPercent, int size, long durationNanos, ThreadKind threadKind) {
+        if (readPercent < 0 || readPercent > 100) {
+            throw new IllegalArgumentException("Доля чтений должна быть от 0 до 100%");
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("Размер должен быть положительным");
+        }
+        this.readPercent = readPercent;
+        this.size = size;
+        this.durationNanos = durationNanos;
+        this.threadKind = threadKind;
+    }
+
+    /**
+     * Thread.ofVirtual() появился в JDK 21; на более старой JVM виртуальные потоки недоступны.
+     */
+    static boolean virtualThreadsAvailable() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private ThreadFactory threadFactory() {
+        if (threadKind == ThreadKind.PLATFORM) {
+            return runnable -> {
+                Thread thread = new Thread(runnable, "contention-worker");
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+        try {
+            // Thread.ofVirtual().factory(); метод factory берем у публичного интерфейса Thread.Builder
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Виртуальные потоки недоступны на этой JVM", e);
+        }
+    }
+
+    /**
+     * Потоки от 1 до maxThreads по степеням двойки, последним всегда идет сам maxThreads.
+     */
+    static List<Integer> threadCounts(int maxThreads) {
+        List<Integer> counts = new ArrayList<>();
+        for (int threads = 1; threads < maxThreads; threads *= 2) {
+            counts.add(threads);
+        }
+        counts.add(maxThreads);
+        return counts;
+    }
+
+    Point run(String implementation, int threads) throws InterruptedException {
+        Target target = prepare(implementation);
+        ThreadFactory factory = threadFactory();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        long[] counts = new long[threads];
+        Thread[] workers = new Thread[threads];
+        // Флаг остановки проверяется раз в пачку операций: volatile-чтение не создает общей блокировки
+        AtomicBoolean running = new AtomicBoolean(true);
+        int[] sinks = new int[threads];
+        for (int i = 0; i < threads; i++) {
+            int worker = i;
+            workers[i] = factory.newThread(() -> {
+                long seed = 0x9E3779B97F4A7C15L * (worker + 1);
+                long done = 0;
+                int sink = 0;
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (running.get()) {
+                    for (int op = 0; op < 64; op++) {
+                        // xorshift: дешевле Random и не разделяется между потоками
+                        seed ^= seed << 13;
+                        seed ^= seed >>> 7;
+                        seed ^= seed << 17;
+                        int key = (int) ((seed >>> 1) % size);
+                        if ((int) ((seed >>> 40) % 100) < readPercent) {
+                            sink += target.read(key);
+                        } else {
+                            target.write(key);
+                        }
+                    }
+                    done += 64;
+                }
+                counts[worker] = done;
+                sinks[worker] = sink;
+            });
+            workers[i].start();
+        }
+        ready.await();
+        long begin = System.nanoTime();
+        start.countDown();
+        TimeUnit.NANOSECONDS.sleep(durationNanos);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return new Point(implementation, threads, total * 1e9 / elapsed);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Target prepare(String implementation) {
+        Supplier<Object> supplier = IMPLEMENTATIONS.get(implementation);
+        if (supplier == null) {
+            throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+        Object instance = supplier.get();
+        if (instance instanceof Map) {
+            Map<Integer, Integer> map = (Map<Integer, Integer>) instance;
+            for (int i = 0; i < size; i++) {
+                map.put(i, i);
+            }
+            return new Target() {
+                @Override
+                public int read(int key) {
+                    Integer value = map.get(key);
+                    return value == null ? 0 : value;
+                }
+
+                @Override
+                public void write(int key) {
+                    map.put(key, key);
+                }
+            };
+        }
+        Collection<Integer> collection = (Collection<Integer>) instance;
+        for (int i = 0; i < size; i++) {
+            collection.add(i);
+        }
+        if (collection instanceof List) {
+            List<Integer> list = (List<Integer>) collection;
+            return new Target() {
+                @Override
+                public int read(int key) {
+                    return list.get(key);
+                }
+
+                @Override
+                public void write(int key) {
+                    list.set(key, key);
+                }
+            };
+        }
+        if (collection instanceof Queue) {
+            // Поиск в очереди линейный и для нее нетипичен: чтение - peek, запись - offer и poll
+            Queue<Integer> queue = (Queue<Integer>) collection;
+            return new Target() {
+                @Override
+                public int read(int key) {
+                    Integer head = queue.peek();
+                    return head == null ? 0 : head;
+                }
+
+                @Override
+                public void write(int key) {
+                    queue.offer(key);
+                    queue.poll();
+                }
+            };
+        }
+        return new Target() {
+            @Override
+            public int read(int key) {
+                return collection.contains(key) ? 1 : 0;
+            }
+
+            @Override
+            public void write(int key) {
+                if (collection.remove(key)) {
+                    collection.add(key);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,308 @@
+package org.example;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Оценка расхода памяти реализацией: строит экземпляр нужного размера и обходит граф объектов
+ * рефлексией. Сами элементы (ключи и значения) в расчет не входят - считается только то,
+ * что добавляет коллекция. Размеры объектов вычисляются по раскладке HotSpot: заголовок,
+ * поля, выравнивание; точные смещения полей не учитываются, поэтому результат - оценка.
+ * Для доступа к полям java.util нужен --add-opens java.base/java.util=ALL-UNNAMED
+ * (прописан в манифесте jar вместе с java.util.concurrent и java.lang.ref).
+ */
+class FootprintAnalyzer {
+    static final int[] SIZES = {0, 1, 10, 11, 16, 17, 100, 1_000, 10_000, 100_000};
+    /** Вставка в copy-on-write копирует весь массив, заполнение по одному элементу - O(n^2). */
+    static final int COPY_ON_WRITE_MAX_SIZE = 10_000;
+
+    private static final LruCache<String, Report> REPORTS = new LruCache<>("footprint", 128);
+
+    private final int referenceSize;
+    private final int objectHeaderSize;
+    private final int arrayHeaderSize;
+    private final int alignment;
+    private final Map<Class<?>, ClassLayout> layouts = new HashMap<>();
+
+    static class Measurement {
+        final int size;
+        long shallowBytes;
+        long retainedBytes;
+        long arraySlots;
+        long emptySlots;
+        int objects;
+
+        Measurement(int size) {
+            this.size = size;
+        }
+    }
+
+    static class Report {
+        final String className;
+        final List<Measurement> measurements = new ArrayList<>();
+        final Set<String> inaccessible = new TreeSet<>();
+        final int referenceSize;
+        /** Размеры выше этого не замерялись; 0 - замерены все. */
+        int sizeLimit;
+        String error;
+
+        Report(String className, int referenceSize) {
+            this.className = className;
+            this.referenceSize = referenceSize;
+        }
+    }
+
+    private static class ClassLayout {
+        final long shallowSize;
+        final Field[] referenceFields;
+
+        ClassLayout(long shallowSize, Field[] referenceFields) {
+            this.shallowSize = shallowSize;
+            this.referenceFields = referenceFields;
+        }
+    }
+
+    FootprintAnalyzer() {
+        boolean compressedOops = vmFlag("UseCompressedOops", "true").equals("true");
+        boolean compressedClassPointers = vmFlag("UseCompressedClassPointers", "true").equals("true");
+        referenceSize = compressedOops ? 4 : 8;
+        objectHeaderSize = compressedClassPointers ? 12 : 16;
+        arrayHeaderSize = compressedClassPointers ? 16 : 24;
+        alignment = Integer.parseInt(vmFlag("ObjectAlignmentInBytes", "8"));
+    }
+
+    private static String vmFlag(String name, String fallback) {
+        try {
+            return ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class).getVMOption(name).getValue();
+        } catch (RuntimeException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Отчет для класса из кэша; null, если для этого типа замер не имеет смысла (интерфейс, абстрактный класс).
+     */
+    static Report reportFor(Class<?> clazz) {
+        if (clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers())
+                || !(Collection.class.isAssignableFrom(clazz) || Map.class.isAssignableFrom(clazz))) {
+            return null;
+        }
+        Report report = REPORTS.get(clazz.getName());
+        if (report == null) {
+            report = new FootprintAnalyzer().analyze(clazz);
+            REPORTS.put(clazz.getName(), report);
+        }
+        return report;
+    }
+
+    Report analyze(Class<?> clazz) {
+        Report report = new Report(clazz.getSimpleName(), referenceSize);
+        Constructor<?> constructor;
+        try {
+            constructor = clazz.getConstructor();
+        } catch (NoSuchMethodException e) {
+            report.error = "нет публичного конструктора без аргументов";
+            return report;
+        }
+        for (int size : SIZES) {
+            if (size > COPY_ON_WRITE_MAX_SIZE && copyOnWrite(clazz)) {
+                report.sizeLimit = COPY_ON_WRITE_MAX_SIZE;
+                break;
+            }
+            try {
+                Object instance = constructor.newInstance();
+                List<Integer> elements = fill(instance, size);
+                report.measurements.add(measure(instance, size, elements, report.inaccessible));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                report.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+                break;
+            }
+        }
+        return report;
+    }
+
+    private static boolean copyOnWrite(Class<?> clazz) {
+        return CopyOnWriteArrayList.class.isAssignableFrom(clazz) || CopyOnWriteArraySet.class.isAssignableFrom(clazz);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Integer> fill(Object instance, int size) {
+        // Элементы исключаются из обхода по идентичности, поэтому общие объекты из кэша Integer не мешают
+        List<Integer> elements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            elements.add(i);
+        }
+        if (instance instanceof Map) {
+            Map<Integer, Integer> map = (Map<Integer, Integer>) instance;
+            for (Integer element : elements) {
+                map.put(element, element);
+            }
+        } else {
+            // По одному элементу, а не addAll: иначе массив сразу выделяется точного размера и рост не виден
+            Collection<Integer> collection = (Collection<Integer>) instance;
+            for (Integer element : elements) {
+                collection.add(element);
+            }
+        }
+        return elements;
+    }
+
+    private Measurement measure(Object root, int size, List<Integer> elements, Set<String> inaccessible) {
+        Measurement measurement = new Measurement(size);
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        visited.addAll(elements);
+
+        ArrayDeque<Object> stack = new ArrayDeque<>();
+        stack.push(root);
+        visited.add(root);
+        while (!stack.isEmpty()) {
+            Object object = stack.pop();
+            Class<?> type = object.getClass();
+            long objectSize;
+            if (type.isArray()) {
+                int length = Array.getLength(object);
+                Class<?> component = type.getComponentType();
+                objectSize = align(arrayHeaderSize + (long) length * fieldSize(component));
+                if (!component.isPrimitive()) {
+                    measurement.arraySlots += length;
+                    for (Object item : (Object[]) object) {
+                        if (item == null) {
+                            measurement.emptySlots++;
+                        } else if (visited.add(item)) {
+                            stack.push(item);
+                        }
+                    }
+                }
+            } else {
+                ClassLayout layout = layout(type, inaccessible);
+                objectSize = layout.shallowSize;
+                for (Field field : layout.referenceFields) {
+                    try {
+                        Object value = field.get(object);
+                        if (value != null && !(value instanceof Class) && visited.add(value)) {
+                            stack.push(value);
+                        }
+                    } catch (IllegalAccessException e) {
+                        inaccessible.add(field.getDeclaringClass().getName() + "." + field.getName());
+                    }
+                }
+            }
+            if (object == root) {
+                measurement.shallowBytes = objectSize;
+            }
+            measurement.retainedBytes += objectSize;
+            measurement.objects++;
+        }
+        return measurement;
+    }
+
+    private ClassLayout layout(Class<?> type, Set<String> inaccessible) {
+        ClassLayout layout = layouts.get(type);
+        if (layout != null) {
+            return layout;
+        }
+        long size = objectHeaderSize;
+        List<Field> references = new ArrayList<>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                size += fieldSize(field.getType());
+                if (!field.getType().isPrimitive()) {
+                    try {
+                        field.setAccessible(true);
+                        references.add(field);
+                    } catch (RuntimeException e) {
+                        // InaccessibleObjectException: пакет не открыт через --add-opens
+                        inaccessible.add(c.getName() + "." + field.getName());
+                    }
+                }
+            }
+        }
+        layout = new ClassLayout(align(size), references.toArray(new Field[0]));
+        layouts.put(type, layout);
+        return layout;
+    }
+
+    private int fieldSize(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return referenceSize;
+        }
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    /** Размер массива ссылок заданной длины. */
+    long referenceArraySize(long length) {
+        return align(arrayHeaderSize + length * referenceSize);
+    }
+
+    /** Shallow экземпляра класса по той же раскладке. */
+    long shallowSize(Class<?> type) {
+        return layout(type, new TreeSet<>()).shallowSize;
+    }
+
+    private long align(long size) {
+        return (size + alignment - 1) / alignment * alignment;
+    }
+
+    static String toHtml(Report report) {
+        StringBuilder html = new StringBuilder("<h3>MEMORY FOOTPRINT</h3>");
+        if (report.error != null && report.measurements.isEmpty()) {
+            html.append("<p>Замер невозможен: ").append(report.error).append("</p>");
+            return html.toString();
+        }
+        Measurement empty = report.measurements.get(0);
+        html.append("<p>Без учета самих элементов. Пустой экземпляр: <b>").append(empty.retainedBytes)
+                .append(" B</b> (").append(empty.objects).append(" объект(ов)).</p>");
+        html.append("<table border='1' cellspacing='0' cellpadding='3'>")
+                .append("<tr><th>n</th><th>retained, B</th><th>B/элемент</th><th>shallow, B</th>")
+                .append("<th>объектов</th><th>слотов массивов</th><th>пустых слотов</th><th>потери роста</th></tr>");
+        for (Measurement m : report.measurements) {
+            double perElement = m.size == 0 ? 0 : (double) (m.retainedBytes - empty.retainedBytes) / m.size;
+            double waste = m.retainedBytes == 0 ? 0 : 100.0 * m.emptySlots * report.referenceSize / m.retainedBytes;
+            html.append("<tr><td align='right'>").append(m.size)
+                    .append("</td><td align='right'>").append(m.retainedBytes)
+                    .append("</td><td align='right'>").append(m.size == 0 ? "-" : String.format(Locale.ROOT, "%.1f", perElement))
+                    .append("</td><td align='right'>").append(m.shallowBytes)
+                    .append("</td><td align='right'>").append(m.objects)
+                    .append("</td><td align='right'>").append(m.arraySlots)
+                    .append("</td><td align='right'>").append(m.emptySlots)
+                    .append("</td><td align='right'>").append(String.format(Locale.ROOT, "%.0f%%", waste))
+                    .append("</td></tr>");
+        }
+        html.append("</table>");
+        if (report.sizeLimit > 0) {
+            html.append("<p>Замер до n = ").append(report.sizeLimit)
+                    .append(": каждая вставка в copy-on-write копирует весь массив.</p>");
+        }
+        html.append("<p>Потери роста - доля памяти, занятая пустыми слотами внутренних массивов ")
+                .append("(запас емкости и пустые корзины хэш-таблицы).</p>");
+        if (report.error != null) {
+            html.append("<p>Замер прерван: ").append(report.error).append("</p>");
+        }
+        if (!report.inaccessible.isEmpty()) {
+            html.append("<p><b>Результат занижен:</b> нет доступа к ").append(report.inaccessible.size())
+                    .append(" полям (например, ").append(report.inaccessible.iterator().next())
+                    .append("). Запустите через java -jar или с --add-opens java.base/java.util=ALL-UNNAMED.</p>");
+        }
+        return html.toString();
+    }
+}
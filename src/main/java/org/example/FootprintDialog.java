@@ -0,0 +1,47 @@
+package org.example;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Расход памяти одной реализации. Замер заполняет настоящие экземпляры до сотни тысяч элементов,
+ * поэтому считается только по запросу и в фоне, а не при каждом открытии окна деталей.
+ */
+class FootprintDialog extends JDialog {
+    private final JEditorPane result = new JEditorPane("text/html", "");
+    private final JLabel status = new JLabel(" ");
+
+    FootprintDialog(Window owner, Class<?> type) {
+        super(owner, "Память: " + type.getSimpleName(), ModalityType.MODELESS);
+        result.setEditable(false);
+
+        setLayout(new BorderLayout());
+        add(new JScrollPane(result), BorderLayout.CENTER);
+        add(status, BorderLayout.SOUTH);
+        setSize(760, 520);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        status.setText("Заполнение " + type.getSimpleName() + "...");
+        new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() {
+                return FootprintAnalyzer.toHtml(FootprintAnalyzer.reportFor(type));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    result.setText("<html><body style='font-family: Arial; padding: 10px'>" + get() + "</body></html>");
+                    result.setCaretPosition(0);
+                    status.setText("Готово");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    status.setText("Ошибка: " + e.getCause());
+                }
+            }
+        }.execute();
+    }
+}
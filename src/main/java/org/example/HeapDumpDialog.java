@@ -0,0 +1,298 @@
+package org.example;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.io.File;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Статистика дампа кучи по классам: сколько экземпляров, сколько они занимают и как распределены
+ * размеры и емкости коллекций. Итог выводится и на схему - подписью на узле каждого класса.
+ */
+class HeapDumpDialog extends JDialog {
+    private static final String[] SIZE_LABELS = {"0", "1", "2-4", "5-16", "17-64", "65-256", "257-1K", "1K-64K",
+            "> 64K"};
+    private static final int TOP_CAPACITIES = 12;
+
+    private final HierarchyModel model;
+    private final HierarchyCanvas canvas;
+    private final DefaultTableModel rows = new DefaultTableModel(new String[]{"Класс", "Экземпляров", "Shallow, байт",
+            "Retained (собственный), байт", "Пустых с массивом", "Неиспользуемых слотов"}, 0) {
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? String.class : Long.class;
+        }
+
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final JTable table = new JTable(rows);
+    private final JCheckBox collectionsOnly = new JCheckBox("только коллекции", true);
+    private final JEditorPane distribution = new JEditorPane("text/html", "");
+    private final JProgressBar progress = new JProgressBar(0, 100);
+    private final JButton openButton = new JButton("Открыть дамп...");
+    private final JLabel status = new JLabel("Дамп можно снять: jcmd <pid> GC.heap_dump <файл>");
+    private HprofReader.Summary summary;
+    private SwingWorker<HprofReader.Summary, Void> worker;
+
+    HeapDumpDialog(Window owner, HierarchyModel model, HierarchyCanvas canvas) {
+        super(owner, "Дамп кучи", ModalityType.MODELESS);
+        this.model = model;
+        this.canvas = canvas;
+        table.setAutoCreateRowSorter(true);
+        table.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                showDistribution();
+            }
+        });
+        distribution.setEditable(false);
+        collectionsOnly.addActionListener(e -> fillTable());
+        openButton.addActionListener(e -> {
+            if (worker != null) {
+                worker.cancel(true);
+            } else {
+                chooseFile();
+            }
+        });
+        JButton clearBadges = new JButton("Убрать со схемы");
+        clearBadges.addActionListener(e -> canvas.setBadges(Collections.emptyMap()));
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(openButton);
+        controls.add(collectionsOnly);
+        controls.add(clearBadges);
+        controls.add(progress);
+
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(table),
+                new JScrollPane(distribution));
+        split.setResizeWeight(0.6);
+
+        setLayout(new BorderLayout());
+        add(controls, BorderLayout.NORTH);
+        add(split, BorderLayout.CENTER);
+        add(status, BorderLayout.SOUTH);
+        setSize(1000, 700);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+    }
+
+    @Override
+    public void dispose() {
+        if (worker != null) {
+            worker.cancel(true);
+        }
+        super.dispose();
+    }
+
+    static String formatBytes(long bytes) {
+        String[] units = {"B", "KB", "MB", "GB", "TB"};
+        double value = bytes;
+        int unit = 0;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return (unit == 0 ? String.valueOf(bytes) : String.format(Locale.ROOT, value < 10 ? "%.1f" : "%.0f", value))
+                + " " + units[unit];
+    }
+
+    private void chooseFile() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("HPROF", "hprof", "bin"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        List<SearchIndex.Entry> entries = SearchIndex.entries(model);
+        worker = new Reader(file, entries);
+        openButton.setText("Остановить");
+        progress.setValue(0);
+        status.setText("Чтение " + file + " (" + formatBytes(file.length()) + ")...");
+        worker.execute();
+    }
+
+    /** Чтение дампа и подписи узлов; классы схемы разрешаются тут же, в фоне. */
+    private class Reader extends SwingWorker<HprofReader.Summary, Void> {
+        private final File file;
+        private final List<SearchIndex.Entry> entries;
+        private Map<Integer, String> badges = Collections.emptyMap();
+
+        Reader(File file, List<SearchIndex.Entry> entries) {
+            this.file = file;
+            this.entries = entries;
+            addPropertyChangeListener(e -> {
+                if ("progress".equals(e.getPropertyName())) {
+                    progress.setValue((Integer) e.getNewValue());
+                }
+            });
+        }
+
+        @Override
+        protected HprofReader.Summary doInBackground() throws Exception {
+            HprofReader.Summary read = HprofReader.read(file.toPath(),
+                    (done, total) -> setProgress((int) Math.min(100, 100 * done / Math.max(1, total))));
+            badges = badges(read, entries);
+            return read;
+        }
+
+        @Override
+        protected void done() {
+            worker = null;
+            openButton.setText("Открыть дамп...");
+            if (isCancelled()) {
+                status.setText("Остановлено");
+                return;
+            }
+            try {
+                summary = get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                status.setText("Ошибка: " + e.getCause());
+                return;
+            }
+            progress.setValue(100);
+            fillTable();
+            canvas.setBadges(badges);
+            status.setText(String.format(Locale.ROOT,
+                    "%s: классов %d, сегментов %d, потоков %d, за %s; %s",
+                    file.getName(), summary.classes.size(), summary.segments, summary.threads,
+                    LatencyHistogram.formatNanos(summary.elapsedNanos),
+                    summary.compressedOops ? "размеры со сжатыми указателями" : "размеры без сжатых указателей"));
+        }
+    }
+
+    /**
+     * Подпись узла: у класса - его экземпляры, у интерфейса и абстрактного класса - сумма по всем
+     * классам дампа, которые его реализуют (если их удается загрузить).
+     */
+    private static Map<Integer, String> badges(HprofReader.Summary summary, List<SearchIndex.Entry> entries) {
+        ClassLoader loader = TypeResolver.loader();
+        List<Map.Entry<Class<?>, HprofReader.ClassStats>> loaded = new ArrayList<>();
+        for (HprofReader.ClassStats stats : summary.classes.values()) {
+            if (stats.className.endsWith("[]") || stats.instances == 0) {
+                continue;
+            }
+            try {
+                loaded.add(new AbstractMap.SimpleEntry<>(Class.forName(stats.className, false, loader), stats));
+            } catch (ClassNotFoundException | LinkageError e) {
+                // Класс приложения, которого нет в classpath визуализатора: на узлы его не отнести
+            }
+        }
+        Map<Integer, String> badges = new HashMap<>();
+        for (SearchIndex.Entry entry : entries) {
+            Class<?> type;
+            try {
+                type = TypeResolver.resolve(entry.name, entry.qualifiedName);
+            } catch (ClassNotFoundException | LinkageError e) {
+                continue;
+            }
+            if (!type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+                HprofReader.ClassStats stats = summary.classes.get(type.getName());
+                if (stats != null && stats.instances > 0) {
+                    badges.put(entry.id, ComparisonDialog.formatCount(stats.instances) + " | "
+                            + formatBytes(stats.retainedBytes));
+                }
+                continue;
+            }
+            long instances = 0;
+            long bytes = 0;
+            for (Map.Entry<Class<?>, HprofReader.ClassStats> heapClass : loaded) {
+                if (type.isAssignableFrom(heapClass.getKey())) {
+                    instances += heapClass.getValue().instances;
+                    bytes += heapClass.getValue().retainedBytes;
+                }
+            }
+            if (instances > 0) {
+                badges.put(entry.id, "Σ " + ComparisonDialog.formatCount(instances) + " | " + formatBytes(bytes));
+            }
+        }
+        return badges;
+    }
+
+    private void fillTable() {
+        rows.setRowCount(0);
+        if (summary == null) {
+            return;
+        }
+        List<HprofReader.ClassStats> sorted = new ArrayList<>(summary.classes.values());
+        sorted.sort((a, b) -> Long.compare(b.retainedBytes, a.retainedBytes));
+        for (HprofReader.ClassStats stats : sorted) {
+            if (collectionsOnly.isSelected() && !stats.detailed) {
+                continue;
+            }
+            rows.addRow(new Object[]{stats.className, stats.instances, stats.shallowBytes, stats.retainedBytes,
+                    stats.detailed ? stats.emptyWithStorage : null, stats.detailed ? stats.unusedSlots : null});
+        }
+        if (rows.getRowCount() > 0) {
+            table.setRowSelectionInterval(0, 0);
+        }
+    }
+
+    private void showDistribution() {
+        int row = table.getSelectedRow();
+        if (summary == null || row < 0) {
+            distribution.setText("");
+            return;
+        }
+        HprofReader.ClassStats stats = summary.classes.get((String) table.getValueAt(row, 0));
+        StringBuilder html = new StringBuilder("<html><body style='font-family:sans-serif'>");
+        html.append("<h3>").append(stats.className).append("</h3><p>Экземпляров: <b>").append(stats.instances)
+                .append("</b>, shallow ").append(formatBytes(stats.shallowBytes))
+                .append(", собственный retained ").append(formatBytes(stats.retainedBytes)).append("</p>");
+        if (!stats.detailed) {
+            html.append("<p>Размеры и емкости разбираются только для коллекций JDK; retained здесь равен shallow.</p>");
+            distribution.setText(html.append("</body></html>").toString());
+            return;
+        }
+        html.append("<p>Retained - сам объект, его массив и узлы записей, без ключей и значений.</p>");
+        html.append("<table><tr><td valign='top'><b>Размер</b>");
+        appendBars(html, SIZE_LABELS, stats.sizeHistogram, stats.instances);
+        html.append("</td><td valign='top'><b>Емкость массива</b>");
+        appendCapacities(html, stats.capacities, stats.instances);
+        html.append("</td><td valign='top'><b>Пустые с массивом</b>");
+        if (stats.emptyWithStorage == 0) {
+            html.append("<p>нет</p>");
+        } else {
+            html.append("<p>").append(stats.emptyWithStorage).append(" шт., массивы занимают ")
+                    .append(formatBytes(stats.emptyStorageBytes)).append("</p>");
+            appendCapacities(html, stats.emptyCapacities, stats.emptyWithStorage);
+        }
+        html.append("</td></tr></table></body></html>");
+        distribution.setText(html.toString());
+        distribution.setCaretPosition(0);
+    }
+
+    private static void appendCapacities(StringBuilder html, SortedMap<Integer, Long> capacities, long total) {
+        List<Map.Entry<Integer, Long>> top = new ArrayList<>(capacities.entrySet());
+        top.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        top = top.subList(0, Math.min(TOP_CAPACITIES, top.size()));
+        top.sort(Map.Entry.comparingByKey());
+        String[] labels = new String[top.size()];
+        long[] counts = new long[top.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = String.valueOf(top.get(i).getKey());
+            counts[i] = top.get(i).getValue();
+        }
+        appendBars(html, labels, counts, total);
+    }
+
+    private static void appendBars(StringBuilder html, String[] labels, long[] counts, long total) {
+        html.append("<table cellspacing='0'>");
+        for (int i = 0; i < labels.length; i++) {
+            int width = total == 0 ? 0 : (int) Math.round(120.0 * counts[i] / total);
+            html.append("<tr><td align='right'>").append(labels[i]).append("</td><td>")
+                    .append("<table cellspacing='0' cellpadding='0'><tr><td bgcolor='#1F77B4' width='")
+                    .append(Math.max(1, width)).append("' height='10'></td></tr></table></td><td>")
+                    .append(counts[i]).append("</td></tr>");
+        }
+        html.append("</table>");
+    }
+}
@@ -0,0 +1,409 @@
+package org.example;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Режим отрисовки "сцена": все узлы и ребра рисуются одним компонентом из плоской модели.
+ * Статическая часть сцены кэшируется плитками 256x256 для каждого уровня масштаба, поэтому прокрутка
+ * и перерисовка при наведении только копируют готовые изображения; наведение и выделение рисуются поверх.
+ * Попадания и видимые элементы ищутся через квадродеревья.
+ * Ctrl+клик выделяет узлы для сравнения реализаций, Ctrl+колесо меняет масштаб, перетаскивание пустого места
+ * сдвигает схему.
+ */
+class HierarchyCanvas extends JComponent {
+    private static final int MARGIN = 40;
+    private static final int TILE_SIZE = 256;
+    /** Уровни масштаба через корень из двух: соседние уровни отличаются вдвое по площади. */
+    private static final double[] ZOOM_LEVELS = {0.125, 0.177, 0.25, 0.354, 0.5, 0.707, 1, 1.414, 2, 2.828, 4};
+    private static final int DEFAULT_ZOOM_LEVEL = 6;
+
+    private final HierarchyModel model;
+    private SceneIndex scene;
+    private int hoveredId = -1;
+    private final Set<Integer> selectedIds = new LinkedHashSet<>();
+    private final List<Runnable> selectionListeners = new ArrayList<>();
+    private int[] highlightedIds = new int[0];
+    private Map<Integer, String> badges = Collections.emptyMap();
+    /** Около 12 МБ при 32-битном цвете: хватает на несколько экранов текущего и соседних уровней. */
+    private final LruCache<Long, Image> tiles = new LruCache<>("tiles", 192);
+    private int zoomLevel = DEFAULT_ZOOM_LEVEL;
+    private Point dragStart;
+    private Point dragViewPosition;
+
+    HierarchyCanvas(HierarchyModel model) {
+        this.model = model;
+        setOpaque(true);
+        updatePreferredSize();
+        model.addChangeListener(this::modelChanged);
+
+        MouseAdapter mouseHandler = new MouseAdapter() {
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                setHovered(nodeAt(e.getPoint()));
+            }
+
+            @Override
+            public void mouseExited(MouseEvent e) {
+                setHovered(-1);
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int id = nodeAt(e.getPoint());
+                if (id >= 0 && (e.isControlDown() || e.isMetaDown())) {
+                    toggleSelected(id);
+                } else if (id >= 0) {
+                    HierarchyModel.Node node = model.node(id);
+                    ClassDetails.show(HierarchyCanvas.this, node.name, node.qualifiedName);
+                }
+            }
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                JViewport viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, HierarchyCanvas.this);
+                if (viewport != null && SwingUtilities.isLeftMouseButton(e) && nodeAt(e.getPoint()) < 0) {
+                    // Экранные координаты не сдвигаются вместе с видом, поэтому перетаскивание не дрожит
+                    dragStart = e.getLocationOnScreen();
+                    dragViewPosition = viewport.getViewPosition();
+                    setCursor(Cursor.getPredefinedCursor(Cursor.MOVE_CURSOR));
+                }
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                JViewport viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, HierarchyCanvas.this);
+                if (dragStart != null && viewport != null) {
+                    Point now = e.getLocationOnScreen();
+                    scrollTo(viewport, dragViewPosition.x - (now.x - dragStart.x),
+                            dragViewPosition.y - (now.y - dragStart.y));
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                if (dragStart != null) {
+                    dragStart = null;
+                    setCursor(Cursor.getDefaultCursor());
+                }
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                if (e.isControlDown() || e.isMetaDown()) {
+                    setZoomLevel(zoomLevel - e.getWheelRotation(), e.getPoint());
+                    return;
+                }
+                // Слушатель колеса перехватывает событие у JScrollPane, обычную прокрутку отдаем ему
+                JScrollPane scrollPane = (JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class,
+                        HierarchyCanvas.this);
+                if (scrollPane != null) {
+                    scrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(HierarchyCanvas.this, e, scrollPane));
+                }
+            }
+        };
+        addMouseListener(mouseHandler);
+        addMouseMotionListener(mouseHandler);
+        addMouseWheelListener(mouseHandler);
+        bindZoomKeys();
+    }
+
+    void addSelectionListener(Runnable listener) {
+        selectionListeners.add(listener);
+    }
+
+    /** Выделенные узлы в порядке выделения. */
+    List<HierarchyModel.Node> selectedNodes() {
+        List<HierarchyModel.Node> nodes = new ArrayList<>(selectedIds.size());
+        for (int id : selectedIds) {
+            nodes.add(model.node(id));
+        }
+        return nodes;
+    }
+
+    void clearSelection() {
+        List<Integer> previous = new ArrayList<>(selectedIds);
+        selectedIds.clear();
+        for (int id : previous) {
+            repaintNode(id);
+        }
+        selectionListeners.forEach(Runnable::run);
+    }
+
+    private void toggleSelected(int id) {
+        if (!selectedIds.remove(id)) {
+            selectedIds.add(id);
+        }
+        repaintNode(id);
+        selectionListeners.forEach(Runnable::run);
+    }
+
+    /**
+     * Подсвечивает результаты поиска поверх плиток; пустой массив снимает подсветку.
+     */
+    void setHighlighted(int[] ids) {
+        int[] previous = highlightedIds;
+        highlightedIds = ids.clone();
+        for (int id : previous) {
+            repaintNode(id);
+        }
+        for (int id : highlightedIds) {
+            repaintNode(id);
+        }
+    }
+
+    /**
+     * Подписи поверх узлов (например, статистика дампа кучи); пустая карта убирает их.
+     */
+    void setBadges(Map<Integer, String> badges) {
+        Map<Integer, String> previous = this.badges;
+        this.badges = new HashMap<>(badges);
+        for (int id : previous.keySet()) {
+            repaintNode(id);
+        }
+        for (int id : this.badges.keySet()) {
+            repaintNode(id);
+        }
+    }
+
+    /**
+     * Прокручивает схему так, чтобы узел оказался в центре видимой области.
+     */
+    void scrollToNode(int id) {
+        Rectangle target = toComponent(model.node(id).bounds());
+        Rectangle visible = getVisibleRect();
+        target.grow(Math.max(0, (visible.width - target.width) / 2), Math.max(0, (visible.height - target.height) / 2));
+        scrollRectToVisible(target);
+    }
+
+    double zoom() {
+        return ZOOM_LEVELS[zoomLevel];
+    }
+
+    void zoomIn() {
+        setZoomLevel(zoomLevel + 1, visibleCenter());
+    }
+
+    void zoomOut() {
+        setZoomLevel(zoomLevel - 1, visibleCenter());
+    }
+
+    void resetZoom() {
+        setZoomLevel(DEFAULT_ZOOM_LEVEL, visibleCenter());
+    }
+
+    private Point visibleCenter() {
+        Rectangle visible = getVisibleRect();
+        return new Point(visible.x + visible.width / 2, visible.y + visible.height / 2);
+    }
+
+    /**
+     * Меняет масштаб так, чтобы точка мира под {@code anchor} (координаты компонента) осталась на месте экрана.
+     */
+    private void setZoomLevel(int level, Point anchor) {
+        level = Math.max(0, Math.min(ZOOM_LEVELS.length - 1, level));
+        if (level == zoomLevel) {
+            return;
+        }
+        double worldX = anchor.x / zoom();
+        double worldY = anchor.y / zoom();
+        JViewport viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, this);
+        Point offset = viewport != null ? viewport.getViewPosition() : new Point();
+        offset.translate(-anchor.x, -anchor.y);
+
+        zoomLevel = level;
+        updatePreferredSize();
+        if (viewport != null) {
+            // Размер выставляем сразу, иначе viewport ограничит новую позицию старым размером вида
+            setSize(getPreferredSize());
+            scrollTo(viewport, (int) Math.round(worldX * zoom()) + offset.x,
+                    (int) Math.round(worldY * zoom()) + offset.y);
+        }
+        revalidate();
+        repaint();
+    }
+
+    private void scrollTo(JViewport viewport, int x, int y) {
+        Dimension extent = viewport.getExtentSize();
+        x = Math.max(0, Math.min(x, getWidth() - extent.width));
+        y = Math.max(0, Math.min(y, getHeight() - extent.height));
+        viewport.setViewPosition(new Point(x, y));
+    }
+
+    private void bindZoomKeys() {
+        InputMap inputs = getInputMap(WHEN_IN_FOCUSED_WINDOW);
+        int menu = InputEvent.CTRL_DOWN_MASK;
+        inputs.put(KeyStroke.getKeyStroke(KeyEvent.VK_EQUALS, menu), "zoomIn");
+        inputs.put(KeyStroke.getKeyStroke(KeyEvent.VK_PLUS, menu), "zoomIn");
+        inputs.put(KeyStroke.getKeyStroke(KeyEvent.VK_ADD, menu), "zoomIn");
+        inputs.put(KeyStroke.getKeyStroke(KeyEvent.VK_MINUS, menu), "zoomOut");
+        inputs.put(KeyStroke.getKeyStroke(KeyEvent.VK_SUBTRACT, menu), "zoomOut");
+        inputs.put(KeyStroke.getKeyStroke(KeyEvent.VK_0, menu), "resetZoom");
+        getActionMap().put("zoomIn", action(this::zoomIn));
+        getActionMap().put("zoomOut", action(this::zoomOut));
+        getActionMap().put("resetZoom", action(this::resetZoom));
+    }
+
+    private static Action action(Runnable body) {
+        return new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                body.run();
+            }
+        };
+    }
+
+    private void modelChanged() {
+        scene = null;
+        tiles.invalidateIf(key -> true);
+        updatePreferredSize();
+        revalidate();
+        repaint();
+    }
+
+    private void updatePreferredSize() {
+        Rectangle content = model.contentBounds();
+        setPreferredSize(new Dimension(
+                (int) Math.ceil(Math.max(1300, content.x + content.width + MARGIN) * zoom()),
+                (int) Math.ceil(Math.max(900, content.y + content.height + MARGIN) * zoom())));
+    }
+
+    /**
+     * Индексы строятся лениво: при загрузке порциями модель меняется много раз подряд.
+     */
+    private void ensureIndex() {
+        if (scene == null) {
+            scene = Metrics.time(Metrics.SCENE_INDEX, () -> new SceneIndex(model, MARGIN));
+        }
+    }
+
+    private int nodeAt(Point point) {
+        ensureIndex();
+        return scene.nodeAt((int) Math.floor(point.x / zoom()), (int) Math.floor(point.y / zoom()));
+    }
+
+    private void setHovered(int id) {
+        if (id == hoveredId) {
+            return;
+        }
+        repaintNode(hoveredId);
+        hoveredId = id;
+        repaintNode(hoveredId);
+        setCursor(id >= 0 ? Cursor.getPredefinedCursor(Cursor.HAND_CURSOR) : Cursor.getDefaultCursor());
+    }
+
+    private void repaintNode(int id) {
+        if (id >= 0) {
+            Rectangle dirty = model.node(id).bounds();
+            dirty.grow(SceneRenderer.HIGHLIGHT_MARGIN + 1, SceneRenderer.HIGHLIGHT_MARGIN + 1);
+            repaint(toComponent(dirty));
+        }
+    }
+
+    private Rectangle toComponent(Rectangle world) {
+        double scale = zoom();
+        int x = (int) Math.floor(world.x * scale);
+        int y = (int) Math.floor(world.y * scale);
+        return new Rectangle(x, y, (int) Math.ceil((world.x + world.width) * scale) - x + 1,
+                (int) Math.ceil((world.y + world.height) * scale) - y + 1);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        StartupTimer.mark(StartupTimer.FIRST_PAINT);
+        Metrics.frame();
+        Metrics.time(Metrics.PAINT, () -> paintVisible(g));
+    }
+
+    private void paintVisible(Graphics g) {
+        ensureIndex();
+        Graphics2D g2 = (Graphics2D) g;
+        Rectangle clip = g2.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+
+        int firstColumn = Math.max(0, clip.x / TILE_SIZE);
+        int firstRow = Math.max(0, clip.y / TILE_SIZE);
+        int lastColumn = (clip.x + clip.width - 1) / TILE_SIZE;
+        int lastRow = (clip.y + clip.height - 1) / TILE_SIZE;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                g2.drawImage(tile(column, row), column * TILE_SIZE, row * TILE_SIZE, null);
+            }
+        }
+
+        // Выделение и наведение рисуются поверх плиток, чтобы не перерисовывать плитки при движении мыши
+        if (hoveredId < 0 && selectedIds.isEmpty() && highlightedIds.length == 0 && badges.isEmpty()) {
+            return;
+        }
+        Graphics2D overlay = (Graphics2D) g2.create();
+        try {
+            overlay.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            overlay.scale(zoom(), zoom());
+            Rectangle worldClip = overlay.getClipBounds();
+            for (int id : highlightedIds) {
+                if (model.node(id).bounds().intersects(worldClip)) {
+                    SceneRenderer.paintHighlight(overlay, model.node(id));
+                }
+            }
+            for (int id : selectedIds) {
+                if (id != hoveredId && model.node(id).bounds().intersects(worldClip)) {
+                    SceneRenderer.paintNode(overlay, model.node(id), false, true);
+                }
+            }
+            if (hoveredId >= 0 && model.node(hoveredId).bounds().intersects(worldClip)) {
+                SceneRenderer.paintNode(overlay, model.node(hoveredId), true, selectedIds.contains(hoveredId));
+            }
+            for (Map.Entry<Integer, String> badge : badges.entrySet()) {
+                if (model.node(badge.getKey()).bounds().intersects(worldClip)) {
+                    SceneRenderer.paintBadge(overlay, model.node(badge.getKey()), badge.getValue());
+                }
+            }
+        } finally {
+            overlay.dispose();
+        }
+    }
+
+    private Image tile(int column, int row) {
+        long key = (long) zoomLevel << 48 | (long) column << 24 | row;
+        Image image = tiles.get(key);
+        if (image == null) {
+            image = renderTile(column, row);
+            tiles.put(key, image);
+        }
+        return image;
+    }
+
+    private BufferedImage renderTile(int column, int row) {
+        return Metrics.time(Metrics.PAINT_TILE, () -> renderTileImage(column, row));
+    }
+
+    private BufferedImage renderTileImage(int column, int row) {
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        BufferedImage image = configuration != null
+                ? configuration.createCompatibleImage(TILE_SIZE, TILE_SIZE)
+                : new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = image.createGraphics();
+        try {
+            g2.setColor(SceneRenderer.BACKGROUND);
+            g2.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            double scale = zoom();
+            g2.scale(scale, scale);
+            double worldX = column * TILE_SIZE / scale;
+            double worldY = row * TILE_SIZE / scale;
+            g2.translate(-worldX, -worldY);
+            int worldSize = (int) Math.ceil(TILE_SIZE / scale) + 2;
+            scene.paint(g2, new Rectangle((int) Math.floor(worldX) - 1, (int) Math.floor(worldY) - 1,
+                    worldSize, worldSize), scale);
+        } finally {
+            g2.dispose();
+        }
+        return image;
+    }
+}
@@ -0,0 +1,326 @@
+package org.example;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Пакетный экспорт схемы без окна (java.awt.headless=true) в SVG и PNG.
+ * SVG пишется потоком прямо из модели, без DOM. PNG рисуется горизонтальными полосами в нескольких
+ * потоках; каждая полоса сжимается отдельно и сразу уходит в файл, поэтому в памяти держится
+ * только окно из нескольких полос, а не вся картинка.
+ */
+class HierarchyExporter {
+    private static final int MARGIN = 40;
+    /** Память на одну полосу: 4 байта на пиксель картинки и 3 - на отфильтрованные строки PNG. */
+    private static final long STRIP_BUDGET_BYTES = 4L << 20;
+    private static final int BYTES_PER_PIXEL = 7;
+    /** Сколько полос одновременно в работе, независимо от числа ядер. */
+    private static final int MAX_STRIPS_IN_FLIGHT = 16;
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    /** Пустой последний блок deflate: закрывает поток после полос, сжатых с SYNC_FLUSH. */
+    private static final byte[] DEFLATE_FINAL_BLOCK = {0x03, 0x00};
+    private static final int ADLER_BASE = 65521;
+
+    private final double scale;
+    private final int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    HierarchyExporter(double scale) {
+        if (!(scale > 0)) {
+            throw new IllegalArgumentException("Масштаб должен быть положительным: " + scale);
+        }
+        this.scale = scale;
+    }
+
+    /**
+     * Экспортирует каждый файл иерархии в outputDir под тем же именем с расширениями .svg и .png.
+     */
+    static void run(LaunchOptions options) throws Exception {
+        Files.createDirectories(options.exportDir);
+        HierarchyExporter exporter = new HierarchyExporter(options.exportScale);
+        List<Path> inputs = options.inputs.isEmpty()
+                ? Collections.singletonList(options.hierarchySource().call())
+                : options.inputs;
+        for (Path input : inputs) {
+            long start = System.nanoTime();
+            HierarchyModel model = HierarchyLoader.loadNow(input);
+            String baseName = input.getFileName().toString().replaceFirst("\\.json$", "");
+            if (options.exportFormats.contains("svg")) {
+                Path target = options.exportDir.resolve(baseName + ".svg");
+                exporter.writeSvg(model, target);
+                report(target, start);
+            }
+            if (options.exportFormats.contains("png")) {
+                Path target = options.exportDir.resolve(baseName + ".png");
+                exporter.writePng(model, target);
+                report(target, start);
+            }
+        }
+    }
+
+    private static void report(Path target, long start) throws IOException {
+        System.out.printf("[export] %-40s %8d KB %6d ms%n", target, Files.size(target) / 1024,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static Dimension worldSize(HierarchyModel model) {
+        Rectangle content = model.contentBounds();
+        return new Dimension(content.x + content.width + MARGIN, content.y + content.height + MARGIN);
+    }
+
+    void writeSvg(HierarchyModel model, Path target) throws IOException {
+        Dimension world = worldSize(model);
+        try (Writer out = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write(String.format(Locale.ROOT,
+                    "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"%d\" height=\"%d\" viewBox=\"0 0 %d %d\">\n",
+                    Math.round(world.width * scale), Math.round(world.height * scale), world.width, world.height));
+            // Оформление вынесено в классы, чтобы каждый элемент занимал одну короткую строку
+            out.write("<style>"
+                    + ".e{fill:none;stroke:" + hex(SceneRenderer.EDGE_COLOR) + ";stroke-width:1.5}"
+                    + ".a{fill:" + hex(SceneRenderer.EDGE_COLOR) + "}"
+                    + ".n{stroke:#000;stroke-width:1}"
+                    + "text{font-family:SansSerif,sans-serif;font-weight:bold}"
+                    + ".g{font-size:14px}"
+                    + ".t{font-size:11px;text-anchor:middle;dominant-baseline:central}"
+                    + "</style>\n");
+            out.write("<rect width=\"100%\" height=\"100%\" fill=\"" + hex(SceneRenderer.BACKGROUND) + "\"/>\n");
+
+            for (HierarchyModel.Group group : model.groups()) {
+                out.write(String.format(Locale.ROOT,
+                        "<rect x=\"%d\" y=\"%d\" width=\"%d\" height=\"%d\" rx=\"7.5\" fill=\"%s\"/>"
+                                + "<text class=\"g\" x=\"%d\" y=\"%d\">%s</text>\n",
+                        group.x, group.y, SceneRenderer.GROUP_WIDTH, SceneRenderer.GROUP_HEIGHT, hex(group.color),
+                        group.x + 10, group.y + 20, escape(group.name)));
+            }
+
+            for (int edge = 0; edge < model.edgeCount(); edge++) {
+                HierarchyModel.Node from = model.node(model.edgeFrom(edge));
+                HierarchyModel.Node to = model.node(model.edgeTo(edge));
+                int fromX = from.x + from.width / 2;
+                int fromY = from.y + from.height;
+                int toX = to.x + to.width / 2;
+                int toY = to.y;
+                int midY = fromY + (toY - fromY) / 2;
+                out.write(String.format(Locale.ROOT,
+                        "<path class=\"e\" d=\"M%d %dV%dH%dV%d\"/><path class=\"a\" d=\"M%d %dl%d %dh%dz\"/>\n",
+                        fromX, fromY, midY, toX, toY - SceneRenderer.ARROW_LENGTH,
+                        toX, toY, -SceneRenderer.ARROW_HALF_WIDTH, -SceneRenderer.ARROW_LENGTH,
+                        2 * SceneRenderer.ARROW_HALF_WIDTH));
+            }
+
+            for (int id = 0; id < model.nodeCount(); id++) {
+                HierarchyModel.Node node = model.node(id);
+                out.write(String.format(Locale.ROOT,
+                        "<g><title>%s</title><rect class=\"n\" x=\"%.1f\" y=\"%.1f\" width=\"%d\" height=\"%d\" fill=\"%s\"/>"
+                                + "<text class=\"t\" x=\"%d\" y=\"%d\">%s</text></g>\n",
+                        escape(node.qualifiedName != null ? node.qualifiedName : "java.util." + ClassInfo.rawName(node.name)),
+                        node.x + 0.5, node.y + 0.5, node.width - 1, node.height - 1, hex(node.fill),
+                        node.x + node.width / 2, node.y + node.height / 2, escape(node.name)));
+            }
+            out.write("</svg>\n");
+        }
+    }
+
+    private static String hex(Color color) {
+        return String.format("#%06x", color.getRGB() & 0xFFFFFF);
+    }
+
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /** Сжатая полоса: deflate без заголовка zlib плюс контрольная сумма ее несжатых байтов. */
+    private static class Strip {
+        final byte[] compressed;
+        final long adler;
+        final long rawLength;
+
+        Strip(byte[] compressed, long adler, long rawLength) {
+            this.compressed = compressed;
+            this.adler = adler;
+            this.rawLength = rawLength;
+        }
+    }
+
+    void writePng(HierarchyModel model, Path target) throws IOException, InterruptedException {
+        Dimension world = worldSize(model);
+        int width = (int) Math.ceil(world.width * scale);
+        int height = (int) Math.ceil(world.height * scale);
+        SceneIndex scene = new SceneIndex(model, MARGIN);
+        // Высота полосы - от бюджета: чем шире схема, тем ниже полоса, так что память не зависит от размера
+        int stripHeight = (int) Math.max(1, Math.min(height, STRIP_BUDGET_BYTES / ((long) width * BYTES_PER_PIXEL)));
+        int stripCount = (height + stripHeight - 1) / stripHeight;
+        int inFlight = Math.min(2 * threads, MAX_STRIPS_IN_FLIGHT);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "png-strip");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target), 1 << 16)) {
+            out.write(PNG_SIGNATURE);
+            ByteArrayOutputStream ihdr = new ByteArrayOutputStream(13);
+            DataOutputStream header = new DataOutputStream(ihdr);
+            header.writeInt(width);
+            header.writeInt(height);
+            header.writeByte(8);  // бит на канал
+            header.writeByte(2);  // RGB
+            header.writeByte(0);  // deflate
+            header.writeByte(0);  // стандартные фильтры
+            header.writeByte(0);  // без чересстрочности
+            writeChunk(out, "IHDR", ihdr.toByteArray());
+            writeChunk(out, "IDAT", new byte[]{0x78, (byte) 0x9C});
+
+            // Полосы сжимаются параллельно, но пишутся строго по порядку; окно держит не больше inFlight бюджетов
+            ArrayDeque<Future<Strip>> window = new ArrayDeque<>();
+            long adler = 1;
+            int next = 0;
+            while (next < stripCount || !window.isEmpty()) {
+                while (next < stripCount && window.size() < inFlight) {
+                    int stripIndex = next++;
+                    window.add(pool.submit(() -> renderStrip(scene, width, height, stripHeight, stripIndex)));
+                }
+                Strip strip;
+                try {
+                    strip = window.poll().get();
+                } catch (ExecutionException e) {
+                    throw new IOException("Не удалось отрисовать полосу PNG", e.getCause());
+                }
+                adler = combineAdler(adler, strip.adler, strip.rawLength);
+                writeChunk(out, "IDAT", strip.compressed);
+            }
+
+            ByteArrayOutputStream tail = new ByteArrayOutputStream(6);
+            tail.write(DEFLATE_FINAL_BLOCK);
+            new DataOutputStream(tail).writeInt((int) adler);
+            writeChunk(out, "IDAT", tail.toByteArray());
+            writeChunk(out, "IEND", new byte[0]);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Strip renderStrip(SceneIndex scene, int width, int height, int stripHeight, int stripIndex) {
+        int top = stripIndex * stripHeight;
+        int rows = Math.min(stripHeight, height - top);
+        BufferedImage image = new BufferedImage(width, rows, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = image.createGraphics();
+        try {
+            g2.setColor(SceneRenderer.BACKGROUND);
+            g2.fillRect(0, 0, width, rows);
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2.scale(scale, scale);
+            g2.translate(0, -top / scale);
+            scene.paint(g2, new Rectangle(-1, (int) Math.floor(top / scale) - 1,
+                    (int) Math.ceil(width / scale) + 2, (int) Math.ceil(rows / scale) + 2), scale);
+        } finally {
+            g2.dispose();
+        }
+
+        // Фильтр Sub: на однотонных заливках почти все байты строки становятся нулями и хорошо сжимаются
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int rowLength = 1 + 3 * width;
+        byte[] raw = new byte[rowLength * rows];
+        for (int y = 0; y < rows; y++) {
+            int offset = y * rowLength;
+            raw[offset] = 1;
+            int previous = 0;
+            for (int x = 0; x < width; x++) {
+                int pixel = pixels[y * width + x];
+                int position = offset + 1 + 3 * x;
+                raw[position] = (byte) ((pixel >> 16) - (previous >> 16));
+                raw[position + 1] = (byte) ((pixel >> 8) - (previous >> 8));
+                raw[position + 2] = (byte) (pixel - previous);
+                previous = pixel;
+            }
+        }
+
+        Adler32 checksum = new Adler32();
+        checksum.update(raw, 0, raw.length);
+        // SYNC_FLUSH выравнивает поток по байту, поэтому сжатые полосы можно просто склеить
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(raw);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 8 + 64);
+            byte[] buffer = new byte[1 << 16];
+            int produced;
+            do {
+                produced = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                compressed.write(buffer, 0, produced);
+            } while (produced == buffer.length);
+            return new Strip(compressed.toByteArray(), checksum.getValue(), raw.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Контрольная сумма Adler-32 склейки двух блоков по суммам блоков (как adler32_combine в zlib).
+     */
+    static long combineAdler(long first, long second, long secondLength) {
+        long remainder = secondLength % ADLER_BASE;
+        long sum1 = first & 0xFFFF;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (second & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((first >>> 16) & 0xFFFF) + ((second >>> 16) & 0xFFFF) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= 2L * ADLER_BASE) {
+            sum2 -= 2L * ADLER_BASE;
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    private static void writeChunk(OutputStream out, String type, byte[] data) throws IOException {
+        DataOutputStream chunk = new DataOutputStream(out);
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        chunk.writeInt(data.length);
+        chunk.write(typeBytes);
+        chunk.write(data);
+        chunk.writeInt((int) crc.getValue());
+    }
+}
@@ -0,0 +1,351 @@
+package org.example;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Читает файл иерархии потоком в фоне и добавляет группы и узлы в модель порциями
+ * по мере готовности. Параллельно запускает предзагрузку class_info.
+ * Разложенная модель сохраняется в бинарный снимок; пока файл не изменился, следующие запуски
+ * читают снимок и не раскладывают граф заново.
+ */
+class HierarchyLoader extends SwingWorker<Void, Object> {
+    private static final int CHUNK_SIZE = 64;
+
+    private final Callable<Path> source;
+    private final HierarchyModel model;
+    private final CollectionLayoutCalculator layoutCalculator;
+    private volatile Path file;
+    private volatile boolean fromSnapshot;
+
+    /**
+     * По умолчанию узлы расставляются автоматически; -Djcf.layout=file оставляет координаты из файла.
+     */
+    HierarchyLoader(Path file, HierarchyModel model) {
+        this(() -> file, model);
+    }
+
+    /**
+     * source вызывается в фоновом потоке, поэтому может сам строить файл (например, индекс сканера).
+     */
+    HierarchyLoader(Callable<Path> source, HierarchyModel model) {
+        this.source = source;
+        this.model = model;
+        this.layoutCalculator = "file".equals(System.getProperty("jcf.layout"))
+                ? null
+                : new CollectionLayoutCalculator();
+    }
+
+    /**
+     * Описание узла, подготовленное в фоновом потоке. Цвет берется из группы при добавлении в модель.
+     */
+    static class NodeSpec {
+        final String name;
+        final String qualifiedName;
+        final String group;
+        final int x, y;
+        final boolean isInterface;
+        final List<String> parents;
+
+        NodeSpec(String name, String qualifiedName, String group, int x, int y, boolean isInterface,
+                 List<String> parents) {
+            this.name = name;
+            this.qualifiedName = qualifiedName;
+            this.group = group;
+            this.x = x;
+            this.y = y;
+            this.isInterface = isInterface;
+            this.parents = parents;
+        }
+    }
+
+    @Override
+    protected Void doInBackground() throws Exception {
+        file = source.call();
+        boolean laidOut = layoutCalculator != null;
+
+        // class_info читаем параллельно, пока строятся узлы
+        List<CompletableFuture<Void>> prefetches = new ArrayList<>();
+        Consumer<Object[]> sink = items -> {
+            List<String> names = new ArrayList<>(items.length);
+            for (Object item : items) {
+                if (item instanceof NodeSpec) {
+                    names.add(((NodeSpec) item).name);
+                }
+            }
+            if (!names.isEmpty()) {
+                prefetches.add(ClassInfo.prefetchAll(names));
+            }
+            publish(items);
+        };
+
+        fromSnapshot = HierarchySnapshot.isCurrent(file, laidOut);
+        Metrics.time(fromSnapshot ? Metrics.LOAD_SNAPSHOT : Metrics.LOAD_JSON, file.toString(), () -> {
+            if (fromSnapshot) {
+                HierarchySnapshot.read(file, sink);
+            } else {
+                readHierarchy(file, sink);
+            }
+        });
+        StartupTimer.mark(StartupTimer.HIERARCHY_PARSED);
+        CompletableFuture.allOf(prefetches.toArray(new CompletableFuture<?>[0]))
+                .thenRun(() -> StartupTimer.mark(StartupTimer.CLASS_INFO_PREFETCHED));
+        return null;
+    }
+
+    /**
+     * Загрузка без EDT и без порций: модель заполняется и раскладывается в текущем потоке.
+     * Для пакетного экспорта, где нет ни окна, ни очереди событий.
+     */
+    static HierarchyModel loadNow(Path file) throws IOException {
+        HierarchyModel model = new HierarchyModel();
+        boolean laidOut = !"file".equals(System.getProperty("jcf.layout"));
+        Consumer<Object[]> sink = items -> addToModel(model, Arrays.asList(items));
+        if (HierarchySnapshot.isCurrent(file, laidOut)) {
+            HierarchySnapshot.read(file, sink);
+            return model;
+        }
+        readHierarchy(file, sink);
+        if (laidOut) {
+            CollectionLayoutCalculator layoutCalculator = new CollectionLayoutCalculator();
+            layoutCalculator.layoutAdded(model);
+            layoutCalculator.finish(model);
+        }
+        HierarchySnapshot.write(file, laidOut, HierarchySnapshot.encode(model));
+        return model;
+    }
+
+    /**
+     * Разбирает файл потоком, без дерева JsonObject, и отдает группы и узлы порциями в sink.
+     * Группы всегда уходят раньше узлов, даже если в файле они записаны после них; узел с неизвестной
+     * группой - такая же ошибка файла (IOException), как и узел без имени.
+     */
+    private static void readHierarchy(Path file, Consumer<Object[]> sink) throws IOException {
+        StreamingReader streaming = new StreamingReader(sink);
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "groups":
+                        streaming.readGroups(reader);
+                        break;
+                    case "interfaces":
+                        streaming.readNodes(reader, true);
+                        break;
+                    case "implementations":
+                        streaming.readNodes(reader, false);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        streaming.finish();
+    }
+
+    private static class StreamingReader {
+        private final Consumer<Object[]> sink;
+        /** Имена родителей повторяются у каждого ребенка: храним одну копию строки на имя. */
+        private final Map<String, String> names = new HashMap<>();
+        private final List<NodeSpec> chunk = new ArrayList<>();
+        private final Set<String> groupNames = new HashSet<>();
+        private boolean groupsSeen;
+
+        StreamingReader(Consumer<Object[]> sink) {
+            this.sink = sink;
+        }
+
+        private String intern(String name) {
+            String existing = names.putIfAbsent(name, name);
+            return existing != null ? existing : name;
+        }
+
+        void readGroups(JsonReader reader) throws IOException {
+            List<HierarchyModel.Group> groups = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                String name = null;
+                String color = null;
+                int x = 0;
+                int y = 0;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "name":
+                            name = intern(reader.nextString());
+                            break;
+                        case "color":
+                            color = reader.nextString();
+                            break;
+                        case "x":
+                            x = reader.nextInt();
+                            break;
+                        case "y":
+                            y = reader.nextInt();
+                            break;
+                        default:
+                            reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                if (name == null || color == null) {
+                    throw new IOException("Group without name or color at " + reader.getPath());
+                }
+                groups.add(new HierarchyModel.Group(name, x, y, Color.decode(color)));
+                groupNames.add(name);
+            }
+            reader.endArray();
+            sink.accept(groups.toArray());
+            groupsSeen = true;
+            flushIfFull();
+        }
+
+        void readNodes(JsonReader reader, boolean isInterface) throws IOException {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                String name = null;
+                String qualifiedName = null;
+                String group = null;
+                // Координаты необязательны: без них узел расставит CollectionLayoutCalculator
+                int x = 0;
+                int y = 0;
+                // Сгенерированный индекс перечисляет всех родителей, ручной файл - одного
+                List<String> parents = new ArrayList<>(2);
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "name":
+                            name = intern(reader.nextString());
+                            break;
+                        case "qualifiedName":
+                            qualifiedName = reader.nextString();
+                            break;
+                        case "group":
+                            group = intern(reader.nextString());
+                            break;
+                        case "x":
+                            x = reader.nextInt();
+                            break;
+                        case "y":
+                            y = reader.nextInt();
+                            break;
+                        case "parent":
+                            parents.add(intern(reader.nextString()));
+                            break;
+                        case "parents":
+                            reader.beginArray();
+                            while (reader.peek() != JsonToken.END_ARRAY) {
+                                parents.add(intern(reader.nextString()));
+                            }
+                            reader.endArray();
+                            break;
+                        default:
+                            reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                if (name == null || group == null) {
+                    throw new IOException("Node without name or group at " + reader.getPath());
+                }
+                chunk.add(new NodeSpec(name, qualifiedName, group, x, y, isInterface, parents));
+                flushIfFull();
+            }
+            reader.endArray();
+        }
+
+        private void flushIfFull() throws IOException {
+            if (groupsSeen && chunk.size() >= CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        void finish() throws IOException {
+            if (!groupsSeen) {
+                throw new IOException("Hierarchy file has no \"groups\" array");
+            }
+            flush();
+        }
+
+        /** Группы узлов проверяются здесь, в фоне: на EDT ошибка миновала бы окно "Failed to load". */
+        private void flush() throws IOException {
+            for (NodeSpec spec : chunk) {
+                if (!groupNames.contains(spec.group)) {
+                    throw new IOException("Unknown group " + spec.group + " of " + spec.name);
+                }
+            }
+            sink.accept(chunk.toArray());
+            chunk.clear();
+        }
+    }
+
+    @Override
+    protected void process(List<Object> items) {
+        Metrics.time(Metrics.LOAD_CHUNK, () -> {
+            addToModel(model, items);
+            if (layoutCalculator != null && !fromSnapshot) {
+                layoutCalculator.layoutAdded(model);
+            }
+            model.fireChanged();
+        });
+    }
+
+    private static void addToModel(HierarchyModel model, List<Object> items) {
+        for (Object item : items) {
+            if (item instanceof HierarchyModel.Group) {
+                model.addGroup((HierarchyModel.Group) item);
+            } else {
+                NodeSpec spec = (NodeSpec) item;
+                HierarchyModel.Group group = model.group(spec.group);
+                if (group == null) {
+                    throw new IllegalStateException("Unknown group " + spec.group + " of " + spec.name);
+                }
+                HierarchyModel.Node node = model.addNode(spec.name, group.name, spec.x, spec.y, spec.isInterface,
+                        group.color, spec.parents);
+                node.qualifiedName = spec.qualifiedName;
+            }
+        }
+    }
+
+    @Override
+    protected void done() {
+        try {
+            get();
+            if (layoutCalculator != null && !fromSnapshot) {
+                Metrics.time(Metrics.LAYOUT_FINISH, () -> {
+                    layoutCalculator.finish(model);
+                    model.fireChanged();
+                });
+            }
+            if (!fromSnapshot) {
+                // Кодируем на EDT, пока модель не меняется, а пишем на диск в фоне
+                byte[] snapshot = Metrics.time(Metrics.SNAPSHOT_ENCODE, () -> HierarchySnapshot.encode(model));
+                Path source = file;
+                boolean laidOut = layoutCalculator != null;
+                CompletableFuture.runAsync(() -> HierarchySnapshot.writeQuietly(source, laidOut, snapshot));
+            }
+            StartupTimer.mark(StartupTimer.NODES_BUILT);
+            StartupTimer.mark(StartupTimer.INTERACTIVE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            JOptionPane.showMessageDialog(null, "Failed to load hierarchy data: " + cause.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            cause.printStackTrace();
+        }
+    }
+}
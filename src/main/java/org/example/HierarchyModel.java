@@ -0,0 +1,166 @@
+package org.example;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Плоская модель иерархии: группы, узлы и ребра "родитель -> потомок" по индексам узлов.
+ * Заполняется на EDT загрузчиком и читается обоими режимами отрисовки.
+ */
+class HierarchyModel {
+    static final int BOX_WIDTH = 180;
+    static final int BOX_HEIGHT = 40;
+
+    static class Group {
+        final String name;
+        int x, y;
+        final Color color;
+
+        Group(String name, int x, int y, Color color) {
+            this.name = name;
+            this.x = x;
+            this.y = y;
+            this.color = color;
+        }
+    }
+
+    static class Node {
+        final int id;
+        final String name;
+        final String group;
+        // Полное имя класса; null для узлов ручного файла, где подразумевается java.util
+        String qualifiedName;
+        int x, y;
+        final int width, height;
+        final boolean isInterface;
+        final Color fill;
+
+        Node(int id, String name, String group, int x, int y, boolean isInterface, Color groupColor) {
+            this.id = id;
+            this.name = name;
+            this.group = group;
+            this.x = x;
+            this.y = y;
+            this.width = BOX_WIDTH;
+            this.height = BOX_HEIGHT;
+            this.isInterface = isInterface;
+            // Интерфейсы светлее реализаций той же группы
+            this.fill = isInterface
+                    ? new Color(
+                    Math.min(groupColor.getRed() + 40, 255),
+                    Math.min(groupColor.getGreen() + 40, 255),
+                    Math.min(groupColor.getBlue() + 40, 255))
+                    : groupColor;
+        }
+
+        Rectangle bounds() {
+            return new Rectangle(x, y, width, height);
+        }
+    }
+
+    private final List<Group> groups = new ArrayList<>();
+    private final Map<String, Group> groupsByName = new HashMap<>();
+    private final List<Node> nodes = new ArrayList<>();
+    private final Map<String, Node> nodesByName = new HashMap<>();
+    private final Map<String, List<Node>> pendingChildren = new HashMap<>();
+    private int[] edgeFrom = new int[64];
+    private int[] edgeTo = new int[64];
+    private int edgeCount;
+    private final List<Runnable> listeners = new ArrayList<>();
+
+    void addGroup(Group group) {
+        groups.add(group);
+        groupsByName.putIfAbsent(group.name, group);
+    }
+
+    Node addNode(String name, String group, int x, int y, boolean isInterface, Color groupColor,
+                 Collection<String> parents) {
+        Node node = new Node(nodes.size(), name, group, x, y, isInterface, groupColor);
+        nodes.add(node);
+        nodesByName.put(name, node);
+
+        for (String parent : parents) {
+            Node parentNode = nodesByName.get(parent);
+            if (parentNode != null) {
+                addEdge(parentNode.id, node.id);
+            } else {
+                // Родитель описан в файле ниже - свяжем, когда он появится
+                pendingChildren.computeIfAbsent(parent, k -> new ArrayList<>()).add(node);
+            }
+        }
+        List<Node> waiting = pendingChildren.remove(name);
+        if (waiting != null) {
+            for (Node child : waiting) {
+                addEdge(node.id, child.id);
+            }
+        }
+        return node;
+    }
+
+    private void addEdge(int from, int to) {
+        if (edgeCount == edgeFrom.length) {
+            edgeFrom = Arrays.copyOf(edgeFrom, edgeCount * 2);
+            edgeTo = Arrays.copyOf(edgeTo, edgeCount * 2);
+        }
+        edgeFrom[edgeCount] = from;
+        edgeTo[edgeCount] = to;
+        edgeCount++;
+    }
+
+    List<Group> groups() {
+        return groups;
+    }
+
+    Group group(String name) {
+        return groupsByName.get(name);
+    }
+
+    int nodeCount() {
+        return nodes.size();
+    }
+
+    Node node(int id) {
+        return nodes.get(id);
+    }
+
+    Node node(String name) {
+        return nodesByName.get(name);
+    }
+
+    int edgeCount() {
+        return edgeCount;
+    }
+
+    int edgeFrom(int edge) {
+        return edgeFrom[edge];
+    }
+
+    int edgeTo(int edge) {
+        return edgeTo[edge];
+    }
+
+    /**
+     * Габариты всего содержимого, включая подписи групп.
+     */
+    Rectangle contentBounds() {
+        Rectangle bounds = new Rectangle();
+        for (Group group : groups) {
+            bounds.add(new Rectangle(group.x, group.y, SceneRenderer.GROUP_WIDTH, SceneRenderer.GROUP_HEIGHT));
+        }
+        for (Node node : nodes) {
+            bounds.add(node.bounds());
+        }
+        return bounds;
+    }
+
+    void addChangeListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    void fireChanged() {
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+}
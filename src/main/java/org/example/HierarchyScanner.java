@@ -0,0 +1,398 @@
+package org.example;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Строит иерархию коллекций по образу JDK (jrt:/) и выбранным jar-файлам.
+ * Class-файлы разбираются параллельно в ForkJoinPool, в иерархию попадают публичные
+ * экспортируемые подтипы Collection и Map. Результат сохраняется в .jcf-index в формате
+ * collections_hierarchy.json, следующие запуски читают готовый индекс.
+ */
+class HierarchyScanner {
+    static final Path INDEX_DIRECTORY = Paths.get(".jcf-index");
+    static final String COLLECTION_GROUP = "Collection Framework";
+    static final String MAP_GROUP = "Map Framework";
+
+    private static final String ITERABLE = "java.lang.Iterable";
+    private static final String COLLECTION = "java.util.Collection";
+    private static final String MAP = "java.util.Map";
+    private static final int FILES_PER_TASK = 256;
+
+    private final List<Path> jars;
+
+    HierarchyScanner(List<Path> jars) {
+        this.jars = jars;
+    }
+
+    /**
+     * Путь к индексу для текущего JDK и набора jar. Строит индекс, если его нет или rescan = true.
+     */
+    Path ensureIndex(boolean rescan) throws IOException {
+        Path index = INDEX_DIRECTORY.resolve("hierarchy-" + Runtime.version().feature() + "-" + fingerprint() + ".json");
+        if (!rescan && Files.exists(index)) {
+            return index;
+        }
+        long start = System.nanoTime();
+        List<ClassHeader> headers = scan();
+        JsonObject hierarchy = buildHierarchy(headers);
+        System.out.printf("[scan] %d class files, %d collection types in %d ms%n", headers.size(),
+                hierarchy.getAsJsonArray("interfaces").size() + hierarchy.getAsJsonArray("implementations").size(),
+                (System.nanoTime() - start) / 1_000_000);
+
+        Files.createDirectories(INDEX_DIRECTORY);
+        Path temp = Files.createTempFile(INDEX_DIRECTORY, "hierarchy", ".tmp");
+        Files.write(temp, new GsonBuilder().setPrettyPrinting().create().toJson(hierarchy)
+                .getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return index;
+    }
+
+    /**
+     * Версия JDK плюс пути, размеры и даты изменения jar: при обновлении любого из них индекс строится заново.
+     */
+    private String fingerprint() throws IOException {
+        StringBuilder key = new StringBuilder(Runtime.version().toString());
+        for (Path jar : jars) {
+            key.append('|').append(jar.toAbsolutePath())
+                    .append(':').append(Files.size(jar))
+                    .append(':').append(Files.getLastModifiedTime(jar).toMillis());
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 6; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    List<ClassHeader> scan() throws IOException {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        List<ClassHeader> headers = new ArrayList<>();
+        try {
+            FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+            List<RecursiveTask<List<ClassHeader>>> tasks = new ArrayList<>();
+            try (DirectoryStream<Path> modules = Files.newDirectoryStream(jrt.getPath("/modules"))) {
+                for (Path module : modules) {
+                    tasks.add(new DirectoryTask(module, module.getFileName().toString()));
+                }
+            }
+            for (Path jar : jars) {
+                tasks.add(new JarTask(jar));
+            }
+            tasks.forEach(pool::execute);
+            for (RecursiveTask<List<ClassHeader>> task : tasks) {
+                headers.addAll(task.join());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return headers;
+    }
+
+    private static boolean isClassFile(String name) {
+        return name.endsWith(".class") && !name.endsWith("module-info.class") && !name.endsWith("package-info.class");
+    }
+
+    private static class DirectoryTask extends RecursiveTask<List<ClassHeader>> {
+        private final Path directory;
+        private final String module;
+
+        DirectoryTask(Path directory, String module) {
+            this.directory = directory;
+            this.module = module;
+        }
+
+        @Override
+        protected List<ClassHeader> compute() {
+            List<ClassHeader> headers = new ArrayList<>();
+            List<DirectoryTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    if (Files.isDirectory(entry)) {
+                        DirectoryTask subtask = new DirectoryTask(entry, module);
+                        subtask.fork();
+                        subtasks.add(subtask);
+                    } else if (isClassFile(entry.toString())) {
+                        headers.add(ClassHeader.parse(Files.readAllBytes(entry), module));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (DirectoryTask subtask : subtasks) {
+                headers.addAll(subtask.join());
+            }
+            return headers;
+        }
+    }
+
+    private static class JarTask extends RecursiveTask<List<ClassHeader>> {
+        private final Path jar;
+
+        JarTask(Path jar) {
+            this.jar = jar;
+        }
+
+        @Override
+        protected List<ClassHeader> compute() {
+            try (ZipFile zip = new ZipFile(jar.toFile())) {
+                List<ZipEntry> entries = new ArrayList<>();
+                zip.stream().filter(e -> isClassFile(e.getName()) && !e.getName().startsWith("META-INF/"))
+                        .forEach(entries::add);
+                return new JarEntriesTask(zip, entries, 0, entries.size(), jar.toString()).compute();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Диапазон записей одного jar; ZipFile допускает параллельное чтение разных записей.
+     */
+    private static class JarEntriesTask extends RecursiveTask<List<ClassHeader>> {
+        private final ZipFile zip;
+        private final List<ZipEntry> entries;
+        private final int from, to;
+        private final String origin;
+
+        JarEntriesTask(ZipFile zip, List<ZipEntry> entries, int from, int to, String origin) {
+            this.zip = zip;
+            this.entries = entries;
+            this.from = from;
+            this.to = to;
+            this.origin = origin;
+        }
+
+        @Override
+        protected List<ClassHeader> compute() {
+            if (to - from > FILES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                JarEntriesTask left = new JarEntriesTask(zip, entries, from, middle, origin);
+                left.fork();
+                List<ClassHeader> headers = new JarEntriesTask(zip, entries, middle, to, origin).compute();
+                headers.addAll(left.join());
+                return headers;
+            }
+            List<ClassHeader> headers = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                try (InputStream in = zip.getInputStream(entries.get(i))) {
+                    headers.add(ClassHeader.parse(in.readAllBytes(), origin));
+                } catch (IOException e) {
+                    // Поврежденный или нестандартный class-файл в стороннем jar не должен ронять сканирование
+                    System.err.println("Skipping " + entries.get(i).getName() + " in " + origin + ": " + e.getMessage());
+                }
+            }
+            return headers;
+        }
+    }
+
+    /**
+     * Граф интерфейсов и реализаций в формате collections_hierarchy.json (без координат).
+     * Родителями узла считаются ближайшие супертипы, попавшие в иерархию: непубличные
+     * промежуточные классы пропускаются.
+     */
+    static JsonObject buildHierarchy(List<ClassHeader> headers) {
+        Map<String, ClassHeader> byName = new HashMap<>();
+        Map<String, List<String>> subtypes = new HashMap<>();
+        for (ClassHeader header : headers) {
+            byName.putIfAbsent(header.name, header);
+            for (String supertype : supertypes(header)) {
+                subtypes.computeIfAbsent(supertype, k -> new ArrayList<>()).add(header.name);
+            }
+        }
+
+        Set<String> mapTypes = subtypeClosure(MAP, subtypes);
+        Set<String> collectionTypes = subtypeClosure(COLLECTION, subtypes);
+        Set<String> included = new TreeSet<>();
+        for (String name : union(mapTypes, collectionTypes)) {
+            ClassHeader header = byName.get(name);
+            if (header != null && header.isPublic && isExported(header)) {
+                included.add(name);
+            }
+        }
+        included.add(ITERABLE);
+
+        // Короткие имена, как в ручном файле; при совпадении - полное имя
+        Map<String, String> displayNames = new HashMap<>();
+        Map<String, Integer> simpleNameCounts = new HashMap<>();
+        for (String name : included) {
+            simpleNameCounts.merge(byName.containsKey(name) ? byName.get(name).simpleName() : simpleName(name), 1, Integer::sum);
+        }
+        for (String name : included) {
+            String simple = byName.containsKey(name) ? byName.get(name).simpleName() : simpleName(name);
+            displayNames.put(name, simpleNameCounts.get(simple) > 1 ? name : simple);
+        }
+
+        Map<String, Set<String>> ancestors = new HashMap<>();
+        JsonArray interfaces = new JsonArray();
+        JsonArray implementations = new JsonArray();
+        for (String name : included) {
+            ClassHeader header = byName.get(name);
+            JsonObject node = new JsonObject();
+            node.addProperty("name", displayNames.get(name));
+            node.addProperty("qualifiedName", name);
+            node.addProperty("group", collectionTypes.contains(name) || ITERABLE.equals(name) ? COLLECTION_GROUP : MAP_GROUP);
+            JsonArray parents = new JsonArray();
+            if (COLLECTION.equals(name)) {
+                parents.add(displayNames.get(ITERABLE));
+            } else if (header != null) {
+                for (String parent : directParents(header, byName, included, ancestors)) {
+                    parents.add(displayNames.get(parent));
+                }
+            }
+            node.add("parents", parents);
+            if (header == null || header.isInterface) {
+                interfaces.add(node);
+            } else {
+                implementations.add(node);
+            }
+        }
+
+        JsonObject hierarchy = new JsonObject();
+        JsonArray groups = new JsonArray();
+        groups.add(group(COLLECTION_GROUP, "#C8E6C9"));
+        groups.add(group(MAP_GROUP, "#BBDEFB"));
+        hierarchy.add("groups", groups);
+        hierarchy.add("interfaces", interfaces);
+        hierarchy.add("implementations", implementations);
+        return hierarchy;
+    }
+
+    private static List<String> supertypes(ClassHeader header) {
+        List<String> supertypes = new ArrayList<>(Arrays.asList(header.interfaces));
+        if (header.superName != null && !header.isInterface) {
+            supertypes.add(header.superName);
+        }
+        return supertypes;
+    }
+
+    private static Set<String> subtypeClosure(String root, Map<String, List<String>> subtypes) {
+        Set<String> closure = new HashSet<>();
+        ArrayDeque<String> queue = new ArrayDeque<>();
+        closure.add(root);
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            for (String subtype : subtypes.getOrDefault(queue.poll(), Collections.emptyList())) {
+                if (closure.add(subtype)) {
+                    queue.add(subtype);
+                }
+            }
+        }
+        return closure;
+    }
+
+    private static Set<String> union(Set<String> a, Set<String> b) {
+        Set<String> union = new HashSet<>(a);
+        union.addAll(b);
+        return union;
+    }
+
+    /**
+     * Ближайшие супертипы без избыточных: List не указывается родителем ArrayList,
+     * если он уже достижим через AbstractList.
+     */
+    private static Set<String> directParents(ClassHeader header, Map<String, ClassHeader> byName,
+                                             Set<String> included, Map<String, Set<String>> ancestors) {
+        Set<String> parents = nearestIncludedSupertypes(header, byName, included);
+        Set<String> redundant = new HashSet<>();
+        for (String parent : parents) {
+            for (String other : parents) {
+                if (!other.equals(parent) && includedAncestors(other, byName, included, ancestors).contains(parent)) {
+                    redundant.add(parent);
+                }
+            }
+        }
+        parents.removeAll(redundant);
+        return parents;
+    }
+
+    private static Set<String> includedAncestors(String name, Map<String, ClassHeader> byName,
+                                                 Set<String> included, Map<String, Set<String>> ancestors) {
+        Set<String> cached = ancestors.get(name);
+        if (cached != null) {
+            return cached;
+        }
+        Set<String> result = new HashSet<>();
+        ArrayDeque<String> queue = new ArrayDeque<>();
+        queue.add(name);
+        Set<String> visited = new HashSet<>();
+        while (!queue.isEmpty()) {
+            ClassHeader header = byName.get(queue.poll());
+            if (header == null) {
+                continue;
+            }
+            for (String supertype : supertypes(header)) {
+                if (visited.add(supertype)) {
+                    if (included.contains(supertype)) {
+                        result.add(supertype);
+                    }
+                    queue.add(supertype);
+                }
+            }
+        }
+        ancestors.put(name, result);
+        return result;
+    }
+
+    private static Set<String> nearestIncludedSupertypes(ClassHeader header, Map<String, ClassHeader> byName,
+                                                         Set<String> included) {
+        Set<String> result = new LinkedHashSet<>();
+        Set<String> visited = new HashSet<>();
+        ArrayDeque<String> queue = new ArrayDeque<>(supertypes(header));
+        while (!queue.isEmpty()) {
+            String supertype = queue.poll();
+            if (!visited.add(supertype)) {
+                continue;
+            }
+            if (included.contains(supertype)) {
+                result.add(supertype);
+            } else if (byName.containsKey(supertype)) {
+                queue.addAll(supertypes(byName.get(supertype)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Для JDK берутся только пакеты, экспортируемые своим модулем; классы из jar считаются публичным API.
+     */
+    private static boolean isExported(ClassHeader header) {
+        if (header.origin.endsWith(".jar")) {
+            return true;
+        }
+        return ModuleLayer.boot().findModule(header.origin)
+                .map(module -> module.isExported(header.packageName()))
+                .orElse(false);
+    }
+
+    private static String simpleName(String name) {
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    private static JsonObject group(String name, String color) {
+        JsonObject group = new JsonObject();
+        group.addProperty("name", name);
+        group.addProperty("color", color);
+        return group;
+    }
+}
@@ -0,0 +1,217 @@
+package org.example;
+
+import java.awt.Color;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Бинарный снимок загруженной и разложенной иерархии в .jcf-index. Строки хранятся один раз
+ * в таблице, узлы и ребра ссылаются на них и друг на друга по номерам, поэтому снимок читается
+ * одним проходом без разбора JSON и без раскладки.
+ * Снимок привязан к пути, размеру и времени изменения исходного файла, к режиму раскладки
+ * и к версии алгоритма раскладки; -Djcf.snapshot=false отключает его.
+ */
+final class HierarchySnapshot {
+    private static final int MAGIC = 0x4A434653; // "JCFS"
+    private static final int VERSION = 2;
+    private static final int CHUNK_SIZE = 4096;
+
+    private HierarchySnapshot() {
+    }
+
+    private static boolean enabled() {
+        return !"false".equals(System.getProperty("jcf.snapshot"));
+    }
+
+    private static Path snapshotPath(Path source) {
+        String key = source.toAbsolutePath().normalize().toString();
+        return HierarchyScanner.INDEX_DIRECTORY.resolve("snapshot-" + Integer.toHexString(key.hashCode()) + ".bin");
+    }
+
+    /**
+     * Снимок есть и сделан с того же файла в том же режиме и той же версией раскладки.
+     */
+    static boolean isCurrent(Path source, boolean laidOut) {
+        Path snapshot = snapshotPath(source);
+        if (!enabled() || !Files.exists(snapshot)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            return in.readInt() == MAGIC
+                    && in.readInt() == VERSION
+                    && in.readUTF().equals(source.toAbsolutePath().normalize().toString())
+                    && in.readLong() == Files.size(source)
+                    && in.readLong() == Files.getLastModifiedTime(source).toMillis()
+                    && in.readBoolean() == laidOut
+                    && in.readInt() == CollectionLayoutCalculator.LAYOUT_VERSION;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Отдает группы и узлы снимка в sink порциями, в том же виде, что и разбор JSON.
+     */
+    static void read(Path source, Consumer<Object[]> sink) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshotPath(source)), 1 << 16))) {
+            // Заголовок уже проверен в isCurrent
+            in.readInt();
+            in.readInt();
+            in.readUTF();
+            in.readLong();
+            in.readLong();
+            in.readBoolean();
+            in.readInt();
+
+            String[] strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = in.readUTF();
+            }
+
+            HierarchyModel.Group[] groups = new HierarchyModel.Group[in.readInt()];
+            for (int i = 0; i < groups.length; i++) {
+                groups[i] = new HierarchyModel.Group(strings[in.readInt()], in.readInt(), in.readInt(),
+                        new Color(in.readInt()));
+            }
+            sink.accept(groups);
+
+            int nodeCount = in.readInt();
+            int edgeCount = in.readInt();
+            int[] edgeFrom = new int[edgeCount];
+            int[] edgeTo = new int[edgeCount];
+            int[] parentCounts = new int[nodeCount];
+            for (int edge = 0; edge < edgeCount; edge++) {
+                edgeFrom[edge] = in.readInt();
+                edgeTo[edge] = in.readInt();
+                parentCounts[edgeTo[edge]]++;
+            }
+            int[] nameIds = new int[nodeCount];
+            int[] groupIds = new int[nodeCount];
+            int[] qualifiedNameIds = new int[nodeCount];
+            int[] xs = new int[nodeCount];
+            int[] ys = new int[nodeCount];
+            boolean[] interfaces = new boolean[nodeCount];
+            for (int id = 0; id < nodeCount; id++) {
+                nameIds[id] = in.readInt();
+                groupIds[id] = in.readInt();
+                qualifiedNameIds[id] = in.readInt();
+                xs[id] = in.readInt();
+                ys[id] = in.readInt();
+                interfaces[id] = in.readBoolean();
+            }
+            List<List<String>> parents = new ArrayList<>(nodeCount);
+            for (int id = 0; id < nodeCount; id++) {
+                parents.add(new ArrayList<>(parentCounts[id]));
+            }
+            for (int edge = 0; edge < edgeCount; edge++) {
+                parents.get(edgeTo[edge]).add(strings[nameIds[edgeFrom[edge]]]);
+            }
+
+            List<Object> chunk = new ArrayList<>(Math.min(nodeCount, CHUNK_SIZE));
+            for (int id = 0; id < nodeCount; id++) {
+                chunk.add(new HierarchyLoader.NodeSpec(strings[nameIds[id]],
+                        qualifiedNameIds[id] >= 0 ? strings[qualifiedNameIds[id]] : null, strings[groupIds[id]],
+                        xs[id], ys[id], interfaces[id], parents.get(id)));
+                if (chunk.size() == CHUNK_SIZE) {
+                    sink.accept(chunk.toArray());
+                    chunk.clear();
+                }
+            }
+            sink.accept(chunk.toArray());
+        }
+    }
+
+    /**
+     * Тело снимка без заголовка. Вызывается в потоке, который владеет моделью (EDT для окна).
+     */
+    static byte[] encode(HierarchyModel model) {
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (HierarchyModel.Group group : model.groups()) {
+            stringId(group.name, stringIds, strings);
+        }
+        for (int id = 0; id < model.nodeCount(); id++) {
+            HierarchyModel.Node node = model.node(id);
+            stringId(node.name, stringIds, strings);
+            stringId(node.group, stringIds, strings);
+            if (node.qualifiedName != null) {
+                stringId(node.qualifiedName, stringIds, strings);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + model.nodeCount() * 48);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(strings.size());
+            for (String string : strings) {
+                out.writeUTF(string);
+            }
+            out.writeInt(model.groups().size());
+            for (HierarchyModel.Group group : model.groups()) {
+                out.writeInt(stringIds.get(group.name));
+                out.writeInt(group.x);
+                out.writeInt(group.y);
+                out.writeInt(group.color.getRGB());
+            }
+            out.writeInt(model.nodeCount());
+            out.writeInt(model.edgeCount());
+            for (int edge = 0; edge < model.edgeCount(); edge++) {
+                out.writeInt(model.edgeFrom(edge));
+                out.writeInt(model.edgeTo(edge));
+            }
+            for (int id = 0; id < model.nodeCount(); id++) {
+                HierarchyModel.Node node = model.node(id);
+                out.writeInt(stringIds.get(node.name));
+                out.writeInt(stringIds.get(node.group));
+                out.writeInt(node.qualifiedName != null ? stringIds.get(node.qualifiedName) : -1);
+                out.writeInt(node.x);
+                out.writeInt(node.y);
+                out.writeBoolean(node.isInterface);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void stringId(String value, Map<String, Integer> stringIds, List<String> strings) {
+        if (stringIds.putIfAbsent(value, strings.size()) == null) {
+            strings.add(value);
+        }
+    }
+
+    static void write(Path source, boolean laidOut, byte[] body) throws IOException {
+        if (!enabled()) {
+            return;
+        }
+        Files.createDirectories(HierarchyScanner.INDEX_DIRECTORY);
+        Path temp = Files.createTempFile(HierarchyScanner.INDEX_DIRECTORY, "snapshot", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(source.toAbsolutePath().normalize().toString());
+            out.writeLong(Files.size(source));
+            out.writeLong(Files.getLastModifiedTime(source).toMillis());
+            out.writeBoolean(laidOut);
+            out.writeInt(CollectionLayoutCalculator.LAYOUT_VERSION);
+            out.write(body);
+        }
+        Files.move(temp, snapshotPath(source), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Снимок - только ускорение: ошибка записи не мешает работе, в следующий раз файл будет разобран заново.
+     */
+    static void writeQuietly(Path source, boolean laidOut, byte[] body) {
+        try {
+            write(source, laidOut, body);
+        } catch (IOException e) {
+            System.err.println("[snapshot] not saved: " + e);
+        }
+    }
+}
@@ -0,0 +1,913 @@
+package org.example;
+
+import org.example.primitive.LongLongHashMap;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Потоковый разбор дампа кучи HPROF: файл не читается целиком, а отображается в память окнами
+ * по {@link #WINDOW} байт. Записи HEAP DUMP SEGMENT независимы, поэтому разбираются параллельно.
+ * <ol>
+ * <li>Последовательно по заголовкам записей верхнего уровня: строки (только смещения), LOAD CLASS, список сегментов.</li>
+ * <li>Параллельно по сегментам: CLASS DUMP, число экземпляров и размер массивов по классам, сырые поля
+ * экземпляров коллекций из {@link #SHAPES}.</li>
+ * <li>Параллельно по сегментам: длины массивов, на которые ссылаются эти коллекции (table, elementData...).</li>
+ * </ol>
+ * Retained здесь - собственная память коллекции: объект, его массив и узлы записей (size * размер узла),
+ * без ключей и значений, как в {@link FootprintAnalyzer}. Точный retained требует дерева доминаторов
+ * всей кучи, а его не построить, не держа граф объектов в памяти.
+ */
+class HprofReader {
+    private static final long WINDOW = 256L << 20;
+    private static final long PROGRESS_STEP = 16L << 20;
+    private static final int RAW_BLOCK = 1 << 20;
+
+    private static final int TAG_STRING = 0x01;
+    private static final int TAG_LOAD_CLASS = 0x02;
+    private static final int TAG_HEAP_DUMP = 0x0C;
+    private static final int TAG_HEAP_DUMP_SEGMENT = 0x1C;
+
+    private static final int ROOT_UNKNOWN = 0xFF;
+    private static final int ROOT_JNI_GLOBAL = 0x01;
+    private static final int ROOT_JNI_LOCAL = 0x02;
+    private static final int ROOT_JAVA_FRAME = 0x03;
+    private static final int ROOT_NATIVE_STACK = 0x04;
+    private static final int ROOT_STICKY_CLASS = 0x05;
+    private static final int ROOT_THREAD_BLOCK = 0x06;
+    private static final int ROOT_MONITOR_USED = 0x07;
+    private static final int ROOT_THREAD_OBJECT = 0x08;
+    private static final int CLASS_DUMP = 0x20;
+    private static final int INSTANCE_DUMP = 0x21;
+    private static final int OBJECT_ARRAY_DUMP = 0x22;
+    private static final int PRIMITIVE_ARRAY_DUMP = 0x23;
+
+    private static final int TYPE_OBJECT = 2;
+    private static final int TYPE_INT = 10;
+    private static final String[] PRIMITIVE_NAMES = {null, null, null, null, "boolean", "char", "float", "double",
+            "byte", "short", "int", "long"};
+    private static final int[] PRIMITIVE_SIZES = {0, 0, 0, 0, 1, 2, 4, 8, 1, 2, 4, 8};
+
+    /** Верхние границы корзин распределения размеров. */
+    static final int[] SIZE_BUCKETS = {0, 1, 4, 16, 64, 256, 1024, 65536, Integer.MAX_VALUE};
+
+    /** Откуда у коллекции размер, емкость и узлы; имена полей - как в OpenJDK 11-21. */
+    static final class Shape {
+        final String sizeField;
+        final String arrayField;
+        final String entryClass;
+        /** Множества на картах: все считается по внутренней карте. */
+        final String delegateField;
+
+        Shape(String sizeField, String arrayField, String entryClass, String delegateField) {
+            this.sizeField = sizeField;
+            this.arrayField = arrayField;
+            this.entryClass = entryClass;
+            this.delegateField = delegateField;
+        }
+    }
+
+    static final Map<String, Shape> SHAPES = new LinkedHashMap<>();
+
+    static {
+        SHAPES.put("java.util.HashMap", new Shape("size", "table", "java.util.HashMap$Node", null));
+        SHAPES.put("java.util.LinkedHashMap", new Shape("size", "table", "java.util.LinkedHashMap$Entry", null));
+        SHAPES.put("java.util.WeakHashMap", new Shape("size", "table", "java.util.WeakHashMap$Entry", null));
+        SHAPES.put("java.util.IdentityHashMap", new Shape("size", "table", null, null));
+        SHAPES.put("java.util.Hashtable", new Shape("count", "table", "java.util.Hashtable$Entry", null));
+        SHAPES.put("java.util.concurrent.ConcurrentHashMap",
+                new Shape("baseCount", "table", "java.util.concurrent.ConcurrentHashMap$Node", null));
+        SHAPES.put("java.util.TreeMap", new Shape("size", null, "java.util.TreeMap$Entry", null));
+        SHAPES.put("java.util.ArrayList", new Shape("size", "elementData", null, null));
+        SHAPES.put("java.util.Vector", new Shape("elementCount", "elementData", null, null));
+        SHAPES.put("java.util.Stack", new Shape("elementCount", "elementData", null, null));
+        SHAPES.put("java.util.ArrayDeque", new Shape(null, "elements", null, null));
+        SHAPES.put("java.util.PriorityQueue", new Shape("size", "queue", null, null));
+        SHAPES.put("java.util.LinkedList", new Shape("size", null, "java.util.LinkedList$Node", null));
+        SHAPES.put("java.util.concurrent.CopyOnWriteArrayList", new Shape(null, "array", null, null));
+        SHAPES.put("java.util.HashSet", new Shape(null, null, null, "map"));
+        SHAPES.put("java.util.LinkedHashSet", new Shape(null, null, null, "map"));
+        SHAPES.put("java.util.TreeSet", new Shape(null, null, null, "m"));
+    }
+
+    /** Итог по одному классу кучи. Для классов без {@link Shape} есть только число и shallow. */
+    static class ClassStats {
+        final String className;
+        long instances;
+        long shallowBytes;
+        long retainedBytes;
+        boolean detailed;
+        final long[] sizeHistogram = new long[SIZE_BUCKETS.length];
+        final SortedMap<Integer, Long> capacities = new TreeMap<>();
+        /** Пустые, но уже с выделенным массивом - например, HashMap после remove с таблицей на 16 слотов. */
+        long emptyWithStorage;
+        long emptyStorageBytes;
+        final SortedMap<Integer, Long> emptyCapacities = new TreeMap<>();
+        /** Слоты массивов сверх size: емкость, за которую платят, но не используют. */
+        long unusedSlots;
+
+        ClassStats(String className) {
+            this.className = className;
+        }
+
+        void addSize(int size) {
+            for (int i = 0; i < SIZE_BUCKETS.length; i++) {
+                if (size <= SIZE_BUCKETS[i]) {
+                    sizeHistogram[i]++;
+                    return;
+                }
+            }
+        }
+    }
+
+    static class Summary {
+        final Path file;
+        final int idSize;
+        /** Дамп не говорит, были ли сжатые указатели; считаем по размеру файла, как это делают анализаторы. */
+        final boolean compressedOops;
+        final Map<String, ClassStats> classes;
+        final int segments;
+        final int threads;
+        final long elapsedNanos;
+
+        Summary(Path file, int idSize, boolean compressedOops, Map<String, ClassStats> classes, int segments,
+                int threads, long elapsedNanos) {
+            this.file = file;
+            this.idSize = idSize;
+            this.compressedOops = compressedOops;
+            this.classes = classes;
+            this.segments = segments;
+            this.threads = threads;
+            this.elapsedNanos = elapsedNanos;
+        }
+    }
+
+    interface Progress {
+        void update(long processedBytes, long totalBytes);
+    }
+
+    private static class ClassDump {
+        final long id;
+        final long superId;
+        final long[] fieldNames;
+        final byte[] fieldTypes;
+
+        ClassDump(long id, long superId, long[] fieldNames, byte[] fieldTypes) {
+            this.id = id;
+            this.superId = superId;
+            this.fieldNames = fieldNames;
+            this.fieldTypes = fieldTypes;
+        }
+    }
+
+    /** Сырые данные экземпляров одного класса: [id][поля] подряд, блоками по RAW_BLOCK. */
+    private static class RawInstances {
+        final List<byte[]> blocks = new ArrayList<>();
+        int used = RAW_BLOCK;
+        int recordLength = -1;
+        long count;
+
+        byte[] reserve(int length) {
+            if (used + length > RAW_BLOCK) {
+                blocks.add(new byte[Math.max(RAW_BLOCK, length)]);
+                used = 0;
+            }
+            return blocks.get(blocks.size() - 1);
+        }
+    }
+
+    /** Что нашел один поток в одном сегменте. */
+    private static class SegmentResult {
+        final List<ClassDump> classDumps = new ArrayList<>();
+        final LongLongHashMap instanceCounts = new LongLongHashMap(1024);
+        final LongLongHashMap arrayCounts = new LongLongHashMap(256);
+        final LongLongHashMap arrayBytes = new LongLongHashMap(256);
+        final Map<Long, RawInstances> raw = new HashMap<>();
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final Progress progress;
+    private final AtomicLong processed = new AtomicLong();
+    private long totalWork;
+    private int idSize;
+    private int referenceSize;
+    private int objectHeaderSize;
+    private int arrayHeaderSize;
+    /** Строка -> смещение << 24 | длина. */
+    private final LongLongHashMap strings = new LongLongHashMap(1 << 16);
+    private final LongLongHashMap classNameIds = new LongLongHashMap(1 << 12);
+    private final List<long[]> segments = new ArrayList<>();
+
+    private HprofReader(Path file, FileChannel channel, Progress progress) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.progress = progress;
+    }
+
+    static Summary read(Path file, Progress progress) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new HprofReader(file, channel, progress).read(start);
+        }
+    }
+
+    private Summary read(long start) throws IOException {
+        readTopLevel();
+        boolean compressedOops = fileSize < 32L << 30;
+        referenceSize = idSize == 4 || compressedOops ? 4 : 8;
+        objectHeaderSize = idSize == 4 ? 8 : compressedOops ? 12 : 16;
+        arrayHeaderSize = idSize == 4 ? 12 : compressedOops ? 16 : 24;
+
+        Map<String, Long> classIds = new HashMap<>();
+        Map<Long, String> classNames = new HashMap<>();
+        List<long[]> loaded = new ArrayList<>();
+        classNameIds.forEach((classId, nameId) -> loaded.add(new long[]{classId, nameId}));
+        for (long[] pair : loaded) {
+            String name = binaryName(string(pair[1]));
+            classNames.put(pair[0], name);
+            classIds.putIfAbsent(name, pair[0]);
+        }
+        Set<Long> interesting = new HashSet<>();
+        for (Map.Entry<Long, String> entry : classNames.entrySet()) {
+            if (SHAPES.containsKey(entry.getValue())) {
+                interesting.add(entry.getKey());
+            }
+        }
+
+        long segmentBytes = 0;
+        for (long[] segment : segments) {
+            segmentBytes += segment[1];
+        }
+        totalWork = 2 * segmentBytes;
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), segments.size()));
+        // Крупные сегменты первыми, чтобы потоки заканчивали примерно одновременно
+        List<long[]> ordered = new ArrayList<>(segments);
+        ordered.sort((a, b) -> Long.compare(b[1], a[1]));
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "hprof-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<SegmentResult> results = runAll(pool, ordered, segment -> scanSegment(segment, interesting));
+            Map<Long, ClassDump> dumps = new HashMap<>();
+            LongLongHashMap instanceCounts = new LongLongHashMap(1 << 12);
+            LongLongHashMap arrayCounts = new LongLongHashMap(1 << 10);
+            LongLongHashMap arrayBytes = new LongLongHashMap(1 << 10);
+            Map<Long, List<RawInstances>> raw = new HashMap<>();
+            for (SegmentResult result : results) {
+                result.classDumps.forEach(dump -> dumps.put(dump.id, dump));
+                result.instanceCounts.forEach(instanceCounts::addTo);
+                result.arrayCounts.forEach(arrayCounts::addTo);
+                result.arrayBytes.forEach(arrayBytes::addTo);
+                result.raw.forEach((classId, instances) ->
+                        raw.computeIfAbsent(classId, k -> new ArrayList<>()).add(instances));
+            }
+
+            Map<String, ClassStats> stats = new HashMap<>();
+            instanceCounts.forEach((classId, count) -> {
+                String name = classNames.getOrDefault(classId, "0x" + Long.toHexString(classId));
+                ClassStats classStats = stats.computeIfAbsent(name, ClassStats::new);
+                classStats.instances += count;
+                classStats.shallowBytes += count * shallowSize(classId, dumps);
+                classStats.retainedBytes = classStats.shallowBytes;
+            });
+            arrayCounts.forEach((classId, count) -> {
+                String name = classId < 0 ? PRIMITIVE_NAMES[(int) -classId] + "[]"
+                        : classNames.getOrDefault(classId, "0x" + Long.toHexString(classId));
+                ClassStats classStats = stats.computeIfAbsent(name, ClassStats::new);
+                classStats.instances += count;
+                classStats.shallowBytes += arrayBytes.get(classId);
+                classStats.retainedBytes = classStats.shallowBytes;
+            });
+
+            List<Decoded> decoded = new ArrayList<>();
+            for (Map.Entry<Long, List<RawInstances>> entry : raw.entrySet()) {
+                String name = classNames.get(entry.getKey());
+                decoded.add(decode(name, SHAPES.get(name), entry.getKey(), entry.getValue(), dumps));
+            }
+            raw.clear();
+            resolveArrays(pool, ordered, decoded);
+            aggregate(decoded, stats, dumps, classIds);
+            return new Summary(file, idSize, compressedOops, stats, segments.size(), threads,
+                    System.nanoTime() - start);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private interface SegmentTask<T> {
+        T run(long[] segment) throws IOException;
+    }
+
+    private static <T> List<T> runAll(ExecutorService pool, List<long[]> segments, SegmentTask<T> task)
+            throws IOException {
+        List<Future<T>> futures = new ArrayList<>();
+        for (long[] segment : segments) {
+            futures.add(pool.submit(() -> task.run(segment)));
+        }
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Heap dump reading interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        return results;
+    }
+
+    private void readTopLevel() throws IOException {
+        MappedInput in = new MappedInput(0);
+        StringBuilder format = new StringBuilder();
+        for (int c = in.u1(); c != 0; c = in.u1()) {
+            format.append((char) c);
+            if (format.length() > 64) {
+                throw new IOException("Not an HPROF file: " + file);
+            }
+        }
+        if (!format.toString().startsWith("JAVA PROFILE")) {
+            throw new IOException("Not an HPROF file: " + file + " (" + format + ")");
+        }
+        idSize = in.u4();
+        if (idSize != 4 && idSize != 8) {
+            throw new IOException("Unsupported identifier size " + idSize);
+        }
+        in.skip(8);
+        while (in.position() < fileSize) {
+            int tag = in.u1();
+            in.skip(4);
+            long length = in.u4() & 0xFFFFFFFFL;
+            long body = in.position();
+            if (body + length > fileSize) {
+                throw new EOFException("Truncated HPROF record 0x" + Integer.toHexString(tag) + " at " + (body - 9));
+            }
+            switch (tag) {
+                case TAG_STRING:
+                    long id = in.id();
+                    strings.put(id, in.position() << 24 | Math.min(length - idSize, (1 << 24) - 1));
+                    break;
+                case TAG_LOAD_CLASS:
+                    in.skip(4);
+                    long classId = in.id();
+                    in.skip(4);
+                    classNameIds.put(classId, in.id());
+                    break;
+                case TAG_HEAP_DUMP:
+                case TAG_HEAP_DUMP_SEGMENT:
+                    segments.add(new long[]{body, length});
+                    break;
+                default:
+                    break;
+            }
+            in.seek(body + length);
+        }
+    }
+
+    private String string(long id) throws IOException {
+        long packed = strings.getOrDefault(id, -1);
+        if (packed < 0) {
+            return "0x" + Long.toHexString(id);
+        }
+        MappedInput in = new MappedInput(packed >>> 24);
+        byte[] bytes = new byte[(int) (packed & ((1 << 24) - 1))];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) in.u1();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** "java/util/HashMap" -> java.util.HashMap, "[Ljava/lang/Object;" -> java.lang.Object[]. */
+    static String binaryName(String hprofName) {
+        String name = hprofName.replace('/', '.');
+        int dimensions = 0;
+        while (dimensions < name.length() && name.charAt(dimensions) == '[') {
+            dimensions++;
+        }
+        if (dimensions == 0) {
+            return name;
+        }
+        String element = name.substring(dimensions);
+        if (element.startsWith("L") && element.endsWith(";")) {
+            element = element.substring(1, element.length() - 1);
+        }
+        StringBuilder result = new StringBuilder(element);
+        for (int i = 0; i < dimensions; i++) {
+            result.append("[]");
+        }
+        return result.toString();
+    }
+
+    private int typeSize(int type) {
+        return type == TYPE_OBJECT ? idSize : PRIMITIVE_SIZES[type];
+    }
+
+    private long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /** Shallow по раскладке HotSpot со сжатыми или обычными указателями, без учета упаковки полей. */
+    private long shallowSize(long classId, Map<Long, ClassDump> dumps) {
+        long size = objectHeaderSize;
+        for (ClassDump dump = dumps.get(classId); dump != null; dump = dumps.get(dump.superId)) {
+            for (byte type : dump.fieldTypes) {
+                size += type == TYPE_OBJECT ? referenceSize : PRIMITIVE_SIZES[type];
+            }
+        }
+        return align(size);
+    }
+
+    private long arrayShallowSize(long length, int elementSize) {
+        return align(arrayHeaderSize + length * elementSize);
+    }
+
+    private SegmentResult scanSegment(long[] segment, Set<Long> interesting) throws IOException {
+        SegmentResult result = new SegmentResult();
+        MappedInput in = new MappedInput(segment[0]);
+        long end = segment[0] + segment[1];
+        long reported = in.position();
+        while (in.position() < end) {
+            if (in.position() - reported >= PROGRESS_STEP) {
+                reported = report(in.position() - reported, reported);
+            }
+            int tag = in.u1();
+            switch (tag) {
+                case CLASS_DUMP:
+                    result.classDumps.add(readClassDump(in));
+                    break;
+                case INSTANCE_DUMP: {
+                    long id = in.id();
+                    in.skip(4);
+                    long classId = in.id();
+                    int length = in.u4();
+                    result.instanceCounts.addTo(classId, 1);
+                    if (interesting.contains(classId)) {
+                        RawInstances instances = result.raw.computeIfAbsent(classId, k -> new RawInstances());
+                        byte[] block = instances.reserve(8 + length);
+                        writeLong(block, instances.used, id);
+                        in.read(block, instances.used + 8, length);
+                        instances.used += 8 + length;
+                        instances.recordLength = 8 + length;
+                        instances.count++;
+                    } else {
+                        in.skip(length);
+                    }
+                    break;
+                }
+                case OBJECT_ARRAY_DUMP: {
+                    in.id();
+                    in.skip(4);
+                    long length = in.u4() & 0xFFFFFFFFL;
+                    long arrayClassId = in.id();
+                    in.skip(length * idSize);
+                    result.arrayCounts.addTo(arrayClassId, 1);
+                    result.arrayBytes.addTo(arrayClassId, arrayShallowSize(length, referenceSize));
+                    break;
+                }
+                case PRIMITIVE_ARRAY_DUMP: {
+                    in.id();
+                    in.skip(4);
+                    long length = in.u4() & 0xFFFFFFFFL;
+                    int type = in.u1();
+                    in.skip(length * PRIMITIVE_SIZES[type]);
+                    result.arrayCounts.addTo(-type, 1);
+                    result.arrayBytes.addTo(-type, arrayShallowSize(length, PRIMITIVE_SIZES[type]));
+                    break;
+                }
+                default:
+                    skipRoot(in, tag);
+            }
+        }
+        report(in.position() - reported, reported);
+        return result;
+    }
+
+    /** Только длины нужных массивов; ключи wanted вставлены заранее, потоки лишь меняют значения. */
+    private Void scanArrays(long[] segment, LongLongHashMap wanted) throws IOException {
+        MappedInput in = new MappedInput(segment[0]);
+        long end = segment[0] + segment[1];
+        long reported = in.position();
+        while (in.position() < end) {
+            if (in.position() - reported >= PROGRESS_STEP) {
+                reported = report(in.position() - reported, reported);
+            }
+            int tag = in.u1();
+            switch (tag) {
+                case CLASS_DUMP:
+                    readClassDump(in);
+                    break;
+                case INSTANCE_DUMP:
+                    in.id();
+                    in.skip(4);
+                    in.id();
+                    in.skip(in.u4() & 0xFFFFFFFFL);
+                    break;
+                case OBJECT_ARRAY_DUMP: {
+                    long id = in.id();
+                    in.skip(4);
+                    long length = in.u4() & 0xFFFFFFFFL;
+                    in.id();
+                    in.skip(length * idSize);
+                    if (wanted.containsKey(id)) {
+                        wanted.put(id, length);
+                    }
+                    break;
+                }
+                case PRIMITIVE_ARRAY_DUMP: {
+                    in.id();
+                    in.skip(4);
+                    long length = in.u4() & 0xFFFFFFFFL;
+                    in.skip(length * PRIMITIVE_SIZES[in.u1()]);
+                    break;
+                }
+                default:
+                    skipRoot(in, tag);
+            }
+        }
+        report(in.position() - reported, reported);
+        return null;
+    }
+
+    private long report(long delta, long position) throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Heap dump reading interrupted");
+        }
+        long done = processed.addAndGet(delta);
+        if (progress != null) {
+            progress.update(done, totalWork);
+        }
+        return position + delta;
+    }
+
+    private void skipRoot(MappedInput in, int tag) throws IOException {
+        switch (tag) {
+            case ROOT_UNKNOWN:
+            case ROOT_STICKY_CLASS:
+            case ROOT_MONITOR_USED:
+                in.skip(idSize);
+                break;
+            case ROOT_JNI_GLOBAL:
+                in.skip(2L * idSize);
+                break;
+            case ROOT_NATIVE_STACK:
+            case ROOT_THREAD_BLOCK:
+                in.skip(idSize + 4);
+                break;
+            case ROOT_JNI_LOCAL:
+            case ROOT_JAVA_FRAME:
+            case ROOT_THREAD_OBJECT:
+                in.skip(idSize + 8);
+                break;
+            default:
+                throw new IOException("Unknown heap dump record 0x" + Integer.toHexString(tag)
+                        + " at offset " + (in.position() - 1));
+        }
+    }
+
+    private ClassDump readClassDump(MappedInput in) throws IOException {
+        long id = in.id();
+        in.skip(4);
+        long superId = in.id();
+        // загрузчик, подписи, домен защиты, два зарезервированных
+        in.skip(5L * idSize);
+        in.skip(4);
+        int constants = in.u2();
+        for (int i = 0; i < constants; i++) {
+            in.skip(2);
+            in.skip(typeSize(in.u1()));
+        }
+        int statics = in.u2();
+        for (int i = 0; i < statics; i++) {
+            in.skip(idSize);
+            in.skip(typeSize(in.u1()));
+        }
+        int fields = in.u2();
+        long[] names = new long[fields];
+        byte[] types = new byte[fields];
+        for (int i = 0; i < fields; i++) {
+            names[i] = in.id();
+            types[i] = (byte) in.u1();
+        }
+        return new ClassDump(id, superId, names, types);
+    }
+
+    private static void writeLong(byte[] block, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            block[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private long readValue(byte[] block, int offset, int size) {
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value = value << 8 | (block[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /** Разобранные экземпляры одного класса коллекции. */
+    private static class Decoded {
+        final String className;
+        final Shape shape;
+        final long classId;
+        int count;
+        long[] ids;
+        int[] sizes;
+        long[] arrays;
+        long[] delegates;
+        int[] heads;
+        int[] tails;
+        /** Поля не нашлись (другая версия JDK) - только число экземпляров. */
+        boolean incomplete;
+
+        Decoded(String className, Shape shape, long classId) {
+            this.className = className;
+            this.shape = shape;
+            this.classId = classId;
+        }
+    }
+
+    /**
+     * Смещение и размер поля в данных экземпляра: сначала поля самого класса, затем предков.
+     * {-1, 0}, если поля нет.
+     */
+    private int[] field(long classId, String fieldName, Map<Long, ClassDump> dumps) throws IOException {
+        int offset = 0;
+        for (ClassDump dump = dumps.get(classId); dump != null; dump = dumps.get(dump.superId)) {
+            for (int i = 0; i < dump.fieldNames.length; i++) {
+                if (string(dump.fieldNames[i]).equals(fieldName)) {
+                    return new int[]{offset, typeSize(dump.fieldTypes[i])};
+                }
+                offset += typeSize(dump.fieldTypes[i]);
+            }
+        }
+        return new int[]{-1, 0};
+    }
+
+    private int[] field(long classId, String fieldName, Map<Long, ClassDump> dumps, boolean wanted)
+            throws IOException {
+        return wanted && fieldName != null ? field(classId, fieldName, dumps) : new int[]{-1, 0};
+    }
+
+    private Decoded decode(String name, Shape shape, long classId, List<RawInstances> parts,
+                           Map<Long, ClassDump> dumps) throws IOException {
+        Decoded decoded = new Decoded(name, shape, classId);
+        long total = 0;
+        for (RawInstances part : parts) {
+            total += part.count;
+        }
+        decoded.count = (int) total;
+        decoded.ids = new long[decoded.count];
+        decoded.sizes = new int[decoded.count];
+        decoded.arrays = new long[decoded.count];
+        decoded.delegates = new long[decoded.count];
+        boolean deque = "java.util.ArrayDeque".equals(name);
+        if (deque) {
+            decoded.heads = new int[decoded.count];
+            decoded.tails = new int[decoded.count];
+        }
+        // baseCount у ConcurrentHashMap - long, остальные счетчики - int
+        int[] size = field(classId, shape.sizeField, dumps, true);
+        int[] array = field(classId, shape.arrayField, dumps, true);
+        int[] delegate = field(classId, shape.delegateField, dumps, true);
+        int[] head = field(classId, "head", dumps, deque);
+        int[] tail = field(classId, "tail", dumps, deque);
+        decoded.incomplete = shape.sizeField != null && size[0] < 0 || shape.arrayField != null && array[0] < 0
+                || shape.delegateField != null && delegate[0] < 0 || deque && (head[0] < 0 || tail[0] < 0);
+
+        int index = 0;
+        for (RawInstances part : parts) {
+            for (int b = 0; b < part.blocks.size(); b++) {
+                byte[] block = part.blocks.get(b);
+                // Предыдущий блок закрыт, когда следующая запись в него не влезла, так что хвост меньше записи
+                int limit = b == part.blocks.size() - 1 ? part.used : block.length;
+                for (int at = 0; at + part.recordLength <= limit && index < decoded.count; at += part.recordLength) {
+                    int data = at + 8;
+                    decoded.ids[index] = readValue(block, at, 8);
+                    if (!decoded.incomplete) {
+                        if (size[0] >= 0) {
+                            decoded.sizes[index] = (int) Math.min(Integer.MAX_VALUE,
+                                    readValue(block, data + size[0], size[1]));
+                        }
+                        if (array[0] >= 0) {
+                            decoded.arrays[index] = readValue(block, data + array[0], array[1]);
+                        }
+                        if (delegate[0] >= 0) {
+                            decoded.delegates[index] = readValue(block, data + delegate[0], delegate[1]);
+                        }
+                        if (deque) {
+                            decoded.heads[index] = (int) readValue(block, data + head[0], head[1]);
+                            decoded.tails[index] = (int) readValue(block, data + tail[0], tail[1]);
+                        }
+                    }
+                    index++;
+                }
+            }
+        }
+        return decoded;
+    }
+
+    /** Третий проход: длины массивов table/elementData, на которые ссылаются разобранные коллекции. */
+    private void resolveArrays(ExecutorService pool, List<long[]> ordered, List<Decoded> decoded) throws IOException {
+        int expected = 0;
+        for (Decoded d : decoded) {
+            expected += d.count;
+        }
+        LongLongHashMap wanted = new LongLongHashMap(Math.max(16, expected));
+        for (Decoded d : decoded) {
+            for (int i = 0; i < d.count; i++) {
+                if (d.arrays[i] != 0) {
+                    wanted.put(d.arrays[i], -1);
+                }
+            }
+        }
+        if (wanted.size() > 0) {
+            runAll(pool, ordered, segment -> scanArrays(segment, wanted));
+        } else {
+            processed.addAndGet(totalWork / 2);
+        }
+        for (Decoded d : decoded) {
+            for (int i = 0; i < d.count; i++) {
+                // Дальше в arrays лежит длина массива: -1, если массив не найден или ссылки нет
+                d.arrays[i] = d.arrays[i] == 0 ? -1 : wanted.getOrDefault(d.arrays[i], -1);
+            }
+        }
+    }
+
+    private void aggregate(List<Decoded> decoded, Map<String, ClassStats> stats, Map<Long, ClassDump> dumps,
+                           Map<String, Long> classIds) {
+        // Собственные размер, емкость и retained карт - для множеств, которые на них ссылаются
+        LongLongHashMap delegateIds = new LongLongHashMap(1024);
+        for (Decoded d : decoded) {
+            if (d.shape.delegateField != null) {
+                for (int i = 0; i < d.count; i++) {
+                    if (d.delegates[i] != 0) {
+                        delegateIds.put(d.delegates[i], -1);
+                    }
+                }
+            }
+        }
+        List<long[]> delegateValues = new ArrayList<>();
+        for (Decoded d : decoded) {
+            if (d.shape.delegateField != null || d.incomplete) {
+                continue;
+            }
+            ClassStats classStats = stats.computeIfAbsent(d.className, ClassStats::new);
+            classStats.detailed = true;
+            classStats.retainedBytes = 0;
+            long shallow = shallowSize(d.classId, dumps);
+            Long entryClassId = d.shape.entryClass != null ? classIds.get(d.shape.entryClass) : null;
+            long entryShallow = entryClassId != null ? shallowSize(entryClassId, dumps) : 0;
+            for (int i = 0; i < d.count; i++) {
+                long arrayLength = d.arrays[i];
+                int size = d.sizes[i];
+                if ("java.util.ArrayDeque".equals(d.className)) {
+                    size = arrayLength > 0 ? (int) Math.floorMod(d.tails[i] - d.heads[i], arrayLength) : 0;
+                } else if ("java.util.concurrent.CopyOnWriteArrayList".equals(d.className)) {
+                    size = (int) Math.max(0, arrayLength);
+                }
+                int capacity = (int) Math.max(0, "java.util.IdentityHashMap".equals(d.className)
+                        ? arrayLength / 2 : arrayLength);
+                long arrayBytes = arrayLength >= 0 ? arrayShallowSize(arrayLength, referenceSize) : 0;
+                long retained = shallow + arrayBytes + (long) size * entryShallow;
+                record(classStats, size, capacity, arrayLength >= 0, arrayBytes, retained);
+                if (delegateIds.containsKey(d.ids[i])) {
+                    delegateIds.put(d.ids[i], delegateValues.size());
+                    delegateValues.add(new long[]{size, capacity, arrayLength >= 0 ? 1 : 0, arrayBytes, retained});
+                }
+            }
+        }
+        for (Decoded d : decoded) {
+            if (d.shape.delegateField == null || d.incomplete) {
+                continue;
+            }
+            ClassStats classStats = stats.computeIfAbsent(d.className, ClassStats::new);
+            classStats.detailed = true;
+            classStats.retainedBytes = 0;
+            long shallow = shallowSize(d.classId, dumps);
+            for (int i = 0; i < d.count; i++) {
+                long index = delegateIds.getOrDefault(d.delegates[i], -1);
+                if (index < 0) {
+                    record(classStats, 0, 0, false, 0, shallow);
+                    continue;
+                }
+                long[] map = delegateValues.get((int) index);
+                record(classStats, (int) map[0], (int) map[1], map[2] != 0, map[3], shallow + map[4]);
+            }
+        }
+    }
+
+    private static void record(ClassStats stats, int size, int capacity, boolean hasArray, long arrayBytes,
+                               long retained) {
+        stats.retainedBytes += retained;
+        stats.addSize(size);
+        if (hasArray) {
+            stats.capacities.merge(capacity, 1L, Long::sum);
+            stats.unusedSlots += Math.max(0, capacity - size);
+            if (size == 0 && capacity > 0) {
+                stats.emptyWithStorage++;
+                stats.emptyStorageBytes += arrayBytes;
+                stats.emptyCapacities.merge(capacity, 1L, Long::sum);
+            }
+        }
+    }
+
+    /**
+     * Чтение из отображенного в память окна; окно сдвигается, когда чтение выходит за его край.
+     * У каждого потока свое: MappedByteBuffer хранит позицию и не потокобезопасен.
+     */
+    private final class MappedInput {
+        private MappedByteBuffer buffer;
+        private long base;
+        private long position;
+
+        MappedInput(long position) throws IOException {
+            this.position = position;
+            map(position);
+        }
+
+        private void map(long at) throws IOException {
+            if (at >= fileSize) {
+                throw new EOFException("Unexpected end of " + file + " at " + at);
+            }
+            base = at;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, at, Math.min(WINDOW, fileSize - at));
+        }
+
+        private int offset(int length) throws IOException {
+            if (position < base || position + length > base + buffer.limit()) {
+                map(position);
+                if (position + length > base + buffer.limit()) {
+                    throw new EOFException("Unexpected end of " + file + " at " + position);
+                }
+            }
+            int offset = (int) (position - base);
+            position += length;
+            return offset;
+        }
+
+        long position() {
+            return position;
+        }
+
+        void seek(long to) {
+            position = to;
+        }
+
+        void skip(long length) {
+            position += length;
+        }
+
+        int u1() throws IOException {
+            return buffer.get(offset(1)) & 0xFF;
+        }
+
+        int u2() throws IOException {
+            return buffer.getShort(offset(2)) & 0xFFFF;
+        }
+
+        int u4() throws IOException {
+            return buffer.getInt(offset(4));
+        }
+
+        long id() throws IOException {
+            return idSize == 4 ? buffer.getInt(offset(4)) & 0xFFFFFFFFL : buffer.getLong(offset(8));
+        }
+
+        void read(byte[] target, int at, int length) throws IOException {
+            for (int done = 0; done < length; ) {
+                if (position < base || position >= base + buffer.limit()) {
+                    map(position);
+                }
+                int chunk = (int) Math.min(length - done, base + buffer.limit() - position);
+                // Абсолютный get(int, byte[], int, int) есть только с Java 13
+                ByteBuffer slice = buffer.duplicate();
+                slice.position((int) (position - base));
+                slice.get(target, at + done, chunk);
+                position += chunk;
+                done += chunk;
+            }
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package org.example;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Окно внутреннего устройства: нагрузка на настоящий экземпляр и его состояние по кадрам.
+ * Для хэш-таблиц главное - переключатель качества hashCode: видно, как цепочки растут и превращаются в деревья.
+ */
+class InternalsDialog extends JDialog {
+    /** Подписи скоростей и операций в секунду; 0 - без ограничения. */
+    private static final Map<String, Integer> SPEEDS = new LinkedHashMap<>();
+
+    static {
+        SPEEDS.put("2 оп/с", 2);
+        SPEEDS.put("20 оп/с", 20);
+        SPEEDS.put("200 оп/с", 200);
+        SPEEDS.put("20 000 оп/с", 20_000);
+        SPEEDS.put("без ограничения", 0);
+    }
+
+    private static final Color EMPTY = new Color(236, 236, 236);
+    private static final Color[] CHAIN_COLORS = {
+            new Color(0x8BC34A), new Color(0xCDDC39), new Color(0xFFC107), new Color(0xFF9800), new Color(0xF44336)
+    };
+    private static final Color TREE = new Color(0x7B1FA2);
+    private static final Color FILLED = new Color(0x1F77B4);
+
+    private final JComboBox<String> implementation = new JComboBox<>(
+            InternalsRunner.SCENARIOS.keySet().toArray(new String[0]));
+    private final JComboBox<InternalsRunner.KeyQuality> keyQuality =
+            new JComboBox<>(InternalsRunner.KeyQuality.values());
+    private final JSpinner size = new JSpinner(new SpinnerNumberModel(100, 1, 2_000_000, 100));
+    private final JComboBox<String> speed = new JComboBox<>(SPEEDS.keySet().toArray(new String[0]));
+    private final JButton startButton = new JButton("Запустить");
+    private final JLabel summary = new JLabel(" ");
+    private final JLabel status = new JLabel(" ");
+    private final InternalsView view = new InternalsView();
+    private final InternalsRunner runner = new InternalsRunner();
+    private final Timer frames = new Timer(1000 / InternalsRunner.FRAMES_PER_SECOND, e -> showLatest());
+
+    /**
+     * @param preselected имена узлов, выделенных на схеме; первый разбираемый становится начальным выбором
+     */
+    InternalsDialog(Window owner, Collection<String> preselected) {
+        super(owner, "Внутреннее устройство", ModalityType.MODELESS);
+        for (String name : preselected) {
+            if (InternalsRunner.SCENARIOS.containsKey(ClassInfo.rawName(name))) {
+                implementation.setSelectedItem(ClassInfo.rawName(name));
+                break;
+            }
+        }
+        speed.setSelectedItem("20 оп/с");
+        implementation.addActionListener(e -> updateControls());
+        startButton.addActionListener(e -> toggleRun());
+        updateControls();
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(implementation);
+        controls.add(keyQuality);
+        controls.add(new JLabel("элементов"));
+        controls.add(size);
+        controls.add(new JLabel("скорость"));
+        controls.add(speed);
+        controls.add(startButton);
+
+        JPanel south = new JPanel(new GridLayout(2, 1));
+        south.add(summary);
+        south.add(status);
+
+        setLayout(new BorderLayout());
+        add(controls, BorderLayout.NORTH);
+        add(view, BorderLayout.CENTER);
+        add(south, BorderLayout.SOUTH);
+        setSize(1000, 700);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+    }
+
+    @Override
+    public void dispose() {
+        runner.stop();
+        frames.stop();
+        super.dispose();
+    }
+
+    private void updateControls() {
+        String name = (String) implementation.getSelectedItem();
+        keyQuality.setEnabled(name != null && name.contains("Hash"));
+    }
+
+    private void toggleRun() {
+        if (runner.isRunning()) {
+            runner.stop();
+            frames.stop();
+            startButton.setText("Запустить");
+            return;
+        }
+        view.setFrame(null);
+        runner.start((String) implementation.getSelectedItem(), new InternalsRunner.Settings(
+                (Integer) size.getValue(), (InternalsRunner.KeyQuality) keyQuality.getSelectedItem(),
+                SPEEDS.get((String) speed.getSelectedItem())));
+        startButton.setText("Остановить");
+        frames.start();
+    }
+
+    /** Кадры, пришедшие между тиками таймера, уже слиты раннером: берем только последний. */
+    private void showLatest() {
+        Throwable failure = runner.failure();
+        if (failure != null) {
+            runner.stop();
+            frames.stop();
+            startButton.setText("Запустить");
+            status.setText("Ошибка: " + failure + ". Запустите через java -jar или с"
+                    + " --add-opens java.base/java.util=ALL-UNNAMED.");
+            return;
+        }
+        InternalsRunner.Frame frame = runner.poll();
+        if (frame == null) {
+            return;
+        }
+        view.setFrame(frame);
+        summary.setText(frame.summary);
+        status.setText(String.format(Locale.ROOT, "операций %s, %s оп/с, в кадре %s оп., снимок %s",
+                ComparisonDialog.formatCount(frame.operations), ComparisonDialog.formatCount(frame.opsPerSecond),
+                ComparisonDialog.formatCount(frame.coalesced), LatencyHistogram.formatNanos(frame.captureNanos)));
+    }
+
+    /**
+     * Рисует кадр: сетку корзин или слотов, историю емкостей, для PriorityQueue - верх кучи деревом.
+     */
+    private static class InternalsView extends JComponent {
+        private static final int MARGIN = 16;
+        private InternalsRunner.Frame frame;
+
+        InternalsView() {
+            setPreferredSize(new Dimension(960, 560));
+        }
+
+        void setFrame(InternalsRunner.Frame frame) {
+            this.frame = frame;
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            Graphics2D g2 = (Graphics2D) g;
+            g2.setColor(Color.WHITE);
+            g2.fillRect(0, 0, getWidth(), getHeight());
+            if (frame == null) {
+                return;
+            }
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setFont(SceneRenderer.NODE_FONT);
+            int width = getWidth() - 2 * MARGIN;
+            int historyHeight = frame.kind == InternalsRunner.Kind.BUCKETS ? 0 : 120;
+            int heapHeight = frame.kind == InternalsRunner.Kind.HEAP ? 200 : 0;
+            int y = MARGIN;
+            if (heapHeight > 0) {
+                paintHeap(g2, new Rectangle(MARGIN, y, width, heapHeight));
+                y += heapHeight + MARGIN;
+            }
+            int legendHeight = 20;
+            Rectangle grid = new Rectangle(MARGIN, y, width,
+                    getHeight() - y - historyHeight - legendHeight - 2 * MARGIN);
+            paintCells(g2, grid);
+            paintLegend(g2, MARGIN, grid.y + grid.height + 14);
+            if (historyHeight > 0) {
+                paintHistory(g2, new Rectangle(MARGIN, getHeight() - historyHeight - MARGIN, width, historyHeight));
+            }
+        }
+
+        /** Квадратные ячейки построчно; размер подбирается так, чтобы все поместились. */
+        private void paintCells(Graphics2D g2, Rectangle area) {
+            int count = frame.cells.length;
+            if (count == 0 || area.width <= 0 || area.height <= 0) {
+                return;
+            }
+            int cell = Math.max(2, (int) Math.floor(Math.sqrt((double) area.width * area.height / count)));
+            while (cell > 2 && (long) (area.width / cell) * (area.height / cell) < count) {
+                cell--;
+            }
+            int columns = Math.max(1, area.width / cell);
+            int gap = cell >= 8 ? 1 : 0;
+            for (int i = 0; i < count; i++) {
+                int x = area.x + (i % columns) * cell;
+                int y = area.y + (i / columns) * cell;
+                g2.setColor(colorOf(frame.cells[i]));
+                g2.fillRect(x, y, cell - gap, cell - gap);
+                if (cell >= 18 && frame.kind == InternalsRunner.Kind.BUCKETS && frame.cells[i] != 0) {
+                    g2.setColor(Color.WHITE);
+                    g2.drawString(String.valueOf(Math.abs(frame.cells[i])), x + 3, y + cell - 5);
+                }
+            }
+            if (frame.kind == InternalsRunner.Kind.RING && frame.capacity > 0) {
+                markSlot(g2, area, columns, cell, frame.head, new Color(0x2CA02C), "head");
+                markSlot(g2, area, columns, cell, frame.tail, new Color(0xD62728), "tail");
+            }
+        }
+
+        private void markSlot(Graphics2D g2, Rectangle area, int columns, int cell, int slot, Color color,
+                              String label) {
+            int index = slot / frame.slotsPerCell;
+            int x = area.x + (index % columns) * cell;
+            int y = area.y + (index / columns) * cell;
+            g2.setColor(color);
+            g2.setStroke(new BasicStroke(2f));
+            g2.drawRect(x - 1, y - 1, cell, cell);
+            g2.drawString(label, x, y - 3);
+        }
+
+        private Color colorOf(int value) {
+            if (frame.kind != InternalsRunner.Kind.BUCKETS) {
+                if (value == 0) {
+                    return EMPTY;
+                }
+                // Частично занятая сводная ячейка светлее
+                float alpha = 0.35f + 0.65f * value / 100f;
+                return new Color(FILLED.getRed(), FILLED.getGreen(), FILLED.getBlue(), Math.round(alpha * 255));
+            }
+            if (value < 0) {
+                return TREE;
+            }
+            if (value == 0) {
+                return EMPTY;
+            }
+            int index = value == 1 ? 0 : value == 2 ? 1 : value <= 4 ? 2 : value < InternalsRunner.TREEIFY_THRESHOLD ? 3 : 4;
+            return CHAIN_COLORS[index];
+        }
+
+        private void paintLegend(Graphics2D g2, int x, int y) {
+            String cells = frame.slotsPerCell > 1 ? " (в ячейке " + frame.slotsPerCell + " слотов)" : "";
+            if (frame.kind != InternalsRunner.Kind.BUCKETS) {
+                g2.setColor(Color.DARK_GRAY);
+                g2.drawString("занятые слоты массива синим, пустые серым" + cells, x, y);
+                return;
+            }
+            String[] labels = {"пусто", "1", "2", "3-4", "5-7", "8+ цепочка", "дерево"};
+            Color[] colors = {EMPTY, CHAIN_COLORS[0], CHAIN_COLORS[1], CHAIN_COLORS[2], CHAIN_COLORS[3],
+                    CHAIN_COLORS[4], TREE};
+            FontMetrics metrics = g2.getFontMetrics();
+            for (int i = 0; i < labels.length; i++) {
+                g2.setColor(colors[i]);
+                g2.fillRect(x, y - 10, 12, 12);
+                g2.setColor(Color.DARK_GRAY);
+                g2.drawString(labels[i], x + 16, y);
+                x += 16 + metrics.stringWidth(labels[i]) + 14;
+            }
+            g2.drawString("длина цепочки в корзине" + (frame.slotsPerCell > 1
+                    ? " (в ячейке - самая длинная из " + frame.slotsPerCell + " корзин)" : ""), x, y);
+        }
+
+        /** Полосы емкостей по порядку роста: видно шаг роста массива (x1.5 у ArrayList, x2 у ArrayDeque). */
+        private void paintHistory(Graphics2D g2, Rectangle area) {
+            List<Integer> history = frame.capacityHistory;
+            if (history.isEmpty()) {
+                return;
+            }
+            g2.setColor(Color.DARK_GRAY);
+            g2.drawString("емкость массива по снимкам:", area.x, area.y + 10);
+            int max = 1;
+            for (int capacity : history) {
+                max = Math.max(max, capacity);
+            }
+            int rows = Math.min(history.size(), 8);
+            int rowHeight = Math.max(6, (area.height - 16) / rows);
+            for (int i = 0; i < rows; i++) {
+                int capacity = history.get(history.size() - rows + i);
+                int y = area.y + 16 + i * rowHeight;
+                int barWidth = (int) Math.max(1, (long) (area.width - 140) * capacity / max);
+                g2.setColor(i == rows - 1 ? FILLED : new Color(0xAEC7E8));
+                g2.fillRect(area.x + 140, y, barWidth, rowHeight - 3);
+                g2.setColor(Color.DARK_GRAY);
+                int previous = history.size() - rows + i - 1;
+                String growth = previous >= 0 && history.get(previous) > 0
+                        ? String.format(Locale.ROOT, " (x%.2f)", (double) capacity / history.get(previous)) : "";
+                g2.drawString(capacity + growth, area.x, y + rowHeight - 4);
+            }
+        }
+
+        /** Верхние уровни кучи: queue[i] - родитель queue[2i+1] и queue[2i+2]. */
+        private void paintHeap(Graphics2D g2, Rectangle area) {
+            int[] heap = frame.heap;
+            int levels = 32 - Integer.numberOfLeadingZeros(heap.length);
+            if (levels == 0) {
+                return;
+            }
+            int levelHeight = area.height / levels;
+            int radius = Math.min(14, levelHeight / 2 - 2);
+            for (int i = 0; i < heap.length; i++) {
+                Point center = heapPosition(i, area, levelHeight);
+                if (i > 0) {
+                    Point parent = heapPosition((i - 1) / 2, area, levelHeight);
+                    g2.setColor(Color.GRAY);
+                    g2.setStroke(new BasicStroke(1f));
+                    g2.drawLine(parent.x, parent.y, center.x, center.y);
+                }
+            }
+            FontMetrics metrics = g2.getFontMetrics();
+            for (int i = 0; i < heap.length; i++) {
+                Point center = heapPosition(i, area, levelHeight);
+                g2.setColor(i == 0 ? new Color(0x2CA02C) : FILLED);
+                g2.fillOval(center.x - radius, center.y - radius, 2 * radius, 2 * radius);
+                g2.setColor(Color.WHITE);
+                String value = String.valueOf(heap[i]);
+                g2.drawString(value, center.x - metrics.stringWidth(value) / 2, center.y + metrics.getAscent() / 2 - 1);
+            }
+        }
+
+        private static Point heapPosition(int index, Rectangle area, int levelHeight) {
+            int level = 31 - Integer.numberOfLeadingZeros(index + 1);
+            int position = index + 1 - (1 << level);
+            int slots = 1 << level;
+            return new Point(area.x + (int) ((position + 0.5) * area.width / slots),
+                    area.y + level * levelHeight + levelHeight / 2);
+        }
+    }
+}
@@ -0,0 +1,606 @@
+package org.example;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Нагрузка на настоящий экземпляр коллекции с чтением ее внутреннего состояния рефлексией:
+ * корзины и деревья HashMap, рост elementData у ArrayList, head и tail у ArrayDeque, куча PriorityQueue.
+ * Снимки делает поток нагрузки между операциями (коллекции не потокобезопасны), но не чаще
+ * {@link #FRAMES_PER_SECOND} раз в секунду и не дольше ~10% времени нагрузки: при миллионах операций
+ * в секунду все изменения между двумя снимками сливаются в один кадр. Окно забирает только последний кадр.
+ * Для доступа к полям java.util нужен --add-opens java.base/java.util=ALL-UNNAMED (прописан в манифесте jar).
+ */
+class InternalsRunner {
+    static final int FRAMES_PER_SECOND = 30;
+    /** Больше ячеек не рисуется: соседние корзины и слоты сводятся в одну. */
+    static final int MAX_CELLS = 4096;
+    /** Столько верхних уровней кучи PriorityQueue рисуется деревом. */
+    static final int HEAP_LEVELS = 5;
+    /** С этой длины цепочка HashMap превращается в дерево (TREEIFY_THRESHOLD). */
+    static final int TREEIFY_THRESHOLD = 8;
+    /** Столько последних емкостей помнит нагрузка. */
+    static final int CAPACITY_HISTORY = 24;
+    /** Без ограничения скорости часы и прерывание проверяются раз в столько операций. */
+    private static final int CLOCK_CHECK_MASK = 1023;
+    /** Снимок занимает не больше 1/(1+N) времени нагрузки. */
+    private static final int CAPTURE_BUDGET_RATIO = 9;
+
+    /** Реализации с разбором внутренностей; имена совпадают с узлами иерархии без параметров типа. */
+    static final Map<String, Factory> SCENARIOS = new LinkedHashMap<>();
+
+    static {
+        SCENARIOS.put("HashMap", settings -> new HashMapWorkload(new HashMap<>(), settings));
+        SCENARIOS.put("LinkedHashMap", settings -> new HashMapWorkload(new LinkedHashMap<>(), settings));
+        SCENARIOS.put("HashSet", HashSetWorkload::new);
+        SCENARIOS.put("ArrayList", ArrayListWorkload::new);
+        SCENARIOS.put("ArrayDeque", ArrayDequeWorkload::new);
+        SCENARIOS.put("PriorityQueue", PriorityQueueWorkload::new);
+    }
+
+    /** Поля java.util ищутся при создании нагрузки, уже в ее потоке: без --add-opens ошибка показывается в окне. */
+    interface Factory {
+        Workload create(Settings settings) throws ReflectiveOperationException;
+    }
+
+    enum Kind {
+        BUCKETS, ARRAY, RING, HEAP
+    }
+
+    /** Качество hashCode ключей хэш-таблиц - главное, что показывает окно. */
+    enum KeyQuality {
+        GOOD("хороший hashCode"),
+        SIXTEEN_VALUES("hashCode из 16 значений"),
+        CONSTANT_COMPARABLE("одинаковый hashCode, Comparable"),
+        CONSTANT("одинаковый hashCode, не Comparable");
+
+        private final String title;
+
+        KeyQuality(String title) {
+            this.title = title;
+        }
+
+        @Override
+        public String toString() {
+            return title;
+        }
+    }
+
+    static class Settings {
+        /** Сколько элементов держит нагрузка: сначала рост до этого размера, затем скользящее окно. */
+        final int size;
+        final KeyQuality keyQuality;
+        /** Операций в секунду; 0 - без ограничения. */
+        final int opsPerSecond;
+
+        Settings(int size, KeyQuality keyQuality, int opsPerSecond) {
+            this.size = size;
+            this.keyQuality = keyQuality;
+            this.opsPerSecond = opsPerSecond;
+        }
+    }
+
+    /** Ключ с управляемым hashCode; equals по значению, как у нормального ключа. */
+    static class Key {
+        final int value;
+        private final int hash;
+
+        Key(int value, KeyQuality quality) {
+            this.value = value;
+            this.hash = quality == KeyQuality.GOOD ? Integer.hashCode(value)
+                    : quality == KeyQuality.SIXTEEN_VALUES ? (value & 15) * 31 : 42;
+        }
+
+        static Key of(int value, KeyQuality quality) {
+            return quality == KeyQuality.CONSTANT_COMPARABLE ? new ComparableKey(value, quality) : new Key(value, quality);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).value == value;
+        }
+
+        @Override
+        public String toString() {
+            return "Key" + value;
+        }
+    }
+
+    static class ComparableKey extends Key implements Comparable<ComparableKey> {
+        ComparableKey(int value, KeyQuality quality) {
+            super(value, quality);
+        }
+
+        @Override
+        public int compareTo(ComparableKey other) {
+            return Integer.compare(value, other.value);
+        }
+    }
+
+    /**
+     * Состояние коллекции в момент снимка. Смысл {@link #cells} зависит от вида:
+     * для корзин - длина цепочки (отрицательная, если корзина - дерево), для массивов - процент занятых слотов.
+     * Если слотов больше {@link #MAX_CELLS}, в ячейке сведено {@link #slotsPerCell} соседних.
+     */
+    static class Frame {
+        final String implementation;
+        final Kind kind;
+        long operations;
+        /** Операций, слитых в этот кадр с прошлого. */
+        long coalesced;
+        long captureNanos;
+        double opsPerSecond;
+        int size;
+        int capacity;
+        int[] cells = new int[0];
+        int slotsPerCell = 1;
+        int head = -1;
+        int tail = -1;
+        int[] heap = new int[0];
+        /** Последние емкости, которые встречались в снимках, по порядку. */
+        List<Integer> capacityHistory = new ArrayList<>();
+        String summary = "";
+
+        Frame(String implementation, Kind kind) {
+            this.implementation = implementation;
+            this.kind = kind;
+        }
+    }
+
+    /** Одна реализация под нагрузкой: операция и снимок ее внутреннего состояния. */
+    abstract static class Workload {
+        final Settings settings;
+        private final List<Integer> capacityHistory = new ArrayList<>();
+        private int historyGeneration;
+
+        Workload(Settings settings) {
+            this.settings = settings;
+        }
+
+        abstract String name();
+
+        abstract void step(long i);
+
+        abstract Frame capture() throws ReflectiveOperationException;
+
+        /** Номер экземпляра, если нагрузка пересоздает коллекцию: история емкостей начинается заново. */
+        int generation() {
+            return 0;
+        }
+
+        void observeCapacity(Frame frame) {
+            if (generation() != historyGeneration) {
+                historyGeneration = generation();
+                capacityHistory.clear();
+            }
+            if (capacityHistory.isEmpty() || capacityHistory.get(capacityHistory.size() - 1) != frame.capacity) {
+                if (capacityHistory.size() == CAPACITY_HISTORY) {
+                    capacityHistory.remove(0);
+                }
+                capacityHistory.add(frame.capacity);
+            }
+            frame.capacityHistory = new ArrayList<>(capacityHistory);
+        }
+    }
+
+    /** Свой для каждого запуска: запоздалый кадр остановленной нагрузки не попадет в окно. */
+    private volatile AtomicReference<Frame> latest = new AtomicReference<>();
+    private volatile Throwable failure;
+    private Thread thread;
+
+    /**
+     * Запускает нагрузку в отдельном потоке; предыдущая останавливается.
+     */
+    void start(String implementation, Settings settings) {
+        stop();
+        Factory factory = SCENARIOS.get(implementation);
+        AtomicReference<Frame> target = new AtomicReference<>();
+        latest = target;
+        failure = null;
+        thread = new Thread(() -> {
+            try {
+                run(factory.create(settings), target);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                failure = e;
+            }
+        }, "internals-" + implementation);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    boolean isRunning() {
+        return thread != null && failure == null;
+    }
+
+    /** Ошибка потока нагрузки, например закрытый пакет без --add-opens. */
+    Throwable failure() {
+        return failure;
+    }
+
+    /** Последний готовый кадр или null, если нового не было; промежуточные кадры не хранятся. */
+    Frame poll() {
+        return latest.getAndSet(null);
+    }
+
+    /**
+     * Поток останавливается прерыванием; без ограничения скорости оно проверяется вместе с часами.
+     */
+    private static void run(Workload workload, AtomicReference<Frame> target) throws ReflectiveOperationException {
+        long frameInterval = TimeUnit.SECONDS.toNanos(1) / FRAMES_PER_SECOND;
+        long opInterval = workload.settings.opsPerSecond > 0
+                ? TimeUnit.SECONDS.toNanos(1) / workload.settings.opsPerSecond : 0;
+        long start = System.nanoTime();
+        long nextFrameAt = start;
+        long lastFrameOps = 0;
+        long lastFrameAt = start;
+        publish(workload, target, 0, 0, start, start);
+        for (long i = 0; ; i++) {
+            if (opInterval > 0) {
+                long wait = start + i * opInterval - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            workload.step(i);
+            if (opInterval == 0 && (i & CLOCK_CHECK_MASK) != 0) {
+                continue;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (now < nextFrameAt) {
+                continue;
+            }
+            long captureNanos = publish(workload, target, i + 1, i + 1 - lastFrameOps, lastFrameAt, now);
+            lastFrameOps = i + 1;
+            lastFrameAt = now;
+            nextFrameAt = now + Math.max(frameInterval, captureNanos * CAPTURE_BUDGET_RATIO);
+        }
+    }
+
+    private static long publish(Workload workload, AtomicReference<Frame> target, long operations, long coalesced,
+                                long lastFrameAt, long now) throws ReflectiveOperationException {
+        long captureStart = System.nanoTime();
+        Frame frame = workload.capture();
+        frame.captureNanos = System.nanoTime() - captureStart;
+        frame.operations = operations;
+        frame.coalesced = coalesced;
+        frame.opsPerSecond = now > lastFrameAt ? coalesced * 1e9 / (now - lastFrameAt) : 0;
+        workload.observeCapacity(frame);
+        target.set(frame);
+        return frame.captureNanos;
+    }
+
+    static Field field(Class<?> owner, String name) throws NoSuchFieldException {
+        Field field = owner.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+
+    /** Сводит слоты в не более чем MAX_CELLS ячеек. */
+    static int slotsPerCell(int slots) {
+        return Math.max(1, (slots + MAX_CELLS - 1) / MAX_CELLS);
+    }
+
+    /**
+     * Рост до заданного размера, затем скользящее окно: вставка нового ключа и удаление самого старого.
+     * Раз в восемь операций - поиск, чтобы длинные цепочки было видно по скорости.
+     */
+    static class HashMapWorkload extends Workload {
+        private final HashMap<Key, Integer> map;
+        private final Key[] keys;
+        private final TableReader table;
+
+        HashMapWorkload(HashMap<Key, Integer> map, Settings settings) throws ReflectiveOperationException {
+            super(settings);
+            this.map = map;
+            this.keys = keys(settings);
+            this.table = new TableReader();
+        }
+
+        @Override
+        String name() {
+            return map.getClass().getSimpleName();
+        }
+
+        @Override
+        void step(long i) {
+            int slot = (int) (i % keys.length);
+            map.put(keys[slot], slot);
+            if (i >= settings.size) {
+                map.remove(keys[(int) ((i - settings.size) % keys.length)]);
+            }
+            if ((i & 7) == 0) {
+                map.get(keys[(int) ((i * 31) % keys.length)]);
+            }
+        }
+
+        @Override
+        Frame capture() throws ReflectiveOperationException {
+            return table.capture(name(), map, map.size());
+        }
+
+        static Key[] keys(Settings settings) {
+            Key[] keys = new Key[2 * settings.size];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = Key.of(i, settings.keyQuality);
+            }
+            return keys;
+        }
+    }
+
+    /** Чтение таблицы HashMap: длины цепочек по корзинам и корзины-деревья. */
+    static class TableReader {
+        private final Field tableField = field(HashMap.class, "table");
+        private final Field thresholdField = field(HashMap.class, "threshold");
+        private final Field nextField = field(Class.forName("java.util.HashMap$Node"), "next");
+        private final Class<?> treeNode = Class.forName("java.util.HashMap$TreeNode");
+
+        TableReader() throws ReflectiveOperationException {
+        }
+
+        Frame capture(String name, HashMap<?, ?> map, int size) throws ReflectiveOperationException {
+            Frame frame = new Frame(name, Kind.BUCKETS);
+            Object[] table = (Object[]) tableField.get(map);
+            int capacity = table == null ? 0 : table.length;
+            frame.size = size;
+            frame.capacity = capacity;
+            frame.slotsPerCell = slotsPerCell(capacity);
+            frame.cells = new int[(capacity + frame.slotsPerCell - 1) / frame.slotsPerCell];
+            int empty = 0;
+            int collided = 0;
+            int trees = 0;
+            int longest = 0;
+            for (int bucket = 0; bucket < capacity; bucket++) {
+                Object node = table[bucket];
+                if (node == null) {
+                    empty++;
+                    continue;
+                }
+                boolean tree = treeNode.isInstance(node);
+                int length = 0;
+                for (; node != null; node = nextField.get(node)) {
+                    length++;
+                }
+                longest = Math.max(longest, length);
+                if (tree) {
+                    trees++;
+                } else if (length > 1) {
+                    collided++;
+                }
+                int cell = bucket / frame.slotsPerCell;
+                int previous = frame.cells[cell];
+                // Дерево важнее длинной цепочки: его видно, даже если соседние корзины сведены в ту же ячейку
+                if (tree && (previous >= 0 || length > -previous)) {
+                    frame.cells[cell] = -length;
+                } else if (previous >= 0 && length > previous) {
+                    frame.cells[cell] = length;
+                }
+            }
+            frame.summary = String.format(Locale.ROOT,
+                    "size=%d capacity=%d threshold=%d load=%.2f | пустых корзин %d, с коллизиями %d, деревьев %d,"
+                            + " самая длинная цепочка %d",
+                    size, capacity, thresholdField.getInt(map), capacity == 0 ? 0 : (double) size / capacity,
+                    empty, collided, trees, longest);
+            return frame;
+        }
+    }
+
+    /** HashSet - та же таблица HashMap внутри поля map. */
+    static class HashSetWorkload extends Workload {
+        private final HashSet<Key> set = new HashSet<>();
+        private final Key[] keys;
+        private final Field mapField = field(HashSet.class, "map");
+        private final TableReader table = new TableReader();
+
+        HashSetWorkload(Settings settings) throws ReflectiveOperationException {
+            super(settings);
+            keys = HashMapWorkload.keys(settings);
+        }
+
+        @Override
+        String name() {
+            return "HashSet";
+        }
+
+        @Override
+        void step(long i) {
+            set.add(keys[(int) (i % keys.length)]);
+            if (i >= settings.size) {
+                set.remove(keys[(int) ((i - settings.size) % keys.length)]);
+            }
+        }
+
+        @Override
+        Frame capture() throws ReflectiveOperationException {
+            return table.capture(name(), (HashMap<?, ?>) mapField.get(set), set.size());
+        }
+    }
+
+    /**
+     * Добавление до заданного размера, затем новый пустой список: рост elementData повторяется по кругу.
+     */
+    static class ArrayListWorkload extends Workload {
+        private final Field elementDataField = field(ArrayList.class, "elementData");
+        private ArrayList<Integer> list = new ArrayList<>();
+        private int generation;
+
+        ArrayListWorkload(Settings settings) throws ReflectiveOperationException {
+            super(settings);
+        }
+
+        @Override
+        String name() {
+            return "ArrayList";
+        }
+
+        @Override
+        int generation() {
+            return generation;
+        }
+
+        @Override
+        void step(long i) {
+            if (list.size() >= settings.size) {
+                list = new ArrayList<>();
+                generation++;
+            }
+            list.add((int) i);
+        }
+
+        @Override
+        Frame capture() throws ReflectiveOperationException {
+            Frame frame = new Frame(name(), Kind.ARRAY);
+            Object[] elementData = (Object[]) elementDataField.get(list);
+            frame.size = list.size();
+            frame.capacity = elementData.length;
+            fillPrefix(frame, frame.size);
+            frame.summary = String.format(Locale.ROOT, "size=%d elementData.length=%d свободно %d (%.0f%%) | список #%d",
+                    frame.size, frame.capacity, frame.capacity - frame.size,
+                    frame.capacity == 0 ? 0 : 100.0 * (frame.capacity - frame.size) / frame.capacity, generation + 1);
+            return frame;
+        }
+    }
+
+    /**
+     * Скользящее окно: addLast нового и pollFirst старого, поэтому head и tail идут по кругу и переходят через конец массива.
+     */
+    static class ArrayDequeWorkload extends Workload {
+        private final Field elementsField = field(ArrayDeque.class, "elements");
+        private final Field headField = field(ArrayDeque.class, "head");
+        private final Field tailField = field(ArrayDeque.class, "tail");
+        private final ArrayDeque<Integer> deque = new ArrayDeque<>();
+        private long wraps;
+        private int lastHead;
+
+        ArrayDequeWorkload(Settings settings) throws ReflectiveOperationException {
+            super(settings);
+        }
+
+        @Override
+        String name() {
+            return "ArrayDeque";
+        }
+
+        @Override
+        void step(long i) {
+            deque.addLast((int) i);
+            if (i >= settings.size) {
+                deque.pollFirst();
+            }
+        }
+
+        @Override
+        Frame capture() throws ReflectiveOperationException {
+            Frame frame = new Frame(name(), Kind.RING);
+            Object[] elements = (Object[]) elementsField.get(deque);
+            frame.size = deque.size();
+            frame.capacity = elements.length;
+            frame.head = headField.getInt(deque);
+            frame.tail = tailField.getInt(deque);
+            if (frame.head < lastHead) {
+                wraps++;
+            }
+            lastHead = frame.head;
+            frame.slotsPerCell = slotsPerCell(frame.capacity);
+            frame.cells = new int[(frame.capacity + frame.slotsPerCell - 1) / frame.slotsPerCell];
+            for (int cell = 0; cell < frame.cells.length; cell++) {
+                int from = cell * frame.slotsPerCell;
+                int to = Math.min(frame.capacity, from + frame.slotsPerCell);
+                frame.cells[cell] = 100 * occupied(from, to, frame.head, frame.tail, frame.size, frame.capacity)
+                        / (to - from);
+            }
+            frame.summary = String.format(Locale.ROOT, "size=%d elements.length=%d head=%d tail=%d%s | head прошел конец массива %d раз",
+                    frame.size, frame.capacity, frame.head, frame.tail,
+                    frame.tail < frame.head ? " (данные переходят через конец массива)" : "", wraps);
+            return frame;
+        }
+
+        /** Сколько слотов из [from, to) заняты: занятый отрезок [head, tail) с переходом через конец. */
+        private static int occupied(int from, int to, int head, int tail, int size, int capacity) {
+            if (size == 0) {
+                return 0;
+            }
+            if (size == capacity) {
+                return to - from;
+            }
+            if (head < tail) {
+                return Math.max(0, Math.min(to, tail) - Math.max(from, head));
+            }
+            return Math.max(0, Math.min(to, tail) - from) + Math.max(0, to - Math.max(from, head));
+        }
+    }
+
+    /**
+     * Очередь событий по времени: событие i приходит со случайной задержкой, poll забирает самое раннее.
+     * Со случайными значениями без роста poll быстро оставил бы в куче одни максимумы.
+     */
+    static class PriorityQueueWorkload extends Workload {
+        private final Field queueField = field(PriorityQueue.class, "queue");
+        private final PriorityQueue<Long> queue = new PriorityQueue<>();
+        private final SplittableRandom random = new SplittableRandom(42);
+
+        PriorityQueueWorkload(Settings settings) throws ReflectiveOperationException {
+            super(settings);
+        }
+
+        @Override
+        String name() {
+            return "PriorityQueue";
+        }
+
+        @Override
+        void step(long i) {
+            if (i >= settings.size) {
+                queue.poll();
+            }
+            queue.offer(i + random.nextInt(2 * settings.size));
+        }
+
+        @Override
+        Frame capture() throws ReflectiveOperationException {
+            Frame frame = new Frame(name(), Kind.HEAP);
+            Object[] elements = (Object[]) queueField.get(queue);
+            frame.size = queue.size();
+            frame.capacity = elements.length;
+            frame.heap = new int[Math.min(frame.size, (1 << HEAP_LEVELS) - 1)];
+            long earliest = frame.heap.length == 0 ? 0 : (Long) elements[0];
+            for (int i = 0; i < frame.heap.length; i++) {
+                frame.heap[i] = (int) ((Long) elements[i] - earliest);
+            }
+            fillPrefix(frame, frame.size);
+            int depth = 32 - Integer.numberOfLeadingZeros(frame.size);
+            frame.summary = String.format(Locale.ROOT, "size=%d queue.length=%d глубина кучи %d | в узлах - время события"
+                    + " после queue[0]=%d; дети queue[i] - queue[2i+1] и queue[2i+2]",
+                    frame.size, frame.capacity, depth, earliest);
+            return frame;
+        }
+    }
+
+    /** Ячейки массива, заполненного с начала: процент занятых слотов в каждой. */
+    private static void fillPrefix(Frame frame, int filled) {
+        frame.slotsPerCell = slotsPerCell(frame.capacity);
+        frame.cells = new int[(frame.capacity + frame.slotsPerCell - 1) / frame.slotsPerCell];
+        for (int cell = 0; cell < frame.cells.length; cell++) {
+            int from = cell * frame.slotsPerCell;
+            int to = Math.min(frame.capacity, from + frame.slotsPerCell);
+            frame.cells[cell] = 100 * Math.max(0, Math.min(to, filled) - from) / (to - from);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.example;
+
+import java.util.Locale;
+
+/**
+ * Гистограмма задержек с лог-линейными корзинами (как HdrHistogram): каждая степень двойки
+ * делится на 32 корзины, погрешность значения не больше ~3%. Запись - одно увеличение
+ * счетчика в массиве, без выделения памяти, поэтому ее можно вызывать на каждой операции.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Значения больше 2^40 нс (~18 минут) попадают в последнюю корзину. */
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private final long[] counts = new long[bucketIndex(MAX_VALUE) + 1];
+    private long totalCount;
+    private long min = Long.MAX_VALUE;
+    private long max;
+    private double sum;
+
+    void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts[bucketIndex(value)]++;
+        totalCount++;
+        sum += value;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift);
+        return (shift + 1) * SUB_BUCKETS + subBucket - SUB_BUCKETS;
+    }
+
+    private static long lowestValue(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+    private static long highestValue(int index) {
+        return index + 1 < 2 * SUB_BUCKETS ? index : lowestValue(index + 1) - 1;
+    }
+
+    long count() {
+        return totalCount;
+    }
+
+    long min() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    long max() {
+        return max;
+    }
+
+    double mean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    /**
+     * Значение, которое не превышают {@code percentile} процентов записей (верхняя граница корзины).
+     */
+    long valueAt(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    /** Количество корзин; для отрисовки распределения. */
+    int bucketCount() {
+        return counts.length;
+    }
+
+    long bucketCount(int index) {
+        return counts[index];
+    }
+
+    long bucketLowestValue(int index) {
+        return lowestValue(index);
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    static String formatNanos(double nanos) {
+        if (nanos < 1_000) {
+            return String.format(Locale.ROOT, "%.0f ns", nanos);
+        }
+        if (nanos < 1_000_000) {
+            return String.format(Locale.ROOT, "%.1f µs", nanos / 1_000);
+        }
+        if (nanos < 1_000_000_000) {
+            return String.format(Locale.ROOT, "%.1f ms", nanos / 1_000_000);
+        }
+        return String.format(Locale.ROOT, "%.2f s", nanos / 1_000_000_000);
+    }
+
+    @Override
+    public String toString() {
+        return "n=" + totalCount + " p50=" + formatNanos(valueAt(50)) + " p99=" + formatNanos(valueAt(99))
+                + " p99.9=" + formatNanos(valueAt(99.9)) + " max=" + formatNanos(max);
+    }
+}
@@ -0,0 +1,98 @@
+package org.example;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+/**
+ * Аргументы командной строки:
+ * <pre>
+ * [hierarchy.json ...]      файл иерархии (по умолчанию collections_hierarchy.json); окно берет последний
+ * --jdk                     иерархия, найденная сканером в образе JDK
+ * --jar PATH                добавить к сканированию jar (можно повторять, включает --jdk)
+ * --rescan                  построить индекс сканера заново
+ * --export DIR              без окна: сохранить схему каждого файла иерархии в DIR и выйти
+ * --format svg,png          форматы экспорта (по умолчанию оба)
+ * --scale N                 масштаб PNG и размер SVG (по умолчанию 1)
+ * --replay TRACE CLASS      без окна: воспроизвести трассу на классе и напечатать итог (так запускаются форки)
+ * </pre>
+ */
+class LaunchOptions {
+    Path hierarchyFile = Paths.get("collections_hierarchy.json");
+    boolean scan;
+    boolean rescan;
+    final List<Path> jars = new ArrayList<>();
+    final List<Path> inputs = new ArrayList<>();
+    Path exportDir;
+    final Set<String> exportFormats = new LinkedHashSet<>(Arrays.asList("svg", "png"));
+    double exportScale = 1;
+    Path replayTrace;
+    String replayClass;
+
+    static LaunchOptions parse(String[] args) {
+        LaunchOptions options = new LaunchOptions();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--jdk":
+                    options.scan = true;
+                    break;
+                case "--jar":
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("--jar requires a path");
+                    }
+                    options.jars.add(Paths.get(args[++i]));
+                    options.scan = true;
+                    break;
+                case "--rescan":
+                    options.rescan = true;
+                    options.scan = true;
+                    break;
+                case "--export":
+                    options.exportDir = Paths.get(value(args, ++i, "--export"));
+                    break;
+                case "--format":
+                    options.exportFormats.clear();
+                    for (String format : value(args, ++i, "--format").split(",")) {
+                        String normalized = format.trim().toLowerCase(Locale.ROOT);
+                        if (!normalized.equals("svg") && !normalized.equals("png")) {
+                            throw new IllegalArgumentException("Unknown export format: " + format);
+                        }
+                        options.exportFormats.add(normalized);
+                    }
+                    break;
+                case "--replay":
+                    options.replayTrace = Paths.get(value(args, ++i, "--replay"));
+                    options.replayClass = value(args, ++i, "--replay");
+                    break;
+                case "--scale":
+                    options.exportScale = Double.parseDouble(value(args, ++i, "--scale"));
+                    break;
+                default:
+                    if (args[i].startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                    }
+                    options.hierarchyFile = Paths.get(args[i]);
+                    options.inputs.add(options.hierarchyFile);
+            }
+        }
+        return options;
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " requires a value");
+        }
+        return args[index];
+    }
+
+    /**
+     * Источник файла иерархии для HierarchyLoader; сканирование выполняется в фоновом потоке загрузчика.
+     */
+    Callable<Path> hierarchySource() {
+        if (!scan) {
+            return () -> hierarchyFile;
+        }
+        return () -> new HierarchyScanner(jars).ensureIndex(rescan);
+    }
+}
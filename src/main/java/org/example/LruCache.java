@@ -0,0 +1,96 @@
+package org.example;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Ограниченный кэш с вытеснением давно не использованных записей и счетчиками попаданий.
+ * Каждый кэш регистрируется в {@link Metrics}, его попадания видны в оверлее и в дампе при выходе.
+ */
+class LruCache<K, V> {
+    private final String name;
+    private final LinkedHashMap<K, V> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    LruCache(String name, int maxSize) {
+        this.name = name;
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        Metrics.register(this);
+    }
+
+    String name() {
+        return name;
+    }
+
+    synchronized V get(K key) {
+        V value = entries.get(key);
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Значение вычисляется под блокировкой кэша, поэтому mapping должен быть дешевым
+     * (например, создавать future), а не выполнять саму загрузку.
+     */
+    synchronized V computeIfAbsent(K key, Function<? super K, ? extends V> mapping) {
+        V value = get(key);
+        if (value == null) {
+            value = mapping.apply(key);
+            entries.put(key, value);
+        }
+        return value;
+    }
+
+    synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    synchronized void invalidateIf(Predicate<? super K> predicate) {
+        entries.keySet().removeIf(predicate);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    double hitRate() {
+        long total = hits() + misses();
+        return total == 0 ? 0 : (double) hits() / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: size=%d hits=%d misses=%d evictions=%d hitRate=%.1f%%",
+                name, size(), hits(), misses(), evictions.sum(), hitRate() * 100);
+    }
+}
@@ -0,0 +1,226 @@
+package org.example;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Полный набор публичных методов типов иерархии: для каждого метода - тип, из которого он
+ * достается (объявлен здесь, унаследован от класса или пришел default-методом интерфейса).
+ * Метаданные типа вычисляются один раз и кэшируются на все время работы; индекс по иерархии
+ * строится параллельно и отвечает на запросы "кто объявляет метод" и "чем отличаются два типа".
+ */
+final class MetadataIndex {
+    private static final Map<Class<?>, TypeMetadata> TYPES = new ConcurrentHashMap<>();
+
+    /** Один метод в наборе типа. */
+    static class MethodInfo {
+        /** Имя и стертые типы параметров: по нему сравниваются переопределения. */
+        final String signature;
+        final String name;
+        final String display;
+        final Class<?> declaringClass;
+        final boolean isDefault;
+        final boolean isAbstract;
+        final boolean isStatic;
+
+        MethodInfo(Method method) {
+            this.name = method.getName();
+            this.signature = name + Arrays.stream(method.getParameterTypes())
+                    .map(Class::getTypeName)
+                    .collect(Collectors.joining(",", "(", ")"));
+            this.display = method.getReturnType().getSimpleName() + " " + name + Arrays.stream(method.getParameterTypes())
+                    .map(Class::getSimpleName)
+                    .collect(Collectors.joining(", ", "(", ")"));
+            this.declaringClass = method.getDeclaringClass();
+            this.isDefault = method.isDefault();
+            this.isAbstract = Modifier.isAbstract(method.getModifiers());
+            this.isStatic = Modifier.isStatic(method.getModifiers());
+        }
+
+        String origin() {
+            return declaringClass.getSimpleName()
+                    + (isDefault ? " (default)" : isAbstract ? " (abstract)" : isStatic ? " (static)" : "");
+        }
+    }
+
+    static class TypeMetadata {
+        final Class<?> type;
+        /** Эффективные методы по сигнатуре, в алфавитном порядке. */
+        final SortedMap<String, MethodInfo> methods;
+
+        private TypeMetadata(Class<?> type, SortedMap<String, MethodInfo> methods) {
+            this.type = type;
+            this.methods = methods;
+        }
+
+        /** Методы, объявленные или переопределенные в самом типе. */
+        List<MethodInfo> declared() {
+            List<MethodInfo> declared = new ArrayList<>();
+            for (MethodInfo method : methods.values()) {
+                if (method.declaringClass == type) {
+                    declared.add(method);
+                }
+            }
+            return declared;
+        }
+
+        /** Методы, сгруппированные по типу-источнику: сначала сам тип, затем предки по алфавиту. */
+        Map<Class<?>, List<MethodInfo>> byOrigin() {
+            Map<Class<?>, List<MethodInfo>> groups = new TreeMap<>(Comparator
+                    .comparing((Class<?> c) -> c != type)
+                    .thenComparing(Class::getSimpleName)
+                    .thenComparing(Class::getName));
+            for (MethodInfo method : methods.values()) {
+                groups.computeIfAbsent(method.declaringClass, k -> new ArrayList<>()).add(method);
+            }
+            return groups;
+        }
+    }
+
+    /**
+     * Метаданные типа из кэша; при первом обращении собираются из getMethods().
+     */
+    static TypeMetadata of(Class<?> type) {
+        return TYPES.computeIfAbsent(type, MetadataIndex::compute);
+    }
+
+    /**
+     * getMethods() уже содержит унаследованные и default-методы, но для одной сигнатуры может вернуть
+     * несколько кандидатов (мосты, ковариантные типы, одинаковые методы разных интерфейсов).
+     * Оставляем самый конкретный: объявленный в наследнике, а при несвязанных источниках - не абстрактный.
+     */
+    private static TypeMetadata compute(Class<?> type) {
+        SortedMap<String, MethodInfo> methods = new TreeMap<>();
+        for (Method method : type.getMethods()) {
+            // Статические методы не наследуются: оставляем только объявленные в самом типе
+            if (method.isBridge() || method.isSynthetic()
+                    || Modifier.isStatic(method.getModifiers()) && method.getDeclaringClass() != type) {
+                continue;
+            }
+            MethodInfo candidate = new MethodInfo(method);
+            methods.merge(candidate.signature, candidate, MetadataIndex::moreSpecific);
+        }
+        return new TypeMetadata(type, Collections.unmodifiableSortedMap(methods));
+    }
+
+    private static MethodInfo moreSpecific(MethodInfo a, MethodInfo b) {
+        if (a.declaringClass.isAssignableFrom(b.declaringClass)) {
+            return b;
+        }
+        if (b.declaringClass.isAssignableFrom(a.declaringClass)) {
+            return a;
+        }
+        if (a.declaringClass.isInterface() != b.declaringClass.isInterface()) {
+            return a.declaringClass.isInterface() ? b : a;
+        }
+        return a.isAbstract && !b.isAbstract ? b : a;
+    }
+
+    private final Map<String, TypeMetadata> byName;
+    /** Имя метода -> типы иерархии, которые его объявляют или переопределяют. */
+    private final Map<String, List<String>> declaringTypes;
+
+    private MetadataIndex(Map<String, TypeMetadata> byName, Map<String, List<String>> declaringTypes) {
+        this.byName = byName;
+        this.declaringTypes = declaringTypes;
+    }
+
+    /**
+     * Разрешает и разбирает все типы параллельно; типы, которые не загружаются в этой JVM, пропускаются.
+     */
+    static MetadataIndex build(List<SearchIndex.Entry> entries) {
+        Map<String, TypeMetadata> byName = entries.parallelStream()
+                .map(entry -> {
+                    try {
+                        Class<?> type = TypeResolver.resolve(entry.name, entry.qualifiedName);
+                        return new AbstractMap.SimpleEntry<>(entry.name, of(type));
+                    } catch (ClassNotFoundException | LinkageError e) {
+                        return null;
+                    }
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, TreeMap::new));
+
+        Map<String, List<String>> declaringTypes = new HashMap<>();
+        for (Map.Entry<String, TypeMetadata> entry : byName.entrySet()) {
+            Set<String> names = new HashSet<>();
+            for (MethodInfo method : entry.getValue().declared()) {
+                if (names.add(method.name)) {
+                    declaringTypes.computeIfAbsent(method.name, k -> new ArrayList<>()).add(entry.getKey());
+                }
+            }
+        }
+        return new MetadataIndex(byName, declaringTypes);
+    }
+
+    Set<String> typeNames() {
+        return byName.keySet();
+    }
+
+    TypeMetadata type(String name) {
+        return byName.get(name);
+    }
+
+    /** Все имена методов, встречающиеся в иерархии, по алфавиту. */
+    SortedSet<String> methodNames() {
+        SortedSet<String> names = new TreeSet<>();
+        for (TypeMetadata type : byName.values()) {
+            for (MethodInfo method : type.methods.values()) {
+                names.add(method.name);
+            }
+        }
+        return names;
+    }
+
+    /** Типы, которые сами объявляют или переопределяют метод с этим именем. */
+    List<String> declaring(String methodName) {
+        return declaringTypes.getOrDefault(methodName, Collections.emptyList());
+    }
+
+    /** Типы, у которых метод с этим именем есть в эффективном наборе, вместе с его перегрузками. */
+    Map<String, List<MethodInfo>> having(String methodName) {
+        Map<String, List<MethodInfo>> result = new TreeMap<>();
+        for (Map.Entry<String, TypeMetadata> entry : byName.entrySet()) {
+            for (MethodInfo method : entry.getValue().methods.values()) {
+                if (method.name.equals(methodName)) {
+                    result.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(method);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Строка сравнения: метод есть только у одного типа или у обоих, но из разных источников. */
+    static class Difference {
+        final String signature;
+        final MethodInfo left;
+        final MethodInfo right;
+
+        Difference(String signature, MethodInfo left, MethodInfo right) {
+            this.signature = signature;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    /**
+     * @param includeOrigins показывать и общие методы, если у типов они из разных источников
+     *                       (почти все методы карт переопределены в каждой реализации, поэтому по умолчанию нет)
+     */
+    static List<Difference> diff(TypeMetadata left, TypeMetadata right, boolean includeOrigins) {
+        SortedSet<String> signatures = new TreeSet<>(left.methods.keySet());
+        signatures.addAll(right.methods.keySet());
+        List<Difference> differences = new ArrayList<>();
+        for (String signature : signatures) {
+            MethodInfo a = left.methods.get(signature);
+            MethodInfo b = right.methods.get(signature);
+            if (a == null || b == null || includeOrigins && a.declaringClass != b.declaringClass) {
+                differences.add(new Difference(signature, a, b));
+            }
+        }
+        return differences;
+    }
+}
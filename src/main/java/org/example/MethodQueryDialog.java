@@ -0,0 +1,171 @@
+package org.example;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Запросы к метаданным методов по всей иерархии: какие типы объявляют или переопределяют метод
+ * и чем отличаются наборы методов двух типов. Индекс строится при открытии окна в фоне.
+ */
+class MethodQueryDialog extends JDialog {
+    private final JComboBox<String> methodName = new JComboBox<>();
+    private final JCheckBox declaredOnly = new JCheckBox("только объявляющие и переопределяющие");
+    private final DefaultTableModel methodRows = readOnlyModel("Тип", "Метод", "Откуда");
+    private final JComboBox<String> leftType = new JComboBox<>();
+    private final JComboBox<String> rightType = new JComboBox<>();
+    private final JCheckBox includeOrigins = new JCheckBox("и общие методы из разных источников");
+    private final DefaultTableModel diffRows = readOnlyModel("Метод", "Левый тип", "Правый тип");
+    private final JLabel status = new JLabel("Индекс строится...");
+    private MetadataIndex index;
+
+    /**
+     * @param preselected имена выделенных узлов; первые два становятся сторонами сравнения
+     */
+    MethodQueryDialog(Window owner, HierarchyModel model, List<String> preselected) {
+        super(owner, "Методы иерархии", ModalityType.MODELESS);
+        methodName.setEditable(true);
+        methodName.setPrototypeDisplayValue("descendingKeySet___");
+
+        JPanel methodControls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        methodControls.add(new JLabel("метод"));
+        methodControls.add(methodName);
+        methodControls.add(declaredOnly);
+        JPanel methodTab = new JPanel(new BorderLayout());
+        methodTab.add(methodControls, BorderLayout.NORTH);
+        methodTab.add(new JScrollPane(new JTable(methodRows)), BorderLayout.CENTER);
+
+        JPanel diffControls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        diffControls.add(leftType);
+        diffControls.add(new JLabel("против"));
+        diffControls.add(rightType);
+        diffControls.add(includeOrigins);
+        JPanel diffTab = new JPanel(new BorderLayout());
+        diffTab.add(diffControls, BorderLayout.NORTH);
+        diffTab.add(new JScrollPane(new JTable(diffRows)), BorderLayout.CENTER);
+
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Кто объявляет метод", methodTab);
+        tabs.addTab("Разница типов", diffTab);
+        if (preselected.size() >= 2) {
+            tabs.setSelectedComponent(diffTab);
+        }
+
+        setLayout(new BorderLayout());
+        add(tabs, BorderLayout.CENTER);
+        add(status, BorderLayout.SOUTH);
+        setSize(900, 650);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        methodName.addActionListener(e -> showMethod());
+        declaredOnly.addActionListener(e -> showMethod());
+        leftType.addActionListener(e -> showDiff());
+        rightType.addActionListener(e -> showDiff());
+        includeOrigins.addActionListener(e -> showDiff());
+
+        List<SearchIndex.Entry> entries = SearchIndex.entries(model);
+        new SwingWorker<MetadataIndex, Void>() {
+            private long elapsedNanos;
+
+            @Override
+            protected MetadataIndex doInBackground() {
+                long start = System.nanoTime();
+                MetadataIndex built = MetadataIndex.build(entries);
+                elapsedNanos = System.nanoTime() - start;
+                return built;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    index = get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    status.setText("Ошибка индекса: " + e.getCause());
+                    return;
+                }
+                for (String name : index.methodNames()) {
+                    methodName.addItem(name);
+                }
+                for (String name : index.typeNames()) {
+                    leftType.addItem(name);
+                    rightType.addItem(name);
+                }
+                methodName.setSelectedItem("removeIf");
+                if (preselected.size() >= 2) {
+                    leftType.setSelectedItem(preselected.get(0));
+                    rightType.setSelectedItem(preselected.get(1));
+                } else {
+                    selectIfPresent(leftType, "TreeMap<K,V>");
+                    selectIfPresent(rightType, "HashMap<K,V>");
+                }
+                status.setText("Типов: " + index.typeNames().size() + ", индекс за "
+                        + LatencyHistogram.formatNanos(elapsedNanos));
+            }
+        }.execute();
+    }
+
+    private static DefaultTableModel readOnlyModel(String... columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+
+    private static void selectIfPresent(JComboBox<String> combo, String name) {
+        for (int i = 0; i < combo.getItemCount(); i++) {
+            if (ClassInfo.rawName(combo.getItemAt(i)).equals(ClassInfo.rawName(name))) {
+                combo.setSelectedIndex(i);
+                return;
+            }
+        }
+    }
+
+    private void showMethod() {
+        if (index == null || methodName.getSelectedItem() == null) {
+            return;
+        }
+        String name = methodName.getSelectedItem().toString().trim();
+        methodRows.setRowCount(0);
+        List<String> declaring = index.declaring(name);
+        for (Map.Entry<String, List<MetadataIndex.MethodInfo>> entry : index.having(name).entrySet()) {
+            boolean declaresHere = declaring.contains(entry.getKey());
+            if (declaredOnly.isSelected() && !declaresHere) {
+                continue;
+            }
+            for (MetadataIndex.MethodInfo method : entry.getValue()) {
+                methodRows.addRow(new Object[]{entry.getKey(), method.display,
+                        method.declaringClass == index.type(entry.getKey()).type ? "объявлен здесь" : method.origin()});
+            }
+        }
+        status.setText(name + ": объявляют или переопределяют " + declaring.size() + " типов, есть у "
+                + index.having(name).size());
+    }
+
+    private void showDiff() {
+        if (index == null || leftType.getSelectedItem() == null || rightType.getSelectedItem() == null) {
+            return;
+        }
+        MetadataIndex.TypeMetadata left = index.type((String) leftType.getSelectedItem());
+        MetadataIndex.TypeMetadata right = index.type((String) rightType.getSelectedItem());
+        diffRows.setRowCount(0);
+        List<MetadataIndex.Difference> differences = MetadataIndex.diff(left, right, includeOrigins.isSelected());
+        for (MetadataIndex.Difference difference : differences) {
+            MetadataIndex.MethodInfo any = difference.left != null ? difference.left : difference.right;
+            diffRows.addRow(new Object[]{any.display,
+                    difference.left != null ? difference.left.origin() : "-",
+                    difference.right != null ? difference.right.origin() : "-"});
+        }
+        status.setText(differences.size() + (includeOrigins.isSelected()
+                ? " различий: метод есть только у одного типа или пришел из разных источников"
+                : " методов есть только у одного из типов"));
+    }
+}
@@ -0,0 +1,262 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Замеры самого приложения: гистограммы длительности фаз (загрузка, построение компонентов,
+ * отрисовка, открытие окна деталей, Markdown), счетчики, частота кадров и попадания в кэши.
+ * Каждая фаза заодно пишется событием JFR: при запуске с -XX:StartFlightRecording
+ * они видны в JDK Mission Control рядом с GC и блокировками.
+ * Запись - несколько атомарных операций без выделения памяти, кроме объекта события.
+ */
+final class Metrics {
+    static final String LOAD_JSON = "load.json";
+    static final String LOAD_SNAPSHOT = "load.snapshot";
+    static final String LOAD_CHUNK = "load.chunk";
+    static final String LAYOUT_FINISH = "layout.finish";
+    static final String SNAPSHOT_ENCODE = "snapshot.encode";
+    static final String COMPONENTS_SYNC = "components.sync";
+    static final String SCENE_INDEX = "scene.index";
+    static final String PAINT = "paint";
+    static final String PAINT_TILE = "paint.tile";
+    static final String DETAILS_OPEN = "details.open";
+    static final String DETAILS_HTML = "details.html";
+    static final String MARKDOWN = "markdown";
+
+    /** Кадры за последнюю секунду считаются по кольцу меток времени. */
+    private static final int FRAME_RING = 256;
+
+    private static final Map<String, LatencyHistogram> TIMERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final List<LruCache<?, ?>> CACHES = new CopyOnWriteArrayList<>();
+    private static final long[] frameTimes = new long[FRAME_RING];
+    private static int frameCursor;
+    private static long frames;
+
+    static {
+        // Регистрируем всегда: запись могут включить позже через jcmd JFR.start, а без записи JFR хук не вызывает
+        FlightRecorder.addPeriodicEvent(CacheStatsEvent.class, Metrics::emitCacheStats);
+    }
+
+    private Metrics() {
+    }
+
+    @Name("org.example.Phase")
+    @Label("Visualizer Phase")
+    @Category("JCF Visualizer")
+    @Description("Фаза работы визуализатора: загрузка, отрисовка, открытие окна деталей")
+    @StackTrace(false)
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("Detail")
+        String detail;
+    }
+
+    @Name("org.example.CacheStats")
+    @Label("Visualizer Cache Statistics")
+    @Category("JCF Visualizer")
+    @Period("1 s")
+    @StackTrace(false)
+    static class CacheStatsEvent extends Event {
+        @Label("Cache")
+        String cache;
+        @Label("Size")
+        int size;
+        @Label("Hits")
+        long hits;
+        @Label("Misses")
+        long misses;
+        @Label("Hit Rate")
+        @Percentage
+        double hitRate;
+    }
+
+    /** Тело замеряемой фазы с результатом; может бросать то же исключение, что и окружающий код. */
+    interface Timed<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /** Тело замеряемой фазы без результата. */
+    interface TimedAction<E extends Exception> {
+        void run() throws E;
+    }
+
+    /**
+     * Замер одной фазы. Фазу внутри одного метода удобнее мерить через {@link #time}; Span закрывают
+     * вручную, когда фаза кончается в другом обработчике.
+     */
+    static final class Span implements AutoCloseable {
+        private final String phase;
+        private final long start = System.nanoTime();
+        private final PhaseEvent event = new PhaseEvent();
+        private boolean closed;
+
+        private Span(String phase, String detail) {
+            this.phase = phase;
+            event.phase = phase;
+            event.detail = detail;
+            event.begin();
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            record(phase, System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.commit();
+            }
+        }
+    }
+
+    static Span start(String phase) {
+        return new Span(phase, null);
+    }
+
+    static Span start(String phase, String detail) {
+        return new Span(phase, detail);
+    }
+
+    static <T, E extends Exception> T time(String phase, Timed<T, E> body) throws E {
+        return time(phase, null, body);
+    }
+
+    static <T, E extends Exception> T time(String phase, String detail, Timed<T, E> body) throws E {
+        Span span = start(phase, detail);
+        try {
+            return body.call();
+        } finally {
+            span.close();
+        }
+    }
+
+    static <E extends Exception> void time(String phase, TimedAction<E> body) throws E {
+        time(phase, null, body);
+    }
+
+    static <E extends Exception> void time(String phase, String detail, TimedAction<E> body) throws E {
+        Span span = start(phase, detail);
+        try {
+            body.run();
+        } finally {
+            span.close();
+        }
+    }
+
+    static void record(String phase, long nanos) {
+        LatencyHistogram histogram = TIMERS.computeIfAbsent(phase, k -> new LatencyHistogram());
+        synchronized (histogram) {
+            histogram.record(nanos);
+        }
+    }
+
+    static void increment(String counter) {
+        COUNTERS.computeIfAbsent(counter, k -> new LongAdder()).increment();
+    }
+
+    static void register(LruCache<?, ?> cache) {
+        CACHES.add(cache);
+    }
+
+    /** Отмечает кадр отрисовки иерархии. Вызывается только на EDT. */
+    static void frame() {
+        frameTimes[frameCursor] = System.nanoTime();
+        frameCursor = (frameCursor + 1) % FRAME_RING;
+        frames++;
+    }
+
+    /** Кадров за последнюю секунду. Вызывается только на EDT. */
+    static int framesPerSecond() {
+        long since = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+        int count = 0;
+        for (int i = 0; i < Math.min(frames, FRAME_RING); i++) {
+            if (frameTimes[i] > since) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void emitCacheStats() {
+        for (LruCache<?, ?> cache : CACHES) {
+            CacheStatsEvent event = new CacheStatsEvent();
+            event.cache = cache.name();
+            event.size = cache.size();
+            event.hits = cache.hits();
+            event.misses = cache.misses();
+            event.hitRate = cache.hitRate();
+            event.commit();
+        }
+    }
+
+    /**
+     * Строки для оверлея и дампа: фазы с перцентилями, счетчики, кэши.
+     */
+    static List<String> snapshot() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, LatencyHistogram> entry : TIMERS.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            synchronized (histogram) {
+                lines.add(String.format(Locale.ROOT, "%-16s n=%-6d p50=%-9s p99=%-9s max=%s", entry.getKey(),
+                        histogram.count(), LatencyHistogram.formatNanos(histogram.valueAt(50)),
+                        LatencyHistogram.formatNanos(histogram.valueAt(99)),
+                        LatencyHistogram.formatNanos(histogram.max())));
+            }
+        }
+        new ConcurrentSkipListMap<>(COUNTERS).forEach((name, value) ->
+                lines.add(String.format(Locale.ROOT, "%-16s %d", name, value.sum())));
+        for (LruCache<?, ?> cache : CACHES) {
+            lines.add(String.format(Locale.ROOT, "cache %-10s size=%-5d hit=%.1f%% (%d/%d)", cache.name(),
+                    cache.size(), cache.hitRate() * 100, cache.hits(), cache.hits() + cache.misses()));
+        }
+        return lines;
+    }
+
+    /**
+     * Дамп при выходе: в stdout и, если задано -Djcf.metrics.dump=файл, еще и в файл.
+     */
+    static void dump(PrintStream out) {
+        List<String> lines = snapshot();
+        lines.add(0, "frames " + frames);
+        for (String line : lines) {
+            out.println("[metrics] " + line);
+        }
+        String file = System.getProperty("jcf.metrics.dump");
+        if (file != null) {
+            Path path = Paths.get(file);
+            try {
+                Files.write(path, lines, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                System.err.println("[metrics] cannot write " + path + ": " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.example;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Панель замеров поверх схемы в правом верхнем углу; F3 показывает и прячет ее.
+ * Панель непрозрачная: ее обновление раз в полсекунды не перерисовывает схему под ней
+ * и не портит счетчик кадров.
+ */
+class MetricsOverlay extends JComponent {
+    private static final int REFRESH_MILLIS = 500;
+    private static final int PADDING = 8;
+    private static final Color BACKGROUND = new Color(32, 33, 36);
+    private static final Color TEXT = new Color(220, 220, 220);
+
+    private final JComponent anchor;
+    private final Timer refresh = new Timer(REFRESH_MILLIS, e -> update());
+    private List<String> lines = new ArrayList<>();
+
+    /**
+     * @param anchor область, в углу которой стоит панель (видимая часть схемы)
+     */
+    private MetricsOverlay(JComponent anchor) {
+        this.anchor = anchor;
+        setOpaque(true);
+        setVisible(false);
+        setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+        anchor.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                place();
+            }
+
+            @Override
+            public void componentMoved(ComponentEvent e) {
+                place();
+            }
+        });
+    }
+
+    static MetricsOverlay install(JFrame frame, JComponent anchor) {
+        MetricsOverlay overlay = new MetricsOverlay(anchor);
+        frame.getLayeredPane().add(overlay, JLayeredPane.PALETTE_LAYER);
+        JRootPane root = frame.getRootPane();
+        root.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0),
+                "toggleMetrics");
+        root.getActionMap().put("toggleMetrics", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                overlay.toggle();
+            }
+        });
+        return overlay;
+    }
+
+    void toggle() {
+        setVisible(!isVisible());
+        if (isVisible()) {
+            update();
+            refresh.start();
+        } else {
+            refresh.stop();
+        }
+    }
+
+    private void update() {
+        Runtime runtime = Runtime.getRuntime();
+        List<String> next = new ArrayList<>();
+        next.add("fps " + Metrics.framesPerSecond() + ", heap "
+                + (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024) + " / "
+                + runtime.maxMemory() / (1024 * 1024) + " MB");
+        next.addAll(Metrics.snapshot());
+        lines = next;
+        place();
+        repaint();
+    }
+
+    private void place() {
+        if (getParent() == null || anchor.getParent() == null) {
+            return;
+        }
+        FontMetrics metrics = getFontMetrics(getFont());
+        int width = 0;
+        for (String line : lines) {
+            width = Math.max(width, metrics.stringWidth(line));
+        }
+        width += 2 * PADDING;
+        int height = lines.size() * metrics.getHeight() + 2 * PADDING;
+        Rectangle area = SwingUtilities.convertRectangle(anchor.getParent(), anchor.getBounds(), getParent());
+        setBounds(area.x + Math.max(0, area.width - width - PADDING), area.y + PADDING,
+                Math.min(width, area.width), Math.min(height, area.height));
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, getWidth(), getHeight());
+        g.setColor(TEXT);
+        g.setFont(getFont());
+        FontMetrics metrics = g.getFontMetrics();
+        int y = PADDING + metrics.getAscent();
+        for (String line : lines) {
+            g.drawString(line, PADDING, y);
+            y += metrics.getHeight();
+        }
+    }
+}
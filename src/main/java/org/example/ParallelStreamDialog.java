@@ -0,0 +1,252 @@
+package org.example;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Ускорение параллельных потоков одной реализации: map, filter и reduce на 1..N ядрах
+ * относительно последовательного потока, рядом - идеальная прямая и предел по делению Spliterator.
+ * Под графиком - разбор деления: он строит свой экземпляр, поэтому тоже считается только по запуску.
+ */
+class ParallelStreamDialog extends JDialog {
+    private final Class<?> type;
+    private final JSpinner size = new JSpinner(new SpinnerNumberModel(1_000_000, 1_000, 20_000_000, 100_000));
+    private final JSpinner maxCores = new JSpinner(new SpinnerNumberModel(
+            Runtime.getRuntime().availableProcessors(), 1, 256, 1));
+    private final JButton startButton = new JButton("Запустить");
+    private final JProgressBar progress = new JProgressBar();
+    private final JLabel status = new JLabel(" ");
+    private final SpeedupChart chart = new SpeedupChart();
+    private final JEditorPane splitReport = new JEditorPane("text/html", "");
+    private final List<ParallelStreamRunner.Point> points = new ArrayList<>();
+    /** Предел ускорения по делению Spliterator; пишется фоновым потоком. */
+    private volatile double speedupBound;
+    private Worker worker;
+
+    ParallelStreamDialog(Window owner, Class<?> type) {
+        super(owner, "Параллельные потоки: " + type.getSimpleName(), ModalityType.MODELESS);
+        this.type = type;
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(new JLabel("элементов"));
+        controls.add(size);
+        controls.add(new JLabel("ядер до"));
+        controls.add(maxCores);
+        controls.add(startButton);
+        controls.add(progress);
+        startButton.addActionListener(e -> toggleRun());
+
+        splitReport.setEditable(false);
+        JSplitPane center = new JSplitPane(JSplitPane.VERTICAL_SPLIT, chart, new JScrollPane(splitReport));
+        center.setResizeWeight(0.7);
+
+        setLayout(new BorderLayout());
+        add(controls, BorderLayout.NORTH);
+        add(center, BorderLayout.CENTER);
+        add(status, BorderLayout.SOUTH);
+        setSize(900, 720);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+    }
+
+    @Override
+    public void dispose() {
+        if (worker != null) {
+            worker.cancel(false);
+        }
+        super.dispose();
+    }
+
+    private void toggleRun() {
+        if (worker != null) {
+            worker.cancel(false);
+            return;
+        }
+        points.clear();
+        chart.repaint();
+        int elements = Math.min((Integer) size.getValue(), SpliteratorAnalyzer.maxSize(type));
+        size.setValue(elements);
+        worker = new Worker(elements, ContentionRunner.threadCounts((Integer) maxCores.getValue()));
+        startButton.setText("Остановить");
+        worker.execute();
+    }
+
+    private class Worker extends SwingWorker<Void, ParallelStreamRunner.Point> {
+        private final int elements;
+        private final List<Integer> coreCounts;
+        private final ResultsStore history = new ResultsStore("streams");
+
+        Worker(int elements, List<Integer> coreCounts) {
+            this.elements = elements;
+            this.coreCounts = coreCounts;
+            progress.setMaximum(ParallelStreamRunner.PIPELINES.length * coreCounts.size());
+            progress.setValue(0);
+            status.setText("Заполнение " + type.getSimpleName() + "...");
+        }
+
+        @Override
+        protected Void doInBackground() throws ReflectiveOperationException, InterruptedException, ExecutionException {
+            SpliteratorAnalyzer.Report spliterator = SpliteratorAnalyzer.reportFor(type);
+            speedupBound = spliterator != null && spliterator.error == null ? spliterator.speedupBound() : 0;
+            if (spliterator != null) {
+                String html = "<html><body style='font-family: Arial; padding: 10px'>"
+                        + SpliteratorAnalyzer.toHtml(spliterator) + "</body></html>";
+                SwingUtilities.invokeLater(() -> {
+                    splitReport.setText(html);
+                    splitReport.setCaretPosition(0);
+                });
+            }
+            ParallelStreamRunner runner = new ParallelStreamRunner(type, elements);
+            for (int pipeline = 0; pipeline < ParallelStreamRunner.PIPELINES.length; pipeline++) {
+                publish(runner.sequential(pipeline));
+                for (int cores : coreCounts) {
+                    if (isCancelled()) {
+                        return null;
+                    }
+                    publish(runner.run(pipeline, cores));
+                }
+            }
+            return null;
+        }
+
+        @Override
+        protected void process(List<ParallelStreamRunner.Point> chunk) {
+            for (ParallelStreamRunner.Point point : chunk) {
+                history.add(type.getSimpleName(), point.cores == 0 ? "stream " + point.pipeline
+                        : "parallelStream " + point.pipeline + ", " + point.cores + " яд.", elements, "ns", false,
+                        point.samples);
+                if (point.cores == 0) {
+                    // Последовательный поток - только база ускорения, на графике его нет
+                    continue;
+                }
+                points.add(point);
+                progress.setValue(progress.getValue() + 1);
+                status.setText(point.pipeline + ", " + point.cores + " яд.: "
+                        + LatencyHistogram.formatNanos(point.nanos)
+                        + String.format(Locale.ROOT, ", x%.2f", point.speedup));
+            }
+            chart.repaint();
+        }
+
+        @Override
+        protected void done() {
+            worker = null;
+            startButton.setText("Запустить");
+            String saved = history.saveForStatus();
+            if (isCancelled()) {
+                status.setText("Остановлено" + saved);
+                return;
+            }
+            try {
+                get();
+                status.setText("Готово. Ускорение - отношение к последовательному потоку; процессоров: "
+                        + Runtime.getRuntime().availableProcessors() + saved);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                status.setText("Ошибка: " + e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Ускорение по числу ядер: ось X логарифмическая, ось Y линейная; серая пунктирная - идеальное ускорение.
+     */
+    private class SpeedupChart extends ChartComponent {
+        @Override
+        protected void paintComponent(Graphics g) {
+            Graphics2D g2 = (Graphics2D) g;
+            paintFrame(g2, "Ускорение относительно stream()");
+            if (points.isEmpty()) {
+                return;
+            }
+            int maxCoreCount = 1;
+            double maxSpeedup = 1;
+            for (ParallelStreamRunner.Point point : points) {
+                maxCoreCount = Math.max(maxCoreCount, point.cores);
+                maxSpeedup = Math.max(maxSpeedup, point.speedup);
+            }
+            double maxX = Math.max(2, maxCoreCount);
+            double maxY = Math.max(maxSpeedup, maxCoreCount) * 1.1;
+
+            g2.setFont(SceneRenderer.NODE_FONT);
+            for (int cores : ContentionRunner.threadCounts(maxCoreCount)) {
+                int x = (int) logX(cores, 1, maxX);
+                g2.setColor(Color.LIGHT_GRAY);
+                g2.drawLine(x, TOP, x, TOP + plotHeight());
+                g2.setColor(Color.BLACK);
+                String label = String.valueOf(cores);
+                g2.drawString(label, x - g2.getFontMetrics().stringWidth(label) / 2, TOP + plotHeight() + 16);
+            }
+            g2.drawString("ядер", LEFT + plotWidth() / 2, TOP + plotHeight() + 32);
+            for (int i = 0; i <= 4; i++) {
+                double value = maxY * i / 4;
+                int y = (int) linearY(value, maxY);
+                g2.setColor(Color.LIGHT_GRAY);
+                g2.drawLine(LEFT, y, LEFT + plotWidth(), y);
+                g2.setColor(Color.BLACK);
+                String label = String.format(Locale.ROOT, "x%.1f", value);
+                g2.drawString(label, LEFT - 8 - g2.getFontMetrics().stringWidth(label), y + 4);
+            }
+
+            g2.setColor(Color.GRAY);
+            g2.setStroke(new BasicStroke(1f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10f,
+                    new float[]{6f, 4f}, 0f));
+            // По точкам: на логарифмической оси X идеальное ускорение - не прямая
+            Path2D.Double ideal = new Path2D.Double();
+            ideal.moveTo(logX(1, 1, maxX), linearY(1, maxY));
+            for (int cores : ContentionRunner.threadCounts(maxCoreCount)) {
+                ideal.lineTo(logX(cores, 1, maxX), linearY(cores, maxY));
+            }
+            g2.draw(ideal);
+            if (speedupBound > 0 && speedupBound < maxY) {
+                // Предел по делению: дальше ядра ждут самую крупную часть
+                int y = (int) linearY(speedupBound, maxY);
+                g2.drawLine(LEFT, y, LEFT + plotWidth(), y);
+            }
+
+            List<String> legend = new ArrayList<>();
+            List<Color> legendColors = new ArrayList<>();
+            g2.setStroke(new BasicStroke(2f));
+            for (int pipeline = 0; pipeline < ParallelStreamRunner.PIPELINES.length; pipeline++) {
+                String name = ParallelStreamRunner.PIPELINES[pipeline];
+                Color color = PALETTE[pipeline % PALETTE.length];
+                Path2D.Double line = new Path2D.Double();
+                ParallelStreamRunner.Point last = null;
+                for (ParallelStreamRunner.Point point : points) {
+                    if (!point.pipeline.equals(name)) {
+                        continue;
+                    }
+                    double x = logX(point.cores, 1, maxX);
+                    double y = linearY(point.speedup, maxY);
+                    if (last == null) {
+                        line.moveTo(x, y);
+                    } else {
+                        line.lineTo(x, y);
+                    }
+                    last = point;
+                    g2.setColor(color);
+                    g2.fillOval((int) x - 3, (int) y - 3, 7, 7);
+                }
+                if (last == null) {
+                    continue;
+                }
+                g2.setColor(color);
+                g2.draw(line);
+                legend.add(String.format(Locale.ROOT, "%s: x%.2f на %d яд. (%s)", name, last.speedup, last.cores,
+                        LatencyHistogram.formatNanos(last.nanos)));
+                legendColors.add(color);
+            }
+            legend.add("идеальное ускорение" + (speedupBound > 0
+                    ? String.format(Locale.ROOT, "; предел по делению x%.1f", speedupBound) : ""));
+            legendColors.add(Color.GRAY);
+            g2.setStroke(SceneRenderer.BORDER_STROKE);
+            paintLegend(g2, legend, legendColors);
+        }
+    }
+}
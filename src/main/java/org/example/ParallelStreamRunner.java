@@ -0,0 +1,107 @@
+package org.example;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongSupplier;
+
+/**
+ * Замер параллельных потоков над коллекцией: map, filter и reduce на пулах с разным числом ядер
+ * против последовательного потока. Поток, запущенный из задачи ForkJoinPool, выполняется в этом пуле,
+ * поэтому число ядер задается размером своего пула, а не общим пулом.
+ */
+class ParallelStreamRunner {
+    static final String[] PIPELINES = {"map", "filter", "reduce"};
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURE_RUNS = 5;
+    /** Раундов перемешивания на элемент: немного работы, чтобы замер не сводился к одному обходу. */
+    private static final int MIX_ROUNDS = 8;
+
+    static class Point {
+        final String pipeline;
+        /** 0 - последовательный поток. */
+        final int cores;
+        final long nanos;
+        final double speedup;
+        /** Время каждого замеренного прогона; nanos - лучшее из них. */
+        final double[] samples;
+
+        Point(String pipeline, int cores, double[] samples, double speedup) {
+            this.pipeline = pipeline;
+            this.cores = cores;
+            this.nanos = (long) best(samples);
+            this.speedup = speedup;
+            this.samples = samples;
+        }
+    }
+
+    /** Держит и элементы: ключи WeakHashMap иначе собрал бы сборщик мусора посреди замера. */
+    private final SpliteratorAnalyzer.Source source;
+    private final double[][] sequentialSamples = new double[PIPELINES.length][];
+    /** Результаты конвейеров уходят сюда, чтобы JIT не выбросил вычисление. */
+    static volatile long consumed;
+
+    ParallelStreamRunner(Class<?> type, int size) throws ReflectiveOperationException {
+        this.source = SpliteratorAnalyzer.source(type, size);
+    }
+
+    /** Последовательный поток - база для ускорения; вызывается до {@link #run}. */
+    Point sequential(int pipeline) {
+        sequentialSamples[pipeline] = measure(() -> evaluate(pipeline, false));
+        return new Point(PIPELINES[pipeline], 0, sequentialSamples[pipeline], 1);
+    }
+
+    Point run(int pipeline, int cores) throws InterruptedException, ExecutionException {
+        ForkJoinPool pool = new ForkJoinPool(cores);
+        try {
+            // Весь замер - одной задачей в пуле, чтобы parallelStream внутри делился между его потоками
+            double[] samples = pool.submit(() -> measure(() -> evaluate(pipeline, true))).get();
+            return new Point(PIPELINES[pipeline], cores, samples, best(sequentialSamples[pipeline]) / best(samples));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static double best(double[] samples) {
+        double best = Double.MAX_VALUE;
+        for (double sample : samples) {
+            best = Math.min(best, sample);
+        }
+        return best;
+    }
+
+    private static double[] measure(LongSupplier body) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            consumed = body.getAsLong();
+        }
+        double[] samples = new double[MEASURE_RUNS];
+        for (int i = 0; i < MEASURE_RUNS; i++) {
+            long start = System.nanoTime();
+            consumed = body.getAsLong();
+            samples[i] = System.nanoTime() - start;
+        }
+        return samples;
+    }
+
+    private long evaluate(int pipeline, boolean parallel) {
+        switch (pipeline) {
+            case 0:
+                return (parallel ? source.collection.parallelStream() : source.collection.stream())
+                        .mapToLong(ParallelStreamRunner::mix).max().orElse(0);
+            case 1:
+                return (parallel ? source.collection.parallelStream() : source.collection.stream())
+                        .filter(element -> (mix(element) & 3) == 0).count();
+            default:
+                return (parallel ? source.collection.parallelStream() : source.collection.stream())
+                        .reduce(0L, (sum, element) -> sum + mix(element), Long::sum);
+        }
+    }
+
+    private static long mix(int value) {
+        long x = value;
+        for (int i = 0; i < MIX_ROUNDS; i++) {
+            x ^= x >>> 33;
+            x *= 0xFF51AFD7ED558CCDL;
+        }
+        return x;
+    }
+}
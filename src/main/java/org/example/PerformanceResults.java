@@ -0,0 +1,271 @@
+package org.example;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Результаты JMH из модуля benchmarks (performance/jmh-results.json).
+ * Файл перечитывается только при изменении даты модификации.
+ */
+class PerformanceResults {
+    static final Path RESULTS_FILE = Paths.get("performance", "jmh-results.json");
+
+    // add и iterate в бенчмарках измеряются на всю коллекцию, здесь приводим к одному элементу
+    private static final Set<String> BATCH_OPERATIONS = new HashSet<>(Arrays.asList("add", "iterate"));
+    private static final String[] OPERATION_ORDER = {"add", "get", "contains", "iterate", "remove"};
+    private static final int BAR_MAX_WIDTH = 260;
+
+    private static PerformanceResults cached;
+    private static long cachedModified = -1;
+
+    private final Map<String, Map<String, TreeMap<Integer, Double>>> scores = new HashMap<>();
+    private final Map<String, Map<String, TreeMap<Integer, GcStats>>> gcStats = new HashMap<>();
+    private final Map<String, String> families = new HashMap<>();
+    private String jdkVersion;
+
+    /**
+     * Вторичные метрики профилировщика gc: выделение памяти на операцию, число и суммарное время сборок за замер.
+     */
+    private static class GcStats {
+        final double bytesPerOp;
+        final double count;
+        final double timeMillis;
+
+        GcStats(double bytesPerOp, double count, double timeMillis) {
+            this.bytesPerOp = bytesPerOp;
+            this.count = count;
+            this.timeMillis = timeMillis;
+        }
+    }
+
+    /**
+     * Дата модификации файла результатов; меняется, когда модуль benchmarks записывает новые замеры.
+     */
+    static long version() {
+        try {
+            return Files.exists(RESULTS_FILE) ? Files.getLastModifiedTime(RESULTS_FILE).toMillis() : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    static synchronized PerformanceResults get() {
+        try {
+            if (!Files.exists(RESULTS_FILE)) {
+                cached = null;
+                return null;
+            }
+            long modified = Files.getLastModifiedTime(RESULTS_FILE).toMillis();
+            if (cached == null || modified != cachedModified) {
+                cached = parse(new String(Files.readAllBytes(RESULTS_FILE), "UTF-8"));
+                cachedModified = modified;
+            }
+            return cached;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to load " + RESULTS_FILE + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    static PerformanceResults parse(String json) {
+        PerformanceResults results = new PerformanceResults();
+        JsonArray runs = new Gson().fromJson(json, JsonArray.class);
+        for (JsonElement element : runs) {
+            JsonObject run = element.getAsJsonObject();
+            JsonObject params = run.getAsJsonObject("params");
+            if (params == null || !params.has("impl") || !params.has("size")) {
+                continue;
+            }
+            String benchmark = run.get("benchmark").getAsString();
+            int dot = benchmark.lastIndexOf('.');
+            String operation = benchmark.substring(dot + 1);
+            String family = benchmark.substring(benchmark.lastIndexOf('.', dot - 1) + 1, dot);
+            String impl = params.get("impl").getAsString();
+            int size = params.get("size").getAsInt();
+            double score = perElement(operation, size, run.getAsJsonObject("primaryMetric").get("score").getAsDouble());
+
+            results.scores.computeIfAbsent(impl, k -> new HashMap<>())
+                    .computeIfAbsent(operation, k -> new TreeMap<>())
+                    .put(size, score);
+            results.families.put(impl + "#" + operation, family);
+
+            JsonObject secondary = run.getAsJsonObject("secondaryMetrics");
+            Map<String, Double> metrics = new HashMap<>();
+            if (secondary != null) {
+                // До JMH 1.36 имена метрик начинались с "·"
+                secondary.entrySet().forEach(e -> metrics.put(e.getKey().replace("\u00b7", ""),
+                        e.getValue().getAsJsonObject().get("score").getAsDouble()));
+            }
+            Double allocated = metrics.get("gc.alloc.rate.norm");
+            if (allocated != null) {
+                if (BATCH_OPERATIONS.contains(operation)) {
+                    allocated /= Math.max(size, 1);
+                }
+                results.gcStats.computeIfAbsent(impl, k -> new HashMap<>())
+                        .computeIfAbsent(operation, k -> new TreeMap<>())
+                        .put(size, new GcStats(allocated, metrics.getOrDefault("gc.count", 0.0),
+                                metrics.getOrDefault("gc.time", 0.0)));
+            }
+            if (run.has("jdkVersion")) {
+                results.jdkVersion = run.get("jdkVersion").getAsString();
+            }
+        }
+        return results;
+    }
+
+    /** Замер add и iterate на всю коллекцию, приведенный к одному элементу; остальные без изменений. */
+    static double perElement(String operation, int size, double score) {
+        return BATCH_OPERATIONS.contains(operation) ? score / Math.max(size, 1) : score;
+    }
+
+    boolean has(String impl) {
+        return scores.containsKey(impl);
+    }
+
+    /**
+     * Таблица "операция x размер" и столбчатые диаграммы в сравнении с соседними реализациями
+     * того же набора бенчмарков на максимальном размере. HTML рассчитан на HTMLEditorKit,
+     * поэтому диаграммы сделаны таблицами, а не CSS.
+     */
+    String toHtml(String impl) {
+        Map<String, TreeMap<Integer, Double>> byOperation = scores.get(impl);
+        if (byOperation == null) {
+            return "";
+        }
+        StringBuilder html = new StringBuilder();
+        html.append("<h3>MEASURED PERFORMANCE (JMH)</h3>");
+        html.append("<p>ns/op на этой машине");
+        if (jdkVersion != null) {
+            html.append(", JDK ").append(jdkVersion);
+        }
+        html.append(". add и iterate приведены к одному элементу.</p>");
+
+        SortedSet<Integer> sizes = new TreeSet<>();
+        byOperation.values().forEach(m -> sizes.addAll(m.keySet()));
+
+        html.append("<table border='1' cellspacing='0' cellpadding='3'><tr><th>operation</th>");
+        for (int size : sizes) {
+            html.append("<th>n=").append(size).append("</th>");
+        }
+        html.append("</tr>");
+        for (String operation : orderedOperations(byOperation.keySet())) {
+            html.append("<tr><td><b>").append(operation).append("</b></td>");
+            for (int size : sizes) {
+                Double score = byOperation.get(operation).get(size);
+                html.append("<td align='right'>").append(score != null ? formatScore(score) : "-").append("</td>");
+            }
+            html.append("</tr>");
+        }
+        html.append("</table>");
+
+        for (String operation : orderedOperations(byOperation.keySet())) {
+            int size = byOperation.get(operation).lastKey();
+            appendChart(html, impl, operation, size);
+        }
+        appendGcTable(html, impl, sizes);
+        return html.toString();
+    }
+
+    /**
+     * Таблица выделения памяти и сборок мусора; есть, только если бенчмарки запускались с профилировщиком gc.
+     */
+    private void appendGcTable(StringBuilder html, String impl, SortedSet<Integer> sizes) {
+        Map<String, TreeMap<Integer, GcStats>> byOperation = gcStats.get(impl);
+        if (byOperation == null) {
+            return;
+        }
+        html.append("<h3>ALLOCATION AND GC</h3>");
+        html.append("<p>Байт выделено на операцию (add и iterate - на элемент); ")
+                .append("число и суммарное время сборок за время замера.</p>");
+        html.append("<table border='1' cellspacing='0' cellpadding='3'><tr><th>operation</th>");
+        for (int size : sizes) {
+            html.append("<th>n=").append(size).append("</th>");
+        }
+        html.append("</tr>");
+        for (String operation : orderedOperations(byOperation.keySet())) {
+            html.append("<tr><td><b>").append(operation).append("</b></td>");
+            for (int size : sizes) {
+                GcStats stats = byOperation.get(operation).get(size);
+                html.append("<td align='right'>");
+                if (stats == null) {
+                    html.append("-");
+                } else {
+                    html.append(String.format(Locale.ROOT, "%.1f B/op", stats.bytesPerOp));
+                    if (stats.count > 0) {
+                        html.append(String.format(Locale.ROOT, "<br>%.0f GC, %.0f ms", stats.count, stats.timeMillis));
+                    }
+                }
+                html.append("</td>");
+            }
+            html.append("</tr>");
+        }
+        html.append("</table>");
+    }
+
+    private void appendChart(StringBuilder html, String impl, String operation, int size) {
+        String family = families.get(impl + "#" + operation);
+        Map<String, Double> row = new TreeMap<>();
+        for (Map.Entry<String, Map<String, TreeMap<Integer, Double>>> entry : scores.entrySet()) {
+            if (!family.equals(families.get(entry.getKey() + "#" + operation))) {
+                continue;
+            }
+            Double score = entry.getValue().get(operation).get(size);
+            if (score != null) {
+                row.put(entry.getKey(), score);
+            }
+        }
+        double max = row.values().stream().mapToDouble(Double::doubleValue).max().orElse(1);
+        double min = row.values().stream().mapToDouble(Double::doubleValue).min().orElse(1);
+
+        html.append("<p><b>").append(operation).append("</b>, n=").append(size)
+                .append(" (логарифмическая шкала, меньше - лучше)</p>");
+        html.append("<table cellspacing='0' cellpadding='1'>");
+        for (Map.Entry<String, Double> entry : row.entrySet()) {
+            int width = barWidth(entry.getValue(), min, max);
+            String color = entry.getKey().equals(impl) ? "#E65100" : "#90A4AE";
+            html.append("<tr><td>").append(entry.getKey()).append("</td><td>")
+                    .append("<table cellspacing='0' cellpadding='0'><tr><td bgcolor='").append(color)
+                    .append("' width='").append(width).append("' height='10'></td></tr></table>")
+                    .append("</td><td align='right'>").append(formatScore(entry.getValue())).append("</td></tr>");
+        }
+        html.append("</table>");
+    }
+
+    private static int barWidth(double value, double min, double max) {
+        if (max <= min) {
+            return BAR_MAX_WIDTH;
+        }
+        double low = Math.log10(Math.max(min, 1e-3)) - 0.5;
+        double ratio = (Math.log10(Math.max(value, 1e-3)) - low) / (Math.log10(max) - low);
+        return Math.max(2, (int) Math.round(ratio * BAR_MAX_WIDTH));
+    }
+
+    private static List<String> orderedOperations(Set<String> operations) {
+        List<String> ordered = new ArrayList<>();
+        for (String operation : OPERATION_ORDER) {
+            if (operations.contains(operation)) {
+                ordered.add(operation);
+            }
+        }
+        operations.stream().filter(o -> !ordered.contains(o)).sorted().forEach(ordered::add);
+        return ordered;
+    }
+
+    static String formatScore(double score) {
+        if (score >= 1_000_000) {
+            return String.format(Locale.ROOT, "%.2f ms", score / 1_000_000);
+        }
+        if (score >= 10_000) {
+            return String.format(Locale.ROOT, "%.1f µs", score / 1_000);
+        }
+        return String.format(Locale.ROOT, "%.1f ns", score);
+    }
+}
@@ -0,0 +1,92 @@
+package org.example;
+
+import java.util.*;
+
+/**
+ * Префиксное дерево "строка -> номера узлов". После {@link #freeze()} каждая вершина хранит
+ * отсортированный массив всех номеров своего поддерева, поэтому поиск по префиксу - это проход
+ * по символам префикса без обхода поддерева. Заполняется в одном потоке, читается после freeze из любого.
+ */
+class PrefixTrie {
+    private static final int[] EMPTY = new int[0];
+
+    private static class Vertex {
+        final Map<Character, Vertex> children = new HashMap<>(4);
+        /** Номера, для которых ключ заканчивается здесь; после freeze - номера всего поддерева. */
+        int[] ids = EMPTY;
+        int size;
+    }
+
+    private final Vertex root = new Vertex();
+    private int keys;
+
+    void add(String key, int id) {
+        Vertex vertex = root;
+        for (int i = 0; i < key.length(); i++) {
+            vertex = vertex.children.computeIfAbsent(key.charAt(i), c -> new Vertex());
+        }
+        if (vertex.size == vertex.ids.length) {
+            vertex.ids = Arrays.copyOf(vertex.ids, Math.max(2, vertex.size * 2));
+        }
+        vertex.ids[vertex.size++] = id;
+        keys++;
+    }
+
+    int keyCount() {
+        return keys;
+    }
+
+    /**
+     * Сводит номера поддеревьев снизу вверх. Обход итеративный: длинные ключи не упираются в глубину стека.
+     */
+    void freeze() {
+        ArrayDeque<Vertex> stack = new ArrayDeque<>();
+        List<Vertex> postOrder = new ArrayList<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Vertex vertex = stack.pop();
+            postOrder.add(vertex);
+            vertex.children.values().forEach(stack::push);
+        }
+        for (int i = postOrder.size() - 1; i >= 0; i--) {
+            Vertex vertex = postOrder.get(i);
+            int total = vertex.size;
+            for (Vertex child : vertex.children.values()) {
+                total += child.ids.length;
+            }
+            int[] merged = Arrays.copyOf(vertex.ids, total);
+            int position = vertex.size;
+            for (Vertex child : vertex.children.values()) {
+                System.arraycopy(child.ids, 0, merged, position, child.ids.length);
+                position += child.ids.length;
+            }
+            vertex.ids = distinctSorted(merged);
+            vertex.size = vertex.ids.length;
+        }
+    }
+
+    private static int[] distinctSorted(int[] ids) {
+        if (ids.length == 0) {
+            return EMPTY;
+        }
+        Arrays.sort(ids);
+        int unique = 1;
+        for (int i = 1; i < ids.length; i++) {
+            if (ids[i] != ids[unique - 1]) {
+                ids[unique++] = ids[i];
+            }
+        }
+        return unique == ids.length ? ids : Arrays.copyOf(ids, unique);
+    }
+
+    /**
+     * Отсортированные номера всех ключей с данным префиксом; массив общий, менять его нельзя.
+     */
+    int[] prefix(String prefix) {
+        Vertex vertex = root;
+        for (int i = 0; i < prefix.length() && vertex != null; i++) {
+            vertex = vertex.children.get(prefix.charAt(i));
+        }
+        return vertex == null ? EMPTY : vertex.ids;
+    }
+}
@@ -0,0 +1,116 @@
+package org.example;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Пространственный индекс прямоугольников с целочисленными идентификаторами.
+ * Элемент хранится в самом глубоком узле, который целиком его содержит.
+ */
+class QuadTree {
+    private static final int NODE_CAPACITY = 8;
+    private static final int MAX_DEPTH = 12;
+
+    private final Rectangle bounds;
+    private final int depth;
+    private final List<Rectangle> itemBounds = new ArrayList<>();
+    private int[] itemIds = new int[NODE_CAPACITY];
+    private QuadTree[] children;
+
+    QuadTree(Rectangle bounds) {
+        this(bounds, 0);
+    }
+
+    private QuadTree(Rectangle bounds, int depth) {
+        this.bounds = bounds;
+        this.depth = depth;
+    }
+
+    void insert(int id, Rectangle rect) {
+        if (children != null) {
+            QuadTree child = childContaining(rect);
+            if (child != null) {
+                child.insert(id, rect);
+                return;
+            }
+        }
+        store(id, rect);
+        if (children == null && itemBounds.size() > NODE_CAPACITY && depth < MAX_DEPTH) {
+            split();
+        }
+    }
+
+    private void store(int id, Rectangle rect) {
+        if (itemBounds.size() == itemIds.length) {
+            itemIds = java.util.Arrays.copyOf(itemIds, itemIds.length * 2);
+        }
+        itemIds[itemBounds.size()] = id;
+        itemBounds.add(rect);
+    }
+
+    private void split() {
+        int halfWidth = bounds.width / 2;
+        int halfHeight = bounds.height / 2;
+        children = new QuadTree[]{
+                new QuadTree(new Rectangle(bounds.x, bounds.y, halfWidth, halfHeight), depth + 1),
+                new QuadTree(new Rectangle(bounds.x + halfWidth, bounds.y, bounds.width - halfWidth, halfHeight), depth + 1),
+                new QuadTree(new Rectangle(bounds.x, bounds.y + halfHeight, halfWidth, bounds.height - halfHeight), depth + 1),
+                new QuadTree(new Rectangle(bounds.x + halfWidth, bounds.y + halfHeight,
+                        bounds.width - halfWidth, bounds.height - halfHeight), depth + 1)
+        };
+
+        // Переносим вниз все, что помещается в дочерний квадрант
+        List<Rectangle> oldBounds = new ArrayList<>(itemBounds);
+        int[] oldIds = itemIds;
+        itemBounds.clear();
+        itemIds = new int[NODE_CAPACITY];
+        for (int i = 0; i < oldBounds.size(); i++) {
+            Rectangle rect = oldBounds.get(i);
+            QuadTree child = childContaining(rect);
+            if (child != null) {
+                child.insert(oldIds[i], rect);
+            } else {
+                store(oldIds[i], rect);
+            }
+        }
+    }
+
+    private QuadTree childContaining(Rectangle rect) {
+        for (QuadTree child : children) {
+            if (child.bounds.contains(rect)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Вызывает consumer для каждого элемента, пересекающего область.
+     */
+    void query(Rectangle area, IntConsumer consumer) {
+        if (!bounds.intersects(area) && depth > 0) {
+            return;
+        }
+        for (int i = 0; i < itemBounds.size(); i++) {
+            if (itemBounds.get(i).intersects(area)) {
+                consumer.accept(itemIds[i]);
+            }
+        }
+        if (children != null) {
+            for (QuadTree child : children) {
+                child.query(area, consumer);
+            }
+        }
+    }
+
+    /**
+     * Последний добавленный элемент, содержащий точку (он же рисуется поверх остальных), или -1.
+     */
+    int findAt(int x, int y) {
+        int[] found = {-1};
+        query(new Rectangle(x, y, 1, 1), id -> found[0] = Math.max(found[0], id));
+        return found[0];
+    }
+}
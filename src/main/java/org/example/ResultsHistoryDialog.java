@@ -0,0 +1,196 @@
+package org.example;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Сравнение двух прогонов из истории замеров: одинаковые бенчмарки (реализация, операция, размер)
+ * сопоставляются, отличие средних проверяется t-критерием Уэлча. Регрессия - значимое ухудшение
+ * не меньше заданного порога; так разные JVM, сборщики и флаги сравниваются на одних и тех же замерах.
+ */
+class ResultsHistoryDialog extends JDialog {
+    private static final Color REGRESSION = new Color(0xFFCDD2);
+    private static final Color IMPROVEMENT = new Color(0xC8E6C9);
+
+    private enum Verdict {
+        REGRESSION("регрессия"),
+        IMPROVEMENT("улучшение"),
+        UNCHANGED("без изменений"),
+        TOO_FEW("мало замеров");
+
+        private final String title;
+
+        Verdict(String title) {
+            this.title = title;
+        }
+    }
+
+    private final JComboBox<ResultsStore.Run> baseline = new JComboBox<>();
+    private final JComboBox<ResultsStore.Run> candidate = new JComboBox<>();
+    private final JSpinner alpha = new JSpinner(new SpinnerNumberModel(0.05, 0.001, 0.2, 0.01));
+    private final JSpinner minChange = new JSpinner(new SpinnerNumberModel(2.0, 0.0, 100.0, 0.5));
+    private final JButton importButton = new JButton("Импорт JMH");
+    private final JLabel status = new JLabel(" ");
+    private final DefaultTableModel rows = new DefaultTableModel(new String[]{"Реализация", "Операция", "n",
+            "База", "Кандидат", "Изменение", "p", "Итог"}, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final List<Verdict> verdicts = new ArrayList<>();
+
+    ResultsHistoryDialog(Window owner) {
+        super(owner, "История замеров", ModalityType.MODELESS);
+        JTable table = new JTable(rows);
+        table.setAutoCreateRowSorter(true);
+        table.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
+            @Override
+            public Component getTableCellRendererComponent(JTable table, Object value, boolean selected,
+                                                           boolean focused, int row, int column) {
+                super.getTableCellRendererComponent(table, value, selected, focused, row, column);
+                if (!selected) {
+                    Verdict verdict = verdicts.get(table.convertRowIndexToModel(row));
+                    setBackground(verdict == Verdict.REGRESSION ? REGRESSION
+                            : verdict == Verdict.IMPROVEMENT ? IMPROVEMENT : table.getBackground());
+                }
+                return this;
+            }
+        });
+
+        baseline.addActionListener(e -> compare());
+        candidate.addActionListener(e -> compare());
+        alpha.addChangeListener(e -> compare());
+        minChange.addChangeListener(e -> compare());
+        JButton reload = new JButton("Обновить");
+        reload.addActionListener(e -> reload());
+        importButton.addActionListener(e -> importJmh());
+        importButton.setToolTipText("Перенести " + PerformanceResults.RESULTS_FILE + " в историю как отдельный прогон");
+
+        JPanel runs = new JPanel(new GridLayout(2, 1));
+        JPanel baselineRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        baselineRow.add(new JLabel("База"));
+        baselineRow.add(baseline);
+        JPanel candidateRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        candidateRow.add(new JLabel("Кандидат"));
+        candidateRow.add(candidate);
+        candidateRow.add(new JLabel("p <"));
+        candidateRow.add(alpha);
+        candidateRow.add(new JLabel("и изменение от, %"));
+        candidateRow.add(minChange);
+        candidateRow.add(reload);
+        candidateRow.add(importButton);
+        runs.add(baselineRow);
+        runs.add(candidateRow);
+
+        setLayout(new BorderLayout());
+        add(runs, BorderLayout.NORTH);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(status, BorderLayout.SOUTH);
+        setSize(1100, 600);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        reload();
+    }
+
+    private void reload() {
+        List<ResultsStore.Run> runs = ResultsStore.runs(ResultsStore.load());
+        importButton.setEnabled(Files.exists(PerformanceResults.RESULTS_FILE));
+        ResultsStore.Run[] items = runs.toArray(new ResultsStore.Run[0]);
+        baseline.setModel(new DefaultComboBoxModel<>(items));
+        candidate.setModel(new DefaultComboBoxModel<>(items));
+        if (runs.isEmpty()) {
+            rows.setRowCount(0);
+            verdicts.clear();
+            status.setText("История пуста: " + ResultsStore.HISTORY_FILE
+                    + " пополняется окнами сравнения, конкурентного доступа, трассы и параллельных потоков");
+            return;
+        }
+        // По умолчанию - последний прогон против ближайшего более раннего с общими бенчмарками
+        ResultsStore.Run last = runs.get(runs.size() - 1);
+        candidate.setSelectedItem(last);
+        baseline.setSelectedItem(last);
+        for (int i = runs.size() - 2; i >= 0; i--) {
+            if (!matches(runs.get(i), last).isEmpty()) {
+                baseline.setSelectedItem(runs.get(i));
+                break;
+            }
+        }
+        compare();
+    }
+
+    private void importJmh() {
+        try {
+            int imported = ResultsStore.importJmh();
+            reload();
+            status.setText(imported == 0 ? "Этот файл JMH уже в истории" : "Импортировано записей: " + imported);
+        } catch (IOException | RuntimeException e) {
+            status.setText("Ошибка импорта: " + e.getMessage());
+        }
+    }
+
+    /** Пары записей с одним бенчмарком: база - кандидат. */
+    private static List<ResultsStore.Record[]> matches(ResultsStore.Run base, ResultsStore.Run next) {
+        Map<String, ResultsStore.Record> byBenchmark = new HashMap<>();
+        for (ResultsStore.Record record : base.records) {
+            byBenchmark.put(record.benchmark(), record);
+        }
+        List<ResultsStore.Record[]> pairs = new ArrayList<>();
+        for (ResultsStore.Record record : next.records) {
+            ResultsStore.Record previous = byBenchmark.get(record.benchmark());
+            if (previous != null) {
+                pairs.add(new ResultsStore.Record[]{previous, record});
+            }
+        }
+        return pairs;
+    }
+
+    private void compare() {
+        ResultsStore.Run base = (ResultsStore.Run) baseline.getSelectedItem();
+        ResultsStore.Run next = (ResultsStore.Run) candidate.getSelectedItem();
+        rows.setRowCount(0);
+        verdicts.clear();
+        if (base == null || next == null) {
+            return;
+        }
+        double significance = ((Number) alpha.getValue()).doubleValue();
+        double threshold = ((Number) minChange.getValue()).doubleValue();
+        Map<Verdict, Integer> counts = new EnumMap<>(Verdict.class);
+        for (ResultsStore.Record[] pair : matches(base, next)) {
+            ResultsStore.Record before = pair[0];
+            ResultsStore.Record after = pair[1];
+            double change = 100 * (after.mean() - before.mean()) / before.mean();
+            double p = WelchTest.pValue(before.samples, after.samples);
+            Verdict verdict;
+            if (Double.isNaN(p)) {
+                verdict = Verdict.TOO_FEW;
+            } else if (p < significance && Math.abs(change) >= threshold) {
+                verdict = after.higherIsBetter == change > 0 ? Verdict.IMPROVEMENT : Verdict.REGRESSION;
+            } else {
+                verdict = Verdict.UNCHANGED;
+            }
+            counts.merge(verdict, 1, Integer::sum);
+            verdicts.add(verdict);
+            rows.addRow(new Object[]{after.implementation, after.operation, after.size,
+                    ResultsStore.formatValue(before.mean(), before.unit) + " (" + before.samples.length + ")",
+                    ResultsStore.formatValue(after.mean(), after.unit) + " (" + after.samples.length + ")",
+                    String.format(Locale.ROOT, "%+.1f%%", change),
+                    Double.isNaN(p) ? "" : String.format(Locale.ROOT, "%.4f", p), verdict.title});
+        }
+        if (verdicts.isEmpty()) {
+            status.setText("У прогонов нет общих бенчмарков");
+            return;
+        }
+        StringJoiner summary = new StringJoiner(", ");
+        for (Verdict verdict : Verdict.values()) {
+            summary.add(verdict.title + ": " + counts.getOrDefault(verdict, 0));
+        }
+        status.setText(summary + ". В скобках - число замеров; без двух замеров с обеих сторон t-критерий не считается.");
+    }
+}
@@ -0,0 +1,429 @@
+package org.example;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * История замеров: каждый прогон окон сравнения, конкурентного доступа, трассы и параллельных потоков
+ * дописывается в performance/history.jsonl, по записи JSON в строке. Файл только растет,
+ * существующие строки не переписываются. Запись - одна реализация, операция и размер в одном
+ * окружении (версия JVM, сборщик и флаги) со всеми замерами, чтобы запуски можно было сравнить t-критерием.
+ */
+class ResultsStore {
+    static final Path HISTORY_FILE = Paths.get("performance", "history.jsonl");
+
+    private static final Gson GSON = new Gson();
+    private static final int MAX_HISTORY_ROWS = 40;
+    private static final double SIGNIFICANCE = 0.05;
+
+    private static List<Record> cached;
+    /** Размер файла при чтении кэша: файл только дописывается, поэтому размер - надежная версия. */
+    private static long cachedSize = -1;
+
+    /** Одна строка файла; поля простые, чтобы читаться Gson без адаптеров. */
+    static class Record {
+        /** Общий для всех записей одного прогона окна. */
+        String run;
+        long timestamp;
+        String source;
+        String implementation;
+        String operation;
+        int size;
+        String jvm;
+        String flags;
+        String unit;
+        boolean higherIsBetter;
+        double[] samples;
+
+        double mean() {
+            return WelchTest.mean(samples);
+        }
+
+        String environment() {
+            return jvm + ", " + flags;
+        }
+
+        /** Ключ сравнения между запусками: без окружения, его и сравниваем. */
+        String benchmark() {
+            return implementation + "|" + operation + "|" + size + "|" + unit;
+        }
+    }
+
+    /** Записи одного прогона окна. */
+    static class Run {
+        final String id;
+        final long timestamp;
+        final String source;
+        final String environment;
+        final List<Record> records = new ArrayList<>();
+
+        Run(Record first) {
+            this.id = first.run;
+            this.timestamp = first.timestamp;
+            this.source = first.source;
+            this.environment = first.environment();
+        }
+
+        @Override
+        public String toString() {
+            return formatTime(timestamp) + " " + source + ", " + environment + " (" + records.size() + " зап.)";
+        }
+    }
+
+    private final String run;
+    private final long timestamp = System.currentTimeMillis();
+    private final String source;
+    private final List<Record> records = new ArrayList<>();
+
+    /** Новый прогон; записи копятся в памяти до {@link #save}. */
+    ResultsStore(String source) {
+        this.source = source;
+        this.run = source + "-" + timestamp + "-" + Long.toHexString(System.nanoTime() & 0xFFFFFF);
+    }
+
+    /** Замер в этой JVM. */
+    void add(String implementation, String operation, int size, String unit, boolean higherIsBetter,
+             double[] samples) {
+        add(implementation, operation, size, unit, higherIsBetter, samples, jvm(), flags());
+    }
+
+    /** Замер в другой JVM (форк); окружение сообщает сам форк. */
+    void add(String implementation, String operation, int size, String unit, boolean higherIsBetter,
+             double[] samples, String jvm, String flags) {
+        if (samples == null || samples.length == 0) {
+            return;
+        }
+        for (double sample : samples) {
+            if (Double.isNaN(sample) || Double.isInfinite(sample)) {
+                return;
+            }
+        }
+        Record record = new Record();
+        record.run = run;
+        record.timestamp = timestamp;
+        record.source = source;
+        record.implementation = ClassInfo.rawName(implementation);
+        record.operation = operation;
+        record.size = size;
+        record.jvm = jvm;
+        record.flags = flags;
+        record.unit = unit;
+        record.higherIsBetter = higherIsBetter;
+        record.samples = samples;
+        records.add(record);
+    }
+
+    int size() {
+        return records.size();
+    }
+
+    /** Дописывает накопленные записи одним вызовом; повторный вызов допишет только новые. */
+    void save() throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        append(records);
+        records.clear();
+    }
+
+    /** Сохраняет и возвращает приписку для строки статуса окна: сколько записей ушло в историю или почему не ушли. */
+    String saveForStatus() {
+        int count = records.size();
+        if (count == 0) {
+            return "";
+        }
+        try {
+            save();
+            return "; в истории +" + count;
+        } catch (IOException e) {
+            return "; история не сохранена: " + e.getMessage();
+        }
+    }
+
+    /** Версия JVM вместе с номером сборки: 17.0.9+9. */
+    static String jvm() {
+        return System.getProperty("java.runtime.version", System.getProperty("java.version"));
+    }
+
+    /** Сборщик мусора и флаги -X/-XX, с которыми запущена эта JVM. */
+    static String flags() {
+        StringBuilder flags = new StringBuilder(garbageCollector());
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith("-X")) {
+                flags.append(' ').append(argument);
+            }
+        }
+        return flags.toString();
+    }
+
+    private static String garbageCollector() {
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String name = collector.getName();
+            if (name.startsWith("G1")) {
+                return "G1";
+            }
+            if (name.startsWith("PS ")) {
+                return "Parallel";
+            }
+            if (name.equals("Copy") || name.equals("MarkSweepCompact")) {
+                return "Serial";
+            }
+            if (name.startsWith("ZGC")) {
+                return "ZGC";
+            }
+            if (name.startsWith("Shenandoah")) {
+                return "Shenandoah";
+            }
+        }
+        return "GC?";
+    }
+
+    /**
+     * Размер файла истории; входит в ключ кэша окна деталей.
+     */
+    static long version() {
+        try {
+            return Files.exists(HISTORY_FILE) ? Files.size(HISTORY_FILE) : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /** Все записи по порядку добавления; файл перечитывается только при изменении. Битые строки пропускаются. */
+    static synchronized List<Record> load() {
+        try {
+            if (!Files.exists(HISTORY_FILE)) {
+                cached = Collections.emptyList();
+                return cached;
+            }
+            long size = Files.size(HISTORY_FILE);
+            if (cached == null || size != cachedSize) {
+                List<Record> records = new ArrayList<>();
+                int skipped = 0;
+                for (String line : Files.readAllLines(HISTORY_FILE, StandardCharsets.UTF_8)) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        Record record = GSON.fromJson(line, Record.class);
+                        if (record != null && record.run != null && record.implementation != null
+                                && record.operation != null && record.unit != null
+                                && record.samples != null && record.samples.length > 0) {
+                            records.add(record);
+                            continue;
+                        }
+                    } catch (JsonParseException e) {
+                        // Оборванная последняя строка после сбоя - пропускаем, остальное читается
+                    }
+                    skipped++;
+                }
+                if (skipped > 0) {
+                    System.err.println(HISTORY_FILE + ": skipped " + skipped + " malformed line(s)");
+                }
+                cached = Collections.unmodifiableList(records);
+                cachedSize = size;
+            }
+            return cached;
+        } catch (IOException e) {
+            System.err.println("Failed to load " + HISTORY_FILE + ": " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /** Прогоны от старых к новым. */
+    static List<Run> runs(List<Record> records) {
+        Map<String, Run> runs = new LinkedHashMap<>();
+        for (Record record : records) {
+            runs.computeIfAbsent(record.run, id -> new Run(record)).records.add(record);
+        }
+        List<Run> ordered = new ArrayList<>(runs.values());
+        ordered.sort(Comparator.comparingLong(r -> r.timestamp));
+        return ordered;
+    }
+
+    /**
+     * Переносит performance/jmh-results.json модуля benchmarks в историю как отдельный прогон
+     * со всеми итерациями всех форков. Файл с той же датой модификации второй раз не импортируется.
+     *
+     * @return число записей; 0, если этот файл уже в истории
+     */
+    static int importJmh() throws IOException {
+        Path file = PerformanceResults.RESULTS_FILE;
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        String runId = "jmh-" + modified;
+        for (Record record : load()) {
+            if (record.run.equals(runId)) {
+                return 0;
+            }
+        }
+        JsonArray results = GSON.fromJson(new String(Files.readAllBytes(file), StandardCharsets.UTF_8),
+                JsonArray.class);
+        List<Record> records = new ArrayList<>();
+        for (JsonElement element : results) {
+            JsonObject result = element.getAsJsonObject();
+            JsonObject params = result.getAsJsonObject("params");
+            JsonObject metric = result.getAsJsonObject("primaryMetric");
+            if (params == null || !params.has("impl") || !params.has("size") || !metric.has("rawData")) {
+                continue;
+            }
+            String benchmark = result.get("benchmark").getAsString();
+            String operation = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+            int size = params.get("size").getAsInt();
+            List<Double> samples = new ArrayList<>();
+            for (JsonElement fork : metric.getAsJsonArray("rawData")) {
+                for (JsonElement iteration : fork.getAsJsonArray()) {
+                    samples.add(PerformanceResults.perElement(operation, size, iteration.getAsDouble()));
+                }
+            }
+            JsonArray jvmArgs = result.has("jvmArgs") ? result.getAsJsonArray("jvmArgs") : new JsonArray();
+            StringBuilder flags = new StringBuilder(jmhCollector(jvmArgs));
+            for (JsonElement argument : jvmArgs) {
+                if (argument.getAsString().startsWith("-X")) {
+                    flags.append(' ').append(argument.getAsString());
+                }
+            }
+            Record record = new Record();
+            record.run = runId;
+            record.timestamp = modified;
+            record.source = "jmh";
+            record.implementation = params.get("impl").getAsString();
+            record.operation = operation;
+            record.size = size;
+            record.jvm = result.has("vmVersion") ? result.get("vmVersion").getAsString()
+                    : result.has("jdkVersion") ? result.get("jdkVersion").getAsString() : "?";
+            record.flags = flags.toString();
+            record.unit = metric.get("scoreUnit").getAsString();
+            record.higherIsBetter = record.unit.endsWith("/s");
+            record.samples = samples.stream().mapToDouble(Double::doubleValue).toArray();
+            records.add(record);
+        }
+        if (!records.isEmpty()) {
+            append(records);
+        }
+        return records.size();
+    }
+
+    private static synchronized void append(List<Record> records) throws IOException {
+        Files.createDirectories(HISTORY_FILE.getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(HISTORY_FILE, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (Record record : records) {
+                writer.write(GSON.toJson(record));
+                writer.newLine();
+            }
+        }
+    }
+
+    /** Сборщик форка JMH по его флагам; без флага - сборщик по умолчанию для JDK 9+. */
+    private static String jmhCollector(JsonArray jvmArgs) {
+        for (JsonElement argument : jvmArgs) {
+            String value = argument.getAsString();
+            if (value.equals("-XX:+UseParallelGC")) {
+                return "Parallel";
+            }
+            if (value.equals("-XX:+UseSerialGC")) {
+                return "Serial";
+            }
+            if (value.equals("-XX:+UseZGC")) {
+                return "ZGC";
+            }
+            if (value.equals("-XX:+UseShenandoahGC")) {
+                return "Shenandoah";
+            }
+        }
+        return "G1";
+    }
+
+    static String formatTime(long millis) {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm").format(new Date(millis));
+    }
+
+    static String formatValue(double value, String unit) {
+        if (unit.equals("ns/op") || unit.equals("ns")) {
+            return PerformanceResults.formatScore(value);
+        }
+        return ComparisonDialog.formatCount(value) + " " + unit;
+    }
+
+    /**
+     * История реализации по окружениям для окна деталей: на каждый бенчмарк - последний прогон
+     * в каждом окружении и его отличие от первого окружения; значимые отличия выделены.
+     */
+    static String historyHtml(String implementation) {
+        Map<String, Map<String, Record>> latest = new TreeMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        for (Record record : load()) {
+            if (!record.implementation.equals(implementation)) {
+                continue;
+            }
+            Map<String, Record> byEnvironment = latest.computeIfAbsent(
+                    record.operation + "|" + String.format(Locale.ROOT, "%012d", record.size) + "|" + record.unit,
+                    k -> new LinkedHashMap<>());
+            Record previous = byEnvironment.get(record.environment());
+            if (previous == null || previous.timestamp <= record.timestamp) {
+                // put по существующему ключу не двигает его: окружения идут в порядке первого появления
+                byEnvironment.put(record.environment(), record);
+            }
+            counts.merge(record.benchmark() + "|" + record.environment(), 1, Integer::sum);
+        }
+        if (latest.isEmpty()) {
+            return "";
+        }
+        StringBuilder html = new StringBuilder("<h3>HISTORY</h3>");
+        html.append("<p>Последний прогон в каждом окружении; изменение - к первому окружению в списке, ")
+                .append("<b>жирным</b> - значимо по t-критерию Уэлча (p &lt; ").append(SIGNIFICANCE).append(").</p>");
+        html.append("<table border='1' cellspacing='0' cellpadding='3'><tr><th>операция</th><th>n</th>")
+                .append("<th>JVM</th><th>GC и флаги</th><th>среднее</th><th>изменение</th><th>прогонов</th>")
+                .append("<th>последний</th></tr>");
+        int rows = 0;
+        for (Map<String, Record> byEnvironment : latest.values()) {
+            Record first = null;
+            for (Record record : byEnvironment.values()) {
+                if (rows++ == MAX_HISTORY_ROWS) {
+                    html.append("</table><p>... показаны первые ").append(MAX_HISTORY_ROWS).append(" строк</p>");
+                    return html.toString();
+                }
+                html.append("<tr><td>").append(record.operation).append("</td><td align='right'>")
+                        .append(record.size).append("</td><td>").append(record.jvm).append("</td><td>")
+                        .append(record.flags).append("</td><td align='right'>")
+                        .append(formatValue(record.mean(), record.unit)).append("</td><td align='right'>");
+                if (first == null) {
+                    first = record;
+                    html.append("-");
+                } else {
+                    html.append(changeHtml(first, record));
+                }
+                html.append("</td><td align='right'>").append(counts.get(record.benchmark() + "|" + record.environment()))
+                        .append("</td><td>").append(formatTime(record.timestamp)).append("</td></tr>");
+            }
+        }
+        html.append("</table>");
+        return html.toString();
+    }
+
+    private static String changeHtml(Record baseline, Record candidate) {
+        double change = 100 * (candidate.mean() - baseline.mean()) / baseline.mean();
+        double p = WelchTest.pValue(baseline.samples, candidate.samples);
+        String text = String.format(Locale.ROOT, "%+.1f%%", change);
+        if (Double.isNaN(p) || p >= SIGNIFICANCE) {
+            return text;
+        }
+        boolean better = candidate.higherIsBetter == change > 0;
+        return "<b><font color='" + (better ? "#2E7D32" : "#C62828") + "'>" + text + "</font></b>";
+    }
+}
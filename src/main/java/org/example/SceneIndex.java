@@ -0,0 +1,85 @@
+package org.example;
+
+import java.awt.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Квадродеревья узлов и ребер модели и отрисовка статической части сцены по ним.
+ * После построения только читается, поэтому одну сцену могут рисовать несколько потоков сразу
+ * (плитки экспорта), пока модель не меняется.
+ */
+class SceneIndex {
+    /** Ниже этого масштаба шрифт узла меньше 7 пикселей и подписи не читаются. */
+    static final double LABEL_MIN_ZOOM = 0.6;
+    static final double EDGE_DETAIL_MIN_ZOOM = 0.35;
+
+    private final HierarchyModel model;
+    private final QuadTree nodeIndex;
+    private final QuadTree edgeIndex;
+
+    SceneIndex(HierarchyModel model, int margin) {
+        this.model = model;
+        Rectangle world = model.contentBounds();
+        world.grow(margin, margin);
+        nodeIndex = new QuadTree(world);
+        for (int id = 0; id < model.nodeCount(); id++) {
+            nodeIndex.insert(id, model.node(id).bounds());
+        }
+        edgeIndex = new QuadTree(world);
+        for (int edge = 0; edge < model.edgeCount(); edge++) {
+            edgeIndex.insert(edge, SceneRenderer.edgeBounds(
+                    model.node(model.edgeFrom(edge)), model.node(model.edgeTo(edge))));
+        }
+    }
+
+    int nodeAt(int x, int y) {
+        return nodeIndex.findAt(x, y);
+    }
+
+    /**
+     * Рисует часть сцены, попадающую в clip (мировые координаты). Детализация зависит от масштаба:
+     * мелкие подписи не рисуются, а ребра одного родителя на мелком масштабе сливаются в общую шину.
+     */
+    void paint(Graphics2D g2, Rectangle clip, double scale) {
+        boolean labels = scale >= LABEL_MIN_ZOOM;
+        boolean detailedEdges = scale >= EDGE_DETAIL_MIN_ZOOM;
+
+        if (labels) {
+            Rectangle groupBounds = new Rectangle(0, 0, SceneRenderer.GROUP_WIDTH, SceneRenderer.GROUP_HEIGHT);
+            for (HierarchyModel.Group group : model.groups()) {
+                groupBounds.setLocation(group.x, group.y);
+                if (groupBounds.intersects(clip)) {
+                    SceneRenderer.paintGroup(g2, group);
+                }
+            }
+        }
+
+        if (detailedEdges) {
+            edgeIndex.query(clip, edge -> SceneRenderer.paintEdge(g2,
+                    model.node(model.edgeFrom(edge)), model.node(model.edgeTo(edge))));
+        } else {
+            // Для каждого родителя помним самого глубокого уже нарисованного ребенка: короткие отрезки шины не повторяем
+            Map<Integer, Integer> trunkEnds = new HashMap<>();
+            edgeIndex.query(clip, edge -> {
+                int from = model.edgeFrom(edge);
+                HierarchyModel.Node parent = model.node(from);
+                HierarchyModel.Node child = model.node(model.edgeTo(edge));
+                Integer drawnTo = trunkEnds.get(from);
+                if (drawnTo == null || drawnTo < child.y) {
+                    trunkEnds.put(from, child.y);
+                    SceneRenderer.paintEdgeTrunk(g2, parent, child);
+                }
+                SceneRenderer.paintEdgeSimplified(g2, parent, child);
+            });
+        }
+
+        nodeIndex.query(clip, id -> {
+            if (labels) {
+                SceneRenderer.paintNode(g2, model.node(id), false, false);
+            } else {
+                SceneRenderer.paintNodeSimplified(g2, model.node(id));
+            }
+        });
+    }
+}
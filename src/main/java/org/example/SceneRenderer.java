@@ -0,0 +1,157 @@
+package org.example;
+
+import java.awt.*;
+
+/**
+ * Отрисовка элементов сцены. Шрифты и штрихи общие для всех вызовов,
+ * геометрия стрелки не пересчитывается: ребра всегда входят в узел сверху вниз.
+ */
+final class SceneRenderer {
+    static final int GROUP_WIDTH = 200;
+    static final int GROUP_HEIGHT = 30;
+    static final int ARROW_HALF_WIDTH = 5;
+    static final int ARROW_LENGTH = 8;
+
+    static final Font GROUP_FONT = new Font("SansSerif", Font.BOLD, 14);
+    static final Font NODE_FONT = new Font("SansSerif", Font.BOLD, 11);
+    static final BasicStroke EDGE_STROKE = new BasicStroke(1.5f);
+    static final BasicStroke BORDER_STROKE = new BasicStroke(1f);
+    static final BasicStroke HOVER_STROKE = new BasicStroke(2f);
+    static final Color BACKGROUND = new Color(240, 240, 240);
+    static final Color EDGE_COLOR = Color.DARK_GRAY;
+    static final Color HOVER_COLOR = Color.BLUE;
+    static final Color SELECTION_COLOR = new Color(0xFF6F00);
+    static final BasicStroke SELECTION_STROKE = new BasicStroke(3f);
+    static final BasicStroke SIMPLIFIED_EDGE_STROKE = new BasicStroke(1f);
+    static final Color HIGHLIGHT_COLOR = new Color(0xFFD600);
+    static final BasicStroke HIGHLIGHT_STROKE = new BasicStroke(4f);
+    /** Насколько подсветка результата поиска выходит за прямоугольник узла. */
+    static final int HIGHLIGHT_MARGIN = 4;
+    static final Font BADGE_FONT = new Font("SansSerif", Font.PLAIN, 9);
+    static final Color BADGE_BACKGROUND = new Color(32, 33, 36, 210);
+
+    private SceneRenderer() {
+    }
+
+    static void paintGroup(Graphics2D g2, HierarchyModel.Group group) {
+        g2.setColor(group.color);
+        g2.fillRoundRect(group.x, group.y, GROUP_WIDTH, GROUP_HEIGHT, 15, 15);
+        g2.setColor(Color.BLACK);
+        g2.setFont(GROUP_FONT);
+        g2.drawString(group.name, group.x + 10, group.y + 20);
+    }
+
+    static void paintEdge(Graphics2D g2, HierarchyModel.Node from, HierarchyModel.Node to) {
+        int fromX = from.x + from.width / 2;
+        int fromY = from.y + from.height;
+        int toX = to.x + to.width / 2;
+        int toY = to.y;
+        int midY = fromY + (toY - fromY) / 2;
+
+        g2.setColor(EDGE_COLOR);
+        g2.setStroke(EDGE_STROKE);
+        g2.drawLine(fromX, fromY, fromX, midY);
+        g2.drawLine(fromX, midY, toX, midY);
+        g2.drawLine(toX, midY, toX, toY);
+
+        g2.fillPolygon(new int[]{toX, toX - ARROW_HALF_WIDTH, toX + ARROW_HALF_WIDTH},
+                new int[]{toY, toY - ARROW_LENGTH, toY - ARROW_LENGTH}, 3);
+    }
+
+    /**
+     * Ребро для мелкого масштаба: без стрелки и без общего для всех детей отрезка от родителя -
+     * его рисует {@link #paintEdgeTrunk} один раз на родителя, так ребра одного родителя сливаются в шину.
+     */
+    static void paintEdgeSimplified(Graphics2D g2, HierarchyModel.Node from, HierarchyModel.Node to) {
+        int fromX = from.x + from.width / 2;
+        int toX = to.x + to.width / 2;
+        int toY = to.y;
+        int midY = from.y + from.height + (toY - from.y - from.height) / 2;
+
+        g2.setColor(EDGE_COLOR);
+        g2.setStroke(SIMPLIFIED_EDGE_STROKE);
+        g2.drawLine(fromX, midY, toX, midY);
+        g2.drawLine(toX, midY, toX, toY);
+    }
+
+    static void paintEdgeTrunk(Graphics2D g2, HierarchyModel.Node from, HierarchyModel.Node to) {
+        int fromX = from.x + from.width / 2;
+        int fromY = from.y + from.height;
+        g2.setColor(EDGE_COLOR);
+        g2.setStroke(SIMPLIFIED_EDGE_STROKE);
+        g2.drawLine(fromX, fromY, fromX, fromY + (to.y - fromY) / 2);
+    }
+
+    /**
+     * Прямоугольник, покрывающий ребро вместе со стрелкой и толщиной линии.
+     */
+    static Rectangle edgeBounds(HierarchyModel.Node from, HierarchyModel.Node to) {
+        int fromX = from.x + from.width / 2;
+        int fromY = from.y + from.height;
+        int toX = to.x + to.width / 2;
+        int toY = to.y;
+        Rectangle bounds = new Rectangle(fromX, fromY, 0, 0);
+        bounds.add(toX, toY);
+        bounds.grow(ARROW_HALF_WIDTH + 2, ARROW_LENGTH + 2);
+        return bounds;
+    }
+
+    /**
+     * Узел для мелкого масштаба: подпись все равно не читается, рисуем только прямоугольник.
+     */
+    static void paintNodeSimplified(Graphics2D g2, HierarchyModel.Node node) {
+        g2.setColor(node.fill);
+        g2.fillRect(node.x, node.y, node.width, node.height);
+        g2.setColor(Color.DARK_GRAY);
+        g2.setStroke(BORDER_STROKE);
+        g2.drawRect(node.x, node.y, node.width - 1, node.height - 1);
+    }
+
+    static void paintNode(Graphics2D g2, HierarchyModel.Node node, boolean hovered, boolean selected) {
+        g2.setColor(node.fill);
+        g2.fillRect(node.x, node.y, node.width, node.height);
+
+        if (selected) {
+            // Рамка выделения внутри узла, чтобы не выходить за его прямоугольник в индексе
+            g2.setColor(SELECTION_COLOR);
+            g2.setStroke(SELECTION_STROKE);
+            g2.drawRect(node.x + 1, node.y + 1, node.width - 3, node.height - 3);
+        }
+        g2.setColor(hovered ? HOVER_COLOR : Color.BLACK);
+        g2.setStroke(hovered ? HOVER_STROKE : BORDER_STROKE);
+        g2.drawRect(node.x, node.y, node.width - 1, node.height - 1);
+
+        g2.setFont(NODE_FONT);
+        FontMetrics metrics = g2.getFontMetrics();
+        int textX = node.x + (node.width - metrics.stringWidth(node.name)) / 2;
+        int textY = node.y + (node.height - metrics.getHeight()) / 2 + metrics.getAscent();
+        g2.setColor(Color.BLACK);
+        g2.drawString(node.name, textX, textY);
+    }
+
+    /**
+     * Подсветка результата поиска: широкая рамка снаружи узла, видна и на мелком масштабе.
+     */
+    static void paintHighlight(Graphics2D g2, HierarchyModel.Node node) {
+        g2.setColor(HIGHLIGHT_COLOR);
+        g2.setStroke(HIGHLIGHT_STROKE);
+        g2.drawRect(node.x - HIGHLIGHT_MARGIN / 2, node.y - HIGHLIGHT_MARGIN / 2,
+                node.width + HIGHLIGHT_MARGIN - 1, node.height + HIGHLIGHT_MARGIN - 1);
+    }
+
+    /**
+     * Подпись у нижнего края узла, не выходя за его прямоугольник: перерисовка узла стирает и ее.
+     */
+    static void paintBadge(Graphics2D g2, HierarchyModel.Node node, String text) {
+        g2.setFont(BADGE_FONT);
+        FontMetrics metrics = g2.getFontMetrics();
+        int width = Math.min(node.width - 4, metrics.stringWidth(text) + 6);
+        int height = metrics.getHeight();
+        int x = node.x + node.width - width - 2;
+        int y = node.y + node.height - height - 2;
+        g2.setColor(BADGE_BACKGROUND);
+        g2.fillRoundRect(x, y, width, height, 6, 6);
+        g2.setColor(Color.WHITE);
+        g2.drawString(text, x + 3, y + metrics.getAscent());
+    }
+}
@@ -0,0 +1,142 @@
+package org.example;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Поле поиска над схемой: подсвечивает подходящие узлы при каждом нажатии клавиши и прокручивает
+ * к первому; Enter переходит к следующему, Esc очищает, Ctrl+F переводит фокус в поле.
+ * Индекс перестраивается в фоне после того, как модель перестала меняться.
+ */
+class SearchBar extends JPanel {
+    private static final int REBUILD_DELAY_MILLIS = 400;
+
+    private final HierarchyModel model;
+    private final HierarchyCanvas canvas;
+    private final JTextField field = new JTextField(22);
+    private final JLabel status = new JLabel(" ");
+    private final Timer rebuildTimer;
+    private SearchIndex index = SearchIndex.EMPTY;
+    private SwingWorker<SearchIndex, Void> builder;
+    private boolean rebuildPending;
+    private int[] matches = new int[0];
+    private int current;
+
+    SearchBar(HierarchyModel model, HierarchyCanvas canvas) {
+        super(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        this.model = model;
+        this.canvas = canvas;
+        setOpaque(false);
+        field.setToolTipText("Имя типа, метод или слова из описания, например: floor ceiling log");
+        add(new JLabel("Поиск:"));
+        add(field);
+        add(status);
+
+        rebuildTimer = new Timer(REBUILD_DELAY_MILLIS, e -> rebuild());
+        rebuildTimer.setRepeats(false);
+        model.addChangeListener(rebuildTimer::restart);
+
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                runQuery();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                runQuery();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                runQuery();
+            }
+        });
+        field.addActionListener(e -> showNext());
+        field.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "clear");
+        field.getActionMap().put("clear", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                field.setText("");
+            }
+        });
+        getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_F, InputEvent.CTRL_DOWN_MASK),
+                "focusSearch");
+        getActionMap().put("focusSearch", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                field.requestFocusInWindow();
+                field.selectAll();
+            }
+        });
+    }
+
+    private void rebuild() {
+        if (builder != null) {
+            rebuildPending = true;
+            return;
+        }
+        List<SearchIndex.Entry> entries = SearchIndex.entries(model);
+        status.setText(index == SearchIndex.EMPTY ? "индекс строится..." : status.getText());
+        builder = new SwingWorker<SearchIndex, Void>() {
+            @Override
+            protected SearchIndex doInBackground() {
+                return SearchIndex.build(entries);
+            }
+
+            @Override
+            protected void done() {
+                builder = null;
+                try {
+                    index = get();
+                    runQuery();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    status.setText("Ошибка индекса: " + e.getCause());
+                    e.getCause().printStackTrace();
+                }
+                if (rebuildPending) {
+                    rebuildPending = false;
+                    rebuild();
+                }
+            }
+        };
+        builder.execute();
+    }
+
+    private void runQuery() {
+        String query = field.getText();
+        long start = System.nanoTime();
+        matches = index.query(query);
+        long elapsed = System.nanoTime() - start;
+        current = 0;
+        canvas.setHighlighted(matches);
+        if (query.trim().isEmpty()) {
+            status.setText(index == SearchIndex.EMPTY && builder != null ? "индекс строится..." : " ");
+            return;
+        }
+        if (matches.length > 0) {
+            canvas.scrollToNode(matches[0]);
+        }
+        status.setText(String.format(Locale.ROOT, "%d из %d, %s", matches.length, index.nodeCount(),
+                LatencyHistogram.formatNanos(elapsed)));
+    }
+
+    private void showNext() {
+        if (matches.length == 0) {
+            return;
+        }
+        current = (current + 1) % matches.length;
+        canvas.scrollToNode(matches[current]);
+        status.setText((current + 1) + " / " + matches.length + ": " + model.node(matches[current]).name);
+    }
+}
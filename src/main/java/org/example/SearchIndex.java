@@ -0,0 +1,198 @@
+package org.example;
+
+import java.util.*;
+
+/**
+ * Индекс поиска по схеме: префиксное дерево имен типов и обратный индекс слов из имен публичных
+ * методов (из {@link MetadataIndex}) и из characteristics, usage и performance в class_info.
+ * Строится один раз в фоне; запрос - несколько проходов по префиксному дереву и пересечение
+ * отсортированных массивов, без обращения к рефлексии и файлам.
+ */
+class SearchIndex {
+    static final SearchIndex EMPTY = new SearchIndex(new PrefixTrie(), new PrefixTrie(), 0);
+    /** Методы Object есть у каждого типа и только зашумляют выдачу ("hash" находил бы все по hashCode). */
+    private static final Set<String> OBJECT_METHODS = new HashSet<>(Arrays.asList(
+            "equals", "hashCode", "toString", "getClass", "notify", "notifyAll", "wait"));
+
+    private final PrefixTrie names;
+    private final PrefixTrie words;
+    private final int nodeCount;
+
+    private SearchIndex(PrefixTrie names, PrefixTrie words, int nodeCount) {
+        this.names = names;
+        this.words = words;
+        this.nodeCount = nodeCount;
+    }
+
+    /** Узел, как его видит индекс; копируется на EDT, чтобы строить индекс в фоне без доступа к модели. */
+    static class Entry {
+        final int id;
+        final String name;
+        final String qualifiedName;
+
+        Entry(int id, String name, String qualifiedName) {
+            this.id = id;
+            this.name = name;
+            this.qualifiedName = qualifiedName;
+        }
+    }
+
+    static List<Entry> entries(HierarchyModel model) {
+        List<Entry> entries = new ArrayList<>(model.nodeCount());
+        for (int id = 0; id < model.nodeCount(); id++) {
+            HierarchyModel.Node node = model.node(id);
+            entries.add(new Entry(id, node.name, node.qualifiedName));
+        }
+        return entries;
+    }
+
+    /**
+     * Долгая часть: чтение class_info и рефлексия. Вызывается не на EDT.
+     */
+    static SearchIndex build(List<Entry> entries) {
+        PrefixTrie names = new PrefixTrie();
+        PrefixTrie words = new PrefixTrie();
+        for (Entry entry : entries) {
+            String rawName = ClassInfo.rawName(entry.name);
+            // Каждое слово CamelCase - отдельный ключ: "map" находит и Map, и HashMap
+            for (String part : camelCaseSuffixes(rawName)) {
+                names.add(part.toLowerCase(Locale.ROOT), entry.id);
+            }
+
+            ClassInfo info = ClassInfo.load(entry.name);
+            if (info.characteristics != null) {
+                for (String characteristic : info.characteristics) {
+                    addWords(words, characteristic, entry.id);
+                }
+            }
+            addWords(words, info.usage, entry.id);
+            addWords(words, info.performance, entry.id);
+
+            try {
+                Class<?> type = TypeResolver.resolve(entry.name, entry.qualifiedName);
+                Set<String> methods = new HashSet<>();
+                for (MetadataIndex.MethodInfo method : MetadataIndex.of(type).methods.values()) {
+                    if (!OBJECT_METHODS.contains(method.name)) {
+                        methods.add(method.name);
+                    }
+                }
+                for (String method : methods) {
+                    words.add(method.toLowerCase(Locale.ROOT), entry.id);
+                    for (String part : camelCaseSuffixes(method)) {
+                        words.add(part.toLowerCase(Locale.ROOT), entry.id);
+                    }
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                // Тип не загружается в этой JVM: ищется только по имени и class_info
+            }
+        }
+        names.freeze();
+        words.freeze();
+        return new SearchIndex(names, words, entries.size());
+    }
+
+    /** "pollFirstEntry" -> pollFirstEntry, FirstEntry, Entry. */
+    private static List<String> camelCaseSuffixes(String name) {
+        List<String> parts = new ArrayList<>();
+        for (int i = 0; i < name.length(); i++) {
+            if (i == 0 || Character.isUpperCase(name.charAt(i)) && !Character.isUpperCase(name.charAt(i - 1))) {
+                parts.add(name.substring(i));
+            }
+        }
+        return parts;
+    }
+
+    private static void addWords(PrefixTrie trie, String text, int id) {
+        if (text != null) {
+            for (String word : tokenize(text)) {
+                trie.add(word, id);
+            }
+        }
+    }
+
+    /** Слова из букв и цифр в нижнем регистре; "O(log n)" дает o, log, n. */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Узлы, для которых каждое слово запроса - префикс имени типа, метода или слова из class_info.
+     * Сначала узлы, у которых совпало больше слов в имени типа.
+     */
+    int[] query(String query) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) {
+            return new int[0];
+        }
+        int[] result = null;
+        int[] nameHits = new int[nodeCount];
+        for (String token : tokens) {
+            int[] byName = names.prefix(token);
+            for (int id : byName) {
+                nameHits[id]++;
+            }
+            int[] matches = union(byName, words.prefix(token));
+            result = result == null ? matches : intersect(result, matches);
+            if (result.length == 0) {
+                return result;
+            }
+        }
+        Integer[] ranked = new Integer[result.length];
+        for (int i = 0; i < result.length; i++) {
+            ranked[i] = result[i];
+        }
+        Arrays.sort(ranked, (a, b) -> nameHits[b] != nameHits[a] ? nameHits[b] - nameHits[a] : a - b);
+        for (int i = 0; i < ranked.length; i++) {
+            result[i] = ranked[i];
+        }
+        return result;
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        int[] merged = new int[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length || j < b.length) {
+            int next = j >= b.length || i < a.length && a[i] <= b[j] ? a[i] : b[j];
+            if (i < a.length && a[i] == next) {
+                i++;
+            }
+            if (j < b.length && b[j] == next) {
+                j++;
+            }
+            merged[k++] = next;
+        }
+        return Arrays.copyOf(merged, k);
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] common = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                common[k++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, k);
+    }
+}
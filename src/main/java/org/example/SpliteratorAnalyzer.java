@@ -0,0 +1,246 @@
+package org.example;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.lang.ref.Reference;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Как коллекция делится для параллельного потока: характеристики ее Spliterator и дерево trySplit
+ * до того же порога, что выбирает фреймворк потоков (оценка размера / (4 * параллелизм)).
+ * Перекос частей ограничивает ускорение сверху: ядро с самой крупной частью заканчивает последним.
+ * У карт делится keySet().
+ */
+class SpliteratorAnalyzer {
+    static final int SIZE = 100_000;
+    /** addAll у CopyOnWriteArraySet ищет каждый новый элемент среди прежних - заполнение O(n^2). */
+    static final int COPY_ON_WRITE_SET_MAX_SIZE = 20_000;
+    /** Параллелизм, под который делится дерево: как у общего пула на 4 ядрах. */
+    static final int PARALLELISM = 4;
+    private static final int LEAF_TARGET = PARALLELISM * 4;
+    /** Без этого неизвестная оценка (Long.MAX_VALUE) делилась бы до отказа. */
+    private static final int MAX_DEPTH = 12;
+    private static final int MAX_LEAVES_SHOWN = 64;
+
+    private static final LruCache<String, Report> REPORTS = new LruCache<>("spliterator", 128);
+
+    private static final int[] CHARACTERISTICS = {Spliterator.ORDERED, Spliterator.DISTINCT, Spliterator.SORTED,
+            Spliterator.SIZED, Spliterator.NONNULL, Spliterator.IMMUTABLE, Spliterator.CONCURRENT,
+            Spliterator.SUBSIZED};
+    private static final String[] CHARACTERISTIC_NAMES = {"ORDERED", "DISTINCT", "SORTED", "SIZED", "NONNULL",
+            "IMMUTABLE", "CONCURRENT", "SUBSIZED"};
+
+    /**
+     * Коллекция для разбора и ее элементы. У WeakHashMap ключи больше ничем не удерживаются,
+     * поэтому список живет столько же, сколько сама коллекция.
+     */
+    static class Source {
+        final Collection<Integer> collection;
+        final List<Integer> elements;
+
+        Source(Collection<Integer> collection, List<Integer> elements) {
+            this.collection = collection;
+            this.elements = elements;
+        }
+    }
+
+    static class Report {
+        final String className;
+        final int size;
+        String spliteratorClass;
+        final List<String> characteristics = new ArrayList<>();
+        boolean sized;
+        boolean subsized;
+        /** Число элементов в частях в порядке обхода. */
+        final List<Long> leaves = new ArrayList<>();
+        /** Части крупнее порога, которые trySplit отказался делить. */
+        int refusedSplits;
+        /** Части, у которых estimateSize до обхода не совпал с числом элементов. */
+        int inexactEstimates;
+        /** Доля элементов в левой части первого деления; -1, если деления не было. */
+        double firstSplitShare = -1;
+        String error;
+
+        Report(String className, int size) {
+            this.className = className;
+            this.size = size;
+        }
+
+        long largestLeaf() {
+            return leaves.isEmpty() ? 0 : Collections.max(leaves);
+        }
+
+        long smallestLeaf() {
+            return leaves.isEmpty() ? 0 : Collections.min(leaves);
+        }
+
+        /** Крупнейшая часть к средней; 1 - идеально ровное деление. */
+        double imbalance() {
+            return leaves.isEmpty() ? 0 : largestLeaf() * (double) leaves.size() / size;
+        }
+
+        /** Предел ускорения при неограниченном числе ядер: все элементы / крупнейшая часть. */
+        double speedupBound() {
+            return largestLeaf() == 0 ? 0 : (double) size / largestLeaf();
+        }
+    }
+
+    private SpliteratorAnalyzer() {
+    }
+
+    /**
+     * Отчет для класса из кэша; null, если для этого типа разбор не имеет смысла (интерфейс, абстрактный класс).
+     */
+    static Report reportFor(Class<?> clazz) {
+        if (clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers())
+                || !(Collection.class.isAssignableFrom(clazz) || Map.class.isAssignableFrom(clazz))) {
+            return null;
+        }
+        Report report = REPORTS.get(clazz.getName());
+        if (report == null) {
+            report = analyze(clazz);
+            REPORTS.put(clazz.getName(), report);
+        }
+        return report;
+    }
+
+    /** Сколько элементов имеет смысл заполнять в экземпляр этого класса. */
+    static int maxSize(Class<?> clazz) {
+        return CopyOnWriteArraySet.class.isAssignableFrom(clazz) ? COPY_ON_WRITE_SET_MAX_SIZE : Integer.MAX_VALUE;
+    }
+
+    private static Report analyze(Class<?> clazz) {
+        Report report = new Report(clazz.getSimpleName(), Math.min(SIZE, maxSize(clazz)));
+        Source source;
+        try {
+            source = source(clazz, report.size);
+        } catch (NoSuchMethodException e) {
+            report.error = "нет публичного конструктора без аргументов";
+            return report;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            report.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+            return report;
+        }
+        if (source.collection.size() != report.size) {
+            report.error = "после заполнения " + source.collection.size() + " элементов из " + report.size;
+            return report;
+        }
+        Spliterator<Integer> spliterator = source.collection.spliterator();
+        report.spliteratorClass = spliterator.getClass().getName();
+        for (int i = 0; i < CHARACTERISTICS.length; i++) {
+            if (spliterator.hasCharacteristics(CHARACTERISTICS[i])) {
+                report.characteristics.add(CHARACTERISTIC_NAMES[i]);
+            }
+        }
+        report.sized = spliterator.hasCharacteristics(Spliterator.SIZED);
+        report.subsized = spliterator.hasCharacteristics(Spliterator.SUBSIZED);
+        long estimate = spliterator.estimateSize();
+        long threshold = Math.max(1, (estimate == Long.MAX_VALUE ? report.size : estimate) / LEAF_TARGET);
+        split(spliterator, threshold, 0, report);
+        Reference.reachabilityFence(source);
+        return report;
+    }
+
+    /** Делит как AbstractTask: обе половины делятся дальше, пока оценка больше порога. Возвращает число элементов. */
+    private static long split(Spliterator<Integer> spliterator, long threshold, int depth, Report report) {
+        long estimate = spliterator.estimateSize();
+        if (estimate > threshold && depth < MAX_DEPTH) {
+            Spliterator<Integer> prefix = spliterator.trySplit();
+            if (prefix != null) {
+                long left = split(prefix, threshold, depth + 1, report);
+                long right = split(spliterator, threshold, depth + 1, report);
+                if (depth == 0) {
+                    report.firstSplitShare = (double) left / (left + right);
+                }
+                return left + right;
+            }
+            report.refusedSplits++;
+        }
+        long[] count = new long[1];
+        spliterator.forEachRemaining(element -> count[0]++);
+        if (estimate != count[0]) {
+            report.inexactEstimates++;
+        }
+        report.leaves.add(count[0]);
+        return count[0];
+    }
+
+    /**
+     * Новый экземпляр с элементами 0..size-1; у карт - их keySet(). Заполняется одним addAll,
+     * чтобы копирующие при записи коллекции не копировали массив на каждый элемент.
+     */
+    @SuppressWarnings("unchecked")
+    static Source source(Class<?> clazz, int size) throws ReflectiveOperationException {
+        Constructor<?> constructor = clazz.getConstructor();
+        Object instance = constructor.newInstance();
+        List<Integer> elements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            elements.add(i);
+        }
+        if (instance instanceof Map) {
+            Map<Integer, Integer> map = (Map<Integer, Integer>) instance;
+            for (Integer element : elements) {
+                map.put(element, element);
+            }
+            return new Source(map.keySet(), elements);
+        }
+        Collection<Integer> collection = (Collection<Integer>) instance;
+        collection.addAll(elements);
+        return new Source(collection, elements);
+    }
+
+    static String toHtml(Report report) {
+        StringBuilder html = new StringBuilder("<h3>PARALLEL STREAMS</h3>");
+        if (report.error != null) {
+            html.append("<p>Разбор невозможен: ").append(report.error).append("</p>");
+            return html.toString();
+        }
+        html.append("<p><b>Spliterator:</b> ").append(report.spliteratorClass).append("<br>")
+                .append("<b>Характеристики:</b> ").append(String.join(", ", report.characteristics)).append("</p>");
+        html.append("<p>").append(report.size).append(" элементов, деление до ").append(LEAF_TARGET)
+                .append(" частей (порог общего пула на ").append(PARALLELISM).append(" ядрах): <b>")
+                .append(report.leaves.size()).append(" частей</b>, от ").append(report.smallestLeaf())
+                .append(" до ").append(report.largestLeaf())
+                .append(String.format(Locale.ROOT, ", перекос %.2f", report.imbalance()));
+        if (report.firstSplitShare >= 0) {
+            html.append(String.format(Locale.ROOT, ", первое деление %.0f/%.0f",
+                    100 * report.firstSplitShare, 100 * (1 - report.firstSplitShare)));
+        }
+        html.append(String.format(Locale.ROOT, ". Предел ускорения по делению: <b>x%.1f</b>.</p>",
+                report.speedupBound()));
+        if (report.size < SIZE) {
+            html.append("<p>Разбор на ").append(report.size).append(" элементах, а не ").append(SIZE)
+                    .append(": addAll у CopyOnWriteArraySet проверяет каждый элемент на повтор.</p>");
+        }
+        html.append("<ul>");
+        if (!report.sized) {
+            html.append("<li>Нет SIZED: размер потока неизвестен, toArray и sorted не выделяют массив сразу,")
+                    .append(" порог деления считается по оценке.</li>");
+        } else if (!report.subsized) {
+            html.append("<li>SIZED без SUBSIZED: точный размер известен только до первого деления.</li>");
+        }
+        if (report.refusedSplits > 0) {
+            html.append("<li>trySplit отказался делить ").append(report.refusedSplits)
+                    .append(" крупных частей - эти части обрабатываются одним потоком.</li>");
+        }
+        if (report.inexactEstimates > 0) {
+            html.append("<li>estimateSize не совпал с фактом у ").append(report.inexactEstimates).append(" из ")
+                    .append(report.leaves.size()).append(" частей.</li>");
+        }
+        if (report.imbalance() > 2) {
+            html.append("<li>Крупнейшая часть больше средней в ")
+                    .append(String.format(Locale.ROOT, "%.1f", report.imbalance()))
+                    .append(" раз: при числе ядер больше предела ускорения они будут простаивать.</li>");
+        }
+        html.append("</ul><p>Части по порядку: ");
+        for (int i = 0; i < Math.min(MAX_LEAVES_SHOWN, report.leaves.size()); i++) {
+            html.append(i == 0 ? "" : ", ").append(report.leaves.get(i));
+        }
+        if (report.leaves.size() > MAX_LEAVES_SHOWN) {
+            html.append(", ... еще ").append(report.leaves.size() - MAX_LEAVES_SHOWN);
+        }
+        html.append("</p>");
+        return html.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package org.example;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фазы запуска, отсчитанные от входа в main: первая отрисовка окна,
+ * загрузка иерархии, готовность к кликам.
+ */
+final class StartupTimer {
+    static final String FIRST_PAINT = "first paint";
+    static final String HIERARCHY_PARSED = "hierarchy parsed";
+    static final String NODES_BUILT = "nodes built";
+    static final String CLASS_INFO_PREFETCHED = "class_info prefetched";
+    static final String INTERACTIVE = "interactive";
+
+    private static volatile long startNanos = System.nanoTime();
+    private static final Map<String, Long> phases = new LinkedHashMap<>();
+
+    private StartupTimer() {
+    }
+
+    static void start() {
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Фиксирует фазу только в первый раз, повторные вызовы игнорируются.
+     */
+    static void mark(String phase) {
+        long elapsed = System.nanoTime() - startNanos;
+        synchronized (phases) {
+            if (phases.containsKey(phase)) {
+                return;
+            }
+            phases.put(phase, elapsed);
+        }
+        System.out.printf("[startup] %-22s %6d ms%n", phase, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    static boolean isMarked(String phase) {
+        synchronized (phases) {
+            return phases.containsKey(phase);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package org.example;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Записанная трасса операций над списком или картой.
+ * <p>CSV: по операции в строке, {@code операция,ключ[,значение]}; строки с # - комментарии,
+ * {@code # kind=list} или {@code # kind=map} задает тип, иначе он выводится из операций.
+ * <pre>
+ * список: add v | insert i,v | get i | set i,v | removeAt i | contains v
+ * карта:  put k[,v] | get k | remove k | containsKey k
+ * </pre>
+ * У put без значения значением становится сам ключ.
+ * Индексы берутся по модулю текущего размера, поэтому трасса не обязана точно совпадать с состоянием.
+ * <p>Двоичный формат компактнее и читается без разбора текста: "JCFT", версия, тип, число записей,
+ * затем на запись байт операции и ключ в zigzag-varint; у insert, set и put следом значение.
+ */
+class Trace {
+    enum Kind {
+        LIST, MAP
+    }
+
+    static final int LIST_ADD = 0;
+    static final int LIST_INSERT = 1;
+    static final int LIST_GET = 2;
+    static final int LIST_SET = 3;
+    static final int LIST_REMOVE_AT = 4;
+    static final int LIST_CONTAINS = 5;
+    static final String[] LIST_OPERATIONS = {"add", "insert", "get", "set", "removeAt", "contains"};
+
+    static final int MAP_PUT = 0;
+    static final int MAP_GET = 1;
+    static final int MAP_REMOVE = 2;
+    static final int MAP_CONTAINS = 3;
+    static final String[] MAP_OPERATIONS = {"put", "get", "remove", "containsKey"};
+
+    private static final int MAGIC = 0x4A434654;
+    private static final int VERSION = 2;
+    /** Операции CSV до того, как известен тип; get есть у обоих. */
+    private static final String[] ALL_OPERATIONS = {"add", "insert", "get", "set", "removeAt", "contains",
+            "put", "remove", "containsKey"};
+    private static final List<String> ALL_OPERATION_LIST = Arrays.asList(ALL_OPERATIONS);
+    private static final int[] TO_LIST = {LIST_ADD, LIST_INSERT, LIST_GET, LIST_SET, LIST_REMOVE_AT, LIST_CONTAINS,
+            -1, -1, -1};
+    private static final int[] TO_MAP = {-1, -1, MAP_GET, -1, -1, -1, MAP_PUT, MAP_REMOVE, MAP_CONTAINS};
+
+    final Kind kind;
+    final byte[] operations;
+    final long[] keys;
+    /** Значения insert, set и put; у остальных операций 0. */
+    final long[] values;
+
+    Trace(Kind kind, byte[] operations, long[] keys, long[] values) {
+        this.kind = kind;
+        this.operations = operations;
+        this.keys = keys;
+        this.values = values;
+    }
+
+    int length() {
+        return operations.length;
+    }
+
+    String[] operationNames() {
+        return kind == Kind.LIST ? LIST_OPERATIONS : MAP_OPERATIONS;
+    }
+
+    long[] operationCounts() {
+        long[] counts = new long[operationNames().length];
+        for (byte operation : operations) {
+            counts[operation]++;
+        }
+        return counts;
+    }
+
+    private static boolean hasValue(Kind kind, int operation) {
+        return kind == Kind.LIST ? operation == LIST_INSERT || operation == LIST_SET : operation == MAP_PUT;
+    }
+
+    static Trace read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() == MAGIC) {
+                return readBinary(in, file);
+            }
+        } catch (EOFException e) {
+            // Файл короче заголовка - пусть CSV-разбор скажет, что в нем не так
+        }
+        return readCsv(file);
+    }
+
+    private static Trace readBinary(DataInputStream in, Path file) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException(file + ": unsupported trace version " + version);
+        }
+        int kindOrdinal = in.readUnsignedByte();
+        if (kindOrdinal >= Kind.values().length) {
+            throw new IOException(file + ": unknown trace kind " + kindOrdinal);
+        }
+        Kind kind = Kind.values()[kindOrdinal];
+        int length = in.readInt();
+        byte[] operations = new byte[length];
+        long[] keys = new long[length];
+        long[] values = new long[length];
+        int operationCount = kind == Kind.LIST ? LIST_OPERATIONS.length : MAP_OPERATIONS.length;
+        for (int i = 0; i < length; i++) {
+            operations[i] = in.readByte();
+            if (operations[i] < 0 || operations[i] >= operationCount) {
+                throw new IOException(file + ": bad operation " + operations[i] + " in record " + i);
+            }
+            keys[i] = readVarLong(in);
+            if (hasValue(kind, operations[i])) {
+                values[i] = readVarLong(in);
+            }
+        }
+        return new Trace(kind, operations, keys, values);
+    }
+
+    private static Trace readCsv(Path file) throws IOException {
+        Kind kind = null;
+        int size = 0;
+        byte[] operations = new byte[1024];
+        long[] keys = new long[1024];
+        long[] values = new long[1024];
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            int lineNumber = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.startsWith("#")) {
+                    String comment = line.substring(1).trim().toLowerCase(Locale.ROOT);
+                    if (comment.startsWith("kind=")) {
+                        kind = Kind.valueOf(comment.substring(5).trim().toUpperCase(Locale.ROOT));
+                    }
+                    continue;
+                }
+                String[] parts = line.split("\\s*,\\s*");
+                int operation = ALL_OPERATION_LIST.indexOf(parts[0]);
+                if (operation < 0) {
+                    if (size == 0 && parts[0].equalsIgnoreCase("op")) {
+                        continue; // строка заголовка
+                    }
+                    throw new IOException(file + ":" + lineNumber + ": unknown operation '" + parts[0] + "'");
+                }
+                Kind implied = TO_MAP[operation] < 0 ? Kind.LIST : TO_LIST[operation] < 0 ? Kind.MAP : null;
+                if (implied != null && kind != null && implied != kind) {
+                    throw new IOException(file + ":" + lineNumber + ": '" + parts[0] + "' in a " + kind + " trace");
+                }
+                if (implied != null) {
+                    kind = implied;
+                }
+                boolean put = parts[0].equals("put");
+                int expected = operation == 1 || operation == 3 || put && parts.length == 3 ? 3 : 2;
+                if (parts.length != expected) {
+                    throw new IOException(file + ":" + lineNumber + ": '" + parts[0] + "' takes "
+                            + (put ? "1 or 2" : String.valueOf(expected - 1)) + " argument(s)");
+                }
+                if (size == operations.length) {
+                    operations = Arrays.copyOf(operations, size * 2);
+                    keys = Arrays.copyOf(keys, size * 2);
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                try {
+                    keys[size] = Long.parseLong(parts[1]);
+                    values[size] = expected == 3 ? Long.parseLong(parts[2]) : put ? keys[size] : 0;
+                } catch (NumberFormatException e) {
+                    throw new IOException(file + ":" + lineNumber + ": " + e.getMessage());
+                }
+                operations[size++] = (byte) operation;
+            }
+        }
+        if (kind == null) {
+            throw new IOException(file + ": only 'get' operations; add '# kind=list' or '# kind=map'");
+        }
+        int[] mapping = kind == Kind.LIST ? TO_LIST : TO_MAP;
+        for (int i = 0; i < size; i++) {
+            operations[i] = (byte) mapping[operations[i]];
+        }
+        return new Trace(kind, Arrays.copyOf(operations, size), Arrays.copyOf(keys, size),
+                Arrays.copyOf(values, size));
+    }
+
+    void writeBinary(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file),
+                1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(kind.ordinal());
+            out.writeInt(length());
+            for (int i = 0; i < length(); i++) {
+                out.writeByte(operations[i]);
+                writeVarLong(out, keys[i]);
+                if (hasValue(kind, operations[i])) {
+                    writeVarLong(out, values[i]);
+                }
+            }
+        }
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        long zigzag = value << 1 ^ value >> 63;
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) (zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return zigzag >>> 1 ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
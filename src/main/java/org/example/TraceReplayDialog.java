@@ -0,0 +1,278 @@
+package org.example;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Воспроизведение записанной трассы на всех подходящих реализациях схемы: трасса списка - на всех List,
+ * трасса карты - на всех Map. Каждая реализация идет в своей JVM, несколько форков параллельно.
+ * Итог - таблица мест и подписи на схеме, победитель отмечен звездой.
+ */
+class TraceReplayDialog extends JDialog {
+    private static final long FORK_TIMEOUT_MILLIS = 120_000;
+
+    private final HierarchyModel model;
+    private final HierarchyCanvas canvas;
+    private final JLabel traceLabel = new JLabel("Трасса не выбрана");
+    private final JSpinner parallelism = new JSpinner(new SpinnerNumberModel(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 1, 64, 1));
+    private final JTextField jvmArgs = new JTextField("-Xmx1g", 16);
+    private final JButton startButton = new JButton("Запустить");
+    private final JProgressBar progress = new JProgressBar();
+    private final JLabel status = new JLabel(" ");
+    private final DefaultTableModel rows = new DefaultTableModel(new String[]{"Место", "Реализация", "ops/s",
+            "p50", "p99", "p99.9", "байт/оп", "Ошибка"}, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final Set<Process> live = ConcurrentHashMap.newKeySet();
+    private Trace trace;
+    private String traceName;
+    private Path binaryTrace;
+    private Worker worker;
+
+    TraceReplayDialog(Window owner, HierarchyModel model, HierarchyCanvas canvas) {
+        super(owner, "Воспроизведение трассы", ModalityType.MODELESS);
+        this.model = model;
+        this.canvas = canvas;
+        startButton.setEnabled(false);
+        JButton open = new JButton("Открыть трассу...");
+        open.addActionListener(e -> chooseTrace());
+        startButton.addActionListener(e -> toggleRun());
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(open);
+        controls.add(traceLabel);
+        controls.add(new JLabel("форков сразу"));
+        controls.add(parallelism);
+        controls.add(new JLabel("JVM"));
+        controls.add(jvmArgs);
+        controls.add(startButton);
+
+        JPanel south = new JPanel(new GridLayout(2, 1));
+        south.add(progress);
+        south.add(status);
+
+        setLayout(new BorderLayout());
+        add(controls, BorderLayout.NORTH);
+        add(new JScrollPane(new JTable(rows)), BorderLayout.CENTER);
+        add(south, BorderLayout.SOUTH);
+        setSize(1000, 600);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+    }
+
+    @Override
+    public void dispose() {
+        if (worker != null) {
+            worker.stop();
+        }
+        deleteBinaryTrace();
+        super.dispose();
+    }
+
+    private void deleteBinaryTrace() {
+        if (binaryTrace != null) {
+            try {
+                Files.deleteIfExists(binaryTrace);
+            } catch (IOException e) {
+                // Временный файл; не удалился - останется в tmp
+            }
+        }
+    }
+
+    private void chooseTrace() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        try {
+            trace = Trace.read(file.toPath());
+            // Форки читают компактную двоичную копию, а не разбирают CSV каждый заново
+            deleteBinaryTrace();
+            binaryTrace = Files.createTempFile("jcf-trace-", ".bin");
+            trace.writeBinary(binaryTrace);
+        } catch (IOException | RuntimeException e) {
+            trace = null;
+            startButton.setEnabled(false);
+            status.setText("Ошибка трассы: " + e.getMessage());
+            return;
+        }
+        long[] counts = trace.operationCounts();
+        StringBuilder mix = new StringBuilder();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                mix.append(mix.length() > 0 ? ", " : "").append(trace.operationNames()[i]).append(' ')
+                        .append(Math.round(100.0 * counts[i] / trace.length())).append('%');
+            }
+        }
+        traceName = file.getName();
+        traceLabel.setText(file.getName() + ": " + trace.kind + ", " + ComparisonDialog.formatCount(trace.length())
+                + " оп.");
+        status.setText("Операции: " + mix);
+        startButton.setEnabled(true);
+    }
+
+    private void toggleRun() {
+        if (worker != null) {
+            worker.stop();
+            return;
+        }
+        List<TraceReplayer.Candidate> candidates = TraceReplayer.candidates(SearchIndex.entries(model), trace.kind);
+        if (candidates.isEmpty()) {
+            status.setText("На схеме нет реализаций " + (trace.kind == Trace.Kind.LIST ? "List" : "Map")
+                    + " с конструктором без аргументов");
+            return;
+        }
+        List<String> arguments = new ArrayList<>();
+        for (String argument : jvmArgs.getText().trim().split("\\s+")) {
+            if (!argument.isEmpty()) {
+                arguments.add(argument);
+            }
+        }
+        rows.setRowCount(0);
+        canvas.setBadges(Collections.emptyMap());
+        worker = new Worker(candidates, arguments, (Integer) parallelism.getValue());
+        startButton.setText("Остановить");
+        worker.execute();
+    }
+
+    private class Worker extends SwingWorker<Void, TraceReplayer.Result> {
+        private final List<TraceReplayer.Candidate> candidates;
+        private final List<String> arguments;
+        private final ExecutorService pool;
+        private final List<TraceReplayer.Result> results = new ArrayList<>();
+        private final ResultsStore history = new ResultsStore("trace");
+        private final String operation = "трасса " + traceName;
+        private final int traceLength = trace.length();
+
+        Worker(List<TraceReplayer.Candidate> candidates, List<String> arguments, int parallelism) {
+            this.candidates = candidates;
+            this.arguments = arguments;
+            this.pool = Executors.newFixedThreadPool(Math.min(parallelism, candidates.size()), runnable -> {
+                Thread thread = new Thread(runnable, "trace-replay");
+                thread.setDaemon(true);
+                return thread;
+            });
+            progress.setMaximum(candidates.size());
+            progress.setValue(0);
+            status.setText("Форков: " + candidates.size() + ", одновременно " + parallelism
+                    + "; параллельные форки делят процессоры и память, на шумной машине уменьшите их число");
+        }
+
+        void stop() {
+            cancel(true);
+            pool.shutdownNow();
+            live.forEach(Process::destroyForcibly);
+        }
+
+        @Override
+        protected Void doInBackground() throws InterruptedException {
+            CompletionService<TraceReplayer.Result> completion = new ExecutorCompletionService<>(pool);
+            Path traceFile = binaryTrace;
+            for (TraceReplayer.Candidate candidate : candidates) {
+                completion.submit(() -> {
+                    try {
+                        return TraceReplayer.fork(traceFile, candidate.className, arguments, FORK_TIMEOUT_MILLIS,
+                                live);
+                    } catch (IOException e) {
+                        return TraceReplayer.failed(candidate.className, e.toString());
+                    }
+                });
+            }
+            try {
+                for (int i = 0; i < candidates.size(); i++) {
+                    publish(completion.take().get());
+                }
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+            return null;
+        }
+
+        @Override
+        protected void process(List<TraceReplayer.Result> chunk) {
+            for (TraceReplayer.Result result : chunk) {
+                if (result.error == null) {
+                    history.add(simpleName(result.className), operation, traceLength, "ops/s", true,
+                            result.samples, result.jvm, result.flags);
+                }
+            }
+            results.addAll(chunk);
+            progress.setValue(results.size());
+            showRanking(results, candidates);
+        }
+
+        @Override
+        protected void done() {
+            worker = null;
+            startButton.setText("Запустить");
+            String saved = history.saveForStatus();
+            if (isCancelled()) {
+                status.setText("Остановлено" + saved);
+                return;
+            }
+            try {
+                get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                status.setText("Ошибка: " + e.getCause());
+                return;
+            }
+            List<TraceReplayer.Result> ranked = showRanking(results, candidates);
+            if (!ranked.isEmpty() && ranked.get(0).error == null) {
+                status.setText("Победитель: " + simpleName(ranked.get(0).className)
+                        + " (место - сумма мест по ops/s, p99 и байтам на операцию)" + saved);
+            }
+        }
+    }
+
+    private static String simpleName(String className) {
+        return className.substring(className.lastIndexOf('.') + 1);
+    }
+
+    private List<TraceReplayer.Result> showRanking(List<TraceReplayer.Result> results,
+                                                   List<TraceReplayer.Candidate> candidates) {
+        List<TraceReplayer.Result> ranked = TraceReplayer.rank(results);
+        rows.setRowCount(0);
+        Map<String, TraceReplayer.Result> byClass = new HashMap<>();
+        for (TraceReplayer.Result result : ranked) {
+            byClass.put(result.className, result);
+            boolean ok = result.error == null;
+            rows.addRow(new Object[]{ok ? result.rank : null, simpleName(result.className),
+                    ok ? ComparisonDialog.formatCount(result.opsPerSecond) : "",
+                    ok ? LatencyHistogram.formatNanos(result.p50Nanos) : "",
+                    ok ? LatencyHistogram.formatNanos(result.p99Nanos) : "",
+                    ok ? LatencyHistogram.formatNanos(result.p999Nanos) : "",
+                    ok ? String.format(Locale.ROOT, "%.1f", result.bytesPerOperation) : "",
+                    ok ? "" : result.error});
+        }
+        Map<Integer, String> badges = new HashMap<>();
+        for (TraceReplayer.Candidate candidate : candidates) {
+            TraceReplayer.Result result = byClass.get(candidate.className);
+            if (result == null) {
+                continue;
+            }
+            badges.put(candidate.nodeId, result.error != null ? "ошибка"
+                    : (result.rank == 1 ? "★ 1" : "#" + result.rank) + " | "
+                    + ComparisonDialog.formatCount(result.opsPerSecond) + " ops/s");
+        }
+        canvas.setBadges(badges);
+        return ranked;
+    }
+}
@@ -0,0 +1,330 @@
+package org.example;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Воспроизведение трассы на одной реализации в отдельной JVM: у каждой реализации свой JIT-профиль,
+ * своя куча и свой GC, как у JMH с форками. Родитель запускает себя же с {@code --replay TRACE CLASS},
+ * потомок печатает одну строку {@code RESULT {json}}.
+ */
+class TraceReplayer {
+    private static final Gson GSON = new Gson();
+    private static final String RESULT_PREFIX = "RESULT ";
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final int MAX_WARMUP_ROUNDS = 20;
+    private static final long MEASURE_NANOS = 2_000_000_000L;
+    /** Окна замера пропускной способности: ops/s каждого окна идут в историю как отдельные замеры. */
+    private static final int THROUGHPUT_WINDOWS = 10;
+
+    /** Реализация с узла схемы, на которой можно воспроизвести трассу. */
+    static class Candidate {
+        final int nodeId;
+        final String name;
+        final String className;
+
+        Candidate(int nodeId, String name, String className) {
+            this.nodeId = nodeId;
+            this.name = name;
+            this.className = className;
+        }
+    }
+
+    /** Итог одного форка; поля простые, чтобы передаваться через Gson. */
+    static class Result {
+        String className;
+        long operations;
+        double opsPerSecond;
+        long p50Nanos;
+        long p99Nanos;
+        long p999Nanos;
+        long maxNanos;
+        double bytesPerOperation;
+        double[] samples;
+        /** Окружение форка: его флаги JVM задаются в окне и отличаются от родительских. */
+        String jvm;
+        String flags;
+        long forkNanos;
+        String error;
+        /** Места по пропускной способности, p99 и выделениям; итоговое место - по их сумме. */
+        transient int throughputRank;
+        transient int latencyRank;
+        transient int allocationRank;
+        transient int rank;
+    }
+
+    /** Конкретные классы схемы с публичным конструктором без аргументов, подходящие к типу трассы. */
+    static List<Candidate> candidates(List<SearchIndex.Entry> entries, Trace.Kind kind) {
+        Class<?> required = kind == Trace.Kind.LIST ? List.class : Map.class;
+        List<Candidate> candidates = new ArrayList<>();
+        for (SearchIndex.Entry entry : entries) {
+            try {
+                Class<?> type = TypeResolver.resolve(entry.name, entry.qualifiedName);
+                if (required.isAssignableFrom(type) && !type.isInterface()
+                        && !Modifier.isAbstract(type.getModifiers()) && Modifier.isPublic(type.getModifiers())) {
+                    type.getConstructor();
+                    candidates.add(new Candidate(entry.id, entry.name, type.getName()));
+                }
+            } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+                // Узел без загружаемого класса или без конструктора по умолчанию в замер не идет
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Запускает форк и ждет его не дольше timeoutMillis. Процесс регистрируется в live,
+     * чтобы окно могло прервать все форки сразу.
+     */
+    static Result fork(Path binaryTrace, String className, List<String> jvmArgs, long timeoutMillis,
+                       Set<Process> live) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(CollectionFrameworkVisualizer.class.getName());
+        command.add("--replay");
+        command.add(binaryTrace.toString());
+        command.add(className);
+        for (Path jar : TypeResolver.jars()) {
+            command.add("--jar");
+            command.add(jar.toString());
+        }
+        // Вывод в файл, а не в трубу: иначе ожидание с таймаутом упрется в чтение потока
+        File output = File.createTempFile("jcf-replay-", ".log");
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(output).start();
+        live.add(process);
+        try {
+            if (!process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                return failed(className, "не уложился в " + timeoutMillis / 1000 + " с");
+            }
+            List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+            for (String line : lines) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    Result result = GSON.fromJson(line.substring(RESULT_PREFIX.length()), Result.class);
+                    result.forkNanos = System.nanoTime() - start;
+                    return result;
+                }
+            }
+            return failed(className, "код выхода " + process.exitValue()
+                    + (lines.isEmpty() ? "" : ": " + lines.get(lines.size() - 1)));
+        } finally {
+            live.remove(process);
+            process.destroyForcibly();
+            Files.deleteIfExists(output.toPath());
+        }
+    }
+
+    static Result failed(String className, String error) {
+        Result result = new Result();
+        result.className = className;
+        result.error = error;
+        return result;
+    }
+
+    /** Точка входа форка; возвращает код выхода. */
+    static int runFork(Path traceFile, String className) {
+        Result result;
+        try {
+            Trace trace = Trace.read(traceFile);
+            result = new TraceReplayer(trace, TypeResolver.resolve(className, className)).measure();
+        } catch (Exception | OutOfMemoryError e) {
+            result = failed(className, e.toString());
+        }
+        result.className = className;
+        result.jvm = ResultsStore.jvm();
+        result.flags = ResultsStore.flags();
+        System.out.println(RESULT_PREFIX + GSON.toJson(result));
+        return result.error == null ? 0 : 1;
+    }
+
+    /** Расставляет места; неудачные прогоны - в конце списка без мест. */
+    static List<Result> rank(Collection<Result> results) {
+        List<Result> ok = new ArrayList<>();
+        List<Result> failed = new ArrayList<>();
+        for (Result result : results) {
+            (result.error == null ? ok : failed).add(result);
+        }
+        ok.sort((a, b) -> Double.compare(b.opsPerSecond, a.opsPerSecond));
+        for (int i = 0; i < ok.size(); i++) {
+            ok.get(i).throughputRank = i + 1;
+        }
+        ok.sort(Comparator.comparingLong(r -> r.p99Nanos));
+        for (int i = 0; i < ok.size(); i++) {
+            ok.get(i).latencyRank = i + 1;
+        }
+        ok.sort(Comparator.comparingDouble(r -> r.bytesPerOperation));
+        for (int i = 0; i < ok.size(); i++) {
+            ok.get(i).allocationRank = i + 1;
+        }
+        // Равная сумма мест - решает пропускная способность
+        ok.sort(Comparator.<Result>comparingInt(r -> r.throughputRank + r.latencyRank + r.allocationRank)
+                .thenComparingInt(r -> r.throughputRank));
+        for (int i = 0; i < ok.size(); i++) {
+            ok.get(i).rank = i + 1;
+        }
+        ok.addAll(failed);
+        return ok;
+    }
+
+    private final Trace trace;
+    private final Class<?> type;
+    /** Ключи упакованы заранее и по одному объекту на значение, как у настоящих ключей сервиса. */
+    private final Long[] boxedKeys;
+    private final Long[] boxedValues;
+    private long sink;
+    /** Результаты операций уходят сюда, чтобы JIT не выбросил вызовы. */
+    static volatile long consumed;
+
+    private TraceReplayer(Trace trace, Class<?> type) {
+        this.trace = trace;
+        this.type = type;
+        Map<Long, Long> canonical = new HashMap<>();
+        boxedKeys = new Long[trace.length()];
+        boxedValues = new Long[trace.length()];
+        for (int i = 0; i < trace.length(); i++) {
+            boxedKeys[i] = canonical.computeIfAbsent(trace.keys[i], k -> k);
+            boxedValues[i] = canonical.computeIfAbsent(trace.values[i], k -> k);
+        }
+    }
+
+    private Object newInstance() throws ReflectiveOperationException {
+        return type.getConstructor().newInstance();
+    }
+
+    private Result measure() throws ReflectiveOperationException {
+        long warmupStart = System.nanoTime();
+        for (int round = 0; round < MAX_WARMUP_ROUNDS && System.nanoTime() - warmupStart < WARMUP_NANOS; round++) {
+            replay(newInstance(), null);
+        }
+
+        // Пропускная способность - без таймера на операции; каждый проход на новом экземпляре
+        long operations = 0;
+        long elapsed = 0;
+        List<Double> samples = new ArrayList<>();
+        long windowOperations = 0;
+        long windowNanos = 0;
+        do {
+            Object instance = newInstance();
+            long start = System.nanoTime();
+            replay(instance, null);
+            long passNanos = System.nanoTime() - start;
+            elapsed += passNanos;
+            operations += trace.length();
+            windowNanos += passNanos;
+            windowOperations += trace.length();
+            if (windowNanos >= MEASURE_NANOS / THROUGHPUT_WINDOWS) {
+                samples.add(windowOperations * 1e9 / windowNanos);
+                windowOperations = 0;
+                windowNanos = 0;
+            }
+        } while (elapsed < MEASURE_NANOS);
+
+        LatencyHistogram latency = new LatencyHistogram();
+        replay(newInstance(), latency);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        Object instance = newInstance();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        replay(instance, null);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        Result result = new Result();
+        result.operations = trace.length();
+        result.opsPerSecond = operations * 1e9 / elapsed;
+        result.samples = samples.stream().mapToDouble(Double::doubleValue).toArray();
+        result.p50Nanos = latency.valueAt(50);
+        result.p99Nanos = latency.valueAt(99);
+        result.p999Nanos = latency.valueAt(99.9);
+        result.maxNanos = latency.max();
+        result.bytesPerOperation = (double) allocated / Math.max(1, trace.length());
+        consumed = sink;
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void replay(Object instance, LatencyHistogram latency) {
+        if (trace.kind == Trace.Kind.LIST) {
+            replayList((List<Long>) instance, latency);
+        } else {
+            replayMap((Map<Long, Long>) instance, latency);
+        }
+    }
+
+    private void replayList(List<Long> list, LatencyHistogram latency) {
+        byte[] operations = trace.operations;
+        long[] keys = trace.keys;
+        for (int i = 0; i < operations.length; i++) {
+            long start = latency != null ? System.nanoTime() : 0;
+            int size = list.size();
+            switch (operations[i]) {
+                case Trace.LIST_ADD:
+                    list.add(boxedKeys[i]);
+                    break;
+                case Trace.LIST_INSERT:
+                    list.add((int) Math.floorMod(keys[i], size + 1L), boxedValues[i]);
+                    break;
+                case Trace.LIST_GET:
+                    if (size > 0) {
+                        Long value = list.get((int) Math.floorMod(keys[i], (long) size));
+                        sink += value != null ? value : 0;
+                    }
+                    break;
+                case Trace.LIST_SET:
+                    if (size > 0) {
+                        list.set((int) Math.floorMod(keys[i], (long) size), boxedValues[i]);
+                    }
+                    break;
+                case Trace.LIST_REMOVE_AT:
+                    if (size > 0) {
+                        list.remove((int) Math.floorMod(keys[i], (long) size));
+                    }
+                    break;
+                default:
+                    sink += list.contains(boxedKeys[i]) ? 1 : 0;
+            }
+            if (latency != null) {
+                latency.record(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void replayMap(Map<Long, Long> map, LatencyHistogram latency) {
+        byte[] operations = trace.operations;
+        for (int i = 0; i < operations.length; i++) {
+            long start = latency != null ? System.nanoTime() : 0;
+            Long key = boxedKeys[i];
+            switch (operations[i]) {
+                case Trace.MAP_PUT:
+                    map.put(key, boxedValues[i]);
+                    break;
+                case Trace.MAP_GET:
+                    Long value = map.get(key);
+                    sink += value != null ? value : 0;
+                    break;
+                case Trace.MAP_REMOVE:
+                    map.remove(key);
+                    break;
+                default:
+                    sink += map.containsKey(key) ? 1 : 0;
+            }
+            if (latency != null) {
+                latency.record(System.nanoTime() - start);
+            }
+        }
+    }
+}
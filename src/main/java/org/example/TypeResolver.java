@@ -0,0 +1,59 @@
+package org.example;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Загружает классы узлов иерархии: из JDK или из jar, переданных при запуске.
+ */
+final class TypeResolver {
+    private static volatile ClassLoader loader = TypeResolver.class.getClassLoader();
+    private static final List<Path> jars = new CopyOnWriteArrayList<>();
+
+    private TypeResolver() {
+    }
+
+    static void addJars(List<Path> jars) {
+        if (jars.isEmpty()) {
+            return;
+        }
+        URL[] urls = new URL[jars.size()];
+        try {
+            for (int i = 0; i < urls.length; i++) {
+                urls[i] = jars.get(i).toUri().toURL();
+            }
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException(e);
+        }
+        loader = new URLClassLoader(urls, loader);
+        TypeResolver.jars.addAll(jars);
+    }
+
+    /** Jar, добавленные при запуске; форки получают их теми же --jar. */
+    static List<Path> jars() {
+        return jars;
+    }
+
+    static ClassLoader loader() {
+        return loader;
+    }
+
+    /**
+     * Узлы ручного файла иерархии могут не содержать полного имени - для них пробуем java.util и java.util.concurrent.
+     */
+    static Class<?> resolve(String className, String qualifiedName) throws ClassNotFoundException {
+        if (qualifiedName != null) {
+            return Class.forName(qualifiedName, false, loader);
+        }
+        String rawName = ClassInfo.rawName(className);
+        try {
+            return Class.forName("java.util." + rawName, false, loader);
+        } catch (ClassNotFoundException e) {
+            return Class.forName("java.util.concurrent." + rawName, false, loader);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.example;
+
+/**
+ * t-критерий Уэлча для двух выборок с разными дисперсиями: отличается ли среднее замеров
+ * одного и того же бенчмарка в двух запусках сильнее, чем объясняет шум.
+ * Распределение Стьюдента считается через регуляризованную неполную бета-функцию.
+ */
+final class WelchTest {
+    private static final int MAX_ITERATIONS = 200;
+    private static final double EPSILON = 1e-12;
+    private static final double[] LANCZOS = {676.5203681218851, -1259.1392167224028, 771.32342877765313,
+            -176.61502916214059, 12.507343278686905, -0.13857109526572012, 9.9843695780195716e-6,
+            1.5056327351493116e-7};
+
+    private WelchTest() {
+    }
+
+    static double mean(double[] samples) {
+        double sum = 0;
+        for (double sample : samples) {
+            sum += sample;
+        }
+        return sum / samples.length;
+    }
+
+    /** Несмещенная дисперсия выборки. */
+    static double variance(double[] samples) {
+        double mean = mean(samples);
+        double sum = 0;
+        for (double sample : samples) {
+            sum += (sample - mean) * (sample - mean);
+        }
+        return sum / (samples.length - 1);
+    }
+
+    /** Двусторонний p-value; NaN, если в одной из выборок меньше двух замеров. */
+    static double pValue(double[] a, double[] b) {
+        if (a.length < 2 || b.length < 2) {
+            return Double.NaN;
+        }
+        double varianceA = variance(a) / a.length;
+        double varianceB = variance(b) / b.length;
+        double difference = mean(a) - mean(b);
+        double error = varianceA + varianceB;
+        if (error == 0) {
+            // Обе выборки без разброса: различие либо точно есть, либо его нет
+            return difference == 0 ? 1 : 0;
+        }
+        double t = difference / Math.sqrt(error);
+        // Степени свободы по Уэлчу - Саттертуэйту
+        double freedom = error * error / (varianceA * varianceA / (a.length - 1) + varianceB * varianceB / (b.length - 1));
+        return regularizedBeta(freedom / (freedom + t * t), freedom / 2, 0.5);
+    }
+
+    private static double regularizedBeta(double x, double a, double b) {
+        if (x <= 0) {
+            return 0;
+        }
+        if (x >= 1) {
+            return 1;
+        }
+        double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1 - x));
+        // Цепная дробь сходится быстро только по одну сторону от (a + 1) / (a + b + 2)
+        if (x < (a + 1) / (a + b + 2)) {
+            return front * continuedFraction(x, a, b) / a;
+        }
+        return 1 - front * continuedFraction(1 - x, b, a) / b;
+    }
+
+    /** Цепная дробь неполной бета-функции, модифицированный метод Ленца. */
+    private static double continuedFraction(double x, double a, double b) {
+        double tiny = 1e-300;
+        double c = 1;
+        double d = 1 - (a + b) * x / (a + 1);
+        d = 1 / (Math.abs(d) < tiny ? tiny : d);
+        double result = d;
+        for (int m = 1; m <= MAX_ITERATIONS; m++) {
+            int m2 = 2 * m;
+            double even = m * (b - m) * x / ((a + m2 - 1) * (a + m2));
+            d = 1 / nonZero(1 + even * d, tiny);
+            c = nonZero(1 + even / c, tiny);
+            result *= d * c;
+            double odd = -(a + m) * (a + b + m) * x / ((a + m2) * (a + m2 + 1));
+            d = 1 / nonZero(1 + odd * d, tiny);
+            c = nonZero(1 + odd / c, tiny);
+            double delta = d * c;
+            result *= delta;
+            if (Math.abs(delta - 1) < EPSILON) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static double nonZero(double value, double tiny) {
+        return Math.abs(value) < tiny ? tiny : value;
+    }
+
+    /** Логарифм гамма-функции по Ланцошу (g = 7). */
+    private static double logGamma(double x) {
+        if (x < 0.5) {
+            return Math.log(Math.PI / Math.abs(Math.sin(Math.PI * x))) - logGamma(1 - x);
+        }
+        x -= 1;
+        double sum = 0.99999999999980993;
+        for (int i = 0; i < LANCZOS.length; i++) {
+            sum += LANCZOS[i] / (x + i + 1);
+        }
+        double t = x + LANCZOS.length - 0.5;
+        return 0.5 * Math.log(2 * Math.PI) + (x + 0.5) * Math.log(t) - t + Math.log(sum);
+    }
+}
@@ -0,0 +1,262 @@
+package org.example.primitive;
+
+import java.util.Arrays;
+
+/**
+ * Хэш-таблица long -> long с открытой адресацией и линейным пробированием. Ключи и значения лежат
+ * в двух массивах long, поэтому на запись нет ни узла, ни упакованных Long, как у HashMap&lt;Long, Long&gt;.
+ * Пустая ячейка обозначается ключом 0, сам ключ 0 хранится отдельно. Удаление сдвигает следующие
+ * записи цепочки назад вместо "надгробий", поэтому поиск не деградирует после многих удалений.
+ */
+public class LongLongHashMap {
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    private static final int MIN_CAPACITY = 4;
+    private static final int MAX_CAPACITY = 1 << 30;
+    /** Множитель хэширования Фибоначчи: перемешивает последовательные ключи по всей таблице. */
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    private final float loadFactor;
+    private final long missingValue;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int shift;
+    private int resizeThreshold;
+    private int assigned;
+
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    /** Карта, возвращающая 0 для отсутствующих ключей. */
+    public LongLongHashMap() {
+        this(16, DEFAULT_LOAD_FACTOR, 0);
+    }
+
+    public LongLongHashMap(int expectedSize) {
+        this(expectedSize, DEFAULT_LOAD_FACTOR, 0);
+    }
+
+    /**
+     * @param missingValue что возвращают get и remove, если ключа нет (аналог null у HashMap)
+     */
+    public LongLongHashMap(int expectedSize, float loadFactor, long missingValue) {
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException("Load factor must be in (0, 1): " + loadFactor);
+        }
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Illegal expected size: " + expectedSize);
+        }
+        this.loadFactor = loadFactor;
+        this.missingValue = missingValue;
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return assigned + (hasZeroKey ? 1 : 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** Размер внутренних массивов; для оценки расхода памяти. */
+    public int capacity() {
+        return keys.length;
+    }
+
+    public long missingValue() {
+        return missingValue;
+    }
+
+    public long get(long key) {
+        return getOrDefault(key, missingValue);
+    }
+
+    public long getOrDefault(long key, long defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long existing = keys[slot];
+            if (existing == key) {
+                return values[slot];
+            }
+            if (existing == 0) {
+                return defaultValue;
+            }
+        }
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long existing = keys[slot];
+            if (existing == key) {
+                return true;
+            }
+            if (existing == 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return предыдущее значение или missingValue, если ключа не было
+     */
+    public long put(long key, long value) {
+        if (key == 0) {
+            long previous = hasZeroKey ? zeroValue : missingValue;
+            hasZeroKey = true;
+            zeroValue = value;
+            return previous;
+        }
+        int slot = slot(key);
+        for (long existing = keys[slot]; existing != 0; existing = keys[slot]) {
+            if (existing == key) {
+                long previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++assigned > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return missingValue;
+    }
+
+    /**
+     * Прибавляет delta к значению ключа (отсутствующий ключ считается равным 0); типичный счетчик без упаковки.
+     */
+    public long addTo(long key, long delta) {
+        long updated = getOrDefault(key, 0) + delta;
+        put(key, updated);
+        return updated;
+    }
+
+    /**
+     * @return удаленное значение или missingValue, если ключа не было
+     */
+    public long remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return missingValue;
+            }
+            hasZeroKey = false;
+            return zeroValue;
+        }
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long existing = keys[slot];
+            if (existing == 0) {
+                return missingValue;
+            }
+            if (existing == key) {
+                long previous = values[slot];
+                shiftBack(slot);
+                assigned--;
+                return previous;
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        assigned = 0;
+        hasZeroKey = false;
+    }
+
+    public void forEach(LongLongConsumer action) {
+        if (hasZeroKey) {
+            action.accept(0, zeroValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                action.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface LongLongConsumer {
+        void accept(long key, long value);
+    }
+
+    private int slot(long key) {
+        return (int) ((key * GOLDEN_RATIO) >>> shift);
+    }
+
+    /**
+     * Заполняет освободившуюся ячейку следующими записями цепочки, которые иначе стали бы недостижимы.
+     */
+    private void shiftBack(int gap) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long key = keys[slot];
+            if (key == 0) {
+                break;
+            }
+            int ideal = slot(key);
+            // Запись можно перенести в дыру, если ее идеальная позиция не лежит циклически в (gap, slot]
+            if (((slot - ideal) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = key;
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = 0;
+    }
+
+    private int capacityFor(int expectedSize) {
+        long required = (long) Math.ceil(expectedSize / (double) loadFactor) + 1;
+        if (required > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Expected size is too large: " + expectedSize);
+        }
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit((int) required - 1) << 1);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        resizeThreshold = Math.min(capacity - 1, (int) (capacity * loadFactor));
+    }
+
+    private void rehash(int newCapacity) {
+        if (newCapacity > MAX_CAPACITY) {
+            throw new IllegalStateException("Map is too large: " + size());
+        }
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int slot = slot(key);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        forEach((key, value) -> {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(key).append('=').append(value);
+        });
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.primitive;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Массив long фиксированной длины в памяти вне кучи (прямой ByteBuffer). Сборщик мусора видит только
+ * маленький объект-обертку, поэтому большой массив не увеличивает время копирования и маркировки кучи.
+ * Память освобождается, когда сборщик соберет буфер; явного освобождения в Java 11 без Unsafe нет.
+ * Не потокобезопасен.
+ */
+public class OffHeapLongArray {
+    /** Предел индексации ByteBuffer: смещение в байтах должно помещаться в int. */
+    public static final int MAX_LENGTH = Integer.MAX_VALUE / Long.BYTES;
+
+    private final ByteBuffer buffer;
+    private final int length;
+
+    public OffHeapLongArray(int length) {
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Length must be in [0, " + MAX_LENGTH + "]: " + length);
+        }
+        this.length = length;
+        // Нативный порядок байт: getLong/putLong компилируются в одну инструкцию без перестановки
+        this.buffer = ByteBuffer.allocateDirect(length * Long.BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /** Объем памяти вне кучи в байтах. */
+    public long byteSize() {
+        return (long) length * Long.BYTES;
+    }
+
+    public long get(int index) {
+        return buffer.getLong(offset(index));
+    }
+
+    public void set(int index, long value) {
+        buffer.putLong(offset(index), value);
+    }
+
+    /** Прибавляет delta к элементу и возвращает новое значение. */
+    public long add(int index, long delta) {
+        int offset = offset(index);
+        long updated = buffer.getLong(offset) + delta;
+        buffer.putLong(offset, updated);
+        return updated;
+    }
+
+    public void fill(long value) {
+        for (int offset = 0; offset < length * Long.BYTES; offset += Long.BYTES) {
+            buffer.putLong(offset, value);
+        }
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (int offset = 0; offset < length * Long.BYTES; offset += Long.BYTES) {
+            sum += buffer.getLong(offset);
+        }
+        return sum;
+    }
+
+    public long[] toArray() {
+        long[] copy = new long[length];
+        buffer.duplicate().order(buffer.order()).asLongBuffer().get(copy);
+        return copy;
+    }
+
+    private int offset(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", length: " + length);
+        }
+        return index * Long.BYTES;
+    }
+}